@@ -0,0 +1,122 @@
+package com.riiablo.attributes;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.badlogic.gdx.utils.IntArray;
+
+import com.riiablo.RiiabloTest;
+
+/**
+ * Measures per-tick queries and area effects over every monster within a zone
+ * with each monster's stats within its own {@link Attributes}, as
+ * {@code ServerEntityFactory} creates them, against the same stats stored
+ * within {@link StatColumns}. Requires a D2 installation, see
+ * {@link RiiabloTest}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatColumnsBenchmark {
+  static final int SEED = 0x5EED;
+  static final float ZONE_SIZE = 200;
+  static final float AURA_RADIUS = 30;
+
+  static final short[] STATS = {
+      Stat.hitpoints, Stat.maxhp, Stat.level, Stat.armorclass, Stat.tohit,
+      Stat.fireresist, Stat.lightresist, Stat.coldresist, Stat.poisonresist,
+  };
+
+  @Param({ "500" })
+  int monsters;
+
+  Attributes[] attrs;
+  float[] xs;
+  float[] ys;
+  StatColumns columns;
+
+  final IntArray rows = new IntArray();
+  int heal;
+  float auraX, auraY;
+
+  @Setup
+  public void setup() throws Exception {
+    RiiabloTest.setup();
+    final Random random = new Random(SEED);
+    attrs = new Attributes[monsters];
+    xs = new float[monsters];
+    ys = new float[monsters];
+    columns = new StatColumns(monsters, Stat.hitpoints, Stat.maxhp, Stat.armorclass);
+    for (int i = 0; i < monsters; i++) {
+      final Attributes attrs = this.attrs[i] = Attributes.obtainStandard();
+      final StatListRef base = attrs.base();
+      final float maxhp = 50 + random.nextInt(200);
+      for (short stat : STATS) base.put(stat, 1 + random.nextInt(100));
+      base.put(Stat.maxhp, maxhp);
+      base.put(Stat.hitpoints, maxhp * random.nextFloat());
+      attrs.reset();
+      xs[i] = random.nextFloat() * ZONE_SIZE;
+      ys[i] = random.nextFloat() * ZONE_SIZE;
+      final int row = columns.add(i, attrs.aggregate());
+      columns.setPosition(row, xs[i], ys[i]);
+    }
+
+    heal = Stat.encode(Stat.hitpoints, 5);
+    auraX = auraY = ZONE_SIZE / 2;
+  }
+
+  @Benchmark
+  public float lifeAttributes() {
+    float life = 0;
+    for (Attributes attrs : this.attrs) life += attrs.get(Stat.hitpoints).asFixed();
+    return life;
+  }
+
+  @Benchmark
+  public float lifeColumns() {
+    final int[] hitpoints = columns.values(Stat.hitpoints);
+    long life = 0;
+    for (int row = 0, s = columns.size(); row < s; row++) life += hitpoints[row];
+    return life / 256f;
+  }
+
+  @Benchmark
+  public int auraAttributes() {
+    final float radius2 = AURA_RADIUS * AURA_RADIUS;
+    int affected = 0;
+    for (int i = 0; i < monsters; i++) {
+      final float dx = xs[i] - auraX;
+      final float dy = ys[i] - auraY;
+      if (dx * dx + dy * dy > radius2) continue;
+      final Attributes attrs = this.attrs[i];
+      final int maxhp = attrs.aggregate().getEncodedValue(Stat.maxhp, 0);
+      final StatRef hitpoints = attrs.get(Stat.hitpoints);
+      hitpoints.setEncoded(Math.min(hitpoints.encodedValues() + heal, Math.max(hitpoints.encodedValues(), maxhp)));
+      affected++;
+    }
+
+    return affected;
+  }
+
+  @Benchmark
+  public int auraColumns() {
+    rows.clear();
+    final int affected = columns.within(auraX, auraY, AURA_RADIUS, rows);
+    columns.addEncoded(Stat.hitpoints, heal, rows, Stat.maxhp);
+    return affected;
+  }
+}
@@ -0,0 +1,72 @@
+package com.riiablo.item;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.badlogic.gdx.math.RandomXS128;
+
+import com.riiablo.RiiabloTest;
+
+/**
+ * Measures treasure classes rolled per second on one thread, from a monster
+ * class with a single pick to a boss dropping a full set of items. Only the
+ * base, quality and affix ids are rolled, see {@link DropGenerator}. Requires a
+ * D2 installation, see {@link RiiabloTest}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DropGeneratorBenchmark {
+  static final int SEED = 0x5EED;
+  static final int ROLLS = 1 << 10;
+
+  @Param({ "Act 1 H2H A", "Act 5 (H) Good", "Andariel", "Baal (H)" })
+  String treasureClass;
+
+  @Param({ "1", "8" })
+  int players;
+
+  @Param({ "0", "300" })
+  int magicFind;
+
+  DropGenerator generator;
+  TreasureClasses treasureClasses;
+  final Drops drops = new Drops();
+  int tc;
+  int ilvl;
+
+  @Setup
+  public void setup() throws Exception {
+    RiiabloTest.setup();
+    treasureClasses = new TreasureClasses();
+    generator = new DropGenerator(new QualityTables(treasureClasses), new RandomXS128(SEED));
+    tc = treasureClasses.index(treasureClass);
+    if (tc < 0) throw new IllegalArgumentException("Unknown treasure class: " + treasureClass);
+    ilvl = Math.max(treasureClasses.level(tc), 1);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ROLLS)
+  public int roll() {
+    int dropped = 0;
+    for (int i = 0; i < ROLLS; i++) {
+      dropped += generator.roll(tc, players, ilvl, magicFind, drops);
+    }
+
+    return dropped;
+  }
+}
@@ -0,0 +1,87 @@
+package com.riiablo.item;
+
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.badlogic.gdx.math.RandomXS128;
+
+import com.riiablo.RiiabloTest;
+import com.riiablo.io.ByteInput;
+import com.riiablo.io.ByteOutput;
+
+/**
+ * Measures items decoded per second from a synthetic stash of dropped items
+ * using an {@link ItemReader} with and without diagnostics, i.e., tracking
+ * the item being read within the MDC. Requires a D2 installation, see
+ * {@link RiiabloTest}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ItemReaderBenchmark {
+  static final int SEED = 0x5EED;
+  static final int ITEMS = 1 << 10;
+  static final String TREASURE_CLASS = "Baal (H)";
+
+  final ItemReader diagnosticReader = new ItemReader(true);
+  final ItemReader productionReader = new ItemReader(false);
+  byte[] stash;
+
+  @Setup
+  public void setup() throws Exception {
+    RiiabloTest.setup();
+    final ItemGenerator itemGenerator = new ItemGenerator();
+    final TreasureClasses treasureClasses = new TreasureClasses();
+    final DropGenerator generator = new DropGenerator(new QualityTables(treasureClasses), new RandomXS128(SEED));
+    final int tc = treasureClasses.index(TREASURE_CLASS);
+    final int ilvl = treasureClasses.level(tc);
+    final Drops drops = new Drops();
+    final ItemWriter writer = new ItemWriter();
+    final ByteOutput out = ByteOutput.wrap(Unpooled.buffer());
+    for (int items = 0; items < ITEMS;) {
+      generator.roll(tc, 1, ilvl, 0, drops);
+      for (int i = 0; i < drops.size && items < ITEMS; i++, items++) {
+        writer.writeItem(itemGenerator.generate(generator.qualities(), drops, i), out);
+      }
+    }
+
+    stash = ByteBufUtil.getBytes(out.buffer());
+  }
+
+  int read(ItemReader reader) {
+    final ByteInput in = ByteInput.wrap(stash);
+    int ilvls = 0;
+    for (int i = 0; i < ITEMS; i++) {
+      ilvls += reader.readItem(in).ilvl;
+    }
+
+    return ilvls;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ITEMS)
+  public int diagnostic() {
+    return read(diagnosticReader);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ITEMS)
+  public int production() {
+    return read(productionReader);
+  }
+}
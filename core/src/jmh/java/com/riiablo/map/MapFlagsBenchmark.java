@@ -0,0 +1,108 @@
+package com.riiablo.map;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.riiablo.Riiablo;
+import com.riiablo.RiiabloTest;
+import com.riiablo.codec.excel.Levels;
+import com.riiablo.codec.util.BBox;
+
+/**
+ * Measures {@link Map#flags(int, int)} over every level of act 1 laid out at
+ * its Levels.txt offset, comparing the zone index against the linear scan it
+ * replaced. Points either follow random walks, as entity queries tend to, or
+ * are uniformly distributed over the act. Requires a D2 installation, see
+ * {@link RiiabloTest}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapFlagsBenchmark {
+  static final int POINTS = 1 << 12;
+
+  @Param({ "walk", "uniform" })
+  String pattern;
+
+  Map map;
+  final int[] xs = new int[POINTS];
+  final int[] ys = new int[POINTS];
+
+  @Setup
+  public void setup() throws Exception {
+    RiiabloTest.setup();
+    setup(Riiablo.files.Levels, Riiablo.ACT1);
+  }
+
+  void setup(Levels levels, int act) {
+    map = new Map(0, 0);
+    for (Levels.Entry level : levels) {
+      if (level.Id == 0 || level.Act != act || level.SizeX[0] == 0) continue;
+      Map.Zone zone = map.addZone(level, 8, 8);
+      zone.setPosition(level.OffsetX * DT1.Tile.SUBTILE_SIZE, level.OffsetY * DT1.Tile.SUBTILE_SIZE);
+    }
+
+    BBox bounds = new BBox().prepare();
+    for (Map.Zone zone : map.zones) bounds.max(new BBox().asBox(zone.x, zone.y, zone.width, zone.height));
+
+    Random random = new Random(POINTS);
+    int x = bounds.xMin + bounds.width / 2, y = bounds.yMin + bounds.height / 2;
+    for (int i = 0; i < POINTS; i++) {
+      if (pattern.equals("uniform") || i % 64 == 0) {
+        x = bounds.xMin + random.nextInt(bounds.width);
+        y = bounds.yMin + random.nextInt(bounds.height);
+      } else {
+        x += random.nextInt(5) - 2;
+        y += random.nextInt(5) - 2;
+      }
+
+      xs[i] = x;
+      ys[i] = y;
+    }
+  }
+
+  @TearDown
+  public void teardown() {
+    map.dispose();
+  }
+
+  int linearFlags(int x, int y) {
+    for (Map.Zone zone : map.zones) {
+      if (zone.contains(x, y)) return zone.flags(x - zone.x, y - zone.y);
+    }
+
+    return 0xFF;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(POINTS)
+  public int indexed() {
+    int flags = 0;
+    for (int i = 0; i < POINTS; i++) flags += map.flags(xs[i], ys[i]);
+    return flags;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(POINTS)
+  public int linear() {
+    int flags = 0;
+    for (int i = 0; i < POINTS; i++) flags += linearFlags(xs[i], ys[i]);
+    return flags;
+  }
+}
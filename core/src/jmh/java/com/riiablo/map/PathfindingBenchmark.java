@@ -0,0 +1,121 @@
+package com.riiablo.map;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.badlogic.gdx.utils.Array;
+
+import com.riiablo.RiiabloTest;
+import com.riiablo.map.pfa.GraphPath;
+import com.riiablo.map.pfa.PathSearch;
+import com.riiablo.map.pfa.PathfindingService;
+import com.riiablo.map.pfa.PathfindingService.Request;
+
+/**
+ * Measures paths searched and smoothed per second on a generated act 1 with
+ * randomly blocked sub-tiles, see {@link PathfindingTest#generate(int)}. The
+ * map's own path finder, which every search used to share, is compared against
+ * a {@link PathSearch} and against batches searched by a
+ * {@link PathfindingService}. Requires a D2 installation, see
+ * {@link RiiabloTest}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathfindingBenchmark {
+  static final int SEED = PathfindingTest.SEED;
+  static final int FLAGS = PathfindingTest.FLAGS;
+  static final int REQUESTS = 1 << 10;
+
+  Map map;
+  Array<Request> requests;
+
+  final PathSearch search = new PathSearch();
+  final GraphPath path = new GraphPath();
+
+  @Setup
+  public void setup() throws Exception {
+    RiiabloTest.setup();
+    setup(PathfindingTest.generate(SEED));
+  }
+
+  void setup(Map map) {
+    this.map = map;
+    requests = PathfindingTest.requests(map, new Random(SEED), REQUESTS);
+    for (Request request : requests) request.raycast = false;
+  }
+
+  @TearDown
+  public void teardown() {
+    map.dispose();
+  }
+
+  @State(Scope.Benchmark)
+  public static class Service {
+    @Param({ "1", "2", "4", "8" })
+    int threads;
+
+    PathfindingService service;
+
+    @Setup
+    public void setup() {
+      service = new PathfindingService(threads);
+    }
+
+    @TearDown
+    public void teardown() {
+      service.dispose();
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(REQUESTS)
+  public int map() {
+    int found = 0;
+    for (Request request : requests) {
+      if (map.findPath(request.src, request.dst, FLAGS, request.size, path)) {
+        map.smoothPath(FLAGS, request.size, path);
+        found++;
+      }
+    }
+
+    return found;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(REQUESTS)
+  public int search() {
+    int found = 0;
+    for (Request request : requests) {
+      if (search.search(map, request.src, request.dst, FLAGS, request.size, path)) {
+        search.smoothPath(map, FLAGS, request.size, path);
+        found++;
+      }
+    }
+
+    return found;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(REQUESTS)
+  public Array<Request> service(Service service) {
+    service.service.submit(map, requests).await();
+    return requests;
+  }
+}
@@ -0,0 +1,101 @@
+package com.riiablo.mpq_bytebuf;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.riiablo.logger.Level;
+import com.riiablo.logger.LogManager;
+
+/**
+ * Measures synthetic 256 KB files decoded per second by {@code nThreads}
+ * callers sharing a decoder group of the same size, each caller decoding its
+ * own partition of the files, see {@link ConcurrentDecodingTest}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentDecodingBenchmark {
+  static final int NUM_FILES = 64;
+  static final int FILE_SIZE = 0x40000; // 256 KB
+
+  @Param({ "1", "2", "4", "8" })
+  int nThreads;
+
+  SyntheticMpq synthetic;
+  Mpq mpq;
+  DecoderExecutorGroup decoder;
+  ExecutorService callers;
+  final List<Callable<Long>> partitions = new ArrayList<>();
+  Future<?>[] futures;
+
+  @Setup
+  public void setup() {
+    LogManager.setLevel("com.riiablo.mpq_bytebuf", Level.WARN);
+    synthetic = new SyntheticMpq(NUM_FILES, FILE_SIZE, 0xDEADBEEFL);
+    mpq = synthetic.build();
+    decoder = new DecoderExecutorGroup(nThreads);
+    callers = Executors.newFixedThreadPool(nThreads);
+    futures = new Future<?>[nThreads];
+    for (int t = 0; t < nThreads; t++) {
+      final int thread = t;
+      partitions.add(() -> {
+        long bytes = 0;
+        for (int i = thread; i < NUM_FILES; i += nThreads) bytes += decode(i);
+        return bytes;
+      });
+    }
+  }
+
+  @TearDown
+  public void teardown() {
+    callers.shutdown();
+    decoder.shutdownGracefully();
+    mpq.dispose();
+  }
+
+  /** handles are opened and released while synchronized on the mpq */
+  long decode(int i) {
+    final MpqFileHandle handle;
+    synchronized (mpq) {
+      handle = synthetic.open(mpq, decoder, i);
+    }
+
+    try {
+      return handle.buffer().readableBytes();
+    } finally {
+      synchronized (mpq) {
+        handle.release();
+      }
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_FILES)
+  public long decode() throws Exception {
+    for (int t = 0; t < nThreads; t++) futures[t] = callers.submit(partitions.get(t));
+    long bytes = 0;
+    for (Future<?> future : futures) bytes += (Long) future.get();
+    return bytes;
+  }
+}
@@ -0,0 +1,80 @@
+package com.riiablo.mpq_bytebuf;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static com.riiablo.mpq_bytebuf.Decrypter.SEED2;
+
+/**
+ * Compares decrypting an encrypted sector by first copying it out of the
+ * mapped archive and then decrypting in place against decrypting directly
+ * from the mapped archive into the destination buffer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecrypterBenchmark {
+  static final int KEY = 0x2BADF00D;
+
+  @Param({ "4096" })
+  int sectorSize;
+
+  /** stands in for the mapped archive, see Mpq#nioView */
+  ByteBuffer src;
+  ByteBuf srcBuf;
+  ByteBuf dst;
+
+  @Setup
+  public void setup() {
+    final byte[] sector = new byte[sectorSize];
+    new Random(sectorSize).nextBytes(sector);
+    src = ByteBuffer.allocateDirect(sectorSize).order(ByteOrder.LITTLE_ENDIAN);
+    src.put(sector).clear();
+    srcBuf = Unpooled.wrappedBuffer(src);
+    dst = Mpq.ALLOC.heapBuffer(sectorSize);
+  }
+
+  @TearDown
+  public void teardown() {
+    dst.release();
+  }
+
+  @Benchmark
+  public ByteBuf copyThenDecrypt() {
+    src.clear();
+    dst.clear().writeBytes(src);
+    Decrypter.decrypt(KEY, SEED2, dst);
+    return dst;
+  }
+
+  @Benchmark
+  public ByteBuf fused() {
+    Decrypter.decrypt(KEY, SEED2, src, 0, dst, 0, sectorSize);
+    return dst.writerIndex(sectorSize);
+  }
+
+  @Benchmark
+  public ByteBuf fusedByteBuf() {
+    Decrypter.decrypt(KEY, SEED2, srcBuf, 0, dst, 0, sectorSize);
+    return dst.writerIndex(sectorSize);
+  }
+}
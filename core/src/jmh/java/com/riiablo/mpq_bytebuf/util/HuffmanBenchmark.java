@@ -0,0 +1,61 @@
+package com.riiablo.mpq_bytebuf.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares inflating synthetic 4 KB sectors by walking the tree bit-by-bit
+ * against resolving symbols using the lookup table.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HuffmanBenchmark {
+  static final int SECTOR_SIZE = 0x1000;
+
+  /** compression type, 0 is fully adaptive */
+  @Param({ "0", "1", "4", "7" })
+  int type;
+
+  ByteBuf deflated;
+  ByteBuf inflated;
+  Huffman treeWalk;
+  Huffman lookup;
+
+  @Setup
+  public void setup() {
+    final byte[] samples = SyntheticHuffman.samples(new Random(type), SECTOR_SIZE);
+    deflated = SyntheticHuffman.deflate(type, samples);
+    inflated = Unpooled.buffer(SECTOR_SIZE);
+    treeWalk = new Huffman(false);
+    lookup = new Huffman(true);
+  }
+
+  @Benchmark
+  public ByteBuf treeWalk() {
+    treeWalk.inflate(deflated.readerIndex(0), inflated.clear());
+    return inflated;
+  }
+
+  @Benchmark
+  public ByteBuf lookup() {
+    lookup.inflate(deflated.readerIndex(0), inflated.clear());
+    return inflated;
+  }
+}
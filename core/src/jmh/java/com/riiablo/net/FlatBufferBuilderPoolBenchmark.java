@@ -0,0 +1,81 @@
+package com.riiablo.net;
+
+import com.google.flatbuffers.FlatBufferBuilder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.riiablo.net.packet.d2gs.AngleP;
+import com.riiablo.net.packet.d2gs.ComponentP;
+import com.riiablo.net.packet.d2gs.D2GS;
+import com.riiablo.net.packet.d2gs.D2GSData;
+import com.riiablo.net.packet.d2gs.EntitySync;
+import com.riiablo.net.packet.d2gs.PositionP;
+import com.riiablo.net.packet.d2gs.VelocityP;
+
+/**
+ * Builds one server tick worth of entity syncs, either allocating a new
+ * builder per packet or reusing pooled builders and pooled output buffers.
+ * Run with {@code -prof gc} and compare {@code gc.alloc.rate.norm}, i.e., the
+ * bytes allocated per tick.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FlatBufferBuilderPoolBenchmark {
+  static final byte[] COMPONENT_TYPES = { ComponentP.PositionP, ComponentP.VelocityP, ComponentP.AngleP };
+
+  @Param({ "200" })
+  int entities;
+
+  final FlatBufferBuilderPool builders = new FlatBufferBuilderPool(PooledByteBufAllocator.DEFAULT);
+  final int[] components = new int[COMPONENT_TYPES.length];
+
+  void sync(FlatBufferBuilder builder, int entityId) {
+    components[0] = PositionP.createPositionP(builder, entityId, entityId);
+    components[1] = VelocityP.createVelocityP(builder, 1, 0);
+    components[2] = AngleP.createAngleP(builder, 0, 1);
+    int dataTypeOffset = EntitySync.createComponentTypeVector(builder, COMPONENT_TYPES);
+    int dataOffset = EntitySync.createComponentVector(builder, components);
+    int syncOffset = EntitySync.createEntitySync(builder, entityId, 1, 0, dataTypeOffset, dataOffset);
+    int root = D2GS.createD2GS(builder, D2GSData.EntitySync, syncOffset);
+    D2GS.finishSizePrefixedD2GSBuffer(builder, root);
+  }
+
+  @Benchmark
+  public void allocating(Blackhole bh) {
+    for (int i = 0; i < entities; i++) {
+      FlatBufferBuilder builder = new FlatBufferBuilder(0);
+      sync(builder, i);
+      ByteBuf content = Unpooled.wrappedBuffer(builder.dataBuffer());
+      bh.consume(content);
+      content.release();
+    }
+  }
+
+  @Benchmark
+  public void pooled(Blackhole bh) {
+    for (int i = 0; i < entities; i++) {
+      FlatBufferBuilder builder = builders.obtain();
+      sync(builder, i);
+      ByteBuf content = builders.finish(builder);
+      bh.consume(content);
+      content.release();
+    }
+  }
+}
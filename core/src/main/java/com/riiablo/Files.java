@@ -15,6 +15,7 @@ import com.riiablo.codec.excel.DifficultyLevels;
 import com.riiablo.codec.excel.Excel;
 import com.riiablo.codec.excel.Gems;
 import com.riiablo.codec.excel.Inventory;
+import com.riiablo.codec.excel.ItemRatio;
 import com.riiablo.codec.excel.ItemStatCost;
 import com.riiablo.codec.excel.ItemTypes;
 import com.riiablo.codec.excel.Levels;
@@ -49,6 +50,7 @@ import com.riiablo.codec.excel.SkillDesc;
 import com.riiablo.codec.excel.Skills;
 import com.riiablo.codec.excel.Sounds;
 import com.riiablo.codec.excel.Speech;
+import com.riiablo.codec.excel.TreasureClassEx;
 import com.riiablo.codec.excel.UniqueItems;
 import com.riiablo.codec.excel.WeaponClass;
 import com.riiablo.codec.excel.Weapons;
@@ -71,6 +73,7 @@ public class Files {
   public final DifficultyLevels DifficultyLevels;
   public final Gems             Gems;
   public final Inventory        inventory;
+  public final ItemRatio        ItemRatio;
   public final ItemStatCost     ItemStatCost;
   public final ItemTypes        ItemTypes;
   public final Levels           Levels;
@@ -102,6 +105,7 @@ public class Files {
   public final Skills           skills;
   public final SkillDesc        skilldesc;
   public final Sounds           Sounds;
+  public final TreasureClassEx  TreasureClassEx;
   public final UniqueItems      UniqueItems;
   //public final UniquePrefix   UniquePrefix;
   //public final UniqueSuffix   UniqueSuffix;
@@ -129,6 +133,7 @@ public class Files {
     DifficultyLevels = load(DifficultyLevels.class);
     Gems             = load(Gems.class, Excel.EXPANSION);
     inventory        = load(Inventory.class);
+    ItemRatio        = load(ItemRatio.class);
     ItemStatCost     = load(ItemStatCost.class);
     ItemTypes        = load(ItemTypes.class);
     Levels           = load(Levels.class, Excel.EXPANSION);
@@ -160,6 +165,7 @@ public class Files {
     skills           = load(Skills.class);
     skilldesc        = load(SkillDesc.class);
     Sounds           = load(Sounds.class);
+    TreasureClassEx  = load(TreasureClassEx.class);
     UniqueItems      = load(UniqueItems.class, Excel.EXPANSION);
     //UniquePrefix   = load(UniquePrefix.class);
     //UniqueSuffix   = load(UniqueSuffix.class);
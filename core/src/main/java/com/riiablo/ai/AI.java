@@ -1,13 +1,16 @@
 package com.riiablo.ai;
 
 import java.lang.reflect.Constructor;
+import java.util.Random;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 
+import com.artemis.AspectSubscriptionManager;
 import com.artemis.ComponentMapper;
 import com.artemis.annotations.EntityId;
 import com.artemis.annotations.Wire;
 
+import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
 
 import com.riiablo.Riiablo;
@@ -58,13 +61,18 @@ public abstract class AI implements Interactable.Interactor {
   protected ComponentMapper<Interactable> mInteractable;
   protected ComponentMapper<PathWrapper> mPathWrapper;
 
+  protected AspectSubscriptionManager subscriptions;
   protected CofManager cofs;
   protected Pathfinder pathfinder;
 
   @Wire(name = "factory")
   protected EntityFactory factory;
 
-  private static final Vector2 tmpVec2 = new Vector2();
+  /** random of the hosting game, {@link MathUtils#random} if none registered */
+  @Wire(name = "random", failOnNull = false)
+  protected Random random;
+
+  private final Vector2 tmpVec2 = new Vector2();
 
   protected float SLEEP = Float.POSITIVE_INFINITY;
   protected int[] params = ArrayUtils.EMPTY_INT_ARRAY;
@@ -80,6 +88,7 @@ public abstract class AI implements Interactable.Interactor {
 
   public void initialize() {
     if (this == IDLE) return;
+    if (random == null) random = MathUtils.random;
     monster = mMonster.get(entityId);
     MonStats.Entry monstats = monster.monstats;
 
@@ -113,6 +122,21 @@ public abstract class AI implements Interactable.Interactor {
 
   public void kill() {}
 
+  /** @see MathUtils#random(int, int) */
+  protected int random(int start, int end) {
+    return start + random.nextInt(end - start + 1);
+  }
+
+  /** @see MathUtils#random(float, float) */
+  protected float random(float start, float end) {
+    return start + random.nextFloat() * (end - start);
+  }
+
+  /** @see MathUtils#randomBoolean(float) */
+  protected boolean randomBoolean(float chance) {
+    return random.nextFloat() < chance;
+  }
+
   protected Angle lookAt(int target) {
     Vector2 targetPos = mPosition.get(target).position;
     Vector2 entityPos = mPosition.get(entityId).position;
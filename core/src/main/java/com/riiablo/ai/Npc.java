@@ -7,7 +7,6 @@ import org.apache.commons.lang3.exception.ExceptionUtils;
 import com.artemis.ComponentMapper;
 import net.mostlyoriginal.api.event.common.EventSystem;
 
-import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.scenes.scene2d.InputEvent;
 import com.badlogic.gdx.scenes.scene2d.utils.ClickListener;
@@ -258,7 +257,7 @@ public class Npc extends AI {
         return;
       } else if (actionPerformed) {
         actionPerformed = false;
-        targetId = MathUtils.random(path.numPoints - 1);
+        targetId = random(0, path.numPoints - 1);
       } else {
         int actionId = path.points[targetId].action;
         actionTimer = action(actionId);
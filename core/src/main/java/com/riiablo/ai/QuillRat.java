@@ -8,7 +8,6 @@ import com.artemis.utils.IntBag;
 import com.badlogic.gdx.ai.fsm.DefaultStateMachine;
 import com.badlogic.gdx.ai.fsm.StateMachine;
 import com.badlogic.gdx.ai.msg.Telegram;
-import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
 
 import com.riiablo.Riiablo;
@@ -36,7 +35,7 @@ public class QuillRat extends AI {
 
   protected ComponentMapper<Class> mClass;
 
-  private static EntitySubscription enemyEntities;
+  private EntitySubscription enemyEntities;
 
   final Vector2 tmpVec2 = new Vector2();
 
@@ -56,7 +55,7 @@ public class QuillRat extends AI {
     monsound = "spikefiend";
     missile = Riiablo.files.Missiles.get(monster.monstats.MissA2);
     if (enemyEntities == null) {
-      enemyEntities = Riiablo.engine.getAspectSubscriptionManager().get(Aspect
+      enemyEntities = subscriptions.get(Aspect
               .all(Class.class)
               .one(Player.class));
     }
@@ -103,16 +102,16 @@ public class QuillRat extends AI {
               stateMachine.changeState(State.ATTACK);
               mSequence.create(entityId).sequence(Engine.Monster.MODE_A1, Engine.Monster.MODE_NU);
               Riiablo.audio.play(monsound + "_attack_1", true);
-              time = MathUtils.random(1f, 2);
+              time = random(1f, 2);
               return;
             } else if (dst < params[0]) {
-              if (MathUtils.randomBoolean(params[1] / 100f)) {
+              if (randomBoolean(params[1] / 100f)) {
                 pathfinder.findPath(entityId, null);
                 lookAt(ent);
                 stateMachine.changeState(State.ATTACK);
                 mSequence.create(entityId).sequence(Engine.Monster.MODE_A2, Engine.Monster.MODE_NU);
                 Riiablo.audio.play(monsound + "_shoot_1", true);
-                time = MathUtils.random(1f, 2);
+                time = random(1f, 2);
                 fire(missile);
                 return;
               }
@@ -131,16 +130,16 @@ public class QuillRat extends AI {
         break;
       case WANDER:
         if (!mPathfind.has(entityId)) {
-          nextAction = MathUtils.random(3f, 5);
+          nextAction = random(3f, 5);
           stateMachine.changeState(State.IDLE);
         } else {
           Vector2 dst = tmpVec2.set(mPosition.get(entityId).position);
-          dst.add(MathUtils.random(-5, 5), MathUtils.random(-5, 5));
+          dst.add(random(-5, 5), random(-5, 5));
           pathfinder.findPath(entityId, dst);
         }
         break;
       case APPROACH:
-        nextAction = MathUtils.random(0f, 1);
+        nextAction = random(0f, 1);
         stateMachine.changeState(State.IDLE);
         break;
       case ATTACK:
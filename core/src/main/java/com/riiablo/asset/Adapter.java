@@ -20,5 +20,10 @@ public abstract class Adapter<F extends FileHandle> {
 
   public abstract int defaultBufferSize(F handle);
   public abstract Future<InputStream> stream(EventExecutor executor, F handle, int bufferSize);
+
+  /**
+   * Reads the specified range of {@code handle}. The returned buffer is owned
+   * by the caller and must be released once it is no longer needed.
+   */
   public abstract Future<ByteBuf> buffer(EventExecutor executor, F handle, int offset, int length);
 }
@@ -29,6 +29,6 @@ public class MpqFileHandleAdapter extends Adapter<MpqFileHandle> {
 
   @Override
   public Future<ByteBuf> buffer(EventExecutor executor, MpqFileHandle handle, int offset, int length) {
-    return handle.bufferAsync(executor, offset, length);
+    return handle.retainedBufferAsync(executor, offset, length);
   }
 }
@@ -80,14 +80,18 @@ public class DccLoader extends AssetLoader<Dcc> {
     if (params.direction >= 0) {
       Dcc dcc = assets.getDepNow(AssetDesc.of(asset, PARENT_DC));
       assert data instanceof ByteBuf;
-      ByteBuf buffer = (ByteBuf) data; // borrowed, don't release
-      dcc.read(buffer, params.direction);
-      DccDecoder decoder = decoders.obtain();
+      ByteBuf buffer = (ByteBuf) data;
       try {
-        log.trace("decoding {}", asset);
-        decoder.decode(dcc, params.direction);
+        dcc.read(buffer, params.direction);
+        DccDecoder decoder = decoders.obtain();
+        try {
+          log.trace("decoding {}", asset);
+          decoder.decode(dcc, params.direction);
+        } finally {
+          decoders.release(decoder);
+        }
       } finally {
-        decoders.release(decoder);
+        buffer.release();
       }
       return dcc;
     } else {
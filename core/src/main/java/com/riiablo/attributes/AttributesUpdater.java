@@ -1,5 +1,11 @@
 package com.riiablo.attributes;
 
+import java.util.Arrays;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.ShortArray;
+
+import com.riiablo.Riiablo;
 import com.riiablo.codec.excel.CharStats;
 import com.riiablo.codec.excel.ItemStatCost;
 import com.riiablo.logger.LogManager;
@@ -10,6 +16,8 @@ import com.riiablo.math.Fixed;
 public final class AttributesUpdater {
   private static final Logger log = LogManager.getLogger(AttributesUpdater.class);
 
+  private OpStats opStats;
+
   public UpdateSequence update(final Attributes attrs, final CharStats.Entry charStats) {
     return update(attrs, attrs, charStats);
   }
@@ -29,6 +37,27 @@ public final class AttributesUpdater {
     return UpdateSequence.obtain().reset(this, attrs, listFlags, opBase, charStats);
   }
 
+  /**
+   * Recomputes {@code attrs} from its lists selected by {@code listFlags} and
+   * returns a tracker which keeps it up to date as lists are added or removed,
+   * recomputing only the stats each change affects.
+   *
+   * @see UpdateTracker
+   */
+  public UpdateTracker track(
+      final Attributes attrs,
+      final int listFlags,
+      final Attributes opBase,
+      final CharStats.Entry charStats) {
+    final UpdateTracker tracker = new UpdateTracker(this, attrs, opBase, charStats).addAll(attrs, listFlags);
+    tracker.recompute();
+    return tracker;
+  }
+
+  OpStats opStats() {
+    return opStats == null ? opStats = new OpStats() : opStats;
+  }
+
   void add(
       final Attributes attrs,
       final StatListRef stats) {
@@ -74,7 +103,8 @@ public final class AttributesUpdater {
       final StatListRef rem,
       final Attributes opBase,
       final CharStats.Entry charStats) {
-    for (final StatList.StatIterator it = rem.statIterator(); it.hasNext();) {
+    final StatList.StatIterator it = rem.statIterator();
+    while (it.hasNext()) {
       final StatRef stat = it.next();
       final ItemStatCost.Entry entry = stat.entry();
       try {
@@ -101,6 +131,8 @@ public final class AttributesUpdater {
         MDC.remove("applyStat");
       }
     }
+
+    it.truncate();
   }
 
   static int op(
@@ -113,7 +145,7 @@ public final class AttributesUpdater {
     final int op_param = entry.op_param;
     assert op_param == 0 || !entry.op_base.isEmpty();
     final short opBaseStatId = Stat.index(entry.op_base);
-    assert op_param == 0 || opBase.aggregate().contains(opBaseStatId) : "entry.op_base " + entry.op_base;
+    assert op_param == 0 || opBase.aggregate().containsAny(opBaseStatId) : "entry.op_base " + entry.op_base;
     final int op_base = op_param > 0 ? opBase.aggregate().getValue(opBaseStatId, 1) : 1;
 
     int ops = 0, expectedOps = 0;
@@ -174,4 +206,64 @@ public final class AttributesUpdater {
         return 0;
     }
   }
+
+  /**
+   * Stats with an op, each with the stats it modifies and the stat its value
+   * is based on, see {@link #op(StatListRef, Attributes, CharStats.Entry, StatRef)}.
+   */
+  static final class OpStats {
+    static final short[] EMPTY = new short[0];
+
+    /** sorted ids of the stats with an op */
+    final short[] ids;
+    final short[][] opStats;
+    /** op base of each stat, or {@code -1} if it has none */
+    final short[] opBases;
+    /** index of each stat within {@link #ids}, or {@code -1} */
+    final int[] indexes;
+
+    OpStats() {
+      final IntArray ids = new IntArray();
+      int maxId = 0;
+      for (ItemStatCost.Entry entry : Riiablo.files.ItemStatCost) {
+        maxId = Math.max(maxId, entry.ID);
+        if (entry.op > 0 && !ids.contains(entry.ID)) ids.add(entry.ID);
+      }
+
+      ids.sort();
+      final int size = ids.size;
+      this.ids = new short[size];
+      opStats = new short[size][];
+      opBases = new short[size];
+      indexes = new int[maxId + 1];
+      Arrays.fill(indexes, -1);
+      final ShortArray opStat = new ShortArray();
+      for (int i = 0; i < size; i++) {
+        final short id = (short) ids.get(i);
+        final ItemStatCost.Entry entry = Stat.entry(id);
+        this.ids[i] = id;
+        indexes[id] = i;
+        opStat.clear();
+        for (String stat : entry.op_stat) {
+          if (stat == null || stat.isEmpty()) break;
+          final short opStatId = Stat.index(stat);
+          if (opStatId >= 0) opStat.add(opStatId);
+        }
+
+        opStats[i] = opStat.size > 0 ? opStat.toArray() : EMPTY;
+        opBases[i] = entry.op_param > 0 && entry.op_base != null && !entry.op_base.isEmpty()
+            ? Stat.index(entry.op_base)
+            : -1;
+      }
+    }
+
+    int size() {
+      return ids.length;
+    }
+
+    /** @return index of {@code stat} within {@link #ids}, or {@code -1} if it has no op */
+    int indexOf(final short stat) {
+      return stat < indexes.length ? indexes[stat] : -1;
+    }
+  }
 }
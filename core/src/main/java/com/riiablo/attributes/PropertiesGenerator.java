@@ -1,5 +1,7 @@
 package com.riiablo.attributes;
 
+import java.util.Random;
+
 import com.badlogic.gdx.math.MathUtils;
 
 import com.riiablo.Riiablo;
@@ -12,6 +14,16 @@ import com.riiablo.logger.MDC;
 public class PropertiesGenerator {
   private static final Logger log = LogManager.getLogger(PropertiesGenerator.class);
 
+  final Random random;
+
+  public PropertiesGenerator() {
+    this(MathUtils.random);
+  }
+
+  public PropertiesGenerator(Random random) {
+    this.random = random;
+  }
+
   /**
    * @param code properties file keys (res-all, ac/lvl, str, etc)
    * @param param parameter for the resulting stat (e.g., effect duration)
@@ -44,6 +56,36 @@ public class PropertiesGenerator {
     return stats;
   }
 
+  public StatListRef add(final StatListRef stats, final Props props) {
+    return add(stats, props.code, props.param, props.min, props.max);
+  }
+
+  /**
+   * Builds every list of an item within {@code stats}, same as
+   * {@link StatListReader#read(StatList, com.riiablo.io.BitInput, int)} would,
+   * adding each of {@code props} to its magic list.
+   *
+   * @param props properties to add, {@code null} entries are skipped
+   */
+  public StatList addItemLists(final StatList stats, final Props... props) {
+    final int maxLists = stats.maxLists();
+    for (int i = 0; i < maxLists; i++) {
+      final StatListRef list = stats.buildList(); // must be called to init list (even empty)
+      if (i == StatListFlags.ITEM_MAGIC_LIST) {
+        try {
+          MDC.put("propList", StatListFlags.itemToString(i));
+          for (Props p : props) {
+            if (p != null) add(list, p);
+          }
+        } finally {
+          MDC.remove("propList");
+        }
+      }
+    }
+
+    return stats.freeze();
+  }
+
   /**
    * @param propId some properties reference siblings, this is active index
    */
@@ -196,7 +238,38 @@ public class PropertiesGenerator {
     }
   }
 
-  static final int random(int min, int max) {
-    return MathUtils.random(min, max);
+  /** @see MathUtils#random(int, int) */
+  final int random(int min, int max) {
+    return min + random.nextInt(max - min + 1);
+  }
+
+  /**
+   * Properties in the form {@link #add(StatListRef, String[], int[], int[], int[])}
+   * expects, i.e., codes terminated by an empty code. Codes which are not in
+   * Properties.txt are dropped.
+   */
+  public static final class Props {
+    public final String[] code;
+    public final int[] param;
+    public final int[] min;
+    public final int[] max;
+
+    public Props(String[] code, int[] param, int[] min, int[] max) {
+      int size = 0;
+      for (int i = 0; i < code.length; i++) {
+        if (code[i] == null || Riiablo.files.Properties.get(code[i]) == null) continue;
+        code[size] = code[i];
+        param[size] = param[i];
+        min[size] = min[i];
+        max[size] = max[i];
+        size++;
+      }
+
+      for (int i = size; i < code.length; i++) code[i] = "";
+      this.code = code;
+      this.param = param;
+      this.min = min;
+      this.max = max;
+    }
   }
 }
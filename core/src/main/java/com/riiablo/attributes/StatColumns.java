@@ -0,0 +1,385 @@
+package com.riiablo.attributes;
+
+import java.util.Arrays;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntIntMap;
+
+import com.riiablo.logger.LogManager;
+import com.riiablo.logger.Logger;
+import com.riiablo.math.Fixed;
+
+/**
+ * Stores a few hot stats of every entity within a zone as columns, i.e., one
+ * contiguous array of encoded values per stat, with a row per entity. Queries
+ * over every entity, e.g., the life of every monster, and effects applied to
+ * many entities at once, e.g., an aura, then read and write a single array
+ * rather than a {@link StatList} per entity.
+ * <p>
+ * Rows are kept dense: removing an entity moves the last row into its place,
+ * so rows should be looked up by entity using {@link #row(int)} rather than
+ * kept. Only simple stats (no params, a single value) may be stored. Stats an
+ * entity does not have read as {@code 0} until they are set or added to.
+ * <p>
+ * Columns are copied from and to the entity's own stats using
+ * {@link #load(int, StatListRef)} and {@link #store(int, StatListRef)}, and
+ * {@link #view(int)} returns the hot stats of a row as a {@link StatListRef}
+ * for code which reads stat lists. A stat list cannot alias the columns
+ * themselves, since its stats must be contiguous within its own arrays.
+ */
+public final class StatColumns {
+  private static final Logger log = LogManager.getLogger(StatColumns.class);
+
+  /** most stats which can be stored, one bit each within {@link #present} */
+  public static final int MAX_COLUMNS = Long.SIZE;
+
+  private final short[] stats;
+  /** column of each stat id, or {@code -1} if the stat is not stored */
+  private final byte[] columns;
+  private final int[][] values;
+  /** bit mask of the columns each row has */
+  private long[] present;
+  private int[] entities;
+  private float[] xs;
+  private float[] ys;
+  private final IntIntMap rows;
+  private int size;
+
+  private final StatListRef view = StatList.obtain();
+
+  public StatColumns(final int capacity, final short... stats) {
+    if (stats.length > MAX_COLUMNS) {
+      throw new IllegalArgumentException("stats.length(" + stats.length + ") > MAX_COLUMNS(" + MAX_COLUMNS + ")");
+    }
+
+    short maxStat = 0;
+    for (short stat : stats) {
+      assertSimple(stat);
+      maxStat = (short) Math.max(maxStat, stat);
+    }
+
+    this.stats = Arrays.copyOf(stats, stats.length);
+    Arrays.sort(this.stats);
+    columns = new byte[maxStat + 1];
+    Arrays.fill(columns, (byte) -1);
+    for (int i = 0; i < this.stats.length; i++) {
+      if (columns[this.stats[i]] >= 0) {
+        throw new IllegalArgumentException("stat(" + this.stats[i] + ") is stored more than once");
+      }
+
+      columns[this.stats[i]] = (byte) i;
+    }
+
+    values = new int[this.stats.length][capacity];
+    present = new long[capacity];
+    entities = new int[capacity];
+    xs = new float[capacity];
+    ys = new float[capacity];
+    rows = new IntIntMap(capacity);
+  }
+
+  private static void assertSimple(final short stat) {
+    final int encoding = Stat.entry(stat).Encode;
+    if (Stat.numEncodedParams(encoding) != 0 || Stat.numEncodedValues(encoding) != 1) {
+      throw new IllegalArgumentException("stat(" + stat + ") is not a simple stat");
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int capacity() {
+    return entities.length;
+  }
+
+  public int numColumns() {
+    return stats.length;
+  }
+
+  public short stat(final int column) {
+    return stats[column];
+  }
+
+  /** @return column of {@code stat}, or {@code -1} if it is not stored */
+  public int column(final short stat) {
+    return stat < columns.length ? columns[stat] : -1;
+  }
+
+  private int checkColumn(final short stat) {
+    final int column = column(stat);
+    if (column < 0) throw new IllegalArgumentException("stat(" + stat + ") is not stored");
+    return column;
+  }
+
+  /**
+   * Returns the encoded values of {@code stat} indexed by row. Only the first
+   * {@link #size()} are in use, and the array is replaced when the capacity
+   * grows.
+   */
+  public int[] values(final short stat) {
+    return values[checkColumn(stat)];
+  }
+
+  public int entity(final int row) {
+    return entities[row];
+  }
+
+  /** @return row of {@code entity}, or {@code -1} if it is not stored */
+  public int row(final int entity) {
+    return rows.get(entity, -1);
+  }
+
+  public boolean contains(final int entity) {
+    return rows.containsKey(entity);
+  }
+
+  /**
+   * Adds a row for {@code entity} and {@link #load loads} the stored stats
+   * from {@code stats}, e.g., its aggregate.
+   *
+   * @return row of {@code entity}
+   */
+  public int add(final int entity, final StatListRef stats) {
+    if (rows.containsKey(entity)) throw new IllegalArgumentException("entity(" + entity + ") already stored");
+    if (size >= entities.length) resize(Math.max(8, size << 1));
+    final int row = size++;
+    entities[row] = entity;
+    xs[row] = ys[row] = 0;
+    rows.put(entity, row);
+    load(row, stats);
+    return row;
+  }
+
+  /**
+   * Removes the row of {@code entity}, moving the last row into its place.
+   *
+   * @return whether or not {@code entity} was stored
+   */
+  public boolean remove(final int entity) {
+    final int row = rows.remove(entity, -1);
+    if (row < 0) return false;
+    final int last = --size;
+    if (row != last) {
+      for (int[] column : values) column[row] = column[last];
+      present[row] = present[last];
+      entities[row] = entities[last];
+      xs[row] = xs[last];
+      ys[row] = ys[last];
+      rows.put(entities[row], row);
+    }
+
+    return true;
+  }
+
+  public void clear() {
+    size = 0;
+    rows.clear();
+  }
+
+  private void resize(final int capacity) {
+    if (log.debugEnabled()) log.debug("resize({} -> {})", entities.length, capacity);
+    for (int i = 0; i < values.length; i++) values[i] = Arrays.copyOf(values[i], capacity);
+    present = Arrays.copyOf(present, capacity);
+    entities = Arrays.copyOf(entities, capacity);
+    xs = Arrays.copyOf(xs, capacity);
+    ys = Arrays.copyOf(ys, capacity);
+  }
+
+  /**
+   * Replaces the stored stats of {@code row} with those within {@code stats}.
+   */
+  public void load(final int row, final StatListRef stats) {
+    long present = 0;
+    for (int i = 0; i < this.stats.length; i++) {
+      final short stat = this.stats[i];
+      if (stats.containsAny(stat)) {
+        values[i][row] = stats.getEncodedValue(stat, 0);
+        present |= 1L << i;
+      } else {
+        values[i][row] = 0;
+      }
+    }
+
+    this.present[row] = present;
+  }
+
+  /**
+   * Writes the stored stats {@code row} has into {@code stats}, e.g., its
+   * aggregate before it is serialized.
+   */
+  public StatListRef store(final int row, final StatListRef stats) {
+    final long present = this.present[row];
+    for (int i = 0; i < this.stats.length; i++) {
+      if ((present & (1L << i)) != 0) stats.putEncoded(this.stats[i], values[i][row]);
+    }
+
+    return stats;
+  }
+
+  /**
+   * NOTE: This method returns a reused stat list which should not be saved.
+   * Consecutive calls to this method will change its contents, and changes
+   * made to it are not written back.
+   *
+   * @return the stored stats {@code row} has
+   */
+  public StatListRef view(final int row) {
+    return store(row, view.clear());
+  }
+
+  public boolean has(final int row, final short stat) {
+    return (present[row] & (1L << checkColumn(stat))) != 0;
+  }
+
+  public int getEncoded(final int row, final short stat) {
+    return values[checkColumn(stat)][row];
+  }
+
+  public int getValue(final int row, final short stat) {
+    return Stat.decode(stat, getEncoded(row, stat));
+  }
+
+  public float getFixed(final int row, final short stat) {
+    return Fixed.intBitsToFloat(getEncoded(row, stat), 8);
+  }
+
+  public void setEncoded(final int row, final short stat, final int encodedValue) {
+    final int column = checkColumn(stat);
+    values[column][row] = encodedValue;
+    present[row] |= 1L << column;
+  }
+
+  public void addEncoded(final int row, final short stat, final int encodedValue) {
+    final int column = checkColumn(stat);
+    values[column][row] += encodedValue;
+    present[row] |= 1L << column;
+  }
+
+  public float x(final int row) {
+    return xs[row];
+  }
+
+  public float y(final int row) {
+    return ys[row];
+  }
+
+  /**
+   * Sets the position {@link #within} selects rows by, e.g., each tick
+   * before applying area effects.
+   */
+  public void setPosition(final int row, final float x, final float y) {
+    xs[row] = x;
+    ys[row] = y;
+  }
+
+  /**
+   * Adds the rows positioned within {@code radius} of {@code (x, y)} to
+   * {@code rows}.
+   *
+   * @return number of rows added
+   */
+  public int within(final float x, final float y, final float radius, final IntArray rows) {
+    final float[] xs = this.xs;
+    final float[] ys = this.ys;
+    final float radius2 = radius * radius;
+    final int start = rows.size;
+    for (int row = 0, s = size; row < s; row++) {
+      final float dx = xs[row] - x;
+      final float dy = ys[row] - y;
+      if (dx * dx + dy * dy <= radius2) rows.add(row);
+    }
+
+    return rows.size - start;
+  }
+
+  /**
+   * Adds {@code encodedValue} to {@code stat} of every row within
+   * {@code rows}.
+   */
+  public void addEncoded(final short stat, final int encodedValue, final IntArray rows) {
+    final int column = checkColumn(stat);
+    final int[] values = this.values[column];
+    final long[] present = this.present;
+    final long mask = 1L << column;
+    final int[] items = rows.items;
+    for (int i = 0, s = rows.size; i < s; i++) {
+      final int row = items[i];
+      values[row] += encodedValue;
+      present[row] |= mask;
+    }
+  }
+
+  /**
+   * Adds {@code encodedValue} to {@code stat} of every row within
+   * {@code rows} without exceeding {@code maxStat} of that row, e.g., healing
+   * {@code hitpoints} up to {@code maxhp}.
+   */
+  public void addEncoded(final short stat, final int encodedValue, final IntArray rows, final short maxStat) {
+    final int column = checkColumn(stat);
+    final int[] values = this.values[column];
+    final int[] maxValues = this.values[checkColumn(maxStat)];
+    final long[] present = this.present;
+    final long mask = 1L << column;
+    final int[] items = rows.items;
+    for (int i = 0, s = rows.size; i < s; i++) {
+      final int row = items[i];
+      values[row] = Math.min(values[row] + encodedValue, Math.max(values[row], maxValues[row]));
+      present[row] |= mask;
+    }
+  }
+
+  /**
+   * Adds {@code encodedValue} to {@code stat} of every row positioned within
+   * {@code radius} of {@code (x, y)}, and adds those rows to {@code rows}.
+   *
+   * @return number of rows affected
+   * @see #within(float, float, float, IntArray)
+   */
+  public int addEncoded(
+      final short stat,
+      final int encodedValue,
+      final float x,
+      final float y,
+      final float radius,
+      final IntArray rows) {
+    final int column = checkColumn(stat);
+    final int[] values = this.values[column];
+    final long[] present = this.present;
+    final long mask = 1L << column;
+    final float[] xs = this.xs;
+    final float[] ys = this.ys;
+    final float radius2 = radius * radius;
+    final int start = rows.size;
+    for (int row = 0, s = size; row < s; row++) {
+      final float dx = xs[row] - x;
+      final float dy = ys[row] - y;
+      if (dx * dx + dy * dy <= radius2) {
+        values[row] += encodedValue;
+        present[row] |= mask;
+        rows.add(row);
+      }
+    }
+
+    return rows.size - start;
+  }
+
+  /**
+   * Adds the rows within {@code rows} whose {@code stat} is at most
+   * {@code 0} to {@code depleted}, e.g., to find monsters killed by an area
+   * effect.
+   *
+   * @return number of rows added
+   */
+  public int depleted(final short stat, final IntArray rows, final IntArray depleted) {
+    final int[] values = this.values[checkColumn(stat)];
+    final int[] items = rows.items;
+    final int start = depleted.size;
+    for (int i = 0, s = rows.size; i < s; i++) {
+      final int row = items[i];
+      if (values[row] <= 0) depleted.add(row);
+    }
+
+    return depleted.size - start;
+  }
+}
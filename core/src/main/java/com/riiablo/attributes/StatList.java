@@ -132,6 +132,18 @@ public final class StatList {
     return this;
   }
 
+  StatList removeAll(final int list, final short stat) {
+    if (log.traceEnabled()) log.traceEntry("removeAll(list: {}, stat: {})", list, stat);
+    assertMutable(list);
+    final int startIndex = firstIndexOf(list, stat);
+    if (startIndex < 0) return this;
+    final int endOffset = endingOffset(list);
+    final int endIndex = lastIndexOf(stat, startIndex, endOffset);
+    arraycopy(endIndex, startIndex, endOffset - endIndex);
+    setEndingOffset(list, endOffset - (endIndex - startIndex));
+    return this;
+  }
+
   int size(final int list) {
     return endingOffset(list) - startingOffset(list);
   }
@@ -846,6 +858,14 @@ public final class StatList {
       setEndingOffset(list, head);
     }
 
+    /**
+     * Shrinks the list to the stats which were {@link #pushback pushed back},
+     * including when none were.
+     */
+    void truncate() {
+      setEndingOffset(list, head);
+    }
+
     @Override
     public void remove() {
       throw new UnsupportedOperationException();
@@ -6,19 +6,43 @@ import com.riiablo.logger.LogManager;
 import com.riiablo.logger.Logger;
 import com.riiablo.logger.MDC;
 
+/**
+ * Reads serialized stat lists.
+ * <p>
+ * By default the stat being read is tracked within the {@link MDC} and every
+ * call is traced. When {@code diagnostics} is disabled, e.g., when loading
+ * stashes and character files in production, neither is done and only the
+ * position of the stat being read is kept. If a read fails, that position is
+ * restored into the {@link MDC} to log the failure at debug level before the
+ * exception is rethrown.
+ */
 public class StatListReader {
   private static final Logger log = LogManager.getLogger(StatListReader.class);
 
+  protected final boolean diagnostics;
+
+  public StatListReader() {
+    this(true);
+  }
+
+  public StatListReader(boolean diagnostics) {
+    this.diagnostics = diagnostics;
+  }
+
+  public boolean diagnostics() {
+    return diagnostics;
+  }
+
   public StatRef read(StatListRef stats, short stat, BitInput bits, boolean cs) {
     final ItemStatCost.Entry entry = Stat.entry(stat);
-    log.traceEntry("read(stats: {}, stat: {} ({}), bits: {}, cs: {})", stats, stat, entry, bits, cs);
+    if (diagnostics) log.traceEntry("read(stats: {}, stat: {} ({}), bits: {}, cs: {})", stats, stat, entry, bits, cs);
     final int encodedParams, encodedValues;
     if (cs) {
-      log.trace("Reading as character stat...");
+      if (diagnostics) log.trace("Reading as character stat...");
       encodedParams = (int) bits.read63u(entry.CSvParam);
       encodedValues = (int) bits.read63u(entry.CSvBits);
     } else {
-      log.trace("Reading as standard stat...");
+      if (diagnostics) log.trace("Reading as standard stat...");
       encodedParams = (int) bits.read63u(entry.Save_Param_Bits);
       encodedValues = Stat.encode(stat, (int) (bits.read63u(entry.Save_Bits) - entry.Save_Add));
     }
@@ -26,6 +50,7 @@ public class StatListReader {
   }
 
   public StatListRef read(StatListRef stats, BitInput bits, boolean cs) {
+    if (!diagnostics) return read(stats, bits, cs, -1);
     log.traceEntry("read(stats: {}, bits: {}, cs: {})", stats, bits, cs);
     for (short stat; (stat = bits.read15u(Stat.BITS)) != Stat.NONE;) {
       try {
@@ -52,11 +77,56 @@ public class StatListReader {
     return stats;
   }
 
+  /**
+   * Reads {@code stats} without diagnostic context, keeping only the list, stat
+   * and encoded stat being read in case it fails.
+   *
+   * @param list index of the item list being read, or {@code -1}
+   */
+  private StatListRef read(StatListRef stats, BitInput bits, boolean cs, int list) {
+    short stat = Stat.NONE;
+    short encodedStat = Stat.NONE;
+    try {
+      while ((stat = bits.read15u(Stat.BITS)) != Stat.NONE) {
+        final short s = (short) (stat + Stat.getNumEncoded(stat));
+        for (encodedStat = stat; encodedStat < s; encodedStat++) {
+          read(stats, encodedStat, bits, cs);
+        }
+
+        stat = encodedStat = Stat.NONE;
+      }
+    } catch (RuntimeException t) {
+      failed(t, list, stat, encodedStat);
+      throw t;
+    }
+
+    return stats;
+  }
+
+  private static void failed(RuntimeException t, int list, short stat, short encodedStat) {
+    if (!log.debugEnabled()) return;
+    try {
+      if (list >= 0) MDC.put("propList", StatListFlags.itemToString(list));
+      if (stat != Stat.NONE) MDC.put("stat", stat);
+      if (encodedStat != stat) MDC.put("encodedStat", encodedStat);
+      log.debug("Failed to read stat: {}", t.getMessage(), t);
+    } finally {
+      MDC.remove("encodedStat");
+      MDC.remove("stat");
+      MDC.remove("propList");
+    }
+  }
+
   public StatList read(StatList stats, BitInput bits, int flags) {
     final int maxLists = stats.maxLists();
     for (int i = 0; i < maxLists; i++) {
       final StatListRef list = stats.buildList(); // must be called to init list (even empty)
       if (((flags >> i) & 1) == 1) {
+        if (!diagnostics) {
+          read(list, bits, false, i);
+          continue;
+        }
+
         try {
           MDC.put("propList", StatListFlags.itemToString(i)); // assert only items will be serialized
           read(list, bits, false);
@@ -27,6 +27,14 @@ public final class StatListRef implements Iterable<StatRef> {
     return this;
   }
 
+  /**
+   * Removes every stat with the id {@code stat}, regardless of its params.
+   */
+  StatListRef removeAll(final short stat) {
+    stats.removeAll(list, stat);
+    return this;
+  }
+
   public int listIndex() {
     return list;
   }
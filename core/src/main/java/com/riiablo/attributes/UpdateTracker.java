@@ -0,0 +1,229 @@
+package com.riiablo.attributes;
+
+import com.badlogic.gdx.utils.Bits;
+
+import com.riiablo.codec.excel.CharStats;
+import com.riiablo.logger.LogManager;
+import com.riiablo.logger.Logger;
+
+/**
+ * Keeps an {@link Attributes} up to date as stat lists are added to or removed
+ * from it, e.g., as items are equipped or buffs expire, without recomputing
+ * every list like an {@link UpdateSequence} does.
+ * <p>
+ * Each change marks the ids of the stats within the changed list as affected,
+ * along with every stat an op stat modifies or is based on whenever any of
+ * them is affected, until no more are. Only the affected stats are then reset
+ * and re-aggregated from the tracked lists, and only their op stats are
+ * re-applied, in the same order {@link AttributesUpdater} applies them, s.t.
+ * the result is the same as a full recompute.
+ * <p>
+ * Tracked lists must not be modified while tracked, i.e., remove a list, then
+ * modify it and add it again. The base of the attributes, and the op base if
+ * it is a different attributes, are assumed not to change; call
+ * {@link #recompute()} if they do.
+ */
+public final class UpdateTracker {
+  private static final Logger log = LogManager.getLogger(UpdateTracker.class);
+
+  private static final int MAX_LISTS = 32;
+
+  private final AttributesUpdater updater;
+  private final AttributesUpdater.OpStats opStats;
+  private final Attributes attrs;
+  private final Attributes opBase;
+  private final CharStats.Entry charStats;
+
+  private final StatListRef[] lists = new StatListRef[MAX_LISTS];
+  private int numLists;
+
+  /** number of stats within the tracked lists with each op stat id */
+  private final int[] opCounts;
+  private final Bits affected = new Bits();
+  /** stats of the affected ids which are propagated or have an op */
+  private final StatListRef propagated = new StatList(StatList.MAX_SIZE).reset(1).buildList();
+
+  UpdateTracker(
+      final AttributesUpdater updater,
+      final Attributes attrs,
+      final Attributes opBase,
+      final CharStats.Entry charStats) {
+    if (!attrs.type().updatable()) {
+      throw new IllegalArgumentException("attrs(" + attrs.type() + ") is not updatable");
+    }
+
+    this.updater = updater;
+    this.opStats = updater.opStats();
+    this.attrs = attrs;
+    this.opBase = opBase;
+    this.charStats = charStats;
+    opCounts = new int[opStats.size()];
+  }
+
+  public Attributes attributes() {
+    return attrs;
+  }
+
+  public int numLists() {
+    return numLists;
+  }
+
+  public boolean contains(final StatListRef stats) {
+    return indexOf(stats) >= 0;
+  }
+
+  private int indexOf(final StatListRef stats) {
+    for (int i = 0; i < numLists; i++) {
+      if (lists[i] == stats) return i;
+    }
+
+    return -1;
+  }
+
+  UpdateTracker addAll(final Attributes attrs, final int listFlags) {
+    if (!attrs.type().isValid(listFlags)) return this;
+    final StatList list = attrs.list();
+    for (int i = 0, s = list.numLists(); i < s; i++) {
+      if (((listFlags >> i) & 1) == 1) {
+        track(list.get(i));
+      }
+    }
+
+    return this;
+  }
+
+  private void track(final StatListRef stats) {
+    if (numLists >= MAX_LISTS) {
+      throw new IndexOutOfBoundsException(
+          "numLists(" + numLists + ") >= MAX_LISTS(" + MAX_LISTS + ")");
+    }
+
+    lists[numLists++] = stats;
+    count(stats, 1);
+  }
+
+  private void untrack(final int index) {
+    final StatListRef stats = lists[index];
+    System.arraycopy(lists, index + 1, lists, index, numLists - index - 1);
+    lists[--numLists] = null;
+    count(stats, -1);
+  }
+
+  private void count(final StatListRef stats, final int delta) {
+    final AttributesUpdater.OpStats opStats = this.opStats;
+    for (StatRef stat : stats) {
+      final int op = opStats.indexOf(stat.id());
+      if (op >= 0) opCounts[op] += delta;
+    }
+  }
+
+  /**
+   * Adds {@code stats} to the tracked lists and updates the stats it affects.
+   */
+  public Attributes add(final StatListRef stats) {
+    if (log.traceEnabled()) log.traceEntry("add(stats: {})", stats);
+    if (contains(stats)) throw new IllegalArgumentException("stats already tracked: " + stats);
+    track(stats);
+    return update(stats);
+  }
+
+  /**
+   * Removes {@code stats} from the tracked lists and updates the stats it
+   * affected.
+   */
+  public Attributes remove(final StatListRef stats) {
+    if (log.traceEnabled()) log.traceEntry("remove(stats: {})", stats);
+    final int index = indexOf(stats);
+    if (index < 0) throw new IllegalArgumentException("stats not tracked: " + stats);
+    untrack(index);
+    return update(stats);
+  }
+
+  /**
+   * Recomputes every stat from the tracked lists.
+   */
+  public Attributes recompute() {
+    if (log.traceEnabled()) log.traceEntry("recompute()");
+    final Attributes attrs = this.attrs.reset();
+    for (int i = 0; i < numLists; i++) {
+      updater.add(attrs, lists[i]);
+    }
+
+    updater.apply(attrs, charStats, opBase);
+    return attrs;
+  }
+
+  private Attributes update(final StatListRef stats) {
+    final Bits affected = this.affected;
+    affected.clear();
+    for (StatRef stat : stats) affected.set(stat.id());
+    if (affected.isEmpty()) return attrs;
+    propagate();
+    if (log.debugEnabled()) log.debug("affected stats: {}", affected);
+
+    final StatListRef base = attrs.base();
+    final StatListRef agg = attrs.aggregate();
+    final StatListRef rem = attrs.remaining();
+    for (int id = affected.nextSetBit(0); id >= 0; id = affected.nextSetBit(id + 1)) {
+      agg.removeAll((short) id);
+      rem.removeAll((short) id);
+    }
+
+    for (StatRef stat : base) {
+      if (affected.get(stat.id())) agg.add(stat);
+    }
+
+    final StatListRef propagated = this.propagated.clear();
+    for (int i = 0; i < numLists; i++) {
+      for (StatRef stat : lists[i]) {
+        if (!affected.get(stat.id())) continue;
+        if (stat.entry().op > 0 || !base.contains(stat)) {
+          propagated.add(stat);
+        } else {
+          agg.add(stat);
+        }
+      }
+    }
+
+    updater.apply(base, agg, propagated, opBase, charStats);
+    rem.addAll(propagated);
+    return attrs;
+  }
+
+  /**
+   * Marks the stats each op stat modifies, and the stat it is based on, as
+   * affected if any of them or the op stat itself is, until no more are.
+   */
+  private void propagate() {
+    final AttributesUpdater.OpStats opStats = this.opStats;
+    final Bits affected = this.affected;
+    final boolean selfBased = opBase == attrs;
+    boolean changed;
+    do {
+      changed = false;
+      for (int i = 0, s = opStats.size(); i < s; i++) {
+        final short id = opStats.ids[i];
+        if (opCounts[i] <= 0 && !affected.get(id)) continue;
+        final short[] targets = opStats.opStats[i];
+        final short opBase = selfBased ? opStats.opBases[i] : -1;
+        if (!isAffected(id, targets, opBase)) continue;
+        if (!affected.getAndSet(id)) changed = true;
+        for (short target : targets) {
+          if (!affected.getAndSet(target)) changed = true;
+        }
+
+        if (opBase >= 0 && !affected.getAndSet(opBase)) changed = true;
+      }
+    } while (changed);
+  }
+
+  private boolean isAffected(final short id, final short[] targets, final short opBase) {
+    final Bits affected = this.affected;
+    if (affected.get(id)) return true;
+    for (short target : targets) {
+      if (affected.get(target)) return true;
+    }
+
+    return opBase >= 0 && affected.get(opBase);
+  }
+}
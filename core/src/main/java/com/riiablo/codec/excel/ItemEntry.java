@@ -46,6 +46,10 @@ public class ItemEntry extends Excel.Entry {
   @Column public int     gemapplytype;
   @Column public boolean PermStoreItem;
   @Column public boolean multibuy;
+  @Column public boolean spawnable;
+  @Column public String  normcode;
+  @Column public String  ubercode;
+  @Column public String  ultracode;
 
   @Column(format = "Charsi%s", values = {"Min", "Max", "MagicMin", "MagicMax", "MagicLvl"}, endIndex = 5) public int charsi[];
   @Column(format = "Gheed%s", values = {"Min", "Max", "MagicMin", "MagicMax", "MagicLvl"}, endIndex = 5) public int gheed[];
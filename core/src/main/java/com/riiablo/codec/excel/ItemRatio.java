@@ -0,0 +1,34 @@
+package com.riiablo.codec.excel;
+
+@Excel.Binned
+public class ItemRatio extends Excel<ItemRatio.Entry> {
+  @Excel.Index
+  public static class Entry extends Excel.Entry {
+    @Override
+    public String toString() {
+      return Function;
+    }
+
+    @Column public String  Function;
+    @Column public int     Version;
+    @Column public boolean Uber;
+    @Column(format = "Class Specific")
+    public boolean ClassSpecific;
+    @Column public int     Unique;
+    @Column public int     UniqueDivisor;
+    @Column public int     UniqueMin;
+    @Column public int     Rare;
+    @Column public int     RareDivisor;
+    @Column public int     RareMin;
+    @Column public int     Set;
+    @Column public int     SetDivisor;
+    @Column public int     SetMin;
+    @Column public int     Magic;
+    @Column public int     MagicDivisor;
+    @Column public int     MagicMin;
+    @Column public int     HiQuality;
+    @Column public int     HiQualityDivisor;
+    @Column public int     Normal;
+    @Column public int     NormalDivisor;
+  }
+}
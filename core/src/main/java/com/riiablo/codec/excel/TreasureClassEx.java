@@ -0,0 +1,27 @@
+package com.riiablo.codec.excel;
+
+@Excel.Binned
+public class TreasureClassEx extends Excel<TreasureClassEx.Entry> {
+  public static class Entry extends Excel.Entry {
+    @Override
+    public String toString() {
+      return name;
+    }
+
+    @Key
+    @Column(format = "Treasure Class")
+    public String  name;
+    @Column public int     group;
+    @Column public int     level;
+    @Column public int     Picks;
+    @Column public int     Unique;
+    @Column public int     Set;
+    @Column public int     Rare;
+    @Column public int     Magic;
+    @Column public int     NoDrop;
+    @Column(startIndex = 1, endIndex = 11)
+    public String  Item[];
+    @Column(startIndex = 1, endIndex = 11)
+    public int     Prob[];
+  }
+}
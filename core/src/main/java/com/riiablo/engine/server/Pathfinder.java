@@ -4,11 +4,12 @@ import com.artemis.ComponentMapper;
 import com.artemis.annotations.All;
 import com.artemis.annotations.Wire;
 import com.artemis.systems.IteratingSystem;
-import com.badlogic.gdx.ai.utils.Collision;
-import com.badlogic.gdx.ai.utils.Ray;
 import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
-import com.badlogic.gdx.utils.Pools;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntMap;
+import com.badlogic.gdx.utils.Pool;
+import com.riiablo.engine.Engine;
 import com.riiablo.engine.server.component.Angle;
 import com.riiablo.engine.server.component.Pathfind;
 import com.riiablo.engine.server.component.Position;
@@ -17,10 +18,17 @@ import com.riiablo.engine.server.component.Size;
 import com.riiablo.engine.server.component.Velocity;
 import com.riiablo.map.DT1;
 import com.riiablo.map.Map;
-import com.riiablo.map.pfa.GraphPath;
+import com.riiablo.map.pfa.PathfindingService;
+import com.riiablo.map.pfa.PathfindingService.Request;
 
 import java.util.Iterator;
 
+/**
+ * Moves entities along their paths. Path searches are queued during the tick
+ * and searched by the {@link PathfindingService} registered as
+ * {@code "pathfinding"} between ticks, then applied at the start of the next
+ * tick. If no service is registered, searches run at the end of each tick.
+ */
 @All({Pathfind.class, Position.class, Velocity.class})
 public class Pathfinder extends IteratingSystem {
   protected ComponentMapper<Position> mPosition;
@@ -33,9 +41,61 @@ public class Pathfinder extends IteratingSystem {
   @Wire(name = "map")
   protected Map map;
 
+  @Wire(name = "pathfinding", failOnNull = false)
+  protected PathfindingService service;
+
   private final Vector2 tmpVec2 = new Vector2();
-  private final Ray<Vector2> ray = new Ray<>(new Vector2(), new Vector2());
-  private final Collision<Vector2> collision = new Collision<>(new Vector2(), new Vector2());
+
+  private final Pool<Request> requests = new Pool<Request>() {
+    @Override
+    protected Request newObject() {
+      return new Request();
+    }
+  };
+
+  /** requests made this tick, searched once it ends */
+  private Array<Request> queued = new Array<>(false, 16);
+  private IntMap<Request> queuedRequests = new IntMap<>();
+  /** requests made last tick, being searched */
+  private Array<Request> searching = new Array<>(false, 16);
+  private IntMap<Request> searchingRequests = new IntMap<>();
+  private PathfindingService.Batch batch;
+
+  @Override
+  protected void initialize() {
+    if (service == null) service = new PathfindingService(0);
+  }
+
+  @Override
+  protected void begin() {
+    if (batch == null) return;
+    batch.await();
+    batch = null;
+    for (Request request : searching) {
+      apply(request);
+      requests.free(request);
+    }
+
+    searching.clear();
+    searchingRequests.clear();
+  }
+
+  @Override
+  protected void end() {
+    if (queued.size == 0) return;
+    Array<Request> swap = searching;
+    searching = queued;
+    queued = swap;
+    IntMap<Request> swapById = searchingRequests;
+    searchingRequests = queuedRequests;
+    queuedRequests = swapById;
+    batch = service.submit(map, searching);
+  }
+
+  @Override
+  protected void dispose() {
+    if (batch != null) batch.await();
+  }
 
   @Override
   protected void process(int entityId) {
@@ -47,7 +107,7 @@ public class Pathfinder extends IteratingSystem {
     if (target.isZero()) return;
     if (tmpVec2.epsilonEquals(target, 0.1f)) { // TODO: tune this appropriately
       if (!targets.hasNext()) {
-        findPath(entityId, null);
+        stop(entityId);
         return;
       }
     }
@@ -87,56 +147,65 @@ public class Pathfinder extends IteratingSystem {
     return findPath(src, target, false);
   }
 
+  /**
+   * Queues a path search for {@code src} towards {@code target}, which is
+   * searched between ticks and applied next tick. If {@code target} is
+   * {@code null}, stops {@code src} immediately and discards any search
+   * already queued for it.
+   *
+   * @return whether a search was queued
+   */
   public boolean findPath(int src, Vector2 target, boolean raycast) {
     if (target == null) {
-      mPathfind.remove(src);
-      mVelocity.get(src).velocity.setZero();
+      stop(src);
+      Request request = queuedRequests.remove(src);
+      if (request != null) request.id = Engine.INVALID_ENTITY;
+      request = searchingRequests.remove(src);
+      if (request != null) request.id = Engine.INVALID_ENTITY;
       return false;
     }
 
+    Request request = queuedRequests.get(src);
+    if (request == null) {
+      request = requests.obtain();
+      queuedRequests.put(src, request);
+      queued.add(request);
+    }
+
     Vector2 position = mPosition.get(src).position;
     int flags = DT1.Tile.FLAG_BLOCK_WALK;
     int size = mSize.get(src).size;
-    GraphPath path = Pools.obtain(GraphPath.class);
-    boolean success = findPath(src, position, target, flags, size, path);
-    if (success) return true;
-    if (raycast) {
-      ray.set(position, target);
-      success = map.castRay(ray, flags, size, collision);
-      if (success) {
-        success = findPath(src, position, collision.point, flags, size, path);
-        if (!success || path.getCount() <= 1) {
-          tmpVec2.set(target);
-
-          Angle angle = mAngle.get(src);
-          angle.target.set(tmpVec2.sub(position)).nor();
-
-          Velocity velocity = mVelocity.get(src);
-          velocity.velocity.set(tmpVec2);
-
-          mPathfind.remove(src);
-          Pools.free(path);
-          return false;
-        }
-
-        return true;
-      }
+    request.set(src, position, target, flags, size, raycast);
+    return true;
+  }
 
-      Pools.free(path);
-      return false;
-    } else {
-      Pools.free(path);
-      return false;
-    }
+  void stop(int src) {
+    mPathfind.remove(src);
+    mVelocity.get(src).velocity.setZero();
   }
 
-  protected boolean findPath(int src, Vector2 srcPos, Vector2 targetPos, int flags, int size, GraphPath path) {
-    boolean success = map.findPath(srcPos, targetPos, flags, size, path);
-    if (success) {
-      map.smoothPath(flags, size, path);
-      mPathfind.create(src).set(path);
+  void apply(Request request) {
+    final int src = request.id;
+    if (src == Engine.INVALID_ENTITY || !mPosition.has(src) || !mVelocity.has(src)) return;
+    switch (request.status) {
+      case FOUND:
+        mPathfind.create(src).set(request.path);
+        request.path = null;
+        break;
+      case BLOCKED:
+        Vector2 position = mPosition.get(src).position;
+        tmpVec2.set(request.dst);
+
+        Angle angle = mAngle.get(src);
+        angle.target.set(tmpVec2.sub(position)).nor();
+
+        Velocity velocity = mVelocity.get(src);
+        velocity.velocity.set(tmpVec2);
+
+        mPathfind.remove(src);
+        break;
+      default:
+        // keep following the current path, if any
     }
-
-    return success;
   }
 }
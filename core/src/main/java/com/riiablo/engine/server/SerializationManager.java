@@ -8,6 +8,7 @@ import com.artemis.ComponentMapper;
 import com.artemis.utils.Bag;
 import com.badlogic.gdx.utils.ByteArray;
 import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.LongArray;
 import com.badlogic.gdx.utils.ObjectMap;
 import com.riiablo.engine.Dirty;
 import com.riiablo.engine.server.component.Angle;
@@ -42,6 +43,8 @@ import com.riiablo.net.packet.d2gs.D2GS;
 import com.riiablo.net.packet.d2gs.EntityFlags;
 import com.riiablo.net.packet.d2gs.EntitySync;
 
+import java.nio.ByteBuffer;
+
 import net.mostlyoriginal.api.system.core.PassiveSystem;
 
 import org.apache.commons.lang3.ArrayUtils;
@@ -56,6 +59,13 @@ public class SerializationManager extends PassiveSystem {
   public final ByteArray dataType = new ByteArray(INITIAL_SIZE);
   public final IntArray data = new IntArray(INITIAL_SIZE);
 
+  /** components of the last {@link #snapshot(int)} and their hashes */
+  private final Bag<Component> snapshot = new Bag<>(INITIAL_SIZE);
+  private final ByteArray snapshotType = new ByteArray(INITIAL_SIZE);
+  private final LongArray snapshotHash = new LongArray(INITIAL_SIZE);
+  private final FlatBufferBuilder scratch = new FlatBufferBuilder(256);
+  private int snapshotEntity = -1;
+
   private ObjectMap<Class<? extends Component>, FlatBuffersSerializer> serializers;
   private Class<? extends Component>[] deserializers;
   private final EntitySync sync = new EntitySync();
@@ -161,6 +171,126 @@ public class SerializationManager extends PassiveSystem {
     return EntitySync.createEntitySync(builder, entityId, type, flags, dataTypeOffset, dataOffset);
   }
 
+  /**
+   * Captures and hashes the serializable components of {@code entityId} s.t.
+   * they can be compared against client baselines using
+   * {@link #delta(SnapshotBaselines, int, int)}.
+   *
+   * @return mask of the component types within the snapshot
+   */
+  public int snapshot(int entityId) {
+    snapshot.clear();
+    snapshotType.clear();
+    snapshotHash.clear();
+    snapshotEntity = entityId;
+
+    int mask = 0;
+    componentManager.getComponentsFor(entityId, components);
+    for (Component c : components) {
+      final FlatBuffersSerializer<Component, ?> serializer = serializer(c);
+      if (serializer == null) continue;
+      scratch.clear();
+      scratch.finish(serializer.putData(scratch, c));
+      snapshot.add(c);
+      snapshotType.add(serializer.getDataType());
+      snapshotHash.add(hash(scratch.dataBuffer()));
+      mask |= 1 << serializer.getDataType();
+    }
+
+    components.clear();
+    return mask;
+  }
+
+  @SuppressWarnings("unchecked")
+  private FlatBuffersSerializer<Component, ?> serializer(Component c) {
+    return (FlatBuffersSerializer<Component, ?>) serializers.get(c.getClass());
+  }
+
+  /** 64-bit FNV-1a of the remaining bytes of {@code buffer} */
+  static long hash(ByteBuffer buffer) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = buffer.position(), s = buffer.limit(); i < s; i++) {
+      hash ^= buffer.get(i) & 0xFF;
+      hash *= 0x100000001b3L;
+    }
+
+    return hash;
+  }
+
+  /**
+   * @return mask of the component types within the last snapshot which differ
+   *         from the baseline of {@code client}, i.e., all of them if the
+   *         client has no baseline of the entity
+   */
+  public int delta(SnapshotBaselines baselines, int client, int entityId) {
+    assert entityId == snapshotEntity : "snapshot(" + entityId + ") must be called first";
+    long[] baseline = baselines.get(client, entityId);
+    int mask = 0;
+    final byte[] type = snapshotType.items;
+    final long[] hash = snapshotHash.items;
+    for (int i = 0, s = snapshotType.size; i < s; i++) {
+      final int t = type[i];
+      if (baseline == null || (baseline[ComponentP.NONE] & (1 << t)) == 0 || baseline[t] != hash[i]) {
+        mask |= 1 << t;
+      }
+    }
+
+    return mask;
+  }
+
+  /**
+   * Records the components in {@code mask} of the last snapshot as sent to
+   * {@code client}. Delivery is assumed to be reliable, see
+   * {@link SnapshotBaselines#resync(int)}.
+   */
+  public void acknowledge(SnapshotBaselines baselines, int client, int entityId, int mask) {
+    assert entityId == snapshotEntity : "snapshot(" + entityId + ") must be called first";
+    long[] baseline = baselines.obtain(client, entityId);
+    final byte[] type = snapshotType.items;
+    final long[] hash = snapshotHash.items;
+    for (int i = 0, s = snapshotType.size; i < s; i++) {
+      final int t = type[i];
+      if ((mask & (1 << t)) == 0) continue;
+      baseline[t] = hash[i];
+      baseline[ComponentP.NONE] |= 1 << t;
+    }
+  }
+
+  /**
+   * Serializes the components in {@code mask} of the last snapshot. A mask of
+   * {@code 0} results in a sync with no components.
+   */
+  public int serialize(FlatBufferBuilder builder, int entityId, int mask) {
+    assert entityId == snapshotEntity : "snapshot(" + entityId + ") must be called first";
+    dataType.clear();
+    data.clear();
+
+    int type = mClass.get(entityId).type.ordinal();
+    int flags = mFlags.get(entityId).flags;
+    for (int i = 0, s = snapshot.size(); i < s; i++) {
+      final byte t = snapshotType.get(i);
+      if ((mask & (1 << t)) == 0) continue;
+      final Component c = snapshot.get(i);
+      final FlatBuffersSerializer<Component, ?> serializer = serializer(c);
+      dataType.add(t);
+      data.add(serializer.putData(builder, c));
+    }
+
+    final int dataTypeSize = dataType.size;
+    final byte[] dataType = this.dataType.items;
+    EntitySync.startComponentTypeVector(builder, dataTypeSize);
+    for (int i = 0; i < dataTypeSize; i++) builder.addByte(dataType[i]);
+    int dataTypeOffset = builder.endVector();
+
+    final int dataSize = data.size;
+    final int[] data = this.data.items;
+    EntitySync.startComponentVector(builder, dataSize);
+    for (int i = 0; i < dataSize; i++) builder.addOffset(data[i]);
+    int dataOffset = builder.endVector();
+
+    return EntitySync.createEntitySync(builder, entityId, type, flags, dataTypeOffset, dataOffset);
+  }
+
   public void deserialize(int entityId, D2GS packet) {
     packet.data(sync);
     deserialize(entityId, sync);
@@ -1,10 +1,12 @@
 package com.riiablo.engine.server;
 
 import java.util.Arrays;
+import java.util.Random;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 
 import com.artemis.ComponentMapper;
+import com.artemis.annotations.Wire;
 
 import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
@@ -78,6 +80,15 @@ public class ServerEntityFactory extends EntityFactory {
   protected WarpInteractor warpInteractor;
   protected ItemInteractor itemInteractor;
 
+  /** random of the hosting game, {@link MathUtils#random} if none registered */
+  @Wire(name = "random", failOnNull = false)
+  protected Random random;
+
+  @Override
+  protected void initialize() {
+    if (random == null) random = MathUtils.random;
+  }
+
   @Override
   public int createPlayer(CharData charData, Vector2 position) {
     int id = super.createEntity(Class.Type.PLR, "player");
@@ -157,7 +168,7 @@ public class ServerEntityFactory extends EntityFactory {
       Attributes attrs = Attributes.obtainStandard();
       StatListRef base = attrs.base();
       base.clear();
-      final float hitpoints = MathUtils.random(monstats.minHP[0], monstats.maxHP[0]);
+      final float hitpoints = monstats.minHP[0] + random.nextInt(monstats.maxHP[0] - monstats.minHP[0] + 1);
       base.put(Stat.hitpoints, hitpoints);
       base.put(Stat.maxhp, hitpoints);
 
@@ -178,8 +189,7 @@ public class ServerEntityFactory extends EntityFactory {
       String ComponentV = monstats2.ComponentV[i];
       if (!ComponentV.isEmpty()) {
         String[] v = StringUtils.remove(ComponentV, '"').split(",");
-        int random = MathUtils.random(0, v.length - 1);
-        component[i] = Riiablo.files.compcode.index(v[random]);
+        component[i] = Riiablo.files.compcode.index(v[random.nextInt(v.length)]);
       }
     }
 
@@ -0,0 +1,60 @@
+package com.riiablo.engine.server;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntMap;
+import com.riiablo.net.packet.d2gs.ComponentP;
+
+/**
+ * Stores, for each client, the hash of every component of every entity last
+ * sent to that client. {@link SerializationManager#delta} compares a snapshot
+ * against these baselines s.t. only components which changed are sent.
+ *
+ * Index {@link ComponentP#NONE} of each baseline holds the mask of component
+ * types it contains. A client without a baseline for an entity is sent a full
+ * snapshot, so {@link #resync(int)} should be called when a client joins or
+ * when any packet to it may have been lost.
+ */
+public class SnapshotBaselines {
+  static final int NUM_TYPES = ComponentP.names.length;
+
+  final Array<IntMap<long[]>> baselines;
+
+  public SnapshotBaselines(int maxClients) {
+    baselines = new Array<>(true, maxClients);
+    for (int i = 0; i < maxClients; i++) baselines.add(new IntMap<long[]>());
+  }
+
+  /**
+   * @return the baseline of {@code entityId} for {@code client}, or
+   *         {@code null} if the client should be sent a full snapshot
+   */
+  public long[] get(int client, int entityId) {
+    return baselines.get(client).get(entityId);
+  }
+
+  long[] obtain(int client, int entityId) {
+    final IntMap<long[]> baselines = this.baselines.get(client);
+    long[] baseline = baselines.get(entityId);
+    if (baseline == null) baselines.put(entityId, baseline = new long[NUM_TYPES]);
+    return baseline;
+  }
+
+  /** forces a full snapshot of every entity to be sent to {@code client} */
+  public void resync(int client) {
+    baselines.get(client).clear();
+  }
+
+  /** forces a full snapshot of {@code entityId} to be sent to {@code client} */
+  public void resync(int client, int entityId) {
+    baselines.get(client).remove(entityId);
+  }
+
+  /** drops the baselines of {@code entityId}, e.g., after it's deleted */
+  public void remove(int entityId) {
+    for (int i = 0, s = baselines.size; i < s; i++) baselines.get(i).remove(entityId);
+  }
+
+  public int size(int client) {
+    return baselines.get(client).size;
+  }
+}
@@ -0,0 +1,339 @@
+package com.riiablo.item;
+
+import com.badlogic.gdx.math.RandomXS128;
+
+/**
+ * Rolls treasure classes compiled by {@link TreasureClasses} into
+ * {@link Drops}. Treasure classes which pick other treasure classes are
+ * resolved using an explicit stack rather than recursion, and the quality and
+ * affixes of each drop are rolled from a {@link QualityTables}, s.t. a roll
+ * allocates nothing.
+ *
+ * Generators are not thread-safe, but any number of them may share the same
+ * tables, e.g., one per thread each with its own seed.
+ */
+public class DropGenerator {
+  /** deepest chain of treasure classes followed, deeper picks are dropped */
+  static final int MAX_DEPTH = 32;
+
+  /** magic find diminishing factors of unique, set and rare items */
+  static final int MF_UNIQUE = 250;
+  static final int MF_SET    = 500;
+  static final int MF_RARE   = 600;
+
+  static final int QUALITY_CHANCE = 128;
+  static final int QUALITY_MOD_DIVISOR = 1024;
+
+  static final int NUM_LOW_QUALITIES = LowQuality.values().length;
+
+  static final int MIN_RARE_AFFIXES = 3;
+  static final int MAX_RARE_AFFIXES = 2 * Drops.MAX_AFFIXES;
+
+  final TreasureClasses treasureClasses;
+  final QualityTables qualities;
+  final RandomXS128 random;
+
+  final int[] stackTc = new int[MAX_DEPTH];
+  final int[] stackPicks = new int[MAX_DEPTH];
+  final int[] stackSlot = new int[MAX_DEPTH];
+  final int[] stackRepeat = new int[MAX_DEPTH];
+  /** unique, set, rare and magic ratios in effect for each frame */
+  final int[] stackQualities = new int[MAX_DEPTH << 2];
+
+  final int[] candidates;
+  final int[] cumulative;
+  final int[] groups = new int[MAX_RARE_AFFIXES];
+
+  public DropGenerator(QualityTables qualities, RandomXS128 random) {
+    this(qualities.treasureClasses, qualities, random);
+  }
+
+  /**
+   * @param qualities quality tables, or {@code null} to only roll item bases,
+   *                  which are then dropped as {@link Quality#NORMAL}
+   */
+  DropGenerator(TreasureClasses treasureClasses, QualityTables qualities, RandomXS128 random) {
+    this.treasureClasses = treasureClasses;
+    this.qualities = qualities;
+    this.random = random;
+    final int maxCandidates = qualities != null ? qualities.maxCandidates : 0;
+    candidates = new int[maxCandidates];
+    cumulative = new int[maxCandidates];
+  }
+
+  public TreasureClasses treasureClasses() {
+    return treasureClasses;
+  }
+
+  public QualityTables qualities() {
+    return qualities;
+  }
+
+  public RandomXS128 random() {
+    return random;
+  }
+
+  /**
+   * Rolls {@code tc} into {@code drops}, which is cleared first.
+   *
+   * @param players   number of players NoDrop is adjusted for, 1 to {@link TreasureClasses#MAX_PLAYERS}
+   * @param ilvl      level of the dropped items, i.e., the monster level
+   * @param magicFind magic find of the player the drops are for
+   * @return number of items dropped
+   */
+  public int roll(int tc, int players, int ilvl, int magicFind, Drops drops) {
+    drops.clear();
+    if (players < 1) players = 1;
+    else if (players > TreasureClasses.MAX_PLAYERS) players = TreasureClasses.MAX_PLAYERS;
+
+    final TreasureClasses tcs = this.treasureClasses;
+    final int[] picks = tcs.picks;
+    final int[] outcomes = tcs.outcomes;
+    final int[] slots = tcs.slots;
+    final int[] weights = tcs.weights;
+    int depth = push(0, tc);
+    while (depth > 0 && !drops.isFull()) {
+      final int frame = depth - 1;
+      final int t = stackTc[frame];
+      if (stackPicks[frame]-- <= 0) {
+        depth--;
+        continue;
+      }
+
+      final int slot;
+      if (picks[t] > 0) {
+        slot = tcs.pick(t, players, random);
+        if (slot < 0) {
+          depth--;
+          continue;
+        }
+      } else {
+        // negative picks drop each slot in order, as many times as its Prob
+        final int noDrop = slots[t + 1] - 1;
+        while (stackRepeat[frame] <= 0 && ++stackSlot[frame] < noDrop) {
+          stackRepeat[frame] = weights[stackSlot[frame]];
+        }
+
+        if (stackSlot[frame] >= noDrop) {
+          depth--;
+          continue;
+        }
+
+        stackRepeat[frame]--;
+        slot = stackSlot[frame];
+      }
+
+      final int outcome = outcomes[slot];
+      if (outcome == TreasureClasses.NO_DROP) {
+        continue;
+      } else if ((outcome & TreasureClasses.TC_FLAG) != 0) {
+        if (depth < MAX_DEPTH) depth = push(depth, outcome & TreasureClasses.TC_MASK);
+      } else {
+        final int i = drops.add(outcome, ilvl);
+        if (qualities != null) rollQuality(i, outcome, ilvl, magicFind, frame << 2, drops);
+      }
+    }
+
+    return drops.size;
+  }
+
+  private int push(int depth, int tc) {
+    final int[] picks = treasureClasses.picks;
+    final int[] tcQualities = treasureClasses.qualities;
+    stackTc[depth] = tc;
+    stackPicks[depth] = Math.abs(picks[tc]);
+    stackSlot[depth] = treasureClasses.slots[tc] - 1;
+    stackRepeat[depth] = 0;
+    final int offset = depth << 2;
+    final int tcOffset = tc << 2;
+    for (int i = 0; i < 4; i++) {
+      final int parent = depth > 0 ? stackQualities[offset - 4 + i] : 0;
+      stackQualities[offset + i] = Math.max(parent, tcQualities[tcOffset + i]);
+    }
+
+    return depth + 1;
+  }
+
+  /**
+   * Rolls the quality of drop {@code i} in the order unique, set, rare, magic,
+   * superior, normal and otherwise inferior, using the ItemRatio row of its
+   * base. A unique or set which the base has none of at {@code ilvl} drops as
+   * a rare or magic respectively instead.
+   */
+  void rollQuality(int i, int base, int ilvl, int magicFind, int mods, Drops drops) {
+    final QualityTables q = qualities;
+    final byte kind = q.kinds[base];
+    if (kind == QualityTables.KIND_NONE) return;
+
+    final int ratio = q.ratioOffsets[base];
+    final int qlvl = q.qlvls[base];
+    final int[] tcQualities = stackQualities;
+    Quality quality;
+    if (roll(ratio + QualityTables.RATIO_UNIQUE, ilvl, qlvl, effectiveMagicFind(magicFind, MF_UNIQUE), true, tcQualities[mods])) {
+      quality = Quality.UNIQUE;
+    } else if (roll(ratio + QualityTables.RATIO_SET, ilvl, qlvl, effectiveMagicFind(magicFind, MF_SET), true, tcQualities[mods + 1])) {
+      quality = Quality.SET;
+    } else if (q.rare[base] && roll(ratio + QualityTables.RATIO_RARE, ilvl, qlvl, effectiveMagicFind(magicFind, MF_RARE), true, tcQualities[mods + 2])) {
+      quality = Quality.RARE;
+    } else if (kind == QualityTables.KIND_MAGIC || roll(ratio + QualityTables.RATIO_MAGIC, ilvl, qlvl, magicFind, true, tcQualities[mods + 3])) {
+      quality = Quality.MAGIC;
+    } else if (roll(ratio + QualityTables.RATIO_HIGH, ilvl, qlvl, 0, false, 0)) {
+      quality = Quality.HIGH;
+    } else if (roll(ratio + QualityTables.RATIO_NORMAL, ilvl, qlvl, 0, false, 0)) {
+      quality = Quality.NORMAL;
+    } else {
+      quality = Quality.LOW;
+    }
+
+    if (quality == Quality.UNIQUE) {
+      final int unique = pick(q.uniques[base], q.uniqueLevels, q.uniqueRarities, ilvl);
+      if (unique >= 0) {
+        drops.qualityIds[i] = unique;
+      } else {
+        quality = q.rare[base] ? Quality.RARE : Quality.MAGIC;
+      }
+    } else if (quality == Quality.SET) {
+      final int set = pick(q.sets[base], q.setLevels, q.setRarities, ilvl);
+      if (set >= 0) {
+        drops.qualityIds[i] = set;
+      } else {
+        quality = Quality.MAGIC;
+      }
+    }
+
+    drops.qualities[i] = quality;
+    if (quality == Quality.LOW) {
+      drops.qualityIds[i] = random.nextInt(NUM_LOW_QUALITIES);
+    } else if (quality == Quality.MAGIC) {
+      rollMagic(i, base, ilvl, drops);
+    } else if (quality == Quality.RARE) {
+      rollRare(i, base, ilvl, drops);
+    }
+  }
+
+  static int effectiveMagicFind(int magicFind, int factor) {
+    return magicFind <= 0 ? magicFind : magicFind * factor / (magicFind + factor);
+  }
+
+  boolean roll(int offset, int ilvl, int qlvl, int magicFind, boolean min, int tcQuality) {
+    final int[] ratios = qualities.ratios;
+    final int divisor = ratios[offset + 1];
+    int chance = (ratios[offset] - (divisor > 0 ? (ilvl - qlvl) / divisor : 0)) * QUALITY_CHANCE;
+    if (magicFind != 0) chance = chance * 100 / (100 + Math.max(magicFind, -99));
+    if (min) chance = Math.max(chance, ratios[offset + 2]);
+    chance -= chance * tcQuality / QUALITY_MOD_DIVISOR;
+    return chance <= QUALITY_CHANCE || random.nextInt(chance) < QUALITY_CHANCE;
+  }
+
+  /**
+   * Picks an entry of {@code ids} at most {@code ilvl} weighted by rarity.
+   *
+   * @return picked entry, or {@code -1} if none are at most {@code ilvl}
+   */
+  int pick(int[] ids, int[] levels, int[] rarities, int ilvl) {
+    int total = 0, size = 0;
+    for (int id : ids) {
+      if (levels[id] > ilvl) continue;
+      total += rarities[id];
+      candidates[size] = id;
+      cumulative[size++] = total;
+    }
+
+    return pick(size, total);
+  }
+
+  private int pick(int size, int total) {
+    if (total <= 0) return -1;
+    final int u = random.nextInt(total);
+    for (int i = 0; i < size; i++) {
+      if (u < cumulative[i]) return candidates[i];
+    }
+
+    throw new AssertionError();
+  }
+
+  /**
+   * Level of the affixes which may spawn on an item of level {@code ilvl},
+   * which is lowered by half the quality level of its base until the item
+   * level approaches 99.
+   */
+  static int affixLevel(int ilvl, int qlvl) {
+    if (ilvl > 99) ilvl = 99;
+    if (qlvl > ilvl) qlvl = ilvl;
+    final int alvl = ilvl < 99 - qlvl / 2 ? ilvl - qlvl / 2 : 2 * ilvl - 99;
+    return Math.min(alvl, 99);
+  }
+
+  /**
+   * Magic items have a prefix and suffix half the time, otherwise either one.
+   */
+  void rollMagic(int i, int base, int ilvl, Drops drops) {
+    final int alvl = affixLevel(ilvl, qualities.qlvls[base]);
+    final int type = qualities.types[base];
+    if (type < 0) return;
+    final int r = random.nextInt(4);
+    final int prefix = r != 1 ? pickAffix(qualities.prefixes[type], qualities.magicPrefixes, alvl, false, 0) : 0;
+    final int suffix = r != 0 ? pickAffix(qualities.suffixes[type], qualities.magicSuffixes, alvl, false, 0) : 0;
+    drops.qualityIds[i] = prefix | (suffix << Item.MAGIC_AFFIX_SIZE);
+  }
+
+  /**
+   * Rare items have a name drawn from RarePrefix and RareSuffix, and between
+   * {@link #MIN_RARE_AFFIXES} and {@link #MAX_RARE_AFFIXES} affixes, no more
+   * than {@link Drops#MAX_AFFIXES} of which are prefixes or suffixes, and no
+   * two of which share a group.
+   */
+  void rollRare(int i, int base, int ilvl, Drops drops) {
+    final QualityTables q = qualities;
+    final int type = q.types[base];
+    if (type < 0) return;
+    final int[] rarePrefixes = q.rarePrefixes[type];
+    final int[] rareSuffixes = q.rareSuffixes[type];
+    final int prefixName = rarePrefixes.length > 0 ? rarePrefixes[random.nextInt(rarePrefixes.length)] : 0;
+    final int suffixName = rareSuffixes.length > 0 ? rareSuffixes[random.nextInt(rareSuffixes.length)] : 0;
+    drops.qualityIds[i] = prefixName | (suffixName << Item.RARE_AFFIX_SIZE);
+
+    final int alvl = affixLevel(ilvl, q.qlvls[base]);
+    final int offset = i * Drops.MAX_AFFIXES;
+    final int count = MIN_RARE_AFFIXES + random.nextInt(MAX_RARE_AFFIXES - MIN_RARE_AFFIXES + 1);
+    int numPrefixes = 0, numSuffixes = 0, numGroups = 0;
+    for (int j = 0; j < count; j++) {
+      final boolean prefix = numSuffixes >= Drops.MAX_AFFIXES
+          || (numPrefixes < Drops.MAX_AFFIXES && random.nextBoolean());
+      final int affix;
+      if (prefix) {
+        affix = pickAffix(q.prefixes[type], q.magicPrefixes, alvl, true, numGroups);
+        if (affix == 0) continue;
+        drops.prefixes[offset + numPrefixes++] = affix;
+        groups[numGroups++] = q.magicPrefixes.groups[affix];
+      } else {
+        affix = pickAffix(q.suffixes[type], q.magicSuffixes, alvl, true, numGroups);
+        if (affix == 0) continue;
+        drops.suffixes[offset + numSuffixes++] = affix;
+        groups[numGroups++] = q.magicSuffixes.groups[affix];
+      }
+    }
+  }
+
+  /**
+   * @return affix picked weighted by frequency, or {@code 0} if none may spawn
+   */
+  int pickAffix(int[] ids, QualityTables.Affixes affixes, int alvl, boolean rare, int numGroups) {
+    final int[] frequencies = affixes.frequencies;
+    final int[] affixGroups = affixes.groups;
+    int total = 0, size = 0;
+    outer:
+    for (int id : ids) {
+      if (!affixes.spawns(id, alvl, rare)) continue;
+      for (int g = 0; g < numGroups; g++) {
+        if (groups[g] != 0 && groups[g] == affixGroups[id]) continue outer;
+      }
+
+      total += frequencies[id];
+      candidates[size] = id;
+      cumulative[size++] = total;
+    }
+
+    return total > 0 ? pick(size, total) : 0;
+  }
+}
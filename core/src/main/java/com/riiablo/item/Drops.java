@@ -0,0 +1,60 @@
+package com.riiablo.item;
+
+import java.util.Arrays;
+
+/**
+ * Items dropped by a {@link DropGenerator} roll, kept as primitives indexed by
+ * drop s.t. rolling allocates nothing. Drops can be turned into items using
+ * {@link ItemGenerator#generate(QualityTables, Drops, int)}, or tallied as-is.
+ */
+public class Drops {
+  /** most items a single roll drops */
+  public static final int MAX_DROPS = 6;
+  public static final int MAX_AFFIXES = RareQualityData.NUM_AFFIXES;
+
+  public final int capacity;
+  public int size;
+
+  /** index of the item base, see {@link TreasureClasses#base(int)} */
+  public final int[] bases;
+  public final Quality[] qualities;
+  /** same as {@link Item#qualityId} */
+  public final int[] qualityIds;
+  public final int[] ilvls;
+  /** magic affixes of rare drops, {@link #MAX_AFFIXES} per drop, 0 if none */
+  public final int[] prefixes;
+  public final int[] suffixes;
+
+  public Drops() {
+    this(MAX_DROPS);
+  }
+
+  public Drops(int capacity) {
+    this.capacity = capacity;
+    bases = new int[capacity];
+    qualities = new Quality[capacity];
+    qualityIds = new int[capacity];
+    ilvls = new int[capacity];
+    prefixes = new int[capacity * MAX_AFFIXES];
+    suffixes = new int[capacity * MAX_AFFIXES];
+  }
+
+  public boolean isFull() {
+    return size >= capacity;
+  }
+
+  public void clear() {
+    size = 0;
+  }
+
+  int add(int base, int ilvl) {
+    final int i = size++;
+    bases[i] = base;
+    qualities[i] = Quality.NORMAL;
+    qualityIds[i] = 0;
+    ilvls[i] = ilvl;
+    Arrays.fill(prefixes, i * MAX_AFFIXES, (i + 1) * MAX_AFFIXES, 0);
+    Arrays.fill(suffixes, i * MAX_AFFIXES, (i + 1) * MAX_AFFIXES, 0);
+    return i;
+  }
+}
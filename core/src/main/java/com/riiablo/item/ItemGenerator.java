@@ -2,12 +2,17 @@ package com.riiablo.item;
 
 import net.mostlyoriginal.api.system.core.PassiveSystem;
 
+import com.artemis.annotations.Wire;
+
 import com.badlogic.gdx.Gdx;
-import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.RandomXS128;
 import com.badlogic.gdx.utils.Array;
 
 import com.riiablo.Riiablo;
+import com.riiablo.attributes.PropertiesGenerator;
+import com.riiablo.attributes.PropertiesGenerator.Props;
 import com.riiablo.attributes.Stat;
+import com.riiablo.attributes.StatListFlags;
 import com.riiablo.codec.excel.Armor;
 import com.riiablo.codec.excel.ItemEntry;
 import com.riiablo.codec.excel.Misc;
@@ -21,9 +26,107 @@ public class ItemGenerator extends PassiveSystem {
   private static final float SOCKETED_CHANCE = 1 / 3f;
   private static final float ETHEREAL_CHANCE = 1 / 20f;
 
-//  public Item generate(TreasureClass tc) {
-//    return null;
-//  }
+  protected PropertiesGenerator propertiesGenerator = new PropertiesGenerator(); // TODO: inject
+
+  /** random of the hosting game, created on first use if none registered */
+  @Wire(name = "random", failOnNull = false)
+  protected RandomXS128 random;
+
+  private DropGenerator dropGenerator;
+  private final Drops drops = new Drops();
+  private final Props[] props = new Props[2 * Drops.MAX_AFFIXES];
+
+  @Override
+  protected void initialize() {
+    if (random != null) propertiesGenerator = new PropertiesGenerator(random);
+  }
+
+  /**
+   * Compiles the treasure classes and item qualities the first time it's
+   * called, which takes a while, so this should be called ahead of the first
+   * drop where that matters.
+   */
+  public DropGenerator dropGenerator() {
+    if (dropGenerator == null) {
+      dropGenerator = new DropGenerator(new QualityTables(new TreasureClasses()), random());
+    }
+
+    return dropGenerator;
+  }
+
+  RandomXS128 random() {
+    if (random == null) random = new RandomXS128();
+    return random;
+  }
+
+  /**
+   * Rolls the treasure class named {@code tc} and generates the items dropped.
+   *
+   * @param mlvl      level of the monster dropping {@code tc}
+   * @param players   number of players NoDrop is adjusted for
+   * @param magicFind magic find of the player the items drop for
+   */
+  public Array<Item> generate(String tc, int mlvl, int players, int magicFind, Array<Item> items) {
+    DropGenerator generator = dropGenerator();
+    int index = generator.treasureClasses().index(tc);
+    if (index < 0) {
+      Gdx.app.error(TAG, "Unknown treasure class: " + tc);
+      return items;
+    }
+
+    index = generator.treasureClasses().upgrade(index, mlvl);
+    generator.roll(index, players, mlvl, magicFind, drops);
+    for (int i = 0; i < drops.size; i++) items.add(generate(generator.qualities(), drops, i));
+    return items;
+  }
+
+  /**
+   * Generates drop {@code i} of {@code drops}, including its properties.
+   */
+  public Item generate(QualityTables qualities, Drops drops, int i) {
+    final int base = drops.bases[i];
+    Item item = generate(qualities.treasureClasses.base(base));
+    item.ilvl = (byte) drops.ilvls[i];
+    item.quality = drops.qualities[i];
+    item.qualityId = drops.qualityIds[i];
+    if ((item.flags & Item.ITEMFLAG_COMPACT) == Item.ITEMFLAG_COMPACT) return item;
+
+    final Props[] props = this.props;
+    switch (item.quality) {
+      case MAGIC:
+        props[0] = qualities.prefixProps[item.qualityId & Item.MAGIC_AFFIX_MASK];
+        props[1] = qualities.suffixProps[item.qualityId >>> Item.MAGIC_AFFIX_SIZE];
+        break;
+      case RARE: {
+        int[] prefixes = new int[Drops.MAX_AFFIXES];
+        int[] suffixes = new int[Drops.MAX_AFFIXES];
+        for (int j = 0, offset = i * Drops.MAX_AFFIXES; j < Drops.MAX_AFFIXES; j++) {
+          prefixes[j] = drops.prefixes[offset + j];
+          suffixes[j] = drops.suffixes[offset + j];
+          props[j << 1] = qualities.prefixProps[prefixes[j]];
+          props[(j << 1) + 1] = qualities.suffixProps[suffixes[j]];
+        }
+
+        item.qualityData = new RareQualityData(prefixes, suffixes);
+        break;
+      }
+      case SET:
+        item.qualityData = Riiablo.files.SetItems.get(item.qualityId);
+        props[0] = qualities.setProps[item.qualityId];
+        break;
+      case UNIQUE:
+        item.qualityData = Riiablo.files.UniqueItems.get(item.qualityId);
+        props[0] = qualities.uniqueProps[item.qualityId];
+        break;
+      default:
+        // no properties
+    }
+
+    propertiesGenerator.addItemLists(item.attrs.list(), props);
+    item.aggFlags = StatListFlags.FLAG_MAGIC;
+    for (int j = 0; j < props.length; j++) props[j] = null;
+    return item;
+  }
 
   public Item generate(String code) {
     return generate(ItemUtils.getBase(code));
@@ -42,22 +145,22 @@ public class ItemGenerator extends PassiveSystem {
     throw new AssertionError();
   }
 
-  private static void socket(Item item) {
+  private void socket(Item item) {
     // TODO: include difficulty
-    if (item.base.gemsockets > 0 && MathUtils.randomBoolean(SOCKETED_CHANCE)) {
+    if (item.base.gemsockets > 0 && random().nextFloat() < SOCKETED_CHANCE) {
       Gdx.app.debug(TAG, "Item is socketed");
       item.flags |= Item.ITEMFLAG_SOCKETED;
       int diff = Riiablo.NORMAL;
       int maxSockets = Math.min(item.base.gemsockets, item.typeEntry.MaxSock[diff]);
-      int numSockets = MathUtils.random(1, maxSockets);
+      int numSockets = 1 + random().nextInt(maxSockets);
       Gdx.app.debug(TAG, "Setting sockets to: " + numSockets);
       item.attrs.base().put(Stat.item_numsockets, numSockets);
       item.sockets = new Array<>(numSockets);
     }
   }
 
-  private static void ethereal(Item item) {
-    if (!item.base.nodurability && MathUtils.randomBoolean(ETHEREAL_CHANCE)) {
+  private void ethereal(Item item) {
+    if (!item.base.nodurability && random().nextFloat() < ETHEREAL_CHANCE) {
       Gdx.app.debug(TAG, "Item is ethereal");
       item.flags |= Item.ITEMFLAG_ETHEREAL;
     }
@@ -15,15 +15,43 @@ import com.riiablo.logger.LogManager;
 import com.riiablo.logger.Logger;
 import com.riiablo.logger.MDC;
 
+/**
+ * Reads serialized items.
+ * <p>
+ * By default the socket being read is tracked within the {@link MDC} and each
+ * field read is traced. When {@code diagnostics} is disabled, e.g., when
+ * loading stashes and character files in production, neither is done, and
+ * neither is done by its {@link StatListReader}. If reading a socket fails,
+ * its index is restored into the {@link MDC} to log the failure at debug level
+ * before the exception is rethrown.
+ */
 public class ItemReader {
   private static final Logger log = LogManager.getLogger(ItemReader.class);
 
   private static final byte[] SIGNATURE = {0x4A, 0x4D};
 
-  protected StatListReader statListReader = new StatListReader(); // TODO: inject
+  protected final boolean diagnostics;
+  protected StatListReader statListReader; // TODO: inject
   protected PropertiesGenerator propertiesGenerator = new PropertiesGenerator(); // TODO: inject
   protected GemGenerator gems = new GemGenerator(propertiesGenerator); // TODO: inject
 
+  public ItemReader() {
+    this(true);
+  }
+
+  public ItemReader(boolean diagnostics) {
+    this.diagnostics = diagnostics;
+    statListReader = new StatListReader(diagnostics);
+  }
+
+  public boolean diagnostics() {
+    return diagnostics;
+  }
+
+  private boolean traceEnabled() {
+    return diagnostics && log.traceEnabled();
+  }
+
   public void skipUntil(ByteInput in) {
     in.skipUntil(SIGNATURE);
   }
@@ -32,20 +60,24 @@ public class ItemReader {
   public Item readItem(ByteInput in) {
     final int startOffset = in.bytesRead(); /** @see Item#data */
     Item item = readSingleItem(in);
-    if (item.socketsFilled > 0) log.trace("Reading {} sockets...", item.socketsFilled);
-    for (int i = 0; i < item.socketsFilled; i++) {
-      try {
-        MDC.put("socket", i);
-        in.skipUntil(SIGNATURE);
-        item.sockets.add(readSingleItem(in));
-      } finally {
-        MDC.remove("socket");
+    if (!diagnostics) {
+      readSockets(in, item);
+    } else {
+      if (item.socketsFilled > 0) log.trace("Reading {} sockets...", item.socketsFilled);
+      for (int i = 0; i < item.socketsFilled; i++) {
+        try {
+          MDC.put("socket", i);
+          in.skipUntil(SIGNATURE);
+          item.sockets.add(readSingleItem(in));
+        } finally {
+          MDC.remove("socket");
+        }
       }
     }
     final int endOffset = in.bytesRead();
     final int itemSize = endOffset - startOffset;  /** @see Item#data */
     item.data = in.duplicate(startOffset, itemSize);  /** @see Item#data */
-    if (log.traceEnabled()) {
+    if (traceEnabled()) {
       log.trace("size: {} (0x{}) (+{} .. +{})",
           itemSize,
           Integer.toHexString(itemSize),
@@ -55,18 +87,44 @@ public class ItemReader {
     return item;
   }
 
+  /**
+   * Reads the sockets of {@code item} without diagnostic context, keeping only
+   * the index of the socket being read in case it fails.
+   */
+  private void readSockets(ByteInput in, Item item) {
+    int i = 0;
+    try {
+      for (; i < item.socketsFilled; i++) {
+        in.skipUntil(SIGNATURE);
+        item.sockets.add(readSingleItem(in));
+      }
+    } catch (RuntimeException t) {
+      if (log.debugEnabled()) {
+        try {
+          MDC.put("socket", i);
+          log.debug("Failed to read socket: {}", t.getMessage(), t);
+        } finally {
+          MDC.remove("socket");
+        }
+      }
+
+      throw t;
+    }
+  }
+
   @SuppressWarnings("deprecation")
   Item readSingleItem(ByteInput in) {
     final int itemOffset = in.bytesRead();  /** @see Item#data */
-    log.trace("Reading item...");
-    log.trace("Validating item signature");
+    final boolean trace = traceEnabled();
+    if (trace) log.trace("Reading item...");
+    if (trace) log.trace("Validating item signature");
     in.readSignature(SIGNATURE);
     Item item = new Item();
     item.reset();
     item.flags = in.read32();
-    log.tracef("flags: 0x%08X [%s]", item.flags, item.getFlagsString());
+    if (trace) log.tracef("flags: 0x%08X [%s]", item.flags, item.getFlagsString());
     item.version = in.readSafe8u();
-    log.trace("version: {}", item.version);
+    if (trace) log.trace("version: {}", item.version);
     final BitInput bits = in.unalign();
     bits.skipBits(2); // Unknown use -- safe to skip
     item.location = Location.valueOf(bits.read7u(3));
@@ -85,7 +143,7 @@ public class ItemReader {
       item.socketsFilled = bits.read7u(3);
     }
 
-    log.trace("code: {} ({})", item.code, item.base.name);
+    if (trace) log.trace("code: {} ({})", item.code, item.base.name);
     if ((item.flags & Item.ITEMFLAG_COMPACT) == Item.ITEMFLAG_COMPACT) {
       readCompact(item);
     } else {
@@ -108,7 +166,7 @@ public class ItemReader {
 
   private void readStandard(BitInput bits, Item item) {
     item.id = (int) bits.readRaw(32);
-    log.tracef("id: 0x%08X", item.id);
+    if (traceEnabled()) log.tracef("id: 0x%08X", item.id);
     item.ilvl = bits.read7u(7);
     item.quality = Quality.valueOf(bits.read7u(4));
     item.pictureId = bits.readBoolean() ? bits.read7u(3) : Item.NO_PICTURE_ID;
@@ -134,13 +192,14 @@ public class ItemReader {
     statListReader.read(item.attrs.list(), bits, listFlags);
   }
 
-  private static boolean readQualityData(BitInput bits, Item item) {
-    log.trace("quality: {}", item.quality);
+  private boolean readQualityData(BitInput bits, Item item) {
+    final boolean trace = traceEnabled();
+    if (trace) log.trace("quality: {}", item.quality);
     switch (item.quality) {
       case LOW:
       case HIGH:
         item.qualityId = bits.read31u(3);
-        log.trace("qualityId: {}", item.qualityId);
+        if (trace) log.trace("qualityId: {}", item.qualityId);
         return true;
 
       case NORMAL:
@@ -149,9 +208,9 @@ public class ItemReader {
 
       case SET:
         item.qualityId = bits.read31u(Item.SET_ID_SIZE);
-        log.trace("qualityId: {}", item.qualityId);
+        if (trace) log.trace("qualityId: {}", item.qualityId);
         item.qualityData = Riiablo.files.SetItems.get(item.qualityId);
-        log.trace("qualityData: {}", item.qualityData);
+        if (trace) log.trace("qualityData: {}", item.qualityData);
         if (item.qualityId == (1 << Item.SET_ID_SIZE) - 1) {
           log.error("Unknown set item id: {}", item.qualityId);
           // This is unexpected -- all set items should reference a set id
@@ -161,9 +220,9 @@ public class ItemReader {
 
       case UNIQUE:
         item.qualityId = bits.read31u(Item.UNIQUE_ID_SIZE);
-        log.trace("qualityId: {}", item.qualityId);
+        if (trace) log.trace("qualityId: {}", item.qualityId);
         item.qualityData = Riiablo.files.UniqueItems.get(item.qualityId);
-        log.trace("qualityData: {}", item.qualityData);
+        if (trace) log.trace("qualityData: {}", item.qualityData);
         if (item.qualityId == (1 << Item.UNIQUE_ID_SIZE) - 1) {
           log.warn("Unknown unique item id: {}", item.qualityId);
           // This is expected for hdm and possibly others
@@ -173,15 +232,15 @@ public class ItemReader {
 
       case MAGIC:
         item.qualityId = bits.read31u(2 * Item.MAGIC_AFFIX_SIZE); // 11 for prefix, 11 for suffix
-        log.trace("qualityId: {}", item.qualityId);
+        if (trace) log.trace("qualityId: {}", item.qualityId);
         return true;
 
       case RARE:
       case CRAFTED:
         item.qualityId = bits.read31u(2 * Item.RARE_AFFIX_SIZE); // 8 for prefix, 8 for suffix
-        log.trace("qualityId: {}", item.qualityId);
+        if (trace) log.trace("qualityId: {}", item.qualityId);
         item.qualityData = new RareQualityData(bits);
-        log.trace("qualityData: {}", item.qualityData);
+        if (trace) log.trace("qualityData: {}", item.qualityData);
         return true;
 
       default:
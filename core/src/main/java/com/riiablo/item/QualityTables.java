@@ -0,0 +1,344 @@
+package com.riiablo.item;
+
+import com.badlogic.gdx.utils.IntArray;
+
+import com.riiablo.Riiablo;
+import com.riiablo.attributes.PropertiesGenerator.Props;
+import com.riiablo.codec.excel.ItemEntry;
+import com.riiablo.codec.excel.ItemRatio;
+import com.riiablo.codec.excel.ItemTypes;
+import com.riiablo.codec.excel.MagicAffix;
+import com.riiablo.codec.excel.MagicPrefix;
+import com.riiablo.codec.excel.MagicSuffix;
+import com.riiablo.codec.excel.RarePrefix;
+import com.riiablo.codec.excel.RareSuffix;
+import com.riiablo.codec.excel.SetItems;
+import com.riiablo.codec.excel.UniqueItems;
+
+/**
+ * ItemRatio.txt, the magic and rare affixes, and the unique and set items
+ * compiled into flat arrays indexed by the item bases of a
+ * {@link TreasureClasses}, s.t. rolling the quality of a drop only reads
+ * arrays. Properties of each affix and unique or set item are kept as
+ * {@link Props} to be generated once the drop becomes an item.
+ *
+ * @see DropGenerator
+ */
+public class QualityTables {
+  /** base has no quality, e.g., potions, gold, gems and runes */
+  static final byte KIND_NONE   = 0;
+  /** base is at least magic, e.g., rings, amulets, charms and jewels */
+  static final byte KIND_MAGIC  = 1;
+  /** base may be any quality, i.e., armor and weapons */
+  static final byte KIND_ANY    = 2;
+
+  /** ratio, divisor and min of unique, set, rare and magic, then hiquality and normal */
+  static final int RATIO_UNIQUE = 0;
+  static final int RATIO_SET    = 3;
+  static final int RATIO_RARE   = 6;
+  static final int RATIO_MAGIC  = 9;
+  static final int RATIO_HIGH   = 12;
+  static final int RATIO_NORMAL = 14;
+  static final int RATIO_SIZE   = 16;
+
+  final TreasureClasses treasureClasses;
+
+  final byte[] kinds;
+  final boolean[] rare;
+  final int[] qlvls;
+  /** offset into {@link #ratios} of the ItemRatio row of each base */
+  final int[] ratioOffsets;
+  final int[] ratios;
+
+  /** unique and set items of each base */
+  final int[][] uniques;
+  final int[][] sets;
+  final int[] uniqueLevels, uniqueRarities;
+  final int[] setLevels, setRarities;
+
+  /** affixes which may spawn on each item type, indexed by ItemTypes id */
+  final int[][] prefixes, suffixes;
+  final int[][] rarePrefixes, rareSuffixes;
+  final Affixes magicPrefixes, magicSuffixes;
+  final int[] types;
+
+  final Props[] prefixProps, suffixProps, uniqueProps, setProps;
+  final int maxCandidates;
+
+  public QualityTables(TreasureClasses treasureClasses) {
+    this.treasureClasses = treasureClasses;
+    final ItemTypes itemTypes = Riiablo.files.ItemTypes;
+    final int numBases = treasureClasses.numBases();
+    kinds = new byte[numBases];
+    rare = new boolean[numBases];
+    qlvls = new int[numBases];
+    ratioOffsets = new int[numBases];
+    types = new int[numBases];
+    uniques = new int[numBases][];
+    sets = new int[numBases][];
+
+    final ItemRatio itemRatio = Riiablo.files.ItemRatio;
+    ratios = new int[Math.max(itemRatio.size(), 1) * RATIO_SIZE];
+    int maxVersion = 0;
+    for (int i = 0; i < itemRatio.size(); i++) {
+      ItemRatio.Entry entry = itemRatio.get(i);
+      maxVersion = Math.max(maxVersion, entry.Version);
+      int offset = i * RATIO_SIZE;
+      ratios[offset + RATIO_UNIQUE    ] = entry.Unique;
+      ratios[offset + RATIO_UNIQUE + 1] = entry.UniqueDivisor;
+      ratios[offset + RATIO_UNIQUE + 2] = entry.UniqueMin;
+      ratios[offset + RATIO_SET       ] = entry.Set;
+      ratios[offset + RATIO_SET    + 1] = entry.SetDivisor;
+      ratios[offset + RATIO_SET    + 2] = entry.SetMin;
+      ratios[offset + RATIO_RARE      ] = entry.Rare;
+      ratios[offset + RATIO_RARE   + 1] = entry.RareDivisor;
+      ratios[offset + RATIO_RARE   + 2] = entry.RareMin;
+      ratios[offset + RATIO_MAGIC     ] = entry.Magic;
+      ratios[offset + RATIO_MAGIC  + 1] = entry.MagicDivisor;
+      ratios[offset + RATIO_MAGIC  + 2] = entry.MagicMin;
+      ratios[offset + RATIO_HIGH      ] = entry.HiQuality;
+      ratios[offset + RATIO_HIGH   + 1] = entry.HiQualityDivisor;
+      ratios[offset + RATIO_NORMAL    ] = entry.Normal;
+      ratios[offset + RATIO_NORMAL + 1] = entry.NormalDivisor;
+    }
+
+    for (int i = 0; i < numBases; i++) {
+      ItemEntry base = treasureClasses.base(i);
+      ItemTypes.Entry type = base.type != null ? itemTypes.get(base.type) : null;
+      types[i] = base.type != null ? itemTypes.index(base.type) : -1;
+      qlvls[i] = base.level;
+      if (type == null || itemRatio.size() == 0 || type.Normal) {
+        kinds[i] = KIND_NONE;
+      } else if (i < treasureClasses.weapons) {
+        kinds[i] = type.Magic ? KIND_MAGIC : KIND_ANY;
+      } else {
+        kinds[i] = type.Magic ? KIND_MAGIC : KIND_NONE;
+      }
+
+      if (type != null) rare[i] = type.Rare;
+
+      boolean uber = base.normcode != null && !base.normcode.isEmpty() && !base.normcode.equals(base.code);
+      boolean classSpecific = type != null && type.Class != null && !type.Class.isEmpty();
+      ratioOffsets[i] = ratio(itemRatio, maxVersion, uber, classSpecific) * RATIO_SIZE;
+    }
+
+    final UniqueItems uniqueItems = Riiablo.files.UniqueItems;
+    uniqueLevels = new int[uniqueItems.size()];
+    uniqueRarities = new int[uniqueItems.size()];
+    uniqueProps = new Props[uniqueItems.size()];
+    IntArray[] uniquesByBase = new IntArray[numBases];
+    for (int i = 0; i < uniqueItems.size(); i++) {
+      UniqueItems.Entry unique = uniqueItems.get(i);
+      if (unique == null || !unique.enabled || unique.code == null) continue;
+      int base = treasureClasses.baseIndex(unique.code);
+      if (base < 0) continue;
+      uniqueLevels[i] = unique.lvl;
+      uniqueRarities[i] = Math.max(unique.rarity, 1);
+      uniqueProps[i] = new Props(
+          new String[] { unique.prop1, unique.prop2, unique.prop3, unique.prop4, unique.prop5, unique.prop6,
+              unique.prop7, unique.prop8, unique.prop9, unique.prop10, unique.prop11, unique.prop12 },
+          new int[] { unique.par1, unique.par2, unique.par3, unique.par4, unique.par5, unique.par6,
+              unique.par7, unique.par8, unique.par9, unique.par10, unique.par11, unique.par12 },
+          new int[] { unique.min1, unique.min2, unique.min3, unique.min4, unique.min5, unique.min6,
+              unique.min7, unique.min8, unique.min9, unique.min10, unique.min11, unique.min12 },
+          new int[] { unique.max1, unique.max2, unique.max3, unique.max4, unique.max5, unique.max6,
+              unique.max7, unique.max8, unique.max9, unique.max10, unique.max11, unique.max12 });
+      add(uniquesByBase, base, i);
+    }
+
+    final SetItems setItems = Riiablo.files.SetItems;
+    setLevels = new int[setItems.size()];
+    setRarities = new int[setItems.size()];
+    setProps = new Props[setItems.size()];
+    IntArray[] setsByBase = new IntArray[numBases];
+    for (int i = 0; i < setItems.size(); i++) {
+      SetItems.Entry set = setItems.get(i);
+      if (set == null || set.item == null) continue;
+      int base = treasureClasses.baseIndex(set.item);
+      if (base < 0) continue;
+      setLevels[i] = set.lvl;
+      setRarities[i] = Math.max(set.rarity, 1);
+      setProps[i] = new Props(
+          new String[] { set.prop1, set.prop2, set.prop3, set.prop4, set.prop5, set.prop6, set.prop7, set.prop8, set.prop9 },
+          new int[] { set.par1, set.par2, set.par3, set.par4, set.par5, set.par6, set.par7, set.par8, set.par9 },
+          new int[] { set.min1, set.min2, set.min3, set.min4, set.min5, set.min6, set.min7, set.min8, set.min9 },
+          new int[] { set.max1, set.max2, set.max3, set.max4, set.max5, set.max6, set.max7, set.max8, set.max9 });
+      add(setsByBase, base, i);
+    }
+
+    for (int i = 0; i < numBases; i++) {
+      uniques[i] = uniquesByBase[i] != null ? uniquesByBase[i].toArray() : EMPTY;
+      sets[i] = setsByBase[i] != null ? setsByBase[i].toArray() : EMPTY;
+    }
+
+    final MagicPrefix magicPrefix = Riiablo.files.MagicPrefix;
+    final int numPrefixes = magicPrefix.size() + 1;
+    magicPrefixes = new Affixes(numPrefixes);
+    prefixProps = new Props[numPrefixes];
+    String[][] prefixTypes = new String[numPrefixes][];
+    String[][] prefixExcludes = new String[numPrefixes][];
+    for (int i = 1; i < numPrefixes; i++) {
+      MagicPrefix.Entry affix = magicPrefix.get(i);
+      if (affix == null) continue;
+      magicPrefixes.set(i, affix);
+      prefixProps[i] = new Props(
+          new String[] { affix.mod1code, affix.mod2code, affix.mod3code },
+          new int[] { affix.mod1param, affix.mod2param, affix.mod3param },
+          new int[] { affix.mod1min, affix.mod2min, affix.mod3min },
+          new int[] { affix.mod1max, affix.mod2max, affix.mod3max });
+      prefixTypes[i] = new String[] { affix.itype1, affix.itype2, affix.itype3, affix.itype4, affix.itype5, affix.itype6, affix.itype7 };
+      prefixExcludes[i] = new String[] { affix.etype1, affix.etype2, affix.etype3, affix.etype4, affix.etype5 };
+    }
+
+    final MagicSuffix magicSuffix = Riiablo.files.MagicSuffix;
+    final int numSuffixes = magicSuffix.size() + 1;
+    magicSuffixes = new Affixes(numSuffixes);
+    suffixProps = new Props[numSuffixes];
+    String[][] suffixTypes = new String[numSuffixes][];
+    String[][] suffixExcludes = new String[numSuffixes][];
+    for (int i = 1; i < numSuffixes; i++) {
+      MagicSuffix.Entry affix = magicSuffix.get(i);
+      if (affix == null) continue;
+      magicSuffixes.set(i, affix);
+      suffixProps[i] = new Props(
+          new String[] { affix.mod1code, affix.mod2code, affix.mod3code },
+          new int[] { affix.mod1param, affix.mod2param, affix.mod3param },
+          new int[] { affix.mod1min, affix.mod2min, affix.mod3min },
+          new int[] { affix.mod1max, affix.mod2max, affix.mod3max });
+      suffixTypes[i] = new String[] { affix.itype1, affix.itype2, affix.itype3, affix.itype4, affix.itype5, affix.itype6, affix.itype7 };
+      suffixExcludes[i] = new String[] { affix.etype1, affix.etype2, affix.etype3 };
+    }
+
+    final int numTypes = itemTypes.size();
+    prefixes = new int[numTypes][];
+    suffixes = new int[numTypes][];
+    rarePrefixes = new int[numTypes][];
+    rareSuffixes = new int[numTypes][];
+    int maxCandidates = 0;
+    IntArray candidates = new IntArray();
+    for (int t = 0; t < numTypes; t++) {
+      ItemTypes.Entry type = itemTypes.get(t);
+      prefixes[t] = candidates(candidates, type, magicPrefixes.spawnable, prefixTypes, prefixExcludes);
+      suffixes[t] = candidates(candidates, type, magicSuffixes.spawnable, suffixTypes, suffixExcludes);
+      maxCandidates = Math.max(maxCandidates, Math.max(prefixes[t].length, suffixes[t].length));
+
+      candidates.clear();
+      for (RarePrefix.Entry affix : Riiablo.files.RarePrefix) {
+        if (type != null && is(type,
+            new String[] { affix.itype1, affix.itype2, affix.itype3, affix.itype4, affix.itype5, affix.itype6, affix.itype7 },
+            new String[] { affix.etype1, affix.etype2, affix.etype3, affix.etype4 })) {
+          candidates.add(Riiablo.files.RarePrefix.index(affix.name));
+        }
+      }
+
+      candidates.sort();
+      rarePrefixes[t] = candidates.toArray();
+
+      candidates.clear();
+      for (RareSuffix.Entry affix : Riiablo.files.RareSuffix) {
+        if (type != null && is(type,
+            new String[] { affix.itype1, affix.itype2, affix.itype3, affix.itype4, affix.itype5, affix.itype6, affix.itype7 },
+            new String[] { affix.etype1, affix.etype2, affix.etype3, affix.etype4 })) {
+          candidates.add(Riiablo.files.RareSuffix.index(affix.name));
+        }
+      }
+
+      candidates.sort();
+      rareSuffixes[t] = candidates.toArray();
+    }
+
+    for (int[] u : uniques) maxCandidates = Math.max(maxCandidates, u.length);
+    for (int[] s : sets) maxCandidates = Math.max(maxCandidates, s.length);
+    this.maxCandidates = maxCandidates;
+  }
+
+  static final int[] EMPTY = new int[0];
+
+  private static void add(IntArray[] arrays, int index, int value) {
+    IntArray array = arrays[index];
+    if (array == null) arrays[index] = array = new IntArray(4);
+    array.add(value);
+  }
+
+  /**
+   * Selects the ItemRatio row of the latest version matching {@code uber} and
+   * {@code classSpecific}, falling back to the first row of that version.
+   */
+  private static int ratio(ItemRatio itemRatio, int version, boolean uber, boolean classSpecific) {
+    int fallback = -1;
+    for (int i = 0; i < itemRatio.size(); i++) {
+      ItemRatio.Entry entry = itemRatio.get(i);
+      if (entry.Version != version) continue;
+      if (fallback == -1) fallback = i;
+      if (entry.Uber == uber && entry.ClassSpecific == classSpecific) return i;
+    }
+
+    return Math.max(fallback, 0);
+  }
+
+  private static int[] candidates(IntArray candidates, ItemTypes.Entry type, boolean[] spawnable,
+      String[][] types, String[][] excludes) {
+    candidates.clear();
+    if (type == null) return EMPTY;
+    for (int i = 1; i < spawnable.length; i++) {
+      if (spawnable[i] && is(type, types[i], excludes[i])) candidates.add(i);
+    }
+
+    return candidates.toArray();
+  }
+
+  private static boolean is(ItemTypes.Entry type, String[] types, String[] excludes) {
+    boolean is = false;
+    for (String itype : types) {
+      if (itype == null || itype.isEmpty()) break;
+      if (Riiablo.files.ItemTypes.get(itype) != null && type.is(itype)) {
+        is = true;
+        break;
+      }
+    }
+
+    if (!is) return false;
+    for (String etype : excludes) {
+      if (etype == null || etype.isEmpty()) break;
+      if (Riiablo.files.ItemTypes.get(etype) != null && type.is(etype)) return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Magic affix columns which decide whether an affix may spawn.
+   */
+  static final class Affixes {
+    final boolean[] spawnable;
+    final boolean[] rare;
+    final int[] levels;
+    final int[] maxlevels;
+    final int[] frequencies;
+    final int[] groups;
+
+    Affixes(int size) {
+      spawnable = new boolean[size];
+      rare = new boolean[size];
+      levels = new int[size];
+      maxlevels = new int[size];
+      frequencies = new int[size];
+      groups = new int[size];
+    }
+
+    void set(int i, MagicAffix affix) {
+      spawnable[i] = affix.spawnable && affix.frequency > 0;
+      rare[i] = affix.rare;
+      levels[i] = affix.level;
+      maxlevels[i] = affix.maxlevel;
+      frequencies[i] = affix.frequency;
+      groups[i] = affix.group;
+    }
+
+    boolean spawns(int i, int alvl, boolean rare) {
+      return levels[i] <= alvl
+          && (maxlevels[i] == 0 || alvl <= maxlevels[i])
+          && (!rare || this.rare[i]);
+    }
+  }
+}
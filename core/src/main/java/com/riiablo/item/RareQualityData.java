@@ -8,6 +8,11 @@ import com.riiablo.io.BitOutput;
 class RareQualityData {
   static final int NUM_AFFIXES = 3;
   int[] prefixes, suffixes;
+  RareQualityData(int[] prefixes, int[] suffixes) {
+    this.prefixes = prefixes;
+    this.suffixes = suffixes;
+  }
+
   RareQualityData(BitInput bitStream) {
     prefixes = new int[NUM_AFFIXES];
     suffixes = new int[NUM_AFFIXES];
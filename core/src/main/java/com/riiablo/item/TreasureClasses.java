@@ -0,0 +1,386 @@
+package com.riiablo.item;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.math.RandomXS128;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.ObjectIntMap;
+
+import com.riiablo.Riiablo;
+import com.riiablo.codec.excel.Excel;
+import com.riiablo.codec.excel.ItemEntry;
+import com.riiablo.codec.excel.ItemTypes;
+import com.riiablo.codec.excel.TreasureClassEx;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * TreasureClassEx.txt compiled into flat arrays. Each treasure class owns a
+ * contiguous run of slots, one per item or treasure class it may pick
+ * followed by one for NoDrop, and each run is laid out as a Walker/Vose alias
+ * table for every player count, s.t. a pick costs a single random number and
+ * two array reads regardless of how many slots the treasure class has.
+ *
+ * The automatic treasure classes (armo3, weap3, mele3, bow3, etc.) referenced
+ * by TreasureClassEx.txt are built from the item bases with a spawnable type
+ * whose level lies within the 3 levels the treasure class covers, weighted by
+ * the rarity of their type.
+ *
+ * Item bases are numbered armor first, then weapons, then misc, each in the
+ * order of its table.
+ *
+ * @see DropGenerator
+ */
+public class TreasureClasses {
+  private static final String TAG = "TreasureClasses";
+
+  public static final int MAX_PLAYERS = 8;
+
+  /** outcome of a slot which drops nothing */
+  static final int NO_DROP = -1;
+  /** set on the outcome of a slot which picks another treasure class */
+  static final int TC_FLAG = 1 << 30;
+  static final int TC_MASK = TC_FLAG - 1;
+
+  static final Pattern AUTO_TC = Pattern.compile("^(armo|weap|mele|bow)(\\d+)$");
+  static final int AUTO_TC_LEVELS = 3;
+
+  final ItemEntry[] bases;
+  final ObjectIntMap<String> baseIndexes;
+  /** end of the armor and weapon bases respectively */
+  final int armor, weapons;
+
+  final String[] names;
+  final ObjectIntMap<String> indexes;
+  final int[] groups;
+  final int[] levels;
+  final int[] picks;
+  /** unique, set, rare and magic quality ratios of each treasure class */
+  final int[] qualities;
+
+  /** first slot of each treasure class, the last slot of which is NoDrop */
+  final int[] slots;
+  final int[] outcomes;
+  /** Prob of each slot, or NoDrop for a single player */
+  final int[] weights;
+
+  /** indexed by player count - 1 */
+  final int[][] totals;
+  final int[][] thresholds;
+  final int[][] aliases;
+
+  public TreasureClasses() {
+    this(Riiablo.files.TreasureClassEx);
+  }
+
+  public TreasureClasses(TreasureClassEx treasureClasses) {
+    this(
+        toArray(ItemEntry.class, Riiablo.files.armor),
+        toArray(ItemEntry.class, Riiablo.files.weapons),
+        toArray(ItemEntry.class, Riiablo.files.misc),
+        toArray(TreasureClassEx.Entry.class, treasureClasses));
+  }
+
+  /**
+   * Compiles {@code treasureClasses} picking from the specified item bases.
+   * Automatic treasure classes additionally require {@link Riiablo#files}.
+   */
+  TreasureClasses(
+      ItemEntry[] armorBases,
+      ItemEntry[] weaponBases,
+      ItemEntry[] miscBases,
+      TreasureClassEx.Entry[] treasureClasses) {
+    Array<ItemEntry> bases = new Array<>(ItemEntry.class);
+    bases.addAll(armorBases);
+    armor = bases.size;
+    bases.addAll(weaponBases);
+    weapons = bases.size;
+    bases.addAll(miscBases);
+    this.bases = bases.toArray();
+    baseIndexes = new ObjectIntMap<>(this.bases.length);
+    for (int i = 0; i < this.bases.length; i++) {
+      if (!baseIndexes.containsKey(this.bases[i].code)) baseIndexes.put(this.bases[i].code, i);
+    }
+
+    Array<TreasureClassEx.Entry> entries = new Array<>(treasureClasses);
+    indexes = new ObjectIntMap<>(entries.size);
+    for (int i = 0; i < entries.size; i++) {
+      String name = entries.get(i).name;
+      if (name != null && !name.isEmpty() && !indexes.containsKey(name)) indexes.put(name, i);
+    }
+
+    // automatic treasure classes are appended in the order they are referenced
+    for (int i = 0, s = entries.size; i < s; i++) {
+      for (String item : entries.get(i).Item) {
+        String name = stripModifiers(item);
+        if (name.isEmpty() || indexes.containsKey(name) || baseIndexes.containsKey(name)) continue;
+        TreasureClassEx.Entry auto = createAuto(name);
+        if (auto == null) continue;
+        indexes.put(name, entries.size);
+        entries.add(auto);
+      }
+    }
+
+    final int size = entries.size;
+    names = new String[size];
+    groups = new int[size];
+    levels = new int[size];
+    picks = new int[size];
+    qualities = new int[size << 2];
+    slots = new int[size + 1];
+    IntArray outcomes = new IntArray();
+    IntArray weights = new IntArray();
+    for (int i = 0; i < size; i++) {
+      TreasureClassEx.Entry entry = entries.get(i);
+      names[i] = entry.name;
+      groups[i] = entry.group;
+      levels[i] = entry.level;
+      picks[i] = entry.Picks;
+      qualities[(i << 2)    ] = entry.Unique;
+      qualities[(i << 2) + 1] = entry.Set;
+      qualities[(i << 2) + 2] = entry.Rare;
+      qualities[(i << 2) + 3] = entry.Magic;
+      slots[i] = outcomes.size;
+      for (int j = 0; j < entry.Item.length; j++) {
+        String item = entry.Item[j];
+        int prob = entry.Prob[j];
+        if (item == null || item.isEmpty() || prob <= 0) continue;
+        int outcome = outcome(stripModifiers(item));
+        if (outcome == NO_DROP) {
+          Gdx.app.error(TAG, "Unknown item or treasure class in " + entry.name + ": " + item);
+          continue;
+        }
+
+        outcomes.add(outcome);
+        weights.add(prob);
+      }
+
+      outcomes.add(NO_DROP);
+      weights.add(entry.Picks > 0 ? Math.max(entry.NoDrop, 0) : 0);
+    }
+
+    slots[size] = outcomes.size;
+    this.outcomes = outcomes.toArray();
+    this.weights = weights.toArray();
+
+    totals = new int[MAX_PLAYERS][size];
+    thresholds = new int[MAX_PLAYERS][this.outcomes.length];
+    aliases = new int[MAX_PLAYERS][this.outcomes.length];
+    int maxSlots = 0;
+    for (int i = 0; i < size; i++) maxSlots = Math.max(maxSlots, slots[i + 1] - slots[i]);
+    final long[] scaled = new long[maxSlots];
+    final int[] small = new int[maxSlots];
+    final int[] large = new int[maxSlots];
+    for (int players = 1; players <= MAX_PLAYERS; players++) {
+      for (int i = 0; i < size; i++) {
+        final int start = slots[i];
+        final int noDrop = slots[i + 1] - 1;
+        long items = 0;
+        for (int slot = start; slot < noDrop; slot++) items += this.weights[slot];
+        long adjusted = noDrop(this.weights[noDrop], items, players);
+        long total = items + adjusted;
+        if (total > Integer.MAX_VALUE) {
+          throw new IllegalStateException("Treasure class " + names[i] + " has a total probability of " + total);
+        }
+
+        totals[players - 1][i] = (int) total;
+        build(this.weights, start, noDrop - start + 1, adjusted, total,
+            thresholds[players - 1], aliases[players - 1], scaled, small, large);
+      }
+    }
+  }
+
+  private static <T extends Excel.Entry> T[] toArray(Class<T> type, Excel<? extends T> excel) {
+    Array<T> array = new Array<>(type);
+    for (int i = 0, s = excel.size(); i < s; i++) {
+      T entry = excel.get(i);
+      if (entry != null) array.add(entry);
+    }
+
+    return array.toArray();
+  }
+
+  /**
+   * Strips the modifiers some items are given, e.g., {@code gld,mul=1280}.
+   */
+  static String stripModifiers(String item) {
+    if (item == null) return "";
+    int i = item.indexOf(',');
+    return i < 0 ? item : item.substring(0, i);
+  }
+
+  private int outcome(String name) {
+    int tc = indexes.get(name, -1);
+    if (tc >= 0) return TC_FLAG | tc;
+    return baseIndexes.get(name, NO_DROP);
+  }
+
+  private TreasureClassEx.Entry createAuto(String name) {
+    Matcher matcher = AUTO_TC.matcher(name);
+    if (!matcher.matches()) return null;
+    String category = matcher.group(1);
+    int level = Integer.parseInt(matcher.group(2));
+
+    IntArray candidates = new IntArray();
+    IntArray rarities = new IntArray();
+    final ItemTypes itemTypes = Riiablo.files.ItemTypes;
+    for (int i = 0; i < bases.length; i++) {
+      ItemEntry base = bases[i];
+      if (!base.spawnable || base.level <= level - AUTO_TC_LEVELS || base.level > level) continue;
+      ItemTypes.Entry type = base.type != null ? itemTypes.get(base.type) : null;
+      if (type == null || type.TreasureClass == 0) continue;
+      boolean weapon = armor <= i && i < weapons;
+      switch (category) {
+        case "armo": if (i >= armor) continue; break;
+        case "weap": if (!weapon) continue; break;
+        case "bow":  if (!weapon || !itemTypes.is(type, "miss")) continue; break;
+        case "mele": if (!weapon ||  itemTypes.is(type, "miss")) continue; break;
+        default: throw new AssertionError(category);
+      }
+
+      candidates.add(i);
+      rarities.add(Math.max(type.Rarity, 1));
+    }
+
+    TreasureClassEx.Entry auto = new TreasureClassEx.Entry();
+    auto.name = name;
+    auto.Picks = 1;
+    auto.Item = new String[candidates.size];
+    auto.Prob = new int[candidates.size];
+    for (int i = 0; i < candidates.size; i++) {
+      auto.Item[i] = bases[candidates.get(i)].code;
+      auto.Prob[i] = rarities.get(i);
+    }
+
+    return auto;
+  }
+
+  /**
+   * NoDrop adjusted for the number of players s.t. the chance of every pick
+   * being NoDrop is that of a single player raised to the number of players.
+   */
+  static long noDrop(int noDrop, long items, int players) {
+    if (noDrop <= 0 || items <= 0 || players <= 1) return noDrop;
+    return (long) (items / (Math.pow((noDrop + items) / (double) noDrop, players) - 1));
+  }
+
+  /**
+   * Builds the alias table of {@code count} slots starting at {@code start}
+   * using integer weights s.t. it is exact. Slot {@code i} is kept with
+   * probability {@code thresholds[i] / total}, otherwise {@code aliases[i]} is
+   * taken instead.
+   */
+  static void build(int[] weights, int start, int count, long noDrop, long total,
+      int[] thresholds, int[] aliases, long[] scaled, int[] small, int[] large) {
+    int numSmall = 0, numLarge = 0;
+    for (int i = 0; i < count; i++) {
+      final long weight = i == count - 1 ? noDrop : weights[start + i];
+      scaled[i] = weight * count;
+      aliases[start + i] = start + i;
+      if (scaled[i] < total) {
+        small[numSmall++] = i;
+      } else {
+        large[numLarge++] = i;
+      }
+    }
+
+    while (numSmall > 0 && numLarge > 0) {
+      final int l = small[--numSmall];
+      final int g = large[--numLarge];
+      thresholds[start + l] = (int) scaled[l];
+      aliases[start + l] = start + g;
+      scaled[g] -= total - scaled[l];
+      if (scaled[g] < total) {
+        small[numSmall++] = g;
+      } else {
+        large[numLarge++] = g;
+      }
+    }
+
+    while (numLarge > 0) thresholds[start + large[--numLarge]] = (int) total;
+    while (numSmall > 0) thresholds[start + small[--numSmall]] = (int) total;
+  }
+
+  /**
+   * Picks a slot of {@code tc} from its alias table.
+   *
+   * @return slot picked, or {@code -1} if {@code tc} has nothing to pick
+   */
+  int pick(int tc, int players, RandomXS128 random) {
+    final int total = totals[players - 1][tc];
+    if (total <= 0) return -1;
+    final int start = slots[tc];
+    final int count = slots[tc + 1] - start;
+    final long r = random.nextLong();
+    final int slot = start + (int) (((r >>> 32) * count) >>> 32);
+    final int u = (int) (((r & 0xFFFFFFFFL) * total) >>> 32);
+    return u < thresholds[players - 1][slot] ? slot : aliases[players - 1][slot];
+  }
+
+  public int size() {
+    return names.length;
+  }
+
+  /**
+   * @return index of the treasure class named {@code name}, or {@code -1}
+   */
+  public int index(String name) {
+    return indexes.get(name, -1);
+  }
+
+  public String name(int tc) {
+    return names[tc];
+  }
+
+  public int picks(int tc) {
+    return picks[tc];
+  }
+
+  public int level(int tc) {
+    return levels[tc];
+  }
+
+  /**
+   * Upgrades {@code tc} to the highest level treasure class within its group
+   * which a monster of level {@code mlvl} may drop from.
+   */
+  public int upgrade(int tc, int mlvl) {
+    final int group = groups[tc];
+    if (group == 0) return tc;
+    int upgrade = tc;
+    for (int i = 0; i < names.length; i++) {
+      if (groups[i] == group && levels[i] <= mlvl && levels[i] > levels[upgrade]) upgrade = i;
+    }
+
+    return upgrade;
+  }
+
+  /**
+   * @return chance out of the total probability of {@code tc} that a pick
+   *         drops nothing with {@code players} players
+   */
+  public float noDropChance(int tc, int players) {
+    final int noDrop = slots[tc + 1] - 1;
+    final int total = totals[players - 1][tc];
+    if (total <= 0) return 1;
+    long items = 0;
+    for (int slot = slots[tc]; slot < noDrop; slot++) items += weights[slot];
+    return (float) noDrop(weights[noDrop], items, players) / total;
+  }
+
+  public int numBases() {
+    return bases.length;
+  }
+
+  public ItemEntry base(int base) {
+    return bases[base];
+  }
+
+  /**
+   * @return index of the item base with {@code code}, or {@code -1}
+   */
+  public int baseIndex(String code) {
+    return baseIndexes.get(code, -1);
+  }
+}
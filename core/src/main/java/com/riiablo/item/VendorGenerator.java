@@ -4,7 +4,7 @@ import java.lang.reflect.Field;
 
 import net.mostlyoriginal.api.system.core.PassiveSystem;
 
-import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.RandomXS128;
 import com.badlogic.gdx.utils.Array;
 
 import com.riiablo.Riiablo;
@@ -25,10 +25,11 @@ public class VendorGenerator extends PassiveSystem {
   public void generate(String vendor, Array<Item> items, Excel<? extends ItemEntry> excel) throws Exception {
     Class<? extends ItemEntry> entryClass = excel.getEntryClass();
     Field field = entryClass.getField(vendor);
+    RandomXS128 random = generator.random();
     for (ItemEntry base : excel) {
       int[] vendorData = (int[]) field.get(base);
       if (vendorData[1] > 0) {
-        int count = base.PermStoreItem ? 1 : MathUtils.random(vendorData[0], vendorData[1]);
+        int count = base.PermStoreItem ? 1 : vendorData[0] + random.nextInt(vendorData[1] - vendorData[0] + 1);
         for (int i = 0; i < count; i++) {
           Item item = generator.generate(base);
           item.flags2 |= Item.ITEMFLAG2_INSTORE;
@@ -37,7 +38,7 @@ public class VendorGenerator extends PassiveSystem {
         }
       }
       if (vendorData[3] > 0 && vendorData[4] != 0xFF) {
-        int count = base.PermStoreItem ? 1 : MathUtils.random(vendorData[2], vendorData[3]);
+        int count = base.PermStoreItem ? 1 : vendorData[2] + random.nextInt(vendorData[3] - vendorData[2] + 1);
         for (int i = 0; i < count; i++) {
           Item item = generator.generate(base);
           item.flags |= Item.ITEMFLAG2_INSTORE;
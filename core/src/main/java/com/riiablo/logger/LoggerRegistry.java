@@ -96,6 +96,17 @@ public class LoggerRegistry {
     }
   }
 
+  /**
+   * Sets the appender of the root logger and of every logger which was
+   * created with the previous root appender.
+   */
+  public void setRootAppender(Appender appender) {
+    final Appender previous = ROOT_LOGGER.appender();
+    for (Logger logger : loggers.values()) {
+      if (logger.appender() == previous) logger.addAppender(appender);
+    }
+  }
+
   public Trie<String, Level> getContexts() {
     return TrieUtils.unmodifiableTrie(contexts);
   }
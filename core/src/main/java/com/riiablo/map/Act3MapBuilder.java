@@ -1,7 +1,6 @@
 package com.riiablo.map;
 
 import com.badlogic.gdx.Gdx;
-import com.badlogic.gdx.math.MathUtils;
 import com.riiablo.Riiablo;
 import com.riiablo.codec.excel.Levels;
 import com.riiablo.codec.excel.LvlPrest;
@@ -24,7 +23,7 @@ public enum Act3MapBuilder implements MapBuilder {
 
     int fileId[] = new int[6];
     int numFiles = Preset.getPresets(preset, fileId);
-    int select = MathUtils.random(numFiles - 1);
+    int select = map.random.random(numFiles - 1);
     String fileName = preset.File[select];
     if (DEBUG_BUILD) Gdx.app.debug(TAG, "Select " + fileName);
 
@@ -1,16 +1,22 @@
 package com.riiablo.map;
 
-import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.IntIntMap;
 import com.badlogic.gdx.utils.IntMap;
 import com.badlogic.gdx.utils.ObjectSet;
 
+import com.riiablo.map2.random.Random;
+
 public class DT1s {
   // TODO: tiles and prob are both keyed with tile ID, can speed up if using one map to Pair<prob, tiles>
   ObjectSet<DT1>          dt1s  = new ObjectSet<>();
   IntMap<Array<DT1.Tile>> tiles = new IntMap<>();
   IntIntMap               prob  = new IntIntMap();
+  final Random            random;
+
+  DT1s(Random random) {
+    this.random = random;
+  }
 
   void add(DT1.Tile tile) {
     //if (tile.rarity == 0) return;
@@ -59,7 +65,7 @@ public class DT1s {
   private DT1.Tile next(int id, Array<DT1.Tile> tiles) {
     if (tiles == null) return null;
     int sum = prob.get(id, 0);
-    int random = sum == 0 ? 0 : MathUtils.random(sum - 1);
+    int random = sum == 0 ? 0 : this.random.random(sum - 1);
     for (DT1.Tile tile : tiles) {
       random -= tile.rarity;
       if (random <= 0) {
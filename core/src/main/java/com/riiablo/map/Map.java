@@ -1,9 +1,12 @@
 package com.riiablo.map;
 
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 
 import com.artemis.ComponentMapper;
+import com.artemis.annotations.Wire;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.ai.pfa.GraphPath;
@@ -14,6 +17,7 @@ import com.badlogic.gdx.assets.AssetDescriptor;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.net.Socket;
 import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Bits;
 import com.badlogic.gdx.utils.Disposable;
@@ -34,6 +38,8 @@ import com.riiablo.engine.EntityFactory;
 import com.riiablo.engine.server.component.Warp;
 import com.riiablo.map.pfa.AStarPathFinder;
 import com.riiablo.map.pfa.Point2;
+import com.riiablo.map2.random.Random;
+import com.riiablo.map2.util.ZoneIndex;
 
 public class Map implements Disposable {
   private static final String TAG = "Map";
@@ -321,12 +327,25 @@ public class Map implements Disposable {
   final int diff;
   int act = -1;
 
+  /**
+   * Source of randomness for everything generated within this map, which is
+   * reseeded with {@link #seed} when an act is generated s.t. maps with the
+   * same seed generate identically regardless of which thread they are
+   * generated on.
+   */
+  final Random random = new Random();
+
   final IntMap<DT1s> dt1s = new IntMap<>();
-  final Array<Zone> zones = new Array<>(); // TODO: replace with R-tree? https://en.wikipedia.org/wiki/R-tree
+  final Array<Zone> zones = new Array<>();
+  /** rebuilt whenever a zone is added or moved */
+  final ZoneIndex<Zone> zoneIndex = new ZoneIndex<>();
 
   ComponentMapper<Warp> mWarp;
   EntityFactory factory;
 
+  @Wire(name = "client.socket", failOnNull = false)
+  Socket socket;
+
   public Map(int seed, int diff) {
     this.seed = seed;
     this.diff = diff;
@@ -336,10 +355,15 @@ public class Map implements Disposable {
     return act;
   }
 
+  public Random random() {
+    return random;
+  }
+
   public void setAct(int act) {
     if (this.act != act) {
       this.act = act;
       dispose();
+      Riiablo.cofs.active = getCofs(act);
       generate(act);
       // trigger load screen...
     }
@@ -369,6 +393,7 @@ public class Map implements Disposable {
   public void dispose() {
     for (Zone zone : zones) Zone.free(zone);
     zones.clear();
+    zoneIndex.clear();
     for (DT1s dt1s : this.dt1s.values()) dt1s.clear();
     dt1s.clear();
     mapGraph.clear();
@@ -380,9 +405,13 @@ public class Map implements Disposable {
     return dependencies;
   }
 
+  /**
+   * Generates the layout of {@code act}. Generation only reads shared excel
+   * data and draws from {@link #random}, so different maps may generate
+   * concurrently.
+   */
   public void generate(int act) {
-    MathUtils.random.setSeed(seed);
-    Riiablo.cofs.active = updateCofs(act);
+    random.setSeed(seed);
     switch (act) {
       case 0: Act1MapBuilder.INSTANCE.generate(this, seed, diff); break;
       case 1: Act2MapBuilder.INSTANCE.generate(this, seed, diff); break;
@@ -392,7 +421,47 @@ public class Map implements Disposable {
     }
   }
 
-  private COFD2 updateCofs(int act) {
+  /**
+   * Generates the layout of every act into its own map, each on
+   * {@code pool}. Produces the same maps as generating each act serially.
+   */
+  public static Map[] generateActs(int seed, int diff, ForkJoinPool pool) {
+    final Map[] maps = new Map[Riiablo.NUM_ACTS];
+    final ActGenerator[] tasks = new ActGenerator[Riiablo.NUM_ACTS];
+    for (int act = 0; act < Riiablo.NUM_ACTS; act++) {
+      maps[act] = new Map(seed, diff);
+      tasks[act] = new ActGenerator(maps[act], act);
+    }
+
+    pool.invoke(new RecursiveAction() {
+      @Override
+      protected void compute() {
+        invokeAll(tasks);
+      }
+    });
+
+    return maps;
+  }
+
+  static final class ActGenerator extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    final Map map;
+    final int act;
+
+    ActGenerator(Map map, int act) {
+      this.map = map;
+      this.act = act;
+    }
+
+    @Override
+    protected void compute() {
+      map.act = act;
+      map.generate(act);
+    }
+  }
+
+  public static COFD2 getCofs(int act) {
     switch (act) {
       case 0:  return Riiablo.cofs.cmncof_a1;
       case 1:  return Riiablo.cofs.cmncof_a2;
@@ -519,8 +588,12 @@ public class Map implements Disposable {
   }
 
   public Zone getZone(int x, int y) {
-    for (Zone zone : zones) if (zone.contains(x, y)) return zone;
-    return null;
+    return zoneIndex.get(x, y);
+  }
+
+  void indexZones() {
+    zoneIndex.clear();
+    for (Zone zone : zones) zoneIndex.add(zone, zone.x, zone.y, zone.width, zone.height);
   }
 
   public Zone findZone(Levels.Entry level) {
@@ -539,6 +612,7 @@ public class Map implements Disposable {
     Zone zone = Zone.obtain(this, level, diff, gridSizeX, gridSizeY);
     if (DEBUG_ZONES) Gdx.app.debug(TAG, zone.toString());
     zones.add(zone);
+    indexZones();
     return zone;
   }
 
@@ -546,9 +620,14 @@ public class Map implements Disposable {
     Zone zone = Zone.obtain(this, level, diff, gridSizeX, gridSizeY, gridsX, gridsY);
     if (DEBUG_ZONES) Gdx.app.debug(TAG, zone.toString());
     zones.add(zone);
+    indexZones();
     return zone;
   }
 
+  /**
+   * Zones and their arrays are pooled across maps, which may be generated on
+   * different threads, so the pools are accessed while holding their locks.
+   */
   public static class Zone implements Pool.Poolable, Disposable {
     static final int[] sizes = {80 * 80, 200 * 200};
     @SuppressWarnings("unchecked")
@@ -563,7 +642,10 @@ public class Map implements Disposable {
     static DT1.Tile[] obtainTileArray(int size) {
       for (int i = 0; i < sizes.length; i++) {
         if (size <= sizes[i]) {
-          DT1.Tile[] tiles = tilePools[i].obtain();
+          final DT1.Tile[] tiles;
+          synchronized (tilePools[i]) {
+            tiles = tilePools[i].obtain();
+          }
           Arrays.fill(tiles, 0, size, null);
           return tiles;
         }
@@ -576,7 +658,9 @@ public class Map implements Disposable {
       if (layer == null) return;
       for (int i = 0; i < sizes.length; i++) {
         if (layer.length <= sizes[i]) {
-          tilePools[i].free(layer);
+          synchronized (tilePools[i]) {
+            tilePools[i].free(layer);
+          }
           return;
         }
       }
@@ -585,7 +669,10 @@ public class Map implements Disposable {
     static byte[] obtainByteArray(int size) {
       for (int i = 0; i < sizes.length; i++) {
         if (size <= sizes[i] * DT1.Tile.NUM_SUBTILES) {
-          byte[] bytes = bytePools[i].obtain();
+          final byte[] bytes;
+          synchronized (bytePools[i]) {
+            bytes = bytePools[i].obtain();
+          }
           Arrays.fill(bytes, 0, size, (byte) 0);
           return bytes;
         }
@@ -597,7 +684,9 @@ public class Map implements Disposable {
     static void free(byte[] b) {
       for (int i = 0; i < sizes.length; i++) {
         if (b.length <= sizes[i] * DT1.Tile.NUM_SUBTILES) {
-          bytePools[i].free(b);
+          synchronized (bytePools[i]) {
+            bytePools[i].free(b);
+          }
           return;
         }
       }
@@ -641,17 +730,25 @@ public class Map implements Disposable {
 
     static final Pool<Zone> pool = Pools.get(Zone.class, 16);
 
+    static Zone obtain() {
+      synchronized (pool) {
+        return pool.obtain();
+      }
+    }
+
     static Zone obtain(Map map, Levels.Entry level, int diff, int gridSizeX, int gridSizeY) {
-      return pool.obtain().set(map, level, diff, gridSizeX, gridSizeY);
+      return obtain().set(map, level, diff, gridSizeX, gridSizeY);
     }
 
     static Zone obtain(Map map, Levels.Entry level, int diff, int gridSizeX, int gridSizeY, int gridsX, int gridsY) {
-      return pool.obtain().set(map, level, diff, gridSizeX, gridSizeY, gridsX, gridsY);
+      return obtain().set(map, level, diff, gridSizeX, gridSizeY, gridsX, gridsY);
     }
 
     static void free(Zone zone) {
       zone.dispose();
-      pool.free(zone);
+      synchronized (pool) {
+        pool.free(zone);
+      }
     }
 
     private Zone setInternal(Map map, Levels.Entry level, int diff, int gridSizeX, int gridSizeY) {
@@ -750,6 +847,7 @@ public class Map implements Disposable {
       this.y = y;
       tx = x / DT1.Tile.SUBTILE_SIZE;
       ty = y / DT1.Tile.SUBTILE_SIZE;
+      map.indexZones();
     }
 
     public boolean isTown() {
@@ -863,7 +961,7 @@ public class Map implements Disposable {
     void finishLoading() {
       int type = this.type.Id;
       DT1s dt1s = map.dt1s.get(type);
-      if (dt1s == null) map.dt1s.put(type, dt1s = new DT1s());
+      if (dt1s == null) map.dt1s.put(type, dt1s = new DT1s(map.random));
       for (AssetDescriptor asset : getDependencies()) {
         Riiablo.assets.finishLoadingAsset(asset);
         if (asset.type == DT1.class) {
@@ -0,0 +1,299 @@
+package com.riiablo.map.pfa;
+
+import com.badlogic.gdx.ai.pfa.GraphPath;
+import com.badlogic.gdx.ai.pfa.SmoothableGraphPath;
+import com.badlogic.gdx.ai.utils.Collision;
+import com.badlogic.gdx.ai.utils.Ray;
+import com.badlogic.gdx.math.Vector2;
+import com.riiablo.map.Map;
+import com.riiablo.map.MapGraph;
+
+import java.util.Arrays;
+
+/**
+ * A* search over the sub-tiles of a {@link Map} which keeps all of its state
+ * in primitive arrays indexed by sub-tile. The arrays cover a window centered
+ * on the start of the search which is large enough to hold any sub-tile a
+ * search may reach before giving up, and are reused by every search, so
+ * searching allocates nothing besides the nodes of the path found.
+ *
+ * Finds the same paths as {@link AStarPathFinder} searching a {@link MapGraph},
+ * but only reads the map, so any number of searches may run on the same map
+ * concurrently so long as each thread uses its own instance.
+ */
+public class PathSearch {
+  /** nodes expanded before a search gives up, same as {@link AStarPathFinder} */
+  public static final int MAX_EXPANDED = 301;
+
+  /** sub-tiles further than this from the start cannot be reached */
+  static final int RADIUS = MAX_EXPANDED + 1;
+  static final int SIZE   = (RADIUS << 1) + 1;
+  static final int CELLS  = SIZE * SIZE;
+  static final int START  = RADIUS * SIZE + RADIUS;
+
+  static final float DIAGONAL_COST = (float) Math.sqrt(2);
+
+  /** neighbor offsets, in the order {@link MapGraph#getNeighbors} visits them */
+  static final int[] NEIGHBOR_X = {-1,  0, 0, 1, -1, -1,  1, 1};
+  static final int[] NEIGHBOR_Y = { 0, -1, 1, 0, -1,  1, -1, 1};
+  static final int[] NEIGHBOR_OFFSET = new int[NEIGHBOR_X.length];
+  static {
+    for (int i = 0; i < NEIGHBOR_OFFSET.length; i++) {
+      NEIGHBOR_OFFSET[i] = NEIGHBOR_Y[i] * SIZE + NEIGHBOR_X[i];
+    }
+  }
+
+  static final byte UNVISITED = 0;
+  static final byte OPEN      = 1;
+  static final byte CLOSED    = 2;
+
+  static final byte NO_PARENT = -1;
+
+  /** clearance has not been looked up yet */
+  static final byte UNKNOWN  = -1;
+  /** sub-tile is walkable, but its clearance has not been computed yet */
+  static final byte WALKABLE = -2;
+
+  /** cells with a different search id have not been touched by this search */
+  final int[] searchIds = new int[CELLS];
+  final byte[] categories = new byte[CELLS];
+  /** index into {@link #NEIGHBOR_OFFSET} of the parent, s.t. parent = cell - offset */
+  final byte[] parents = new byte[CELLS];
+  final byte[] clearances = new byte[CELLS];
+  final float[] g = new float[CELLS];
+  final float[] f = new float[CELLS];
+  final short[] heapIndexes = new short[CELLS];
+
+  int[] heap = new int[64];
+  int heapSize;
+
+  int searchId;
+  Map map;
+  int x0, y0;
+
+  final RaycastCollisionDetector raycaster = new RaycastCollisionDetector();
+  final PathSmoother<Point2> smoother = new PathSmoother<>(raycaster);
+
+  /**
+   * @see MapGraph#searchNodePath(PathFinder, Vector2, Vector2, int, int, GraphPath)
+   */
+  public boolean search(Map map, Vector2 src, Vector2 dst, int flags, int size, GraphPath<Point2> outPath) {
+    outPath.clear();
+    if (dst == null) return false;
+    if (map.flags(dst) != 0) return false;
+    return search(map,
+        Map.round(src.x), Map.round(src.y),
+        Map.round(dst.x), Map.round(dst.y),
+        flags, size, outPath);
+  }
+
+  public boolean search(Map map, int srcX, int srcY, int dstX, int dstY, int flags, int size, GraphPath<Point2> outPath) {
+    if (Math.abs(dstX - srcX) >= MAX_EXPANDED || Math.abs(dstY - srcY) >= MAX_EXPANDED) return false;
+    initSearch(map, srcX, srcY);
+    final int end = START + (dstY - srcY) * SIZE + (dstX - srcX);
+    g[START] = 0f;
+    parents[START] = NO_PARENT;
+    add(START, Vector2.dst(srcX, srcY, dstX, dstY));
+
+    int expanded = 0;
+    do {
+      final int current = pop();
+      categories[current] = CLOSED;
+      if (current == end) {
+        generateNodePath(end, outPath);
+        return true;
+      }
+
+      visitChildren(current, dstX, dstY, size);
+    } while (heapSize > 0 && ++expanded < MAX_EXPANDED);
+    return false;
+  }
+
+  void initSearch(Map map, int srcX, int srcY) {
+    this.map = map;
+    if (++searchId <= 0) {
+      Arrays.fill(searchIds, 0);
+      searchId = 1;
+    }
+
+    x0 = srcX - RADIUS;
+    y0 = srcY - RADIUS;
+    heapSize = 0;
+    touch(START);
+  }
+
+  void visitChildren(int current, int dstX, int dstY, int size) {
+    final int cx = current % SIZE;
+    final int cy = current / SIZE;
+    final float currentG = g[current];
+    for (int i = 0; i < NEIGHBOR_OFFSET.length; i++) {
+      final int nx = cx + NEIGHBOR_X[i];
+      final int ny = cy + NEIGHBOR_Y[i];
+      if (nx < 0 || ny < 0 || nx >= SIZE || ny >= SIZE) continue;
+      final int neighbor = current + NEIGHBOR_OFFSET[i];
+      final int x = x0 + nx;
+      final int y = y0 + ny;
+      touch(neighbor);
+      if (!isWalkable(neighbor, x, y)) continue;
+      if (size > 0 && clearance(neighbor, x, y) < size) continue;
+      final float cost = NEIGHBOR_X[i] != 0 && NEIGHBOR_Y[i] != 0 ? DIAGONAL_COST : 1;
+      final float neighborG = currentG + cost;
+
+      final float h;
+      switch (categories[neighbor]) {
+        case UNVISITED:
+          h = Vector2.dst(x, y, dstX, dstY);
+          break;
+        case OPEN:
+          if (g[neighbor] <= neighborG) continue;
+          remove(neighbor);
+          h = f[neighbor] - g[neighbor];
+          break;
+        case CLOSED:
+          if (g[neighbor] <= neighborG) continue;
+          h = f[neighbor] - g[neighbor];
+          break;
+        default:
+          throw new AssertionError("Invalid category: " + categories[neighbor]);
+      }
+
+      g[neighbor] = neighborG;
+      parents[neighbor] = (byte) i;
+      add(neighbor, neighborG + h);
+    }
+  }
+
+  void generateNodePath(int end, GraphPath<Point2> outPath) {
+    for (int cell = end; parents[cell] != NO_PARENT; cell -= NEIGHBOR_OFFSET[parents[cell]]) {
+      outPath.add(new Point2(x0 + cell % SIZE, y0 + cell / SIZE));
+    }
+
+    outPath.add(new Point2(x0 + RADIUS, y0 + RADIUS));
+    outPath.reverse();
+  }
+
+  void touch(int cell) {
+    if (searchIds[cell] != searchId) {
+      searchIds[cell] = searchId;
+      categories[cell] = UNVISITED;
+      clearances[cell] = UNKNOWN;
+    }
+  }
+
+  boolean isWalkable(int cell, int x, int y) {
+    byte clearance = clearances[cell];
+    if (clearance == UNKNOWN) {
+      clearances[cell] = clearance = map.flags(x, y) == 0 ? WALKABLE : 0;
+    }
+
+    return clearance != 0;
+  }
+
+  int clearance(int cell, int x, int y) {
+    byte clearance = clearances[cell];
+    if (clearance < 0) clearances[cell] = clearance = Point2.clearance(map, x, y);
+    return clearance;
+  }
+
+  /**
+   * @see MapGraph#smoothPath(int, int, SmoothableGraphPath)
+   */
+  public void smoothPath(Map map, int flags, int size, SmoothableGraphPath<Point2, Vector2> path) {
+    raycaster.set(map);
+    smoother.smoothPath(flags, size, path);
+  }
+
+  /**
+   * @see Map#castRay(Ray, int, int, Collision)
+   */
+  public boolean castRay(Map map, Ray<Vector2> ray, int flags, int size, Collision<Vector2> dst) {
+    return raycaster.set(map).findCollision(ray, flags, size, dst);
+  }
+
+  /*
+   * Binary min-heap of cells ordered by f, which mirrors
+   * com.badlogic.gdx.utils.BinaryHeap s.t. ties are broken the same way.
+   */
+
+  void add(int cell, float value) {
+    if (heapSize == heap.length) heap = Arrays.copyOf(heap, heapSize << 1);
+    f[cell] = value;
+    heap[heapSize] = cell;
+    heapIndexes[cell] = (short) heapSize;
+    up(heapSize++);
+    categories[cell] = OPEN;
+  }
+
+  int pop() {
+    final int popped = heap[0];
+    if (--heapSize > 0) {
+      heap[0] = heap[heapSize];
+      down(0);
+    }
+
+    return popped;
+  }
+
+  void remove(int cell) {
+    final int index = heapIndexes[cell];
+    if (--heapSize > index) {
+      final int moved = heap[heapSize];
+      heap[index] = moved;
+      if (f[moved] < f[cell]) {
+        up(index);
+      } else {
+        down(index);
+      }
+    }
+  }
+
+  void up(int index) {
+    final int[] heap = this.heap;
+    final int cell = heap[index];
+    final float value = f[cell];
+    while (index > 0) {
+      final int parentIndex = (index - 1) >> 1;
+      final int parent = heap[parentIndex];
+      if (value < f[parent]) {
+        heap[index] = parent;
+        heapIndexes[parent] = (short) index;
+        index = parentIndex;
+      } else {
+        break;
+      }
+    }
+
+    heap[index] = cell;
+    heapIndexes[cell] = (short) index;
+  }
+
+  void down(int index) {
+    final int[] heap = this.heap;
+    final int size = heapSize;
+    final int cell = heap[index];
+    final float value = f[cell];
+    while (true) {
+      final int leftIndex = 1 + (index << 1);
+      if (leftIndex >= size) break;
+      final int rightIndex = leftIndex + 1;
+      final int left = heap[leftIndex];
+      final float leftValue = f[left];
+      final float rightValue = rightIndex < size ? f[heap[rightIndex]] : Float.MAX_VALUE;
+      if (leftValue < rightValue) {
+        if (leftValue == value || leftValue > value) break;
+        heap[index] = left;
+        heapIndexes[left] = (short) index;
+        index = leftIndex;
+      } else {
+        if (rightValue == value || rightValue > value) break;
+        final int right = heap[rightIndex];
+        heap[index] = right;
+        heapIndexes[right] = (short) index;
+        index = rightIndex;
+      }
+    }
+
+    heap[index] = cell;
+    heapIndexes[cell] = (short) index;
+  }
+}
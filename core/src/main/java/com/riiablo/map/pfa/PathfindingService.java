@@ -0,0 +1,203 @@
+package com.riiablo.map.pfa;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.ai.utils.Collision;
+import com.badlogic.gdx.ai.utils.Ray;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.Pool;
+import com.riiablo.map.Map;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Searches batches of path requests in parallel on a pool of worker threads,
+ * each of which searches with its own {@link PathSearch}. Searches only read
+ * the map, so a single service may be shared by every game within the JVM.
+ *
+ * Each thread which searches keeps a {@link PathSearch} for as long as it
+ * lives, which are several MB each, so the number of threads should be kept
+ * to what the searches need. A service with no threads searches on the thread
+ * which submits the batch.
+ */
+public class PathfindingService implements Disposable {
+  private static final String TAG = "PathfindingService";
+
+  final ExecutorService executor;
+  final int parallelism;
+
+  final ThreadLocal<PathSearch> searches = new ThreadLocal<PathSearch>() {
+    @Override
+    protected PathSearch initialValue() {
+      return new PathSearch();
+    }
+  };
+
+  public PathfindingService() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  public PathfindingService(int threads) {
+    parallelism = threads;
+    executor = threads > 0 ? Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      final AtomicInteger id = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "Pathfinder-" + id.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+      }
+    }) : null;
+  }
+
+  @Override
+  public void dispose() {
+    if (executor != null) executor.shutdownNow();
+  }
+
+  /**
+   * Searches {@code requests} on {@code map}. {@code requests} must not be
+   * modified until the returned batch is {@link Batch#isDone() done}, and
+   * {@code map} should not have zones added or removed until then.
+   */
+  public Batch submit(Map map, Array<Request> requests) {
+    final Batch batch = new Batch(map, requests, executor != null ? Math.min(parallelism, requests.size) : 0);
+    if (executor == null) {
+      batch.run();
+    } else {
+      for (long i = batch.remaining.getCount(); i > 0; i--) executor.execute(batch);
+    }
+
+    return batch;
+  }
+
+  public final class Batch implements Runnable {
+    final Map map;
+    final Array<Request> requests;
+    final AtomicInteger next = new AtomicInteger();
+    final CountDownLatch remaining;
+
+    Batch(Map map, Array<Request> requests, int tasks) {
+      this.map = map;
+      this.requests = requests;
+      this.remaining = new CountDownLatch(tasks);
+    }
+
+    @Override
+    public void run() {
+      final PathSearch search = searches.get();
+      try {
+        for (int i; (i = next.getAndIncrement()) < requests.size;) {
+          final Request request = requests.get(i);
+          try {
+            request.search(map, search);
+          } catch (Throwable t) {
+            Gdx.app.error(TAG, "Failed to search " + request, t);
+            request.status = Status.NOT_FOUND;
+          }
+        }
+      } finally {
+        remaining.countDown();
+      }
+    }
+
+    public boolean isDone() {
+      return remaining.getCount() == 0;
+    }
+
+    /**
+     * Blocks until every request in this batch has been searched.
+     */
+    public void await() {
+      boolean interrupted = false;
+      while (true) {
+        try {
+          remaining.await();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+
+      if (interrupted) Thread.currentThread().interrupt();
+    }
+  }
+
+  public enum Status {
+    PENDING,
+    /** {@link Request#path} leads to the target, or towards it if raycasting */
+    FOUND,
+    NOT_FOUND,
+    /** no path was found, but the target can be moved towards directly */
+    BLOCKED
+  }
+
+  /**
+   * Path search from {@link #src} to {@link #dst}. When raycasting and no path
+   * to {@code dst} is found, searches up to where a ray towards {@code dst}
+   * collides instead, same as {@code engine.server.Pathfinder} would.
+   */
+  public static class Request implements Pool.Poolable {
+    public int id;
+    public final Vector2 src = new Vector2();
+    public final Vector2 dst = new Vector2();
+    public int flags;
+    public int size;
+    public boolean raycast;
+
+    public Status status = Status.PENDING;
+    public GraphPath path = new GraphPath();
+
+    final Ray<Vector2> ray = new Ray<>(new Vector2(), new Vector2());
+    final Collision<Vector2> collision = new Collision<>(new Vector2(), new Vector2());
+
+    public Request set(int id, Vector2 src, Vector2 dst, int flags, int size, boolean raycast) {
+      this.id = id;
+      this.src.set(src);
+      this.dst.set(dst);
+      this.flags = flags;
+      this.size = size;
+      this.raycast = raycast;
+      status = Status.PENDING;
+      if (path == null) path = new GraphPath();
+      return this;
+    }
+
+    void search(Map map, PathSearch search) {
+      if (search(map, search, dst)) {
+        status = Status.FOUND;
+      } else if (!raycast) {
+        status = Status.NOT_FOUND;
+      } else if (!search.castRay(map, ray.set(src, dst), flags, size, collision)) {
+        status = Status.NOT_FOUND;
+      } else if (search(map, search, collision.point) && path.getCount() > 1) {
+        status = Status.FOUND;
+      } else {
+        status = Status.BLOCKED;
+      }
+    }
+
+    boolean search(Map map, PathSearch search, Vector2 dst) {
+      boolean success = search.search(map, src, dst, flags, size, path);
+      if (success) search.smoothPath(map, flags, size, path);
+      return success;
+    }
+
+    @Override
+    public void reset() {
+      status = Status.PENDING;
+      if (path != null) path.clear();
+    }
+
+    @Override
+    public String toString() {
+      return id + ": " + src + " -> " + dst;
+    }
+  }
+}
@@ -119,6 +119,14 @@ public class Point2 extends BinaryHeap.Node implements Pool.Poolable {
   };
 
   public void updateClearance(Map map, int flags) {
+    clearance = clearance(map, x, y);
+  }
+
+  /**
+   * @return number of rings around the sub-tile at {@code (x, y)} which are
+   *         walkable, i.e., {@code 0} if the sub-tile itself is not walkable
+   */
+  public static byte clearance(Map map, int x, int y) {
     byte i;
 size:
     for (i = 0; i < NEAR.length; i++) {
@@ -129,7 +137,7 @@ size:
       }
     }
 
-    clearance = i;
+    return i;
   }
 
   @Override
@@ -21,6 +21,23 @@ public class RaycastCollisionDetector {
     this.graph = graph;
   }
 
+  /**
+   * Creates a detector without a graph, which computes clearance as needed
+   * instead of caching it, and can be {@link #set(Map) set} to any map.
+   */
+  RaycastCollisionDetector() {}
+
+  RaycastCollisionDetector set(Map map) {
+    this.map = map;
+    return this;
+  }
+
+  int clearance(Vector2 sample) {
+    return graph != null
+        ? graph.getOrCreate(sample).clearance
+        : Point2.clearance(map, Map.round(sample.x), Map.round(sample.y));
+  }
+
   public boolean collides(Ray<Vector2> ray, int flags, int size) {
     Vector2 start = ray.start;
     Vector2 end = ray.end;
@@ -47,7 +64,7 @@ public class RaycastCollisionDetector {
     delta.set(end).sub(start).setLength(DELTA);
     float add = delta.len();
     for (float curDist = 0, maxDist = start.dst(end); curDist < maxDist; curDist += add, last.set(sample), sample.add(delta)) {
-      if (map.flags(sample) != 0 || graph.getOrCreate(sample).clearance < size) {
+      if (map.flags(sample) != 0 || clearance(sample) < size) {
         return true;
       }
     }
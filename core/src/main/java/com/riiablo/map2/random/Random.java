@@ -1,5 +1,6 @@
 package com.riiablo.map2.random;
 
+import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.RandomXS128;
 
 public class Random extends RandomXS128 {
@@ -12,4 +13,24 @@ public class Random extends RandomXS128 {
   public void seed(Seed seed) {
     super.setState(seed.seed0, seed.seed1);
   }
+
+  /** @see MathUtils#random(int) */
+  public int random(int range) {
+    return nextInt(range + 1);
+  }
+
+  /** @see MathUtils#random(int, int) */
+  public int random(int start, int end) {
+    return start + nextInt(end - start + 1);
+  }
+
+  /** @see MathUtils#random(float, float) */
+  public float random(float start, float end) {
+    return start + nextFloat() * (end - start);
+  }
+
+  /** @see MathUtils#randomBoolean(float) */
+  public boolean randomBoolean(float chance) {
+    return nextFloat() < chance;
+  }
 }
@@ -23,6 +23,7 @@ public class ZoneGraph implements Disposable {
   DebugMode mode = UNSET;
 
   final Array<Node> nodes = new Array<>();
+  final ZoneIndex<Zone> index = new ZoneIndex<>();
 
   static class Node implements Disposable {
     static Node wrap(Zone element) {
@@ -49,17 +50,14 @@ public class ZoneGraph implements Disposable {
     Zone element = Zone.obtain(name, x, y, width, height, chunkWidth, chunkHeight);
     Node n = Node.wrap(element);
     nodes.add(n);
+    index.add(element, element.xMin, element.yMin, element.width, element.height);
     mode = UNSET;
     return element;
   }
 
   public Zone get(int x, int y) {
-    for (Node n : nodes) {
-      if (n.element.contains(x, y)) {
-        return n.element;
-      }
-    }
-
+    Zone zone = index.get(x, y);
+    if (zone != null) return zone;
     throw new NoSuchElementException("no zone found containing (" + x + "," + y + ")");
   }
 
@@ -67,6 +65,7 @@ public class ZoneGraph implements Disposable {
   public void dispose() {
     if (texture != null) texture.dispose();
     for (Node n : nodes) n.dispose();
+    index.clear();
   }
 
   public void drawDebug(Batch batch, DebugMode mode) {
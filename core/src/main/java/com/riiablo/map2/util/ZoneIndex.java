@@ -0,0 +1,174 @@
+package com.riiablo.map2.util;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Uniform grid over the bounding boxes of a set of zones which answers which
+ * zone contains a point by only testing the zones overlapping the grid cell
+ * containing that point. The most recent hit is remembered and tested first,
+ * as lookups tend to be clustered around the same entities.
+ *
+ * Lookups return the first zone added which contains the point, same as a
+ * linear scan would. The grid is built lazily on the first lookup after the
+ * zones change, and once built may be read from multiple threads.
+ */
+public class ZoneIndex<T> {
+  /** max number of cells, the cell size doubles until the grid fits */
+  static final int MAX_CELLS = 1 << 12;
+  static final int MIN_CELL_SHIFT = 3;
+
+  final Array<T> elements = new Array<>();
+  final IntArray bounds = new IntArray(); // xMin, yMin, xMax, yMax
+  volatile Grid<T> grid;
+
+  public void add(T element, int x, int y, int width, int height) {
+    elements.add(element);
+    bounds.add(x, y, x + width, y + height);
+    grid = null;
+  }
+
+  public void clear() {
+    elements.clear();
+    bounds.clear();
+    grid = null;
+  }
+
+  public int size() {
+    return elements.size;
+  }
+
+  /**
+   * @return the first zone containing the point, or {@code null} if none do
+   */
+  public T get(int x, int y) {
+    Grid<T> grid = this.grid;
+    if (grid == null) grid = build();
+    return grid.get(x, y);
+  }
+
+  synchronized Grid<T> build() {
+    if (grid == null) grid = new Grid<>(elements, bounds.toArray());
+    return grid;
+  }
+
+  static final class Grid<T> {
+    final Object[] elements;
+    final int[] bounds;
+    final int xMin, yMin;
+    final int shift;
+    final int cellsX, cellsY;
+    /** cell i holds elements[items[offsets[i]..offsets[i + 1]]] */
+    final int[] offsets;
+    final int[] items;
+    /** last hit is only a valid answer if it cannot be shadowed by an earlier element */
+    final boolean disjoint;
+    int last = -1;
+
+    Grid(Array<T> elements, int[] bounds) {
+      this.elements = elements.toArray(Object.class);
+      this.bounds = bounds;
+      final int size = this.elements.length;
+      if (size == 0) {
+        xMin = yMin = 0;
+        shift = MIN_CELL_SHIFT;
+        cellsX = cellsY = 0;
+        offsets = new int[1];
+        items = new int[0];
+        disjoint = true;
+        return;
+      }
+
+      int xMin = Integer.MAX_VALUE, yMin = Integer.MAX_VALUE;
+      int xMax = Integer.MIN_VALUE, yMax = Integer.MIN_VALUE;
+      for (int i = 0; i < bounds.length; i += 4) {
+        xMin = Math.min(xMin, bounds[i]);
+        yMin = Math.min(yMin, bounds[i + 1]);
+        xMax = Math.max(xMax, bounds[i + 2]);
+        yMax = Math.max(yMax, bounds[i + 3]);
+      }
+
+      int shift = MIN_CELL_SHIFT;
+      while ((long) cells(xMax - xMin, shift) * cells(yMax - yMin, shift) > MAX_CELLS) shift++;
+      this.xMin = xMin;
+      this.yMin = yMin;
+      this.shift = shift;
+      this.cellsX = cells(xMax - xMin, shift);
+      this.cellsY = cells(yMax - yMin, shift);
+
+      // counting pass, then fill pass in insertion order
+      final int[] offsets = this.offsets = new int[cellsX * cellsY + 1];
+      for (int i = 0; i < size; i++) {
+        final int b = i << 2;
+        for (int cy = cellY(bounds[b + 1]), cy1 = cellY(bounds[b + 3] - 1); cy <= cy1; cy++) {
+          for (int cx = cellX(bounds[b]), cx1 = cellX(bounds[b + 2] - 1); cx <= cx1; cx++) {
+            offsets[cy * cellsX + cx + 1]++;
+          }
+        }
+      }
+
+      for (int i = 1; i < offsets.length; i++) offsets[i] += offsets[i - 1];
+      final int[] items = this.items = new int[offsets[offsets.length - 1]];
+      final int[] next = new int[offsets.length - 1];
+      System.arraycopy(offsets, 0, next, 0, next.length);
+      boolean disjoint = true;
+      for (int i = 0; i < size; i++) {
+        final int b = i << 2;
+        for (int cy = cellY(bounds[b + 1]), cy1 = cellY(bounds[b + 3] - 1); cy <= cy1; cy++) {
+          for (int cx = cellX(bounds[b]), cx1 = cellX(bounds[b + 2] - 1); cx <= cx1; cx++) {
+            final int cell = cy * cellsX + cx;
+            for (int j = offsets[cell]; disjoint && j < next[cell]; j++) {
+              disjoint = !overlaps(items[j], i);
+            }
+            items[next[cell]++] = i;
+          }
+        }
+      }
+
+      this.disjoint = disjoint;
+    }
+
+    static int cells(int length, int shift) {
+      return Math.max(1, (length + (1 << shift) - 1) >> shift);
+    }
+
+    int cellX(int x) {
+      return (x - xMin) >> shift;
+    }
+
+    int cellY(int y) {
+      return (y - yMin) >> shift;
+    }
+
+    boolean overlaps(int i, int j) {
+      final int a = i << 2, b = j << 2;
+      return bounds[a] < bounds[b + 2] && bounds[b] < bounds[a + 2]
+          && bounds[a + 1] < bounds[b + 3] && bounds[b + 1] < bounds[a + 3];
+    }
+
+    boolean contains(int i, int x, int y) {
+      final int b = i << 2;
+      return bounds[b] <= x && x < bounds[b + 2]
+          && bounds[b + 1] <= y && y < bounds[b + 3];
+    }
+
+    @SuppressWarnings("unchecked")
+    T get(int x, int y) {
+      final int last = this.last;
+      if (disjoint && last >= 0 && contains(last, x, y)) return (T) elements[last];
+
+      final int cx = cellX(x), cy = cellY(y);
+      if (x < xMin || y < yMin || cx >= cellsX || cy >= cellsY) return null;
+      final int cell = cy * cellsX + cx;
+      for (int j = offsets[cell], s = offsets[cell + 1]; j < s; j++) {
+        final int i = items[j];
+        if (contains(i, x, y)) {
+          this.last = i;
+          return (T) elements[i];
+        }
+      }
+
+      return null;
+    }
+  }
+}
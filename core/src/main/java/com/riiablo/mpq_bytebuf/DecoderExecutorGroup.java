@@ -59,6 +59,13 @@ public class DecoderExecutorGroup extends DefaultEventExecutorGroup {
     return super.shutdownGracefully(quietPeriod, timeout, unit);
   }
 
+  /**
+   * Creates a task aggregating the sectors of {@code handle} required to
+   * decode the specified range. Sectors which are already scheduled for
+   * decoding will share the existing future of that sector.
+   *
+   * @see MpqFileHandle#sectorFuture
+   */
   public DecodingTask newDecodingTask(
       EventExecutor executor,
       MpqFileHandle handle,
@@ -113,8 +120,9 @@ public class DecoderExecutorGroup extends DefaultEventExecutorGroup {
           sectorFSize,
           dst,
           dstOffset);
-      final Future<?> future = group.submit(task);
+      final Future<?> future = handle.sectorFuture(sector, dst, group, task);
       combiner.add(future);
+      numTasks++;
       return future;
     }
 
@@ -173,13 +181,21 @@ public class DecoderExecutorGroup extends DefaultEventExecutorGroup {
       final ByteBuf sectorSlice = handle.mpq.sectorBuffer(); // thread-safe
       final ByteBuf scratch = handle.mpq.sectorBuffer(); // thread-safe
       try {
-        ArchiveReadTask
-            .getBytes(handle, sectorOffset, sectorCSize, sectorSlice, 0)
-            .writerIndex(sectorCSize);
         if ((flags & FLAG_ENCRYPTED) == FLAG_ENCRYPTED) {
           if (DEBUG_MODE) log.trace("Decrypting sector...");
-          Decrypter.decrypt(handle.encryptionKey() + sector, sectorSlice);
+          ArchiveReadTask
+              .decrypt(handle, handle.encryptionKey() + sector, sectorOffset, sectorCSize, sectorSlice, 0)
+              .writerIndex(sectorCSize);
           if (DEBUG_MODE) log.trace("Decrypted {} bytes", sectorFSize);
+        } else {
+          ArchiveReadTask
+              .getBytes(handle, sectorOffset, sectorCSize, sectorSlice, 0)
+              .writerIndex(sectorCSize);
+        }
+
+        if (!requiresDecompression) { // encrypted sector stored uncompressed
+          bufferSlice.writeBytes(sectorSlice);
+          return;
         }
 
         final Decoder decoder = decoders.get();
@@ -241,9 +257,18 @@ public class DecoderExecutorGroup extends DefaultEventExecutorGroup {
         ByteBuf dst,
         int dstIndex
     ) {
-      synchronized (handle.mpq.lock()) {
-        return dst.setBytes(dstIndex, handle.archive, offset, length);
-      }
+      return handle.mpq.getBytes(handle.offset + offset, dst, dstIndex, length);
+    }
+
+    static ByteBuf decrypt(
+        MpqFileHandle handle,
+        int key,
+        int offset,
+        int length,
+        ByteBuf dst,
+        int dstIndex
+    ) {
+      return handle.mpq.decrypt(key, handle.offset + offset, dst, dstIndex, length);
     }
 
     final EventExecutorGroup group;
@@ -3,6 +3,8 @@ package com.riiablo.mpq_bytebuf;
 import io.netty.buffer.ByteBuf;
 import io.netty.util.AsciiString;
 import io.netty.util.internal.PlatformDependent;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import org.apache.commons.io.EndianUtils;
 
@@ -352,6 +354,77 @@ public enum Decrypter {
     return decrypt(key, seed, inout, inout, inoutOffset, inoutLen);
   }
 
+  /**
+   * Decrypts {@code length} bytes of {@code src} starting at the absolute
+   * index {@code srcIndex} into {@code dst} starting at {@code dstIndex}.
+   * Blocks are read as little-endian ints directly from {@code src}, s.t. the
+   * encrypted bytes do not need to be copied before decrypting. Trailing bytes
+   * which do not form a complete block are copied as-is.
+   * <p>
+   * {@code src} is only accessed using absolute indexes and therefore its
+   * position and limit are not modified, however it must be ordered
+   * {@link ByteOrder#LITTLE_ENDIAN little-endian}.
+   */
+  public static long decrypt(
+      int key,
+      int seed,
+      final ByteBuffer src,
+      final int srcIndex,
+      final ByteBuf dst,
+      final int dstIndex,
+      final int length
+  ) {
+    assert src.order() == ByteOrder.LITTLE_ENDIAN : "src.order(" + src.order() + ") != " + ByteOrder.LITTLE_ENDIAN;
+    final int[] table = ENCRYPTION.table;
+    final int blocksLength = length & ~0x3;
+    for (int i = 0; i < blocksLength; i += 4) {
+      seed += table[key & 0xFF];
+      final int block = src.getInt(srcIndex + i) ^ (key + seed);
+      dst.setIntLE(dstIndex + i, block);
+      seed += block + (seed << 5) + 3;
+      key = (~key << 0x15) + 0x11111111 | key >>> 0x0B;
+    }
+
+    for (int i = blocksLength; i < length; i++) {
+      dst.setByte(dstIndex + i, src.get(srcIndex + i));
+    }
+
+    return state(key, seed);
+  }
+
+  /**
+   * Decrypts {@code length} bytes of {@code src} starting at
+   * {@code srcIndex} into {@code dst} starting at {@code dstIndex}. Blocks
+   * are read as little-endian ints directly from {@code src}, s.t. the
+   * encrypted bytes do not need to be copied before decrypting. Trailing bytes
+   * which do not form a complete block are copied as-is.
+   */
+  public static long decrypt(
+      int key,
+      int seed,
+      final ByteBuf src,
+      final int srcIndex,
+      final ByteBuf dst,
+      final int dstIndex,
+      final int length
+  ) {
+    final int[] table = ENCRYPTION.table;
+    final int blocksLength = length & ~0x3;
+    for (int i = 0; i < blocksLength; i += 4) {
+      seed += table[key & 0xFF];
+      final int block = src.getIntLE(srcIndex + i) ^ (key + seed);
+      dst.setIntLE(dstIndex + i, block);
+      seed += block + (seed << 5) + 3;
+      key = (~key << 0x15) + 0x11111111 | key >>> 0x0B;
+    }
+
+    if (blocksLength < length) {
+      dst.setBytes(dstIndex + blocksLength, src, srcIndex + blocksLength, length - blocksLength);
+    }
+
+    return state(key, seed);
+  }
+
   public static long decrypt(int key, int seed, final byte[] in, final byte[] out, final int offset, final int length) {
     int i = offset;
     final int[] table = ENCRYPTION.table;
@@ -4,10 +4,13 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.Unpooled;
+import io.netty.util.AsciiString;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
+import java.util.Arrays;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
 
@@ -177,6 +180,9 @@ public final class Mpq implements Disposable {
   HashTable hashTable;
   Block[] blockTable;
 
+  MpqDiskCache.Archive cache; // nullable, decoded files cache
+  MpqBufferCache buffers; // nullable, decoded buffers budget and idle handles
+
   Mpq(
       FileHandle handle,
       ByteBuf map,
@@ -204,12 +210,58 @@ public final class Mpq implements Disposable {
     this.blockTableSize = blockTableSize;
   }
 
-  Object lock() {
-    return this;
+  /**
+   * Copies {@code length} bytes of the archive starting at the absolute index
+   * {@code index} into {@code dst} at {@code dstIndex}. This method is
+   * thread-safe and does not require any synchronization, each call copies
+   * from its own view of the mapped archive.
+   *
+   * @see #nioView()
+   */
+  ByteBuf getBytes(int index, ByteBuf dst, int dstIndex, int length) {
+    final ByteBuffer view = nioView();
+    view.limit(index + length);
+    view.position(index);
+    return dst.setBytes(dstIndex, view);
+  }
+
+  /**
+   * Decrypts {@code length} bytes of the archive starting at the absolute
+   * index {@code index} directly into {@code dst} at {@code dstIndex}. This
+   * method is thread-safe and does not require any synchronization.
+   *
+   * @see #getBytes(int, ByteBuf, int, int)
+   * @see Decrypter#decrypt(int, int, ByteBuffer, int, ByteBuf, int, int)
+   */
+  ByteBuf decrypt(int key, int index, ByteBuf dst, int dstIndex, int length) {
+    Decrypter.decrypt(key, SEED2, nioView(), index, dst, dstIndex, length);
+    return dst;
+  }
+
+  /**
+   * Returns a new little-endian view of the mapped archive. Copying from a
+   * single shared nio byte buffer is not thread-safe (ByteBuf implementations
+   * wrapping one reuse an internal nio buffer when copying), and views cached
+   * per thread would outlive {@link #dispose()} on every thread but the one
+   * disposing, so each read is given its own view instead. Views span the
+   * whole archive and are read using absolute indexes.
+   */
+  ByteBuffer nioView() {
+    return map.nioBuffer(0, map.capacity()).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /**
+   * Returns a buffer wrapping a new view of the archive starting at the
+   * absolute index {@code index}. The returned buffer is not shared and can
+   * be read from without synchronization by its owner.
+   */
+  ByteBuf view(int index, int length) {
+    return Unpooled.wrappedBuffer(map.nioBuffer(index, length));
   }
 
   @Override
   public void dispose() {
+    if (buffers != null) buffers.evictAll(this);
     map.unwrap().release();
     map = null;
 
@@ -395,6 +447,11 @@ public final class Mpq implements Disposable {
     return hashTable.get(key, hash, locale);
   }
 
+  /** @see HashTable#get(long[], int[], short, int[], int, int[]) */
+  void get(final long[] keys, final int[] hashes, final short locale, final int[] pending, final int count, final int[] indexes) {
+    hashTable.get(keys, hashes, locale, pending, count, indexes);
+  }
+
   /** @deprecated for use in tests, use MpqFileResolver instead */
   @Deprecated
   MpqFileHandle open(final DecoderExecutorGroup decoder, final CharSequence filename, final short locale) {
@@ -438,6 +495,33 @@ public final class Mpq implements Disposable {
       return Decrypter.HASH_TABLE_OFFSET.hash(filename);
     }
 
+    /**
+     * Computes both the {@link #key(CharSequence) key} and
+     * {@link #hash(CharSequence) hash} of {@code filename} in a single pass,
+     * storing the hash within {@code hashes[i]} and returning the key.
+     */
+    static long key(final CharSequence filename, final int[] hashes, final int i) {
+      final int[] offsetTable = Decrypter.HASH_TABLE_OFFSET.table;
+      final int[] key1Table = Decrypter.HASH_TABLE_KEY1.table;
+      final int[] key2Table = Decrypter.HASH_TABLE_KEY2.table;
+      final byte[] charMap = Decrypter.charMap;
+      int hash = Decrypter.SEED1, hashSeed = Decrypter.SEED2;
+      int key1 = Decrypter.SEED1, key1Seed = Decrypter.SEED2;
+      int key2 = Decrypter.SEED1, key2Seed = Decrypter.SEED2;
+      for (int j = 0, s = filename.length(); j < s; j++) {
+        final int ch = charMap[AsciiString.c2b(filename.charAt(j))];
+        hash = offsetTable[ch] ^ (hash + hashSeed);
+        hashSeed = ch + hash + hashSeed + (hashSeed << 5) + 3;
+        key1 = key1Table[ch] ^ (key1 + key1Seed);
+        key1Seed = ch + key1 + key1Seed + (key1Seed << 5) + 3;
+        key2 = key2Table[ch] ^ (key2 + key2Seed);
+        key2Seed = ch + key2 + key2Seed + (key2Seed << 5) + 3;
+      }
+
+      hashes[i] = hash;
+      return ((long) key2 << Integer.SIZE) | (key1 & 0xFFFFFFFFL);
+    }
+
     final int size;
     final long[] key;
     final short[] locale;
@@ -502,7 +586,37 @@ public final class Mpq implements Disposable {
       return bestId;
     }
 
+    /**
+     * Probes the table for the {@code count} files indexed by {@code pending},
+     * storing the index of {@code keys[pending[j]]} within
+     * {@code indexes[pending[j]]}, or {@code -1} if it is not found. Files are
+     * probed in order of the slot their search begins at, s.t. a batch
+     * sweeps the table once from front to back instead of jumping to a random
+     * slot for each file.
+     */
+    void get(final long[] keys, final int[] hashes, final short locale, final int[] pending, final int count, final int[] indexes) {
+      final int mask = size - 1;
+      final long[] order = new long[count];
+      for (int j = 0; j < count; j++) {
+        final int i = pending[j];
+        order[j] = ((long) (hashes[i] & mask) << Integer.SIZE) | i;
+      }
+
+      Arrays.sort(order);
+      for (int j = 0; j < count; j++) {
+        final int i = (int) order[j];
+        indexes[i] = get(keys[i], hashes[i], locale);
+      }
+    }
+
     MpqFileHandle open(final DecoderExecutorGroup decoder, final Mpq mpq, final int index, final CharSequence filename) {
+      final MpqBufferCache buffers = mpq.buffers;
+      return buffers != null
+          ? buffers.open(this, decoder, mpq, index, filename)
+          : open0(decoder, mpq, index, filename);
+    }
+
+    MpqFileHandle open0(final DecoderExecutorGroup decoder, final Mpq mpq, final int index, final CharSequence filename) {
       MpqFileHandle handle = this.handle[index];
       if (handle == null) {
         final int blockId = this.blockId[index];
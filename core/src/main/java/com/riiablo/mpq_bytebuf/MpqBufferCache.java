@@ -0,0 +1,256 @@
+package com.riiablo.mpq_bytebuf;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.concurrent.Promise;
+
+import com.riiablo.logger.LogManager;
+import com.riiablo.logger.Logger;
+
+/**
+ * Byte-budgeted LRU of the decoded buffers of mpq file handles. Every read of
+ * a handle marks it as the most recently read. When the last reference of a
+ * handle is released, its decoded buffers are kept here instead of being
+ * deallocated, s.t. opening the same file again reuses the decoded contents.
+ * Once the decoded bytes of all handles exceed the budget, the least recently
+ * read idle handles (those without references) are deallocated and will be
+ * decoded again when next opened.
+ * <p>
+ * Handles which are referenced are never evicted -- buffers returned by their
+ * reads may still be in use by the caller -- s.t. the budget may only be
+ * exceeded by referenced handles. Handles are also pinned while a read is in
+ * flight (including the listeners of the returned future) and while a
+ * {@link MpqBufferStream} of them is open.
+ */
+public final class MpqBufferCache {
+  private static final Logger log = LogManager.getLogger(MpqBufferCache.class);
+
+  final long maxBytes;
+
+  // intrusive list of handles with resident decoded buffers, head is least
+  // recently read, handles are linked via MpqFileHandle#lruPrev and
+  // MpqFileHandle#lruNext, referenced and pinned handles are skipped by trim
+  MpqFileHandle head;
+  MpqFileHandle tail;
+  int residentHandles;
+  long residentBytes;
+
+  int hits;
+  int misses;
+  int evictions;
+  long evictedBytes;
+
+  public MpqBufferCache(long maxBytes) {
+    if (maxBytes < 0) throw new IllegalArgumentException("maxBytes(" + maxBytes + ") < " + 0);
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Opens the handle at the specified hash table index, reviving the idle
+   * handle if one exists.
+   */
+  synchronized MpqFileHandle open(
+      final Mpq.HashTable hashTable,
+      final DecoderExecutorGroup decoder,
+      final Mpq mpq,
+      final int index,
+      final CharSequence filename
+  ) {
+    final MpqFileHandle handle = hashTable.handle[index];
+    if (handle != null && handle.refCnt() == 0) return handle.revive();
+    return hashTable.open0(decoder, mpq, index, filename);
+  }
+
+  /**
+   * Reads the specified range of {@code handle}, allocating its buffers if
+   * they were never decoded or the handle was evicted while idle. {@code handle} remains pinned until the
+   * returned future and its listeners have completed.
+   *
+   * @param retain whether or not the returned buffer should be retained
+   */
+  Future<ByteBuf> read(
+      final MpqFileHandle handle,
+      final EventExecutor executor,
+      final int offset,
+      final int length,
+      final boolean retain
+  ) {
+    synchronized (this) {
+      handle.pins++;
+      if (handle.numSectors >= 0) {
+        hits++;
+      } else {
+        misses++;
+        handle.allocate();
+      }
+
+      if (handle.residentBytes > 0) unlink(handle);
+      link(handle);
+    }
+
+    final Future<ByteBuf> future;
+    try {
+      future = handle.ensureReadable(executor, offset, length);
+    } catch (RuntimeException | Error t) {
+      unpin(handle);
+      throw t;
+    }
+
+    trim(maxBytes);
+    final Promise<ByteBuf> promise = executor.newPromise();
+    future.addListener(new FutureListener<ByteBuf>() {
+      @Override
+      public void operationComplete(Future<ByteBuf> future) {
+        try {
+          if (future.isSuccess()) {
+            final ByteBuf buffer = future.getNow();
+            promise.setSuccess(retain ? buffer.retain() : buffer);
+          } else {
+            promise.setFailure(future.cause());
+          }
+        } finally {
+          unpin(handle);
+        }
+      }
+    });
+    return promise;
+  }
+
+  /**
+   * Prevents the decoded buffers of {@code handle} from being evicted until
+   * {@link #unpin unpinned}.
+   */
+  synchronized void pin(final MpqFileHandle handle) {
+    handle.pins++;
+  }
+
+  synchronized void unpin(final MpqFileHandle handle) {
+    assert handle.pins > 0 : handle + " not pinned";
+    handle.pins--;
+    if (handle.pins == 0 && handle.residentBytes == 0 && handle.refCnt() == 0) {
+      handle.deallocate();
+    } else {
+      trim(maxBytes);
+    }
+  }
+
+  /**
+   * Releases {@code decrement} references of {@code handle}, and if its
+   * reference count reaches 0, keeps its decoded buffers until it is evicted.
+   * Handles without accounted buffers are deallocated immediately.
+   */
+  synchronized boolean release(final MpqFileHandle handle, final int decrement) {
+    if (!handle.release0(decrement)) return false;
+    if (handle.residentBytes == 0 && handle.pins == 0) {
+      handle.deallocate();
+    } else {
+      trim(maxBytes);
+    }
+    return true;
+  }
+
+  /**
+   * Links {@code handle} as the most recently read handle if it has decoded
+   * heap buffers. Buffers backed by the mpq cache are not accounted.
+   */
+  void link(final MpqFileHandle handle) {
+    assert handle.residentBytes == 0 : handle + " already linked";
+    final int bytes = handle.decodedBytes();
+    if (bytes == 0) return;
+    handle.residentBytes = bytes;
+    handle.lruPrev = tail;
+    handle.lruNext = null;
+    if (tail != null) tail.lruNext = handle;
+    else head = handle;
+    tail = handle;
+    residentHandles++;
+    residentBytes += bytes;
+  }
+
+  void unlink(final MpqFileHandle handle) {
+    assert handle.residentBytes > 0 : handle + " not linked";
+    final MpqFileHandle prev = handle.lruPrev;
+    final MpqFileHandle next = handle.lruNext;
+    if (prev != null) prev.lruNext = next;
+    else head = next;
+    if (next != null) next.lruPrev = prev;
+    else tail = prev;
+    handle.lruPrev = handle.lruNext = null;
+    residentHandles--;
+    residentBytes -= handle.residentBytes;
+    handle.residentBytes = 0;
+  }
+
+  /**
+   * Evicts the least recently read idle handles which are not pinned until
+   * the resident decoded bytes is no more than {@code maxBytes}.
+   */
+  synchronized void trim(final long maxBytes) {
+    for (MpqFileHandle handle = head, next; handle != null && residentBytes > maxBytes; handle = next) {
+      next = handle.lruNext;
+      if (handle.pins == 0 && handle.refCnt() == 0) evict(handle);
+    }
+  }
+
+  /**
+   * Evicts all idle handles belonging to {@code mpq}. Referenced handles are
+   * no longer accounted, their buffers are left to their references.
+   */
+  synchronized void evictAll(final Mpq mpq) {
+    for (MpqFileHandle handle = head, next; handle != null; handle = next) {
+      next = handle.lruNext;
+      if (handle.mpq != mpq) continue;
+      if (handle.refCnt() == 0) evict(handle);
+      else unlink(handle);
+    }
+  }
+
+  void evict(final MpqFileHandle handle) {
+    assert handle.refCnt() == 0 : handle + " still referenced";
+    final int bytes = handle.residentBytes;
+    if (log.traceEnabled()) log.trace("Evicting {} ({} bytes)", handle, bytes);
+    unlink(handle);
+    evictions++;
+    evictedBytes += bytes;
+    handle.deallocate();
+  }
+
+  public long maxBytes() {
+    return maxBytes;
+  }
+
+  public synchronized long residentBytes() {
+    return residentBytes;
+  }
+
+  public synchronized int residentHandles() {
+    return residentHandles;
+  }
+
+  /** number of reads whose handle had its decoded buffers resident */
+  public synchronized int hits() {
+    return hits;
+  }
+
+  /** number of reads which required allocating (and thus decoding) buffers */
+  public synchronized int misses() {
+    return misses;
+  }
+
+  public synchronized int evictions() {
+    return evictions;
+  }
+
+  public synchronized long evictedBytes() {
+    return evictedBytes;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format(
+        "%d resident handles (%d/%d bytes), %d hits, %d misses, %d evictions (%d bytes)",
+        residentHandles, residentBytes, maxBytes, hits, misses, evictions, evictedBytes);
+  }
+}
@@ -31,6 +31,7 @@ public final class MpqBufferStream extends InputStream {
   final EventExecutor executor;
   // final int bufferSize;
   final boolean releaseOnClose;
+  MpqBufferCache pinned; // cache pinning the handle until closed
   Promise<InputStream> init;
 
   ByteBuf buffer;
@@ -63,10 +64,19 @@ public final class MpqBufferStream extends InputStream {
 
     endSector = numSectors = handle.numSectors;
     startSector = currentSector = 0;
+
+    // buffer is a slice of the backing buffer of the handle
+    pinned = handle.mpq.buffers;
+    if (pinned != null) pinned.pin(handle);
   }
 
   @Override
   public void close() {
+    if (pinned != null) {
+      pinned.unpin(handle);
+      pinned = null;
+    }
+
     if (releaseOnClose) {
       releaseHandle();
     }
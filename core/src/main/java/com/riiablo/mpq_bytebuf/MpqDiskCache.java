@@ -0,0 +1,436 @@
+package com.riiablo.mpq_bytebuf;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.concurrent.DefaultEventExecutor;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import org.apache.commons.io.IOUtils;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.IntMap;
+import com.badlogic.gdx.utils.ObjectMap;
+
+import com.riiablo.logger.LogManager;
+import com.riiablo.logger.Logger;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+
+/**
+ * Persistent cache of decoded mpq files backed by a single pack file. Entries
+ * are keyed by (canonical archive path, archive mtime, hash table index), s.t.
+ * entries of an archive which has since been modified are ignored. Cached file
+ * contents are served as read-only mappings of their entry within the pack
+ * file and therefore do not need to be decoded again on subsequent runs.
+ * <p>
+ * Pack file layout (little-endian):
+ * <pre>
+ * header: magic(4) version(4)
+ * entry:  nameLength(2) name(nameLength) mtime(8) index(4) FSize(4) crc(4) data(FSize)
+ * </pre>
+ * Entries are only ever appended and entries of stale archives are not
+ * reclaimed (delete the pack file to reset the cache). A truncated trailing
+ * entry (e.g., process killed while writing) is discarded when the pack file
+ * is opened, and an entry whose data does not match its crc is discarded when
+ * it is first read.
+ * <p>
+ * Entries are written on a dedicated thread, s.t. the decoders completing a
+ * file never block on disk I/O. An entry is only served once its data has been
+ * forced to the pack file.
+ */
+public final class MpqDiskCache implements Disposable {
+  private static final Logger log = LogManager.getLogger(MpqDiskCache.class);
+
+  static final byte[] SIGNATURE = { 'R', 'M', 'P', 'C' };
+  static final int VERSION = 2;
+  static final int HEADER_SIZE = 8; // signature + version
+  static final int ENTRY_HEADER_SIZE = 2 + 8 + 4 + 4 + 4; // nameLength + mtime + index + FSize + crc (excl. name)
+  static final int CRC_CHUNK_SIZE = 0x1000;
+  static final long SHUTDOWN_TIMEOUT_SECONDS = 15;
+
+  final FileHandle handle;
+  RandomAccessFile raf;
+  FileChannel fc;
+  volatile long size; // appended by writer only once opened
+
+  final EventExecutor writer = new DefaultEventExecutor(new DefaultThreadFactory(MpqDiskCache.class, true));
+
+  final ObjectMap<String, Archive> archives = new ObjectMap<>();
+
+  int hits;
+  int misses;
+  int corrupted;
+  int writes;
+  long bytesWritten;
+
+  public static MpqDiskCache open(FileHandle handle) {
+    log.info("Loading mpq cache {}...", handle);
+    MpqDiskCache cache = new MpqDiskCache(handle);
+    try {
+      cache.open();
+      return cache;
+    } catch (IOException t) {
+      log.error("Failed to load mpq cache {}", handle, t);
+      cache.dispose();
+      throw new RuntimeException(t);
+    }
+  }
+
+  MpqDiskCache(FileHandle handle) {
+    this.handle = handle;
+  }
+
+  void open() throws IOException {
+    handle.parent().mkdirs();
+    raf = new RandomAccessFile(handle.file(), "rw");
+    fc = raf.getChannel();
+    if (fc.size() < HEADER_SIZE) {
+      writeHeader();
+    } else {
+      readEntries();
+    }
+  }
+
+  void writeHeader() throws IOException {
+    final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    header.put(SIGNATURE).putInt(VERSION).flip();
+    fc.truncate(0);
+    fc.write(header, 0);
+    size = HEADER_SIZE;
+  }
+
+  /**
+   * Reads the entry headers of the pack file. Entry data is not read until
+   * requested, see {@link #get(Archive, int, int)}.
+   */
+  void readEntries() throws IOException {
+    final long fileSize = fc.size();
+    final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    read(header, 0);
+    final byte[] signature = new byte[SIGNATURE.length];
+    header.get(signature);
+    final int version = header.getInt();
+    if (!Arrays.equals(signature, SIGNATURE) || version != VERSION) {
+      log.warn("Discarding mpq cache {} (version {} != {})", handle, version, VERSION);
+      writeHeader();
+      return;
+    }
+
+    int entries = 0;
+    long position = HEADER_SIZE;
+    ByteBuffer entry = ByteBuffer.allocate(ENTRY_HEADER_SIZE + 0x100).order(ByteOrder.LITTLE_ENDIAN);
+    while (fileSize - position >= ENTRY_HEADER_SIZE) {
+      entry.clear().limit(2);
+      read(entry, position);
+      final int nameLength = entry.getShort() & 0xFFFF;
+      final int headerSize = ENTRY_HEADER_SIZE + nameLength;
+      if (fileSize - position < headerSize) break;
+      if (entry.capacity() < headerSize - 2) {
+        entry = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+      }
+
+      entry.clear().limit(headerSize - 2);
+      read(entry, position + 2);
+      final byte[] name = new byte[nameLength];
+      entry.get(name);
+      final long mtime = entry.getLong();
+      final int index = entry.getInt();
+      final int FSize = entry.getInt();
+      final int crc = entry.getInt();
+      final long dataPosition = position + headerSize;
+      if (FSize < 0 || fileSize - dataPosition < FSize) break;
+      archive(new String(name, StandardCharsets.UTF_8), mtime).put(index, dataPosition, FSize, crc);
+      position = dataPosition + FSize;
+      entries++;
+    }
+
+    size = position;
+    if (size < fileSize) {
+      log.warn("Discarding {} bytes of truncated entries in {}", fileSize - size, handle);
+      fc.truncate(size);
+    }
+
+    log.debug("mpq cache: {} entries ({} bytes)", entries, size);
+  }
+
+  void read(ByteBuffer dst, long position) throws IOException {
+    for (long p = position; dst.hasRemaining();) {
+      final int bytes = fc.read(dst, p);
+      if (bytes < 0) throw new IOException("unexpected end of " + handle + " at " + p);
+      p += bytes;
+    }
+
+    dst.flip();
+  }
+
+  /**
+   * Completes all pending writes and closes the pack file.
+   */
+  @Override
+  public void dispose() {
+    writer.shutdownGracefully(0, SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS).syncUninterruptibly();
+    log.debug("mpq cache: {} hits, {} misses, {} corrupted, {} writes ({} bytes)",
+        hits, misses, corrupted, writes, bytesWritten);
+    synchronized (this) {
+      IOUtils.closeQuietly(raf);
+      raf = null;
+      fc = null;
+      archives.clear();
+    }
+  }
+
+  /**
+   * Returns a future completed once all writes scheduled before this call have
+   * been written.
+   */
+  public Future<?> flush() {
+    return writer.submit(new Runnable() {
+      @Override
+      public void run() {}
+    });
+  }
+
+  /**
+   * Returns the cache of the specified mpq, or {@code null} if the mpq is not
+   * backed by a file (and thus cannot be versioned).
+   */
+  public Archive archive(Mpq mpq) {
+    final FileHandle handle = mpq.handle();
+    if (handle == null) return null;
+    return archive(canonicalPath(handle.file()), handle.lastModified());
+  }
+
+  /**
+   * Returns the canonical path of {@code file}, s.t. archives sharing a name
+   * (e.g., from different installations) are cached separately.
+   */
+  static String canonicalPath(File file) {
+    try {
+      return file.getCanonicalPath();
+    } catch (IOException t) {
+      log.warn("Failed to resolve canonical path of {}", file, t);
+      return file.getAbsolutePath();
+    }
+  }
+
+  synchronized Archive archive(String name, long mtime) {
+    final String key = name + '@' + mtime;
+    Archive archive = archives.get(key);
+    if (archive == null) archives.put(key, archive = new Archive(name, mtime));
+    return archive;
+  }
+
+  ByteBuf get(Archive archive, int index, int FSize) {
+    final Entry entry;
+    final ByteBuffer data;
+    synchronized (this) {
+      if (fc == null) return null;
+      entry = archive.entries.get(index);
+      if (entry == null || entry.FSize != FSize) {
+        misses++;
+        return null;
+      }
+
+      try {
+        data = fc.map(READ_ONLY, entry.position, FSize);
+      } catch (IOException t) {
+        log.warn("Failed to map {}[{}] of {}", archive.name, index, handle, t);
+        misses++;
+        return null;
+      }
+    }
+
+    final ByteBuf buffer = Unpooled.unreleasableBuffer(Unpooled.wrappedBuffer(data));
+    if (!entry.verified && crc(buffer, 0, FSize) != entry.crc) {
+      log.warn("Discarding corrupted {}[{}] of {}", archive.name, index, handle);
+      synchronized (this) {
+        if (archive.entries.get(index) == entry) archive.entries.remove(index);
+        corrupted++;
+        misses++;
+      }
+
+      return null;
+    }
+
+    entry.verified = true;
+    synchronized (this) {
+      hits++;
+    }
+
+    return buffer;
+  }
+
+  /**
+   * Schedules the decoded contents of the file at {@code index} to be appended
+   * to the pack file. {@code buffer} is retained until written.
+   */
+  void put(final Archive archive, final int index, ByteBuf buffer, final int FSize) {
+    synchronized (this) {
+      if (fc == null || archive.entries.containsKey(index)) return;
+    }
+
+    final ByteBuf data = buffer.retainedSlice(0, FSize);
+    try {
+      writer.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            write(archive, index, data, FSize);
+          } finally {
+            data.release();
+          }
+        }
+      });
+    } catch (RejectedExecutionException t) {
+      data.release(); // disposed
+    }
+  }
+
+  /**
+   * Appends an entry to the pack file and publishes it once forced. Only
+   * called by {@link #writer}.
+   */
+  void write(Archive archive, int index, ByteBuf data, int FSize) {
+    final FileChannel fc;
+    synchronized (this) {
+      fc = this.fc;
+      if (fc == null || archive.entries.containsKey(index)) return;
+    }
+
+    final byte[] name = archive.name.getBytes(StandardCharsets.UTF_8);
+    final int crc = crc(data, 0, FSize);
+    final ByteBuffer header = ByteBuffer
+        .allocate(ENTRY_HEADER_SIZE + name.length)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    header
+        .putShort((short) name.length)
+        .put(name)
+        .putLong(archive.mtime)
+        .putInt(index)
+        .putInt(FSize)
+        .putInt(crc)
+        .flip();
+    final long position = size;
+    try {
+      long bytes = 0;
+      final ByteBuffer nioData = data.nioBuffer(0, FSize);
+      while (header.hasRemaining()) bytes += fc.write(header, position + bytes);
+      final long dataPosition = position + bytes;
+      while (nioData.hasRemaining()) bytes += fc.write(nioData, position + bytes);
+      fc.force(false);
+      size = position + bytes;
+      synchronized (this) {
+        archive.put(index, dataPosition, FSize, crc);
+        writes++;
+        bytesWritten += bytes;
+      }
+    } catch (IOException t) {
+      log.warn("Failed to write {}[{}] to {}", archive.name, index, handle, t);
+      try {
+        fc.truncate(position);
+      } catch (IOException ignored) {}
+    }
+  }
+
+  /**
+   * Returns the CRC-32 of the specified range of {@code buffer}.
+   */
+  static int crc(ByteBuf buffer, int index, int length) {
+    final CRC32 crc = new CRC32();
+    if (buffer.hasArray()) {
+      crc.update(buffer.array(), buffer.arrayOffset() + index, length);
+    } else {
+      final byte[] chunk = new byte[Math.min(length, CRC_CHUNK_SIZE)];
+      for (int i = 0, n; i < length; i += n) {
+        n = Math.min(chunk.length, length - i);
+        buffer.getBytes(index + i, chunk, 0, n);
+        crc.update(chunk, 0, n);
+      }
+    }
+
+    return (int) crc.getValue();
+  }
+
+  public synchronized int hits() {
+    return hits;
+  }
+
+  public synchronized int misses() {
+    return misses;
+  }
+
+  /** number of entries discarded because their data did not match their crc */
+  public synchronized int corrupted() {
+    return corrupted;
+  }
+
+  public synchronized int writes() {
+    return writes;
+  }
+
+  public long size() {
+    return size;
+  }
+
+  public final class Archive {
+    final String name;
+    final long mtime;
+    final IntMap<Entry> entries = new IntMap<>();
+
+    Archive(String name, long mtime) {
+      this.name = name;
+      this.mtime = mtime;
+    }
+
+    void put(int index, long position, int FSize, int crc) {
+      entries.put(index, new Entry(position, FSize, crc));
+    }
+
+    /**
+     * Returns a read-only buffer containing the cached decoded contents of the
+     * file at the specified hash table index, or {@code null} if not cached.
+     */
+    ByteBuf get(int index, int FSize) {
+      return MpqDiskCache.this.get(this, index, FSize);
+    }
+
+    /**
+     * Schedules the decoded contents of the file at the specified hash table
+     * index to be appended to the cache.
+     */
+    void put(int index, ByteBuf buffer, int FSize) {
+      MpqDiskCache.this.put(this, index, buffer, FSize);
+    }
+
+    @Override
+    public String toString() {
+      return name + "@" + mtime;
+    }
+  }
+
+  static final class Entry {
+    final long position;
+    final int FSize;
+    final int crc;
+    volatile boolean verified;
+
+    Entry(long position, int FSize, int crc) {
+      this.position = position;
+      this.FSize = FSize;
+      this.crc = crc;
+    }
+  }
+}
@@ -5,6 +5,7 @@ import io.netty.buffer.Unpooled;
 import io.netty.util.ReferenceCountUtil;
 import io.netty.util.ReferenceCounted;
 import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.FutureListener;
 import io.netty.util.concurrent.ImmediateEventExecutor;
@@ -23,6 +24,7 @@ import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
@@ -48,20 +50,16 @@ public final class MpqFileHandle extends FileHandle implements ReferenceCounted
   /*
    * Implementation note:
    *
-   * File decoding is thread-safe, however reading from mpq archive must be
-   * synchronized on Mpq#lock() due to an issue with concurrent copying from
-   * the underlying nio byte buffer.
+   * File decoding is thread-safe. Reading from the mpq archive is lock-free,
+   * copies are made using Mpq#getBytes which reads from its own view of the
+   * underlying nio byte buffer (see Mpq#nioView).
    *
-   * File decoding is split into relevant sectors without regard to whether a
-   * sector may already be decoding (or scheduled for decoding). This is a
-   * future optimization, but also plausibly a corner-case. The resulting
-   * behavior at this time is to schedule an additional decoding task for that
-   * sector, and when that task starts, lock and check if that sector has since
-   * been decoded, and thus skip decoding that sector.
-   *
-   * Alternatively, this could be implemented by managing futures for discrete
-   * sector decode tasks and returning the existing future for a sector that
-   * may be scheduled again.
+   * File decoding is split into relevant sectors. The future of each sector
+   * decode task is tracked within #sectorFutures, s.t. overlapping range reads
+   * will share the in-flight (or completed) future of a sector instead of
+   * scheduling an additional decoding task for that sector. Sector futures are
+   * only valid for the backing buffer they were scheduled with and are cleared
+   * along with it.
    */
 
   private static final long REFCNT_FIELD_OFFSET =
@@ -106,6 +104,19 @@ public final class MpqFileHandle extends FileHandle implements ReferenceCounted
   ByteBuf buffer; // heap bytebuf of decoded data
   int encryptionKey;
 
+  // Resident buffers (guarded by MpqBufferCache)
+  int residentBytes; // decoded bytes accounted by the cache, 0 if not linked
+  int pins; // in-flight reads and open buffer streams, never evicted if > 0
+            // (neither are handles with refCnt > 0)
+  MpqFileHandle lruPrev;
+  MpqFileHandle lruNext;
+
+  // Sector futures (guarded by decoded)
+  Future<?>[] sectorFutures; // in-flight or completed sector decode tasks
+  final AtomicInteger sectorHits = new AtomicInteger(); // sector already decoded
+  final AtomicInteger sectorDedups = new AtomicInteger(); // sector future shared
+  final AtomicInteger sectorDecodes = new AtomicInteger(); // sector task scheduled
+
   MpqFileHandle(
       DecoderExecutorGroup decoder,
       Mpq mpq,
@@ -177,6 +188,30 @@ public final class MpqFileHandle extends FileHandle implements ReferenceCounted
     return (flags & FLAG_ENCRYPTED) == FLAG_ENCRYPTED;
   }
 
+  /**
+   * Returns the number of sector requests which were satisfied by an already
+   * decoded sector of the backing buffer.
+   */
+  public int sectorHits() {
+    return sectorHits.get();
+  }
+
+  /**
+   * Returns the number of sector requests which were satisfied by sharing the
+   * in-flight or completed decoding task of that sector.
+   */
+  public int sectorDedups() {
+    return sectorDedups.get();
+  }
+
+  /**
+   * Returns the number of sector requests which required scheduling a new
+   * decoding task.
+   */
+  public int sectorDecodes() {
+    return sectorDecodes.get();
+  }
+
   /**
    * Returns a buffer containing decompressed contents of this mpq file.
    * Returned buffer is managed by the handle itself and does not need to be
@@ -232,14 +267,44 @@ public final class MpqFileHandle extends FileHandle implements ReferenceCounted
   }
 
   public Future<ByteBuf> bufferAsync(EventExecutor executor, int offset, int length) {
+    checkBounds(offset, length);
+    final MpqBufferCache buffers = mpq.buffers;
+    return buffers != null
+        ? buffers.read(this, executor, offset, length, false)
+        : ensureReadable(executor, offset, length);
+  }
+
+  /**
+   * Same as {@link #bufferAsync(EventExecutor, int, int)}, however the
+   * returned buffer is retained and must be released by the caller. Retained
+   * buffers remain valid after this handle has been released.
+   */
+  public Future<ByteBuf> retainedBufferAsync(EventExecutor executor, int offset, int length) {
+    checkBounds(offset, length);
+    final MpqBufferCache buffers = mpq.buffers;
+    if (buffers != null) return buffers.read(this, executor, offset, length, true);
+    final Promise<ByteBuf> promise = executor.newPromise();
+    ensureReadable(executor, offset, length)
+        .addListener(new FutureListener<ByteBuf>() {
+          @Override
+          public void operationComplete(Future<ByteBuf> future) {
+            if (future.isSuccess()) {
+              promise.setSuccess(future.getNow().retain());
+            } else {
+              promise.setFailure(future.cause());
+            }
+          }
+        });
+    return promise;
+  }
+
+  void checkBounds(int offset, int length) {
     if (offset + length > FSize) {
       throw new IndexOutOfBoundsException(
           String.format(
               "offset(+0x%x) + length(0x%x) exceeds declared FSize(0x%x)",
               offset, length, FSize));
     }
-
-    return ensureReadable(executor, offset, length);
   }
 
   int encryptionKey() {
@@ -249,14 +314,53 @@ public final class MpqFileHandle extends FileHandle implements ReferenceCounted
   }
 
   Future<ByteBuf> ensureReadable(EventExecutor executor, int offset, int length) {
-    if (numSectors < 0) {
+    if (numSectors < 0) allocate();
+    return numSectors == 0
+        ? readRawArchive(executor, offset, length)
+        : decodeSectors(executor, offset, length);
+  }
+
+  /**
+   * Allocates the backing buffer and reads the sector offsets of this file,
+   * or uses the decoded contents from the mpq cache if available.
+   */
+  void allocate() {
+    assert numSectors < 0 : "buffers already allocated!";
+    if (!readCache()) {
       readSectorOffsets();
       allocateBuffer();
     }
+  }
 
-    return numSectors == 0
-        ? readRawArchive(executor, offset, length)
-        : decodeSectors(executor, offset, length);
+  /**
+   * Attempts to use the decoded contents of this file from the mpq cache as
+   * the backing buffer. The cached buffer is a read-only view of the cache and
+   * is treated as if it were an uncompressed file which was already read.
+   *
+   * @return whether or not the cached contents are used
+   */
+  boolean readCache() {
+    assert numSectors < 0 : "sector offsets already read!";
+    final MpqDiskCache.Archive cache = mpq.cache;
+    if (cache == null || uncompressed()) return false;
+    final ByteBuf cached = cache.get(index, FSize);
+    if (cached == null) return false;
+    log.trace("Using cached {}", this);
+    numSectors = 0;
+    sectorOffsets = Unpooled.EMPTY_BUFFER;
+    buffer = cached;
+    decoded.ensureCapacity(1);
+    setDecoded(0, buffer); // using bit 0 as decoded tag for buffer
+    return true;
+  }
+
+  /**
+   * Writes the decoded contents of this file into the mpq cache.
+   */
+  void writeCache(ByteBuf buffer) {
+    final MpqDiskCache.Archive cache = mpq.cache;
+    if (cache == null) return;
+    cache.put(index, buffer, FSize);
   }
 
   ByteBuf readSectorOffsets() {
@@ -271,6 +375,7 @@ public final class MpqFileHandle extends FileHandle implements ReferenceCounted
     final int numSectors = this.numSectors = ((FSize + sectorSize - 1) / sectorSize);
     final int sectorTableSize = (numSectors + 1) << 2; // accommodate offset of sector offset table
     decoded.ensureCapacity(numSectors);
+    synchronized (decoded) { sectorFutures = new Future<?>[numSectors]; }
 
     if (!encrypted()) {
       sectorOffsets = archive.slice(0, sectorTableSize);
@@ -279,8 +384,7 @@ public final class MpqFileHandle extends FileHandle implements ReferenceCounted
 
     log.trace("Decrypting sector offsets table...");
     sectorOffsets = mpq.fileBuffer(sectorTableSize);
-    sectorOffsets.writeBytes(archive, 0, sectorTableSize);
-    Decrypter.decrypt(encryptionKey() - 1, sectorOffsets);
+    mpq.decrypt(encryptionKey() - 1, offset, sectorOffsets, 0, sectorTableSize).writerIndex(sectorTableSize);
     return sectorOffsets;
   }
 
@@ -318,7 +422,11 @@ public final class MpqFileHandle extends FileHandle implements ReferenceCounted
     DecodingTask task = null;
     for (int i = startSector; i < endSector; i++) {
       final int sector = i;
-      if (decoded(sector)) continue;
+      if (decoded(sector)) {
+        sectorHits.incrementAndGet();
+        continue;
+      }
+
       final int bufferOffset = sector * sectorSize;
       final int sectorOffset = sectorOffsets.getIntLE(sector << 2);
       final int nextSectorOffset = sectorOffsets.getIntLE((sector + 1) << 2);
@@ -343,6 +451,7 @@ public final class MpqFileHandle extends FileHandle implements ReferenceCounted
           .addListener(new FutureListener<Void>() {
             @Override
             public void operationComplete(Future<Void> future) {
+              if (offset == 0 && length == FSize && future.isSuccess()) writeCache(buffer);
               aggregatePromise.setSuccess(buffer.slice(offset, length).writerIndex(length));
             }
           });
@@ -376,6 +485,36 @@ public final class MpqFileHandle extends FileHandle implements ReferenceCounted
     synchronized (decoded) { return decoded.get(sector); }
   }
 
+  /**
+   * Returns the in-flight or completed decoding task future of the specified
+   * sector, or submits {@code task} to {@code group} if none exists (or the
+   * previous attempt failed). Futures are only shared iff {@code buffer} is
+   * the backing buffer.
+   */
+  Future<?> sectorFuture(
+      final int sector,
+      final ByteBuf buffer,
+      final EventExecutorGroup group,
+      final Runnable task
+  ) {
+    assert buffer != null : "buffer cannot be null";
+    synchronized (decoded) {
+      if (this.buffer != buffer || sectorFutures == null) {
+        sectorDecodes.incrementAndGet();
+        return group.submit(task);
+      }
+
+      final Future<?> future = sectorFutures[sector];
+      if (future != null && (!future.isDone() || future.isSuccess())) {
+        sectorDedups.incrementAndGet();
+        return future;
+      }
+
+      sectorDecodes.incrementAndGet();
+      return sectorFutures[sector] = group.submit(task);
+    }
+  }
+
   /**
    * Marks the specified sector as decoded iff {@code buffer} is the backing
    * buffer.
@@ -398,6 +537,19 @@ public final class MpqFileHandle extends FileHandle implements ReferenceCounted
     return MpqStream.open(this, offset, length, releaseOnClose);
   }
 
+  /**
+   * Returns a stream of the specified range which decodes up to
+   * {@code readAhead} sectors ahead of the sector being read on the decoder of
+   * this handle. The contents are never buffered by this handle, s.t. the
+   * memory used is constant regardless of the size of this file.
+   *
+   * @param readAhead number of sectors to decode ahead, {@code 0} to decode
+   *                  each sector in the caller's thread when it is read
+   */
+  public InputStream stream(int offset, int length, int readAhead, boolean releaseOnClose) {
+    return MpqStream.open(this, offset, length, readAhead, releaseOnClose);
+  }
+
   public Future<InputStream> bufferStream(EventExecutor executor, int bufferSize) {
     return new MpqBufferStream(this, executor, bufferSize, false).initialize();
   }
@@ -429,12 +581,41 @@ public final class MpqFileHandle extends FileHandle implements ReferenceCounted
 
   @Override
   public boolean release() {
-    return handleRelease(updater.release(this));
+    return release(1);
   }
 
   @Override
   public boolean release(int decrement) {
-    return handleRelease(updater.release(this, decrement));
+    final MpqBufferCache buffers = mpq.buffers;
+    return buffers != null
+        ? buffers.release(this, decrement)
+        : handleRelease(release0(decrement));
+  }
+
+  boolean release0(int decrement) {
+    return updater.release(this, decrement);
+  }
+
+  /**
+   * Resets the reference count of this idle handle to 1.
+   *
+   * @see MpqBufferCache#open
+   */
+  MpqFileHandle revive() {
+    assert refCnt() == 0 : this + " is not idle";
+    updater.resetRefCnt(this);
+    return this;
+  }
+
+  /**
+   * Returns the number of heap bytes retained by the decoded contents of this
+   * handle. Buffers backed by the mpq cache are mapped and therefore free.
+   */
+  int decodedBytes() {
+    int bytes = 0;
+    if (buffer != null && buffer.hasArray()) bytes += buffer.capacity();
+    if (sectorOffsets != null && sectorOffsets.hasArray()) bytes += sectorOffsets.capacity();
+    return bytes;
   }
 
   private boolean handleRelease(boolean release) {
@@ -448,9 +629,22 @@ public final class MpqFileHandle extends FileHandle implements ReferenceCounted
    */
   void deallocate() {
     mpq.dispose(index);
+    releaseDecoded();
+  }
+
+  /**
+   * Releases the decoded sectors and sector offsets of this file handle, s.t.
+   * the next read decodes them again.
+   *
+   * @see MpqBufferCache
+   */
+  void releaseDecoded() {
     if (numSectors < 0) return;
     numSectors = -1;
-    decoded.clear();
+    synchronized (decoded) {
+      decoded.clear();
+      sectorFutures = null;
+    }
     releaseSectorOffsets();
     releaseBuffer();
   }
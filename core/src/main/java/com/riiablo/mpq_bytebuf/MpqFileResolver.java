@@ -1,5 +1,11 @@
 package com.riiablo.mpq_bytebuf;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+
 import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Disposable;
@@ -43,6 +49,8 @@ public class MpqFileResolver implements FileHandleResolver, Disposable {
   final Array<Mpq> mpqs = Array.of(true, 16, Mpq.class);
   final ObjectMap<String, Mpq> lookup = new ObjectMap<>();
   final DecoderExecutorGroup decoder = new DecoderExecutorGroup(2);
+  MpqDiskCache cache;
+  MpqBufferCache buffers;
 
   public MpqFileResolver() {
     this(Riiablo.home);
@@ -58,9 +66,52 @@ public class MpqFileResolver implements FileHandleResolver, Disposable {
 
   @Override
   public void dispose() {
+    if (buffers != null) log.debug("buffers: {}", buffers);
     decoder.shutdownGracefully();
     for (Mpq mpq : mpqs) mpq.dispose();
     mpqs.clear();
+    if (cache != null) {
+      cache.dispose();
+      cache = null;
+    }
+  }
+
+  /**
+   * Enables caching decoded files of all mpqs within the specified pack file.
+   * Files which were decoded in a previous run will be read from the cache
+   * instead of decoded.
+   *
+   * @see MpqDiskCache
+   */
+  public MpqFileResolver cache(FileHandle pack) {
+    if (cache != null) throw new IllegalStateException("cache already enabled: " + cache.handle);
+    cache = MpqDiskCache.open(pack);
+    for (Mpq mpq : mpqs) mpq.cache = cache.archive(mpq);
+    return this;
+  }
+
+  public MpqDiskCache cache() {
+    return cache;
+  }
+
+  /**
+   * Limits the decoded contents of all file handles to {@code maxBytes}.
+   * Released handles keep their decoded buffers until the budget is exceeded,
+   * at which point the least recently read idle handles are deallocated first.
+   * Referenced handles are never evicted. Files whose handles have been
+   * evicted are decoded again when next opened.
+   *
+   * @see MpqBufferCache
+   */
+  public MpqFileResolver bufferBudget(long maxBytes) {
+    if (buffers != null) throw new IllegalStateException("buffer budget already set: " + buffers.maxBytes());
+    buffers = new MpqBufferCache(maxBytes);
+    for (Mpq mpq : mpqs) mpq.buffers = buffers;
+    return this;
+  }
+
+  public MpqBufferCache buffers() {
+    return buffers;
   }
 
   Mpq add(FileHandle home, String path) {
@@ -77,6 +128,8 @@ public class MpqFileResolver implements FileHandleResolver, Disposable {
 
   public Mpq add(Mpq mpq) {
     mpqs.add(mpq);
+    if (cache != null) mpq.cache = cache.archive(mpq);
+    mpq.buffers = buffers;
     return mpq;
   }
 
@@ -131,4 +184,73 @@ public class MpqFileResolver implements FileHandleResolver, Disposable {
     log.debug("Failed to resolve {}:{}", mpqParams.localeToString(), filename);
     return null;
   }
+
+  /**
+   * Resolves a batch of files. Hashes of all filenames are computed up front
+   * and each mpq, in priority order, is probed for all files which are still
+   * unresolved as a single batch, see
+   * {@link HashTable#get(long[], int[], short, int[], int, int[])}. If
+   * {@code prefetch} is set, all resolved files are immediately scheduled for
+   * decoding, s.t. subsequent calls to {@link MpqFileHandle#bufferAsync} will
+   * share the scheduled decoding tasks. Prefetches which fail are logged.
+   *
+   * @return file handles at the same indexes as {@code filenames}, or
+   *         {@code null} for files which could not be resolved
+   */
+  public MpqFileHandle[] resolve(CharSequence[] filenames, short locale, boolean prefetch) {
+    final int size = filenames.length;
+    log.trace("Resolving {} files...", size);
+    final String[] fixed = new String[size];
+    final long[] keys = new long[size];
+    final int[] hashes = new int[size];
+    final int[] pending = new int[size];
+    for (int i = 0; i < size; i++) {
+      final String filename = fixed[i] = Decrypter.fix(filenames[i].toString());
+      keys[i] = HashTable.key(filename, hashes, i);
+      pending[i] = i;
+    }
+
+    int remaining = size;
+    final int[] indexes = new int[size];
+    final MpqFileHandle[] handles = new MpqFileHandle[size];
+    for (Mpq mpq : mpqs) {
+      mpq.get(keys, hashes, locale, pending, remaining, indexes);
+      int unresolved = 0;
+      for (int j = 0; j < remaining; j++) {
+        final int i = pending[j];
+        final int index = indexes[i];
+        if (index >= 0) {
+          handles[i] = mpq.open(decoder, index, fixed[i]);
+        } else {
+          pending[unresolved++] = i;
+        }
+      }
+
+      remaining = unresolved;
+      if (remaining == 0) break;
+    }
+
+    log.debug("Resolved {} of {} files ({} failed)", size - remaining, size, remaining);
+    if (prefetch) {
+      final EventExecutor executor = ImmediateEventExecutor.INSTANCE;
+      for (MpqFileHandle handle : handles) {
+        if (handle != null) handle.bufferAsync(executor).addListener(new PrefetchListener(handle));
+      }
+    }
+
+    return handles;
+  }
+
+  static final class PrefetchListener implements FutureListener<ByteBuf> {
+    final MpqFileHandle handle;
+
+    PrefetchListener(MpqFileHandle handle) {
+      this.handle = handle;
+    }
+
+    @Override
+    public void operationComplete(Future<ByteBuf> future) {
+      if (!future.isSuccess()) log.warn("Failed to prefetch {}", handle, future.cause());
+    }
+  }
 }
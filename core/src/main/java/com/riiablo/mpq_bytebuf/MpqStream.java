@@ -4,6 +4,7 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufInputStream;
 import io.netty.buffer.Unpooled;
 import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
 import java.io.InputStream;
 
 import com.riiablo.logger.LogManager;
@@ -17,6 +18,15 @@ import static com.riiablo.mpq_bytebuf.Decrypter.SEED2;
  * used directly from the slice of the mpq archive, or decoded using structures
  * maintained by this stream.
  * <p>
+ * Sectors are decoded one at a time into a single sector buffer, and never
+ * into the backing buffer of the file handle, so the memory used by a stream
+ * does not depend on the size of the file. By default each sector is decoded
+ * in the caller's thread when it is first read. If a stream is opened with a
+ * read-ahead of {@code K} sectors, it instead keeps a ring of {@code K + 1}
+ * pooled sector buffers and decodes the next {@code K} sectors on the
+ * {@link DecoderExecutorGroup} of the file handle while the current sector is
+ * being read.
+ * <p>
  * TODO: improve fix placeholder doc
  */
 public final class MpqStream extends InputStream {
@@ -43,18 +53,35 @@ public final class MpqStream extends InputStream {
   int bytesRead;
   int limit;
 
+  // read-ahead, null if sectors are decoded in the caller's thread
+  // sector i is decoded into ring[i % ring.length]
+  ByteBuf[] ring;
+  Future<?>[] futures;
+  int[] sectorFSizes;
+  int nextSubmittedSector;
+
+  static InputStream open(
+      MpqFileHandle handle,
+      int offset,
+      int length,
+      boolean releaseOnClose
+  ) {
+    return open(handle, offset, length, 0, releaseOnClose);
+  }
+
   static InputStream open(
       MpqFileHandle handle,
       int offset,
       int length,
+      int readAhead,
       boolean releaseOnClose
   ) {
     if (handle.uncompressed()) {
-      final ByteBuf buffer = handle.archive.slice(offset, length);
+      final ByteBuf buffer = handle.mpq.view(handle.offset + offset, length);
       return new ByteBufInputStream(buffer, length, releaseOnClose);
     }
 
-    return new MpqStream(handle, offset, length, releaseOnClose);
+    return new MpqStream(handle, offset, length, readAhead, releaseOnClose);
   }
 
   MpqStream(MpqFileHandle handle) {
@@ -62,7 +89,12 @@ public final class MpqStream extends InputStream {
   }
 
   MpqStream(MpqFileHandle handle, int offset, int length, boolean releaseOnClose) {
+    this(handle, offset, length, 0, releaseOnClose);
+  }
+
+  MpqStream(MpqFileHandle handle, int offset, int length, int readAhead, boolean releaseOnClose) {
     super();
+    if (readAhead < 0) throw new IllegalArgumentException("readAhead(" + readAhead + ") < " + 0);
     if (handle.uncompressed()) {
       throw new IllegalStateException(""
           + "cannot construct stream from uncompressed file handle, "
@@ -74,7 +106,6 @@ public final class MpqStream extends InputStream {
     this.releaseOnClose = releaseOnClose;
     this.bytesRead = offset;
     this.limit = offset + length;
-    this.buffer = handle.mpq.sectorBuffer();
 
     if (encrypted) {
       key = handle.encryptionKey() - 1;
@@ -92,6 +123,19 @@ public final class MpqStream extends InputStream {
     endSector = (offset + length + sectorSize - 1) / sectorSize;
     for (int i = 0, s = startSector; i <= s; i++) updateSectorOffsets();
 
+    if (readAhead > 0) {
+      final int slots = readAhead + 1;
+      ring = new ByteBuf[slots];
+      futures = new Future<?>[slots];
+      sectorFSizes = new int[slots];
+      for (int i = 0; i < slots; i++) ring[i] = handle.mpq.sectorBuffer();
+      buffer = Unpooled.EMPTY_BUFFER;
+      nextSubmittedSector = startSector;
+      readAhead();
+    } else {
+      buffer = handle.mpq.sectorBuffer();
+    }
+
     if (offset > 0) {
       saturateBuffer()
           .readerIndex(offset % sectorSize);
@@ -102,7 +146,11 @@ public final class MpqStream extends InputStream {
   public void close() {
     try {
       releaseSectorOffsets();
-      releaseBuffer();
+      if (ring != null) {
+        releaseRing();
+      } else {
+        releaseBuffer();
+      }
     } finally {
       if (releaseOnClose) {
         handle.release();
@@ -129,6 +177,21 @@ public final class MpqStream extends InputStream {
     buffer = null;
   }
 
+  void releaseRing() {
+    // in-flight decodes may still be writing into their sector buffers
+    for (Future<?> future : futures) {
+      if (future != null) future.awaitUninterruptibly();
+    }
+
+    for (ByteBuf sectorBuffer : ring) {
+      ReferenceCountUtil.safeRelease(sectorBuffer);
+    }
+
+    ring = null;
+    futures = null;
+    buffer = null;
+  }
+
   int decrypt(int value) {
     seed += ENCRYPTION.get(key & 0xff);
     value ^= (key + seed);
@@ -187,6 +250,7 @@ public final class MpqStream extends InputStream {
   ByteBuf saturateBuffer() {
     assert currentSector < endSector : "currentSector(" + currentSector + ") >= endSector(" + endSector + ")";
     assert handle.buffer == null : "cannot stream mpq file handle if it has already been buffered";
+    if (ring != null) return awaitSector();
     updateSectorOffsets();
     final int sectorSize = handle.mpq.sectorSize;
     final int bufferOffset = currentSector * sectorSize;
@@ -201,4 +265,41 @@ public final class MpqStream extends InputStream {
         buffer.clear(),
         0);
   }
+
+  /**
+   * Submits the sectors following the current sector to the decoder until
+   * every sector buffer of the ring is in use. The sector buffer of the
+   * previous sector is reused, so this must only be called once it has been
+   * read.
+   */
+  void readAhead() {
+    final int slots = ring.length;
+    final int sectorSize = handle.mpq.sectorSize;
+    while (nextSubmittedSector < endSector && nextSubmittedSector < currentSector + slots) {
+      updateSectorOffsets();
+      final int sector = nextSubmittedSector++;
+      final int slot = sector % slots;
+      final int sectorCSize = nextSectorOffset - sectorOffset;
+      final int sectorFSize = Math.min(handle.FSize - sector * sectorSize, sectorSize);
+      if (DEBUG_MODE) log.trace("Reading ahead sector {} into slot {}", sector, slot);
+      sectorFSizes[slot] = sectorFSize;
+      futures[slot] = handle.decoder.submit(new DecoderExecutorGroup.SectorDecodeTask(
+          handle,
+          sector,
+          sectorOffset,
+          sectorCSize,
+          sectorFSize,
+          ring[slot].clear(),
+          0));
+    }
+  }
+
+  ByteBuf awaitSector() {
+    readAhead();
+    final int slot = currentSector % ring.length;
+    futures[slot].syncUninterruptibly();
+    futures[slot] = null;
+    currentSector++;
+    return buffer = ring[slot].setIndex(0, sectorFSizes[slot]);
+  }
 }
@@ -7,9 +7,30 @@ import java.util.TreeMap;
 import com.riiablo.logger.LogManager;
 import com.riiablo.logger.Logger;
 
+/**
+ * Adaptive Huffman decoder used by mpq sectors compressed with
+ * {@code FLAG_HUFFMAN} (typically wav files).
+ * <p>
+ * Symbols are resolved using a lookup table indexed by the next
+ * {@link #TABLE_BITS} bits of the input, which resolves up to that many levels
+ * of the tree in a single step -- longer codes continue walking the tree
+ * bit-by-bit from the node the table resolved to. The table references nodes
+ * of the tree, so it only becomes stale when the shape of the tree changes
+ * (nodes are swapped or a new value is added), and is rebuilt lazily on the
+ * next lookup. Trees which change after nearly every symbol are decoded
+ * bit-by-bit until they have remained unchanged long enough to amortize a
+ * rebuild.
+ */
 public final class Huffman {
   private static final Logger log = LogManager.getLogger(Huffman.class);
 
+  static final int TABLE_BITS = 8;
+  static final int TABLE_SIZE = 1 << TABLE_BITS;
+  static final int TABLE_MASK = TABLE_SIZE - 1;
+
+  /** minimum number of symbols decoded between table rebuilds */
+  static final int REBUILD_INTERVAL = 32;
+
   private static final short[][] CODES = {
       /* data for compression type 0x00. */
       {
@@ -296,12 +317,31 @@ public final class Huffman {
   private Node nodes = null;
   private TreeMap<Integer, Node> sorted2 = new TreeMap<>();
 
-  private Node root = null;
+  Node root = null;
 
   private int bitBuffer;
   private byte bitNumber;
   private ByteBuf source;
 
+  private final boolean lookup;
+  private final Node[] tableNodes = new Node[TABLE_SIZE];
+  private final byte[] tableBits = new byte[TABLE_SIZE];
+  private boolean dirty;
+  private int symbolsSinceRebuild;
+  private int rebuilds;
+
+  public Huffman() {
+    this(true);
+  }
+
+  /**
+   * @param lookup whether or not symbols are resolved using the lookup table,
+   *               otherwise the tree is walked bit-by-bit
+   */
+  Huffman(boolean lookup) {
+    this.lookup = lookup;
+  }
+
   private void setSource(ByteBuf source) {
     this.source = source;
     bitBuffer = 0;
@@ -320,6 +360,17 @@ public final class Huffman {
     return result;
   }
 
+  /**
+   * Buffers as many bytes of the source as will fit, s.t. at least
+   * {@link #TABLE_BITS} bits may be peeked unless the source is exhausted.
+   */
+  private void fill() {
+    while (bitNumber <= Integer.SIZE - Byte.SIZE && source.isReadable()) {
+      bitBuffer |= source.readUnsignedByte() << bitNumber;
+      bitNumber += 8;
+    }
+  }
+
   private int read8() {
     if (bitNumber < 8) {
       bitBuffer |= source.readUnsignedByte() << bitNumber;
@@ -347,6 +398,64 @@ public final class Huffman {
     else nodes.joinList(root);
     this.root = null;
     sorted2.clear();
+    invalidateTable();
+  }
+
+  private void invalidateTable() {
+    if (!dirty) {
+      dirty = true;
+      symbolsSinceRebuild = 0;
+    }
+  }
+
+  /**
+   * Rebuilds the lookup table if it is stale and enough symbols have been
+   * decoded since the last rebuild.
+   *
+   * @return whether or not the lookup table is valid
+   */
+  private boolean validateTable() {
+    if (!dirty) return true;
+    if (symbolsSinceRebuild < REBUILD_INTERVAL) return false;
+    rebuildTable(root, 0, 0);
+    dirty = false;
+    rebuilds++;
+    return true;
+  }
+
+  private void rebuildTable(Node node, int code, int depth) {
+    if (node.code != -1 || depth == TABLE_BITS) {
+      // all indexes whose low depth bits match the code resolve to node
+      for (int i = code; i < TABLE_SIZE; i += 1 << depth) {
+        tableNodes[i] = node;
+        tableBits[i] = (byte) depth;
+      }
+    } else {
+      rebuildTable(node.left, code, depth + 1);
+      rebuildTable(node.right, code | (1 << depth), depth + 1);
+    }
+  }
+
+  private Node decodeSymbol() {
+    Node current = root;
+    if (lookup && validateTable()) {
+      fill();
+      if (bitNumber >= TABLE_BITS) {
+        final int index = bitBuffer & TABLE_MASK;
+        final int bits = tableBits[index];
+        current = tableNodes[index];
+        bitBuffer >>>= bits;
+        bitNumber -= bits;
+      }
+    }
+
+    while (current.code == -1) {
+      final int i = read1();
+      current = i == 0 ? current.left : current.right;
+    }
+
+    symbolsSinceRebuild++;
+    return current;
   }
 
   private void insertNode(Node node) {
@@ -368,7 +477,7 @@ public final class Huffman {
     sorted2.put(node.freq, node);
   }
 
-  private Node addValueToTree(int value) {
+  Node addValueToTree(int value) {
     // create leaf node
     Node node = getNode();
     node.code = value;
@@ -398,10 +507,12 @@ public final class Huffman {
     child1.parent = node2;
     child2.parent = node2;
 
+    invalidateTable();
+
     return node;
   }
 
-  private void incrementProbability(Node node) {
+  void incrementProbability(Node node) {
     while (node != null) {
       // possible optimization here. Is all this really nescescary to enforce order?
       if (sorted2.get(node.freq) == node) {
@@ -420,6 +531,7 @@ public final class Huffman {
       if (where != node) {
         node.listSwap(where);
         node.treeSwap(where);
+        invalidateTable();
 
         if (where.freq != where.next.freq) {
           sorted2.put(where.freq, where);
@@ -431,7 +543,7 @@ public final class Huffman {
     }
   }
 
-  private void buildTree(int tree) {
+  void buildTree(int tree) {
     final short[] probabilities = CODES[tree];
     if (root != null) destroyTree(root);
 
@@ -470,6 +582,8 @@ public final class Huffman {
     }
 
     root.parent = null;
+    invalidateTable();
+    symbolsSinceRebuild = REBUILD_INTERVAL;
   }
 
   public int inflate(ByteBuf in, ByteBuf out) {
@@ -481,11 +595,7 @@ public final class Huffman {
     boolean adjustProbability = type == 0;
 
     for (;;) {
-      Node current = root;
-      while (current.code == -1) {
-        final int i = read1();
-        current = i == 0 ? current.left : current.right;
-      }
+      Node current = decodeSymbol();
 
       if (current.code == 0x101) {
         int value = read8();
@@ -505,4 +615,9 @@ public final class Huffman {
 
     return out.writerIndex();
   }
+
+  /** number of times the lookup table has been rebuilt */
+  int rebuilds() {
+    return rebuilds;
+  }
 }
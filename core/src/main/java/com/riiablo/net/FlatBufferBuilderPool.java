@@ -0,0 +1,86 @@
+package com.riiablo.net;
+
+import com.google.flatbuffers.FlatBufferBuilder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.nio.ByteBuffer;
+
+import com.badlogic.gdx.utils.Pool;
+
+/**
+ * Pool of {@link FlatBufferBuilder} instances which are cleared and reused
+ * instead of being allocated for every packet. Finished builders are copied
+ * into a {@link ByteBuf} obtained from the configured {@link ByteBufAllocator}
+ * and immediately returned to the pool, s.t. the only per-packet allocation is
+ * the (pooled) buffer handed to the channel.
+ *
+ * Instances are confined to the first thread which uses them.
+ */
+public class FlatBufferBuilderPool extends Pool<FlatBufferBuilder> {
+  public static final int DEFAULT_BUILDER_SIZE = 1024;
+
+  final ByteBufAllocator alloc;
+  final int builderSize;
+  Thread owner;
+
+  public FlatBufferBuilderPool() {
+    this(PooledByteBufAllocator.DEFAULT);
+  }
+
+  public FlatBufferBuilderPool(ByteBufAllocator alloc) {
+    this(alloc, DEFAULT_BUILDER_SIZE, 16, 256);
+  }
+
+  public FlatBufferBuilderPool(ByteBufAllocator alloc, int builderSize, int initialCapacity, int max) {
+    super(initialCapacity, max);
+    this.alloc = alloc;
+    this.builderSize = builderSize;
+  }
+
+  public ByteBufAllocator alloc() {
+    return alloc;
+  }
+
+  @Override
+  protected FlatBufferBuilder newObject() {
+    return new FlatBufferBuilder(builderSize);
+  }
+
+  @Override
+  public FlatBufferBuilder obtain() {
+    assert confined() : "obtain() called from " + Thread.currentThread() + ", owned by " + owner;
+    return super.obtain();
+  }
+
+  @Override
+  public void free(FlatBufferBuilder builder) {
+    assert confined() : "free() called from " + Thread.currentThread() + ", owned by " + owner;
+    super.free(builder);
+  }
+
+  @Override
+  protected void reset(FlatBufferBuilder builder) {
+    builder.clear();
+  }
+
+  boolean confined() {
+    if (owner == null) owner = Thread.currentThread();
+    return owner == Thread.currentThread();
+  }
+
+  /**
+   * Copies the finished contents of {@code builder} into a new buffer from
+   * {@link #alloc()} and returns {@code builder} to this pool.
+   *
+   * @return buffer containing the finished flatbuffer, which must be released
+   *         by the caller once written
+   */
+  public ByteBuf finish(FlatBufferBuilder builder) {
+    final ByteBuffer data = builder.dataBuffer();
+    final ByteBuf buffer = alloc.directBuffer(data.remaining());
+    buffer.writeBytes(data);
+    free(builder);
+    return buffer;
+  }
+}
@@ -76,9 +76,9 @@ public class CharData implements ItemData.UpdateListener, Pool.Poolable {
   final Array<SkillListener> skillListeners = new Array<>(false, 16);
 
   @Deprecated
-  private static final ItemReader ITEM_READER = new ItemReader(); // TODO: inject
+  private static final ItemReader ITEM_READER = new ItemReader(false); // TODO: inject
   @Deprecated
-  private static final StatListReader STAT_READER = new StatListReader(); // TODO: inject
+  private static final StatListReader STAT_READER = new StatListReader(false); // TODO: inject
 
   /** Constructs a managed instance. Used for local players with complete save data */
   public static CharData loadFromD2S(int diff, D2S d2s) {
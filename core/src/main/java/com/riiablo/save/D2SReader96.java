@@ -309,17 +309,20 @@ public class D2SReader96 {
     Array<Item> itemList = items.items = new Array<>(size);
     log.trace("Reading {} items...", size);
     int errors = 0;
+    final boolean diagnostics = itemReader.diagnostics(); // else item is only put to log errors
     for (int i = 0; i < size; i++) {
       try {
-        MDC.put("item", i);
+        if (diagnostics) MDC.put("item", i);
         final Item item = itemReader.readItem(in);
         log.debug("item: {}", item);
         itemList.add(item);
       } catch (SignatureMismatch t) {
+        MDC.put("item", i);
         log.warn(t.getMessage(), t);
         i--;
         itemReader.skipUntil(in.realign());
       } catch (InvalidFormat t) {
+        MDC.put("item", i);
         log.warn(t.getMessage(), t);
         errors++;
         itemReader.skipUntil(in.realign());
@@ -115,11 +115,11 @@ import com.riiablo.item.ItemGenerator;
 import com.riiablo.item.VendorGenerator;
 import com.riiablo.key.MappedKey;
 import com.riiablo.key.MappedKeyStateAdapter;
-import com.riiablo.map.Act1MapBuilder;
 import com.riiablo.map.Box2DPhysics;
 import com.riiablo.map.Map;
 import com.riiablo.map.MapManager;
 import com.riiablo.map.RenderSystem;
+import com.riiablo.map.pfa.PathfindingService;
 import com.riiablo.profiler.ProfilerPlugin;
 import com.riiablo.save.CharData;
 import com.riiablo.screen.panel.CharacterPanel;
@@ -211,6 +211,7 @@ public class GameScreen extends ScreenAdapter implements GameLoadingScreen.Loada
   EngineConfig config;
   Map map;
   MapManager mapManager;
+  PathfindingService pathfinding;
   IsometricCamera iso;
   InputProcessor testingInputProcessor;
 
@@ -500,6 +501,7 @@ public class GameScreen extends ScreenAdapter implements GameLoadingScreen.Loada
     config = new EngineConfig(0, 0);
     map = new Map(config.seed(), config.diff());
     mapManager = new MapManager();
+    pathfinding = new PathfindingService(1);
     renderer = new RenderSystem(Riiablo.batch, map);
     iso = renderer.iso();
     scaledStage = new Stage(new ScreenViewport(iso), Riiablo.batch);
@@ -511,6 +513,7 @@ public class GameScreen extends ScreenAdapter implements GameLoadingScreen.Loada
         .register("iso", iso)
         .register("config", config)
         .register("map", map)
+        .register("pathfinding", pathfinding)
         .register("factory", factory)
         .register("itemController", itemController)
         .register("batch", Riiablo.batch)
@@ -525,7 +528,6 @@ public class GameScreen extends ScreenAdapter implements GameLoadingScreen.Loada
 
     // hacked until I can rewrite into proper system
     engine.inject(map);
-    engine.inject(Act1MapBuilder.INSTANCE);
 
     if (mobileControls != null) engine.inject(mobileControls);
 
@@ -865,6 +867,7 @@ public class GameScreen extends ScreenAdapter implements GameLoadingScreen.Loada
     //map.dispose(); // FIXME: additional instances aren't reloading textures properly (DT1s disposal)
     charData.clearListeners();
     engine.dispose();
+    pathfinding.dispose();
     for (Actor actor : stage.getActors()) if (actor instanceof Disposable) ((Disposable) actor).dispose();
     stage.dispose();
     for (AssetDescriptor asset : preloadedAssets) Riiablo.assets.unload(asset.fileName);
@@ -0,0 +1,126 @@
+package com.riiablo.attributes;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import com.badlogic.gdx.utils.IntArray;
+
+import com.riiablo.RiiabloTest;
+
+public class StatColumnsTest extends RiiabloTest {
+  static final int SEED = 0x5EED;
+  static final int NUM_ENTITIES = 100;
+
+  static StatListRef newStats(Random random) {
+    StatListRef stats = StatList.obtain();
+    final float maxhp = 10 + random.nextInt(100);
+    stats.put(Stat.maxhp, maxhp);
+    stats.put(Stat.hitpoints, maxhp * random.nextFloat());
+    if (random.nextBoolean()) stats.put(Stat.armorclass, random.nextInt(100));
+    return stats;
+  }
+
+  static String toString(StatListRef stats) {
+    StringBuilder builder = new StringBuilder(64);
+    for (StatRef stat : stats) builder.append(stat.id()).append('=').append(stat.encodedValues()).append(' ');
+    return builder.toString();
+  }
+
+  static StatColumns newColumns(StatListRef[] stats) {
+    StatColumns columns = new StatColumns(4, Stat.maxhp, Stat.hitpoints, Stat.armorclass);
+    for (int i = 0; i < stats.length; i++) columns.add(i, stats[i]);
+    return columns;
+  }
+
+  @Test
+  public void load_store() {
+    Random random = new Random(SEED);
+    StatListRef[] stats = new StatListRef[NUM_ENTITIES];
+    for (int i = 0; i < stats.length; i++) stats[i] = newStats(random);
+    StatColumns columns = newColumns(stats);
+    assertEquals(NUM_ENTITIES, columns.size());
+    for (int i = 0; i < stats.length; i++) {
+      final int row = columns.row(i);
+      assertEquals(toString(stats[i]), toString(columns.view(row)));
+      assertEquals(stats[i].containsAny(Stat.armorclass), columns.has(row, Stat.armorclass));
+      assertEquals(stats[i].getValue(Stat.hitpoints, 0f), columns.getFixed(row, Stat.hitpoints));
+    }
+  }
+
+  @Test
+  public void remove_moves_last_row() {
+    Random random = new Random(SEED);
+    StatListRef[] stats = new StatListRef[NUM_ENTITIES];
+    for (int i = 0; i < stats.length; i++) stats[i] = newStats(random);
+    StatColumns columns = newColumns(stats);
+    for (int i = 0; i < stats.length; i += 3) assertTrue(columns.remove(i));
+    assertFalse(columns.remove(0));
+    for (int i = 0; i < stats.length; i++) {
+      if (i % 3 == 0) {
+        assertFalse(columns.contains(i));
+        continue;
+      }
+
+      final int row = columns.row(i);
+      assertTrue(row < columns.size());
+      assertEquals(i, columns.entity(row));
+      assertEquals(toString(stats[i]), toString(columns.view(row)));
+    }
+  }
+
+  @Test
+  public void area_matches_stat_lists() {
+    Random random = new Random(SEED);
+    StatListRef[] stats = new StatListRef[NUM_ENTITIES];
+    for (int i = 0; i < stats.length; i++) stats[i] = newStats(random);
+    StatColumns columns = newColumns(stats);
+    float[] xs = new float[NUM_ENTITIES], ys = new float[NUM_ENTITIES];
+    for (int i = 0; i < stats.length; i++) {
+      xs[i] = random.nextFloat() * 100;
+      ys[i] = random.nextFloat() * 100;
+      columns.setPosition(columns.row(i), xs[i], ys[i]);
+    }
+
+    final int heal = Stat.encode(Stat.hitpoints, 20);
+    final int damage = -Stat.encode(Stat.hitpoints, 60);
+    IntArray rows = new IntArray();
+    for (int n = 0; n < 20; n++) {
+      final float x = random.nextFloat() * 100, y = random.nextFloat() * 100, radius = 10 + random.nextFloat() * 20;
+      final boolean healing = random.nextBoolean();
+      rows.clear();
+      if (healing) {
+        columns.within(x, y, radius, rows);
+        columns.addEncoded(Stat.hitpoints, heal, rows, Stat.maxhp);
+      } else {
+        columns.addEncoded(Stat.hitpoints, damage, x, y, radius, rows);
+      }
+
+      int affected = 0;
+      for (int i = 0; i < stats.length; i++) {
+        final float dx = xs[i] - x, dy = ys[i] - y;
+        if (dx * dx + dy * dy > radius * radius) continue;
+        affected++;
+        final int maxhp = stats[i].getEncodedValue(Stat.maxhp, 0);
+        final StatRef hitpoints = stats[i].get(Stat.hitpoints);
+        if (healing) {
+          hitpoints.setEncoded(Math.min(hitpoints.encodedValues() + heal, Math.max(hitpoints.encodedValues(), maxhp)));
+        } else {
+          hitpoints.addEncoded(damage);
+        }
+      }
+
+      assertEquals(affected, rows.size);
+    }
+
+    IntArray all = new IntArray(), depleted = new IntArray();
+    for (int row = 0; row < columns.size(); row++) all.add(row);
+    columns.depleted(Stat.hitpoints, all, depleted);
+    for (int i = 0; i < stats.length; i++) {
+      final int row = columns.row(i);
+      assertEquals(stats[i].getEncodedValue(Stat.hitpoints, 0), columns.getEncoded(row, Stat.hitpoints));
+      assertEquals(stats[i].getEncodedValue(Stat.hitpoints, 0) <= 0, depleted.contains(row));
+    }
+  }
+}
@@ -3,11 +3,16 @@ package com.riiablo.attributes;
 import org.junit.jupiter.api.*;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.Arrays;
+import java.util.Iterator;
+
 import com.riiablo.RiiabloTest;
 import com.riiablo.io.BitInput;
 import com.riiablo.io.ByteInput;
+import com.riiablo.io.EndOfInput;
 import com.riiablo.logger.Level;
 import com.riiablo.logger.LogManager;
+import com.riiablo.logger.MDC;
 
 public class StatListReaderTest extends RiiabloTest {
   @BeforeAll
@@ -88,4 +93,65 @@ public class StatListReaderTest extends RiiabloTest {
     assertTrue(stats.containsAny(Stat.passive_pois_pierce));
     assertEquals(23, stats.get(Stat.passive_pois_pierce).value0());
   }
+
+  /** magic properties of a Grief phase blade, starting at bit {@link #GRIEF_OFFSET} */
+  static final byte[] GRIEF = {
+      (byte) 0x4A, (byte) 0x4D, (byte) 0x10, (byte) 0x08, (byte) 0x80,
+      (byte) 0x04, (byte) 0x64, (byte) 0x00, (byte) 0x10, (byte) 0x72,
+      (byte) 0x33, (byte) 0x26, (byte) 0x07, (byte) 0xD2, (byte) 0x0A,
+      (byte) 0x0C, (byte) 0x57, (byte) 0x3B, (byte) 0xED, (byte) 0x90,
+      (byte) 0x24, (byte) 0x28, (byte) 0x00, (byte) 0xF5, (byte) 0xDF,
+      (byte) 0xCA, (byte) 0xA2, (byte) 0xCB, (byte) 0xEC, (byte) 0x4D,
+      (byte) 0xE2, (byte) 0x39, (byte) 0x8D, (byte) 0x3D, (byte) 0x16,
+      (byte) 0x8D, (byte) 0xE6, (byte) 0x3D, (byte) 0x50, (byte) 0x2F,
+      (byte) 0xFE, (byte) 0x03, (byte) 0x4A, (byte) 0x4D, (byte) 0x10,
+      (byte) 0x00, (byte) 0xA0, (byte) 0x00, (byte) 0x64, (byte) 0x18,
+      (byte) 0x00, (byte) 0x20, (byte) 0x07, (byte) 0x53, (byte) 0x03,
+      (byte) 0x02, (byte) 0x4A, (byte) 0x4D, (byte) 0x10, (byte) 0x00,
+      (byte) 0xA0, (byte) 0x00, (byte) 0x64, (byte) 0x18, (byte) 0x02,
+      (byte) 0x20, (byte) 0x07, (byte) 0x33, (byte) 0x03, (byte) 0x02,
+      (byte) 0x4A, (byte) 0x4D, (byte) 0x10, (byte) 0x00, (byte) 0xA0,
+      (byte) 0x00, (byte) 0x64, (byte) 0x18, (byte) 0x04, (byte) 0x20,
+      (byte) 0x27, (byte) 0x83, (byte) 0x03, (byte) 0x02, (byte) 0x4A,
+      (byte) 0x4D, (byte) 0x10, (byte) 0x00, (byte) 0xA0, (byte) 0x00,
+      (byte) 0x64, (byte) 0x18, (byte) 0x06, (byte) 0x20, (byte) 0x27,
+      (byte) 0x33, (byte) 0x03, (byte) 0x02, (byte) 0x4A, (byte) 0x4D,
+      (byte) 0x10, (byte) 0x00, (byte) 0xA0, (byte) 0x00, (byte) 0x64,
+      (byte) 0x18, (byte) 0x08, (byte) 0x20, (byte) 0x07, (byte) 0x83,
+      (byte) 0x03, (byte) 0x02
+  };
+  static final int GRIEF_OFFSET = 197;
+
+  static StatListRef readGrief(boolean diagnostics, byte[] bytes) {
+    final BitInput bits = ByteInput.wrap(bytes).unalign().skipBits(GRIEF_OFFSET);
+    return new StatListReader(diagnostics).read(new StatList().reset(1).buildList(), bits, false);
+  }
+
+  @Test
+  public void diagnostics_do_not_change_decoded_stats() {
+    final StatListRef diagnostic = readGrief(true, GRIEF);
+    final StatListRef production = readGrief(false, GRIEF);
+    assertEquals(diagnostic.size(), production.size());
+    final Iterator<StatRef> expected = diagnostic.iterator();
+    final Iterator<StatRef> actual = production.iterator();
+    while (expected.hasNext()) {
+      final StatRef e = expected.next();
+      final StatRef a = actual.next();
+      assertEquals(e.id(), a.id());
+      assertEquals(e.encodedParams(), a.encodedParams(), e.entry().toString());
+      assertEquals(e.encodedValues(), a.encodedValues(), e.entry().toString());
+    }
+
+    assertFalse(actual.hasNext());
+    assertEquals(0, MDC.size());
+  }
+
+  @Test
+  public void corrupt_stats_throw_and_leave_mdc_empty() {
+    final byte[] truncated = Arrays.copyOf(GRIEF, 32);
+    assertThrows(EndOfInput.class, () -> readGrief(true, truncated));
+    assertEquals(0, MDC.size(), "diagnostics");
+    assertThrows(EndOfInput.class, () -> readGrief(false, truncated));
+    assertEquals(0, MDC.size(), "production");
+  }
 }
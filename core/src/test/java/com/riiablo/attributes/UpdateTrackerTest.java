@@ -0,0 +1,149 @@
+package com.riiablo.attributes;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import com.badlogic.gdx.utils.Array;
+
+import com.riiablo.CharacterClass;
+import com.riiablo.RiiabloTest;
+import com.riiablo.codec.excel.CharStats;
+import com.riiablo.logger.Level;
+import com.riiablo.logger.LogManager;
+
+public class UpdateTrackerTest extends RiiabloTest {
+  static final int SEED = 0x5EED;
+  static final int NUM_LISTS = 16;
+  static final int NUM_CHANGES = 500;
+
+  static final short[] BASE_STATS = {
+      Stat.strength, Stat.energy, Stat.dexterity, Stat.vitality, Stat.level,
+      Stat.maxhp, Stat.maxmana, Stat.maxstamina, Stat.armorclass, Stat.mindamage, Stat.maxdamage,
+  };
+
+  static final short[] STATS = {
+      Stat.strength, Stat.energy, Stat.dexterity, Stat.vitality,
+      Stat.maxhp, Stat.maxmana, Stat.armorclass, Stat.mindamage, Stat.maxdamage, Stat.secondary_maxdamage,
+      Stat.tohit, Stat.fireresist, Stat.lightresist, Stat.hpregen, Stat.item_fastermovevelocity,
+      Stat.item_armor_percent, Stat.item_maxdamage_percent, Stat.item_mindamage_percent,
+      Stat.item_maxhp_percent, Stat.item_maxmana_percent,
+      Stat.item_armor_perlevel, Stat.item_hp_perlevel, Stat.item_mana_perlevel, Stat.item_strength_perlevel,
+  };
+
+  @BeforeAll
+  public static void before() {
+    LogManager.setLevel("com.riiablo.attributes", Level.WARN);
+  }
+
+  static Attributes newAttributes(Random random) {
+    Attributes attrs = Attributes.obtainLarge();
+    for (short stat : BASE_STATS) attrs.base().put(stat, 1 + random.nextInt(100));
+    return attrs;
+  }
+
+  static Attributes copyOf(Attributes attrs) {
+    Attributes copy = Attributes.obtainLarge();
+    copy.base().setAll(attrs.base());
+    return copy;
+  }
+
+  static Array<StatListRef> newLists(Random random, int count) {
+    Array<StatListRef> lists = new Array<>(count);
+    for (int i = 0; i < count; i++) {
+      StatListRef list = StatList.obtain();
+      for (int j = 0, s = 1 + random.nextInt(6); j < s; j++) {
+        list.put(STATS[random.nextInt(STATS.length)], 1 + random.nextInt(50));
+      }
+
+      lists.add(list);
+    }
+
+    return lists;
+  }
+
+  static String toString(StatListRef stats) {
+    StringBuilder builder = new StringBuilder(256);
+    for (StatRef stat : stats) {
+      builder
+          .append(stat.id()).append(':')
+          .append(stat.encodedParams()).append('=')
+          .append(stat.encodedValues()).append(' ');
+    }
+
+    return builder.toString();
+  }
+
+  /**
+   * Randomly adds and removes lists from a tracker and asserts that after every
+   * change the tracked attributes match attributes recomputed from scratch
+   * from the same lists by an {@link UpdateSequence}.
+   */
+  static void assertMatchesRecompute(long seed, boolean selfBased, CharStats.Entry charStats) {
+    final Random random = new Random(seed);
+    final AttributesUpdater updater = new AttributesUpdater();
+    final Attributes actual = newAttributes(random);
+    final Attributes expected = copyOf(actual);
+    final Attributes opBase = selfBased ? actual : copyOf(actual);
+    final Attributes expectedOpBase = selfBased ? expected : opBase;
+    if (!selfBased) updater.update(opBase, charStats).apply();
+
+    final Array<StatListRef> lists = newLists(random, NUM_LISTS);
+    final Array<StatListRef> tracked = new Array<>();
+    final UpdateTracker tracker = updater.track(actual, StatListFlags.FLAG_NONE, opBase, charStats);
+    for (int i = 0; i < NUM_CHANGES; i++) {
+      final StatListRef list = lists.get(random.nextInt(lists.size));
+      final String change;
+      if (tracker.contains(list)) {
+        change = "remove " + list.debugString();
+        tracker.remove(list);
+        tracked.removeValue(list, true);
+      } else {
+        change = "add " + list.debugString();
+        tracker.add(list);
+        tracked.add(list);
+      }
+
+      UpdateSequence sequence = updater.update(expected, expectedOpBase, charStats);
+      for (StatListRef stats : tracked) sequence.add(stats);
+      sequence.apply();
+
+      final String message = "change " + i + ": " + change;
+      assertEquals(tracked.size, tracker.numLists(), message);
+      assertEquals(toString(expected.aggregate()), toString(actual.aggregate()), message);
+      assertEquals(toString(expected.remaining()), toString(actual.remaining()), message);
+    }
+  }
+
+  @Test
+  public void matches_recompute() {
+    final CharStats.Entry sorc = CharacterClass.SORCERESS.entry();
+    for (int i = 0; i < 8; i++) {
+      assertMatchesRecompute(SEED + i, true, sorc);
+    }
+  }
+
+  @Test
+  public void matches_recompute_with_op_base() {
+    final CharStats.Entry sorc = CharacterClass.SORCERESS.entry();
+    for (int i = 0; i < 8; i++) {
+      assertMatchesRecompute(SEED + i, false, sorc);
+    }
+  }
+
+  @Test
+  public void matches_recompute_without_char_stats() {
+    for (int i = 0; i < 8; i++) {
+      assertMatchesRecompute(SEED + i, true, null);
+    }
+  }
+
+  @Test
+  public void remove_untracked() {
+    final AttributesUpdater updater = new AttributesUpdater();
+    final Attributes attrs = newAttributes(new Random(SEED));
+    final UpdateTracker tracker = updater.track(attrs, StatListFlags.FLAG_NONE, attrs, null);
+    assertThrows(IllegalArgumentException.class, () -> tracker.remove(StatList.obtain()));
+  }
+}
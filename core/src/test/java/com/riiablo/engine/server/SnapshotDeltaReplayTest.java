@@ -0,0 +1,172 @@
+package com.riiablo.engine.server;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.google.flatbuffers.FlatBufferBuilder;
+import java.util.Random;
+
+import com.artemis.ComponentMapper;
+import com.artemis.World;
+import com.artemis.WorldConfigurationBuilder;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.IntMap;
+import com.riiablo.engine.server.component.Angle;
+import com.riiablo.engine.server.component.Class;
+import com.riiablo.engine.server.component.Flags;
+import com.riiablo.engine.server.component.Position;
+import com.riiablo.engine.server.component.Velocity;
+import com.riiablo.net.packet.d2gs.ComponentP;
+import com.riiablo.net.packet.d2gs.EntitySync;
+import com.riiablo.net.packet.d2gs.PositionP;
+
+import net.mostlyoriginal.api.event.common.EventSystem;
+
+/**
+ * Replays a scripted scene of mostly static objects and a few wandering
+ * monsters to two clients, the second of which joins part way through, and
+ * compares the bytes sent per tick with and without delta snapshots.
+ */
+class SnapshotDeltaReplayTest {
+  static final int CLIENTS  = 2;
+  static final int OBJECTS  = 200;
+  static final int MONSTERS = 10;
+  static final int TICKS    = 100;
+  static final int JOIN     = 40;
+
+  World world;
+  SerializationManager serializer;
+  ComponentMapper<Position> mPosition;
+  ComponentMapper<Velocity> mVelocity;
+  int[] entities;
+
+  @BeforeEach
+  void setUp() {
+    world = new World(new WorldConfigurationBuilder()
+        .with(new EventSystem())
+        .with(new CofManager())
+        .with(serializer = new SerializationManager())
+        .build());
+    mPosition = world.getMapper(Position.class);
+    mVelocity = world.getMapper(Velocity.class);
+    ComponentMapper<Class> mClass = world.getMapper(Class.class);
+    ComponentMapper<Flags> mFlags = world.getMapper(Flags.class);
+    ComponentMapper<Angle> mAngle = world.getMapper(Angle.class);
+
+    Random random = new Random(0x5EED);
+    entities = new int[OBJECTS + MONSTERS];
+    for (int i = 0; i < entities.length; i++) {
+      int entityId = entities[i] = world.create();
+      mFlags.create(entityId);
+      mPosition.create(entityId).position.set(random.nextInt(1000), random.nextInt(1000));
+      if (i < OBJECTS) {
+        mClass.create(entityId).type = Class.Type.OBJ;
+      } else {
+        mClass.create(entityId).type = Class.Type.MON;
+        mVelocity.create(entityId).set(4, 6).velocity.set(1, 0).rotateDeg(random.nextInt(360));
+        mAngle.create(entityId);
+      }
+    }
+
+    world.process();
+  }
+
+  @AfterEach
+  void tearDown() {
+    world.dispose();
+  }
+
+  /** moves the monsters along their velocities, turning every few ticks */
+  void step(int tick) {
+    for (int i = OBJECTS; i < entities.length; i++) {
+      Vector2 velocity = mVelocity.get(entities[i]).velocity;
+      if (tick % 10 == i % 10) velocity.rotateDeg(45);
+      mPosition.get(entities[i]).position.add(velocity);
+    }
+  }
+
+  /** @return total bytes sent over the replay */
+  long replay(boolean delta, long[] bytesPerTick) {
+    SnapshotBaselines baselines = new SnapshotBaselines(CLIENTS);
+    @SuppressWarnings("unchecked")
+    IntMap<Vector2>[] mirrors = (IntMap<Vector2>[]) new IntMap[CLIENTS];
+    for (int i = 0; i < CLIENTS; i++) mirrors[i] = new IntMap<>();
+
+    long total = 0;
+    for (int tick = 0; tick < TICKS; tick++) {
+      if (tick == JOIN) baselines.resync(1);
+      long bytes = 0;
+      for (int entityId : entities) {
+        int full = serializer.snapshot(entityId);
+        for (int client = 0; client < CLIENTS; client++) {
+          if (client == 1 && tick < JOIN) continue;
+          int mask = delta ? serializer.delta(baselines, client, entityId) : full;
+          if (mask == 0) continue;
+          FlatBufferBuilder builder = new FlatBufferBuilder(0);
+          builder.finish(serializer.serialize(builder, entityId, mask));
+          bytes += builder.dataBuffer().remaining();
+          serializer.acknowledge(baselines, client, entityId, mask);
+          apply(mirrors[client], EntitySync.getRootAsEntitySync(builder.dataBuffer()));
+        }
+      }
+
+      for (int client = 0; client < CLIENTS; client++) {
+        if (client == 1 && tick < JOIN) continue;
+        for (int entityId : entities) {
+          assertEquals(mPosition.get(entityId).position, mirrors[client].get(entityId),
+              "client " + client + " entity " + entityId + " tick " + tick);
+        }
+      }
+
+      bytesPerTick[tick] = bytes;
+      total += bytes;
+      step(tick);
+    }
+
+    return total;
+  }
+
+  static void apply(IntMap<Vector2> mirror, EntitySync sync) {
+    for (int i = 0, s = sync.componentLength(); i < s; i++) {
+      if (sync.componentType(i) != ComponentP.PositionP) continue;
+      PositionP position = (PositionP) sync.component(new PositionP(), i);
+      Vector2 vec = mirror.get(sync.entityId());
+      if (vec == null) mirror.put(sync.entityId(), vec = new Vector2());
+      vec.set(position.x(), position.y());
+    }
+  }
+
+  @Test
+  void deltas_reduce_steady_state_bytes() {
+    long[] fullPerTick = new long[TICKS];
+    long full = replay(false, fullPerTick);
+
+    long[] deltaPerTick = new long[TICKS];
+    long delta = replay(true, deltaPerTick);
+
+    // first tick and the join of client 1 must be full snapshots
+    assertEquals(fullPerTick[0], deltaPerTick[0]);
+    assertTrue(deltaPerTick[JOIN] > deltaPerTick[JOIN - 1]);
+    // afterwards only the moving monsters should be sent
+    assertTrue(deltaPerTick[TICKS - 1] * 10 < fullPerTick[TICKS - 1]);
+    assertTrue(delta < full);
+  }
+
+  @Test
+  void resync_sends_full_snapshot() {
+    SnapshotBaselines baselines = new SnapshotBaselines(CLIENTS);
+    int entityId = entities[0];
+    int full = serializer.snapshot(entityId);
+    assertEquals(full, serializer.delta(baselines, 0, entityId));
+    serializer.acknowledge(baselines, 0, entityId, full);
+    assertEquals(0, serializer.delta(baselines, 0, entityId));
+
+    mPosition.get(entityId).position.add(1, 0);
+    serializer.snapshot(entityId);
+    assertEquals(1 << ComponentP.PositionP, serializer.delta(baselines, 0, entityId));
+    assertEquals(full, serializer.delta(baselines, 1, entityId));
+
+    baselines.resync(0);
+    assertEquals(full, serializer.delta(baselines, 0, entityId));
+  }
+}
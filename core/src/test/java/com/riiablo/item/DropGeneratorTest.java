@@ -0,0 +1,115 @@
+package com.riiablo.item;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static com.riiablo.item.TreasureClassesTest.compile;
+import static com.riiablo.item.TreasureClassesTest.tc;
+
+import com.badlogic.gdx.math.RandomXS128;
+
+import com.riiablo.codec.excel.TreasureClassEx;
+
+/**
+ * Rolls treasure classes compiled from synthetic entries without quality
+ * tables, s.t. only the item bases dropped are rolled.
+ */
+class DropGeneratorTest {
+  static final int SEED = 0x5EED;
+  static final String[] CODES = { "a", "b", "c" };
+
+  static DropGenerator generator(TreasureClasses tcs) {
+    return new DropGenerator(tcs, null, new RandomXS128(SEED));
+  }
+
+  static int[] bases(Drops drops) {
+    final int[] bases = new int[drops.size];
+    for (int i = 0; i < drops.size; i++) bases[i] = drops.bases[i];
+    return bases;
+  }
+
+  static int[] bases(TreasureClasses tcs, String... codes) {
+    final int[] bases = new int[codes.length];
+    for (int i = 0; i < codes.length; i++) bases[i] = tcs.baseIndex(codes[i]);
+    return bases;
+  }
+
+  @Test
+  void negative_picks_drop_each_item_in_order_as_many_times_as_its_prob() {
+    TreasureClasses tcs = compile(CODES, tc("tc", -4, 0, "a", 2, "b", 1, "c", 3));
+    Drops drops = new Drops(16);
+    assertEquals(4, generator(tcs).roll(tcs.index("tc"), 1, 1, 0, drops));
+    assertArrayEquals(bases(tcs, "a", "a", "b", "c"), bases(drops));
+  }
+
+  @Test
+  void negative_picks_stop_once_every_item_is_dropped() {
+    TreasureClasses tcs = compile(CODES, tc("tc", -10, 0, "a", 2, "b", 1, "c", 3));
+    Drops drops = new Drops(16);
+    assertEquals(6, generator(tcs).roll(tcs.index("tc"), 1, 1, 0, drops));
+    assertArrayEquals(bases(tcs, "a", "a", "b", "c", "c", "c"), bases(drops));
+  }
+
+  @Test
+  void negative_picks_roll_nested_treasure_classes_in_order() {
+    TreasureClasses tcs = compile(CODES,
+        tc("tc", -3, 0, "a", 1, "nested", 1, "c", 1),
+        tc("nested", -2, 0, "b", 2));
+    Drops drops = new Drops(16);
+    assertEquals(4, generator(tcs).roll(tcs.index("tc"), 1, 1, 0, drops));
+    assertArrayEquals(bases(tcs, "a", "b", "b", "c"), bases(drops));
+  }
+
+  /**
+   * {@code tc0} picks {@code tc1} and so on until the last, which picks an
+   * item, s.t. rolling {@code tcN} follows a chain {@code length - N} deep.
+   */
+  static TreasureClasses chain(int length) {
+    TreasureClassEx.Entry[] chain = new TreasureClassEx.Entry[length];
+    for (int i = 0; i < length - 1; i++) chain[i] = tc("tc" + i, 1, 0, "tc" + (i + 1), 1);
+    chain[length - 1] = tc("tc" + (length - 1), 1, 0, "a", 1);
+    return compile(CODES, chain);
+  }
+
+  @Test
+  void picks_deeper_than_max_depth_are_dropped() {
+    final int length = DropGenerator.MAX_DEPTH + 8;
+    TreasureClasses tcs = chain(length);
+    DropGenerator generator = generator(tcs);
+    Drops drops = new Drops();
+    final int deepest = length - DropGenerator.MAX_DEPTH;
+    assertEquals(1, generator.roll(tcs.index("tc" + deepest), 1, 1, 0, drops));
+    assertArrayEquals(bases(tcs, "a"), bases(drops));
+    assertEquals(0, generator.roll(tcs.index("tc" + (deepest - 1)), 1, 1, 0, drops));
+    assertEquals(0, generator.roll(tcs.index("tc0"), 1, 1, 0, drops));
+  }
+
+  @Test
+  void roll_stops_once_drops_are_full() {
+    TreasureClasses tcs = compile(CODES, tc("tc", 10, 0, "a", 1));
+    DropGenerator generator = generator(tcs);
+    Drops drops = new Drops();
+    assertEquals(Drops.MAX_DROPS, generator.roll(tcs.index("tc"), 1, 1, 0, drops));
+    assertTrue(drops.isFull());
+
+    drops = new Drops(3);
+    assertEquals(3, generator.roll(tcs.index("tc"), 1, 1, 0, drops));
+    assertTrue(drops.isFull());
+  }
+
+  @Test
+  void roll_stops_once_drops_are_full_within_nested_treasure_classes() {
+    TreasureClasses tcs = compile(CODES,
+        tc("tc", -2, 0, "nested", 2),
+        tc("nested", -5, 0, "b", 5));
+    Drops drops = new Drops();
+    assertEquals(Drops.MAX_DROPS, generator(tcs).roll(tcs.index("tc"), 1, 1, 0, drops));
+    assertArrayEquals(bases(tcs, "b", "b", "b", "b", "b", "b"), bases(drops));
+  }
+
+  @Test
+  void no_drop_drops_nothing() {
+    TreasureClasses tcs = compile(CODES, tc("tc", 6, 1, "a", 0));
+    Drops drops = new Drops();
+    assertEquals(0, generator(tcs).roll(tcs.index("tc"), 8, 1, 0, drops));
+  }
+}
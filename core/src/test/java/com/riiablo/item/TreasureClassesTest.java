@@ -0,0 +1,172 @@
+package com.riiablo.item;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.badlogic.gdx.math.RandomXS128;
+
+import com.riiablo.codec.excel.ItemEntry;
+import com.riiablo.codec.excel.TreasureClassEx;
+
+/**
+ * Treasure classes compiled from synthetic entries, s.t. no D2 installation
+ * is required.
+ */
+class TreasureClassesTest {
+  static final int SEED = 0x5EED;
+
+  static ItemEntry base(String code) {
+    ItemEntry base = new ItemEntry();
+    base.code = code;
+    base.name = code;
+    return base;
+  }
+
+  /**
+   * @param items item or treasure class names each followed by its Prob
+   */
+  static TreasureClassEx.Entry tc(String name, int picks, int noDrop, Object... items) {
+    TreasureClassEx.Entry tc = new TreasureClassEx.Entry();
+    tc.name = name;
+    tc.Picks = picks;
+    tc.NoDrop = noDrop;
+    tc.Item = new String[items.length / 2];
+    tc.Prob = new int[items.length / 2];
+    for (int i = 0; i < tc.Item.length; i++) {
+      tc.Item[i] = (String) items[i << 1];
+      tc.Prob[i] = (Integer) items[(i << 1) + 1];
+    }
+
+    return tc;
+  }
+
+  /** compiles {@code tcs} picking from misc bases named by {@code codes} */
+  static TreasureClasses compile(String[] codes, TreasureClassEx.Entry... tcs) {
+    ItemEntry[] misc = new ItemEntry[codes.length];
+    for (int i = 0; i < codes.length; i++) misc[i] = base(codes[i]);
+    return new TreasureClasses(new ItemEntry[0], new ItemEntry[0], misc, tcs);
+  }
+
+  /**
+   * Asserts that the alias table of the {@code count} slots starting at
+   * {@code start} picks each slot exactly in proportion to its weight, i.e.,
+   * summing the threshold a slot is kept with and the remainders of the slots
+   * aliased to it.
+   */
+  static void assertExact(long[] weights, int start, int[] thresholds, int[] aliases, long total) {
+    final int count = weights.length;
+    final long[] numerators = new long[count];
+    for (int i = 0; i < count; i++) {
+      final int slot = start + i;
+      assertTrue(thresholds[slot] >= 0 && thresholds[slot] <= total, "threshold of " + i);
+      numerators[i] += thresholds[slot];
+      if (thresholds[slot] < total) {
+        assertNotEquals(slot, aliases[slot], "alias of " + i);
+        numerators[aliases[slot] - start] += total - thresholds[slot];
+      }
+    }
+
+    for (int i = 0; i < count; i++) {
+      assertEquals(weights[i] * count, numerators[i], "slot " + i);
+    }
+  }
+
+  @Test
+  void alias_table_is_exact() {
+    final int[] weights = { 0, 7, 1, 1, 60, 13, 2 };
+    final long noDrop = 19;
+    final int start = 3;
+    final int count = weights.length + 1;
+    final int[] padded = new int[start + count];
+    long total = noDrop;
+    for (int i = 0; i < weights.length; i++) {
+      padded[start + i] = weights[i];
+      total += weights[i];
+    }
+
+    final int[] thresholds = new int[padded.length];
+    final int[] aliases = new int[padded.length];
+    TreasureClasses.build(padded, start, count, noDrop, total,
+        thresholds, aliases, new long[count], new int[count], new int[count]);
+
+    final long[] expected = new long[count];
+    for (int i = 0; i < weights.length; i++) expected[i] = weights[i];
+    expected[count - 1] = noDrop;
+    assertExact(expected, start, thresholds, aliases, total);
+  }
+
+  @Test
+  void alias_table_of_every_player_count_is_exact() {
+    TreasureClasses tcs = compile(new String[] { "a", "b", "c" },
+        tc("tc", 1, 100, "a", 10, "b", 30, "c", 20));
+    final int tc = tcs.index("tc");
+    final int start = tcs.slots[tc];
+    for (int players = 1; players <= TreasureClasses.MAX_PLAYERS; players++) {
+      final long noDrop = TreasureClasses.noDrop(100, 60, players);
+      assertEquals(60 + noDrop, tcs.totals[players - 1][tc], "players " + players);
+      assertExact(new long[] { 10, 30, 20, noDrop }, start,
+          tcs.thresholds[players - 1], tcs.aliases[players - 1], 60 + noDrop);
+    }
+  }
+
+  @Test
+  void picks_follow_weights() {
+    final int[] weights = { 1, 2, 3, 4, 10 };
+    final int noDrop = 5;
+    TreasureClasses tcs = compile(new String[] { "a", "b", "c", "d", "e" },
+        tc("tc", 1, noDrop, "a", 1, "b", 2, "c", 3, "d", 4, "e", 10));
+    final int tc = tcs.index("tc");
+    final int start = tcs.slots[tc];
+    final int count = weights.length + 1;
+    final int total = 25;
+    final int n = 100000;
+    final int[] observed = new int[count];
+    final RandomXS128 random = new RandomXS128(SEED);
+    for (int i = 0; i < n; i++) observed[tcs.pick(tc, 1, random) - start]++;
+
+    double chiSquare = 0;
+    for (int i = 0; i < count; i++) {
+      final double expected = (double) n * (i < weights.length ? weights[i] : noDrop) / total;
+      final double d = observed[i] - expected;
+      chiSquare += d * d / expected;
+    }
+
+    // critical value of 5 degrees of freedom at p = 0.001
+    assertTrue(chiSquare < 20.515, "chi-square " + chiSquare);
+  }
+
+  @Test
+  void no_drop_is_unchanged_for_one_player() {
+    assertEquals(100, TreasureClasses.noDrop(100, 60, 1));
+    assertEquals(0, TreasureClasses.noDrop(0, 60, 8));
+    assertEquals(100, TreasureClasses.noDrop(100, 0, 8));
+  }
+
+  @Test
+  void no_drop_chance_is_that_of_one_player_raised_to_players() {
+    final int noDrop = 100000;
+    final long items = 60000;
+    final double chance = (double) noDrop / (noDrop + items);
+    long previous = noDrop;
+    for (int players = 1; players <= TreasureClasses.MAX_PLAYERS; players++) {
+      final long adjusted = TreasureClasses.noDrop(noDrop, items, players);
+      final double expected = Math.pow(chance, players);
+      // adjusted is truncated, s.t. the exact chance lies before the next value
+      assertTrue((double) adjusted / (adjusted + items) <= expected, "players " + players);
+      assertTrue(expected < (double) (adjusted + 1) / (adjusted + 1 + items), "players " + players);
+      assertTrue(adjusted <= previous, "players " + players);
+      previous = adjusted;
+    }
+  }
+
+  @Test
+  void no_drop_chance_matches_compiled_totals() {
+    TreasureClasses tcs = compile(new String[] { "a" },
+        tc("tc", 1, 100000, "a", 60000));
+    final int tc = tcs.index("tc");
+    for (int players = 1; players <= TreasureClasses.MAX_PLAYERS; players++) {
+      final long noDrop = TreasureClasses.noDrop(100000, 60000, players);
+      assertEquals((float) noDrop / (noDrop + 60000), tcs.noDropChance(tc, players), 1e-6f);
+    }
+  }
+}
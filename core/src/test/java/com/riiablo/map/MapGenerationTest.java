@@ -0,0 +1,118 @@
+package com.riiablo.map;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.Array;
+
+import com.riiablo.Riiablo;
+import com.riiablo.RiiabloTest;
+
+class MapGenerationTest extends RiiabloTest {
+  static final int SEED = 0x5EED;
+  static final int DIFF = 0;
+
+  /** @return layout of the generated act, excluding any loaded assets */
+  static String describe(Map map) {
+    StringBuilder sb = new StringBuilder(1024);
+    for (Map.Zone zone : map.zones) {
+      sb.append(zone.level.Id)
+          .append(' ').append(zone.x).append(',').append(zone.y)
+          .append(' ').append(zone.width).append('x').append(zone.height)
+          .append(' ').append(zone.gridsX).append('x').append(zone.gridsY)
+          .append(zone.town ? " town" : "")
+          .append(' ').append(zone.warps)
+          .append('\n');
+      for (int x = 0; x < zone.gridsX; x++) {
+        for (int y = 0; y < zone.gridsY; y++) {
+          Map.Preset preset = zone.presets[x][y];
+          if (preset != null) sb.append("  ").append(x).append(',').append(y).append(' ').append(preset).append('\n');
+        }
+      }
+    }
+
+    return sb.toString();
+  }
+
+  static String[] serial(int seed) {
+    String[] acts = new String[Riiablo.NUM_ACTS];
+    for (int act = 0; act < Riiablo.NUM_ACTS; act++) {
+      Map map = new Map(seed, DIFF);
+      map.generate(act);
+      acts[act] = describe(map);
+      map.dispose();
+    }
+
+    return acts;
+  }
+
+  @Test
+  void parallel_matches_serial() {
+    String[] expected = serial(SEED);
+    ForkJoinPool pool = new ForkJoinPool(Riiablo.NUM_ACTS);
+    try {
+      for (int i = 0; i < 4; i++) {
+        Map[] maps = Map.generateActs(SEED, DIFF, pool);
+        for (int act = 0; act < Riiablo.NUM_ACTS; act++) {
+          assertEquals(act, maps[act].getAct());
+          assertEquals(expected[act], describe(maps[act]), "act " + (act + 1));
+          maps[act].dispose();
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  void generation_ignores_global_random() {
+    Map map = new Map(SEED, DIFF);
+    MathUtils.random.setSeed(1);
+    map.generate(0);
+    String expected = describe(map);
+    map.dispose();
+
+    MathUtils.random.setSeed(2);
+    map.generate(0);
+    assertEquals(expected, describe(map));
+    map.dispose();
+  }
+
+  @Test
+  void concurrent_games_generate_independently() throws Exception {
+    final int games = 8;
+    Array<String> expected = new Array<>(games);
+    for (int i = 0; i < games; i++) expected.add(serial(SEED + i)[0]);
+
+    ExecutorService executor = Executors.newFixedThreadPool(games);
+    try {
+      Array<Future<String>> futures = new Array<>(games);
+      for (int i = 0; i < games; i++) {
+        final int seed = SEED + i;
+        futures.add(executor.submit(new Callable<String>() {
+          @Override
+          public String call() {
+            Map map = new Map(seed, DIFF);
+            map.generate(0);
+            String description = describe(map);
+            map.dispose();
+            return description;
+          }
+        }));
+      }
+
+      for (int i = 0; i < games; i++) {
+        assertEquals(expected.get(i), futures.get(i).get(), "game " + i);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package com.riiablo.map;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+
+import com.riiablo.RiiabloTest;
+import com.riiablo.map.pfa.GraphPath;
+import com.riiablo.map.pfa.PathSearch;
+import com.riiablo.map.pfa.PathfindingService;
+import com.riiablo.map.pfa.PathfindingService.Request;
+
+class PathfindingTest extends RiiabloTest {
+  static final int SEED = 0x5EED;
+  static final int FLAGS = DT1.Tile.FLAG_BLOCK_WALK;
+
+  static Map map;
+
+  @BeforeAll
+  static void generate() {
+    map = generate(SEED);
+  }
+
+  @AfterAll
+  static void dispose() {
+    map.dispose();
+  }
+
+  /**
+   * Generates the layout of act 1 and blocks random tiles and sub-tiles
+   * within it, in place of the walls and objects loading it would add.
+   */
+  static Map generate(int seed) {
+    Map map = new Map(seed, 0);
+    map.generate(0);
+    Random random = new Random(seed);
+    for (Map.Zone zone : map.zones) {
+      for (int x = 0; x < zone.width; x++) {
+        for (int y = 0; y < zone.height; y++) {
+          if (random.nextFloat() < 0.05f) zone.or(x, y, FLAGS);
+        }
+      }
+
+      for (int tx = 0; tx < zone.tilesX; tx++) {
+        for (int ty = 0; ty < zone.tilesY; ty++) {
+          if (random.nextFloat() < 0.15f) Map.Preset.or(zone, tx, ty, FLAGS);
+        }
+      }
+    }
+
+    return map;
+  }
+
+  /** @return random requests which start within a zone, some of which are out of reach */
+  static Array<Request> requests(Map map, Random random, int count) {
+    Array<Request> requests = new Array<>(count);
+    Vector2 src = new Vector2(), dst = new Vector2();
+    for (int i = 0; i < count; i++) {
+      Map.Zone zone = map.zones.get(random.nextInt(map.zones.size));
+      src.set(zone.x + random.nextInt(zone.width), zone.y + random.nextInt(zone.height));
+      dst.set(src).add(random.nextInt(161) - 80, random.nextInt(161) - 80);
+      requests.add(new Request().set(i, src, dst, FLAGS, random.nextInt(3), random.nextBoolean()));
+    }
+
+    return requests;
+  }
+
+  @Test
+  void search_matches_astar() {
+    Random random = new Random(SEED);
+    PathSearch search = new PathSearch();
+    GraphPath expected = new GraphPath();
+    GraphPath actual = new GraphPath();
+    int found = 0;
+    for (Request request : requests(map, random, 2000)) {
+      boolean success = map.findPath(request.src, request.dst, FLAGS, request.size, expected);
+      assertEquals(success, search.search(map, request.src, request.dst, FLAGS, request.size, actual), request.toString());
+      assertEquals(expected.toString(), actual.toString(), request.toString());
+      if (success) found++;
+    }
+
+    assertTrue(found > 0);
+  }
+
+  @Test
+  void service_matches_serial() {
+    Random random = new Random(SEED);
+    Array<Request> expected = requests(map, random, 1000);
+    random.setSeed(SEED);
+    Array<Request> actual = requests(map, random, 1000);
+
+    PathfindingService serial = new PathfindingService(0);
+    PathfindingService parallel = new PathfindingService(4);
+    try {
+      PathfindingService.Batch batch = serial.submit(map, expected);
+      assertTrue(batch.isDone());
+      parallel.submit(map, actual).await();
+      for (int i = 0; i < expected.size; i++) {
+        assertNotEquals(PathfindingService.Status.PENDING, actual.get(i).status);
+        assertEquals(expected.get(i).status, actual.get(i).status, expected.get(i).toString());
+        assertEquals(expected.get(i).path.toString(), actual.get(i).path.toString(), expected.get(i).toString());
+      }
+    } finally {
+      serial.dispose();
+      parallel.dispose();
+    }
+  }
+
+  @Test
+  void unreachable() {
+    PathSearch search = new PathSearch();
+    GraphPath path = new GraphPath();
+    Map.Zone zone = map.zones.first();
+    Vector2 src = new Vector2(zone.x, zone.y);
+    assertFalse(search.search(map, src, null, FLAGS, 0, path));
+    assertFalse(search.search(map, src, new Vector2(zone.x - 10000, zone.y), FLAGS, 0, path));
+    assertFalse(search.search(map, src, new Vector2(zone.x + PathSearch.MAX_EXPANDED, zone.y), FLAGS, 0, path));
+    assertTrue(path.isEmpty());
+  }
+}
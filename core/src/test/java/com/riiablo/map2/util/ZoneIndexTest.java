@@ -0,0 +1,84 @@
+package com.riiablo.map2.util;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import com.badlogic.gdx.utils.Array;
+
+import com.riiablo.codec.util.BBox;
+
+class ZoneIndexTest {
+  static BBox linear(Array<BBox> boxes, int x, int y) {
+    for (BBox box : boxes) if (box.contains(x, y)) return box;
+    return null;
+  }
+
+  static void assertMatchesLinear(Random random, Array<BBox> boxes, ZoneIndex<BBox> index, int lookups) {
+    BBox bounds = new BBox().prepare();
+    for (BBox box : boxes) bounds.max(box);
+    for (int i = 0; i < lookups; i++) {
+      int x = bounds.xMin - 8 + random.nextInt(bounds.width + 16);
+      int y = bounds.yMin - 8 + random.nextInt(bounds.height + 16);
+      assertSame(linear(boxes, x, y), index.get(x, y), "(" + x + "," + y + ")");
+    }
+  }
+
+  @Test
+  void empty() {
+    ZoneIndex<BBox> index = new ZoneIndex<>();
+    assertNull(index.get(0, 0));
+    assertNull(index.get(-100, 100));
+  }
+
+  @Test
+  void edges_are_exclusive() {
+    ZoneIndex<BBox> index = new ZoneIndex<>();
+    BBox a = new BBox().asBox(0, 0, 40, 40);
+    BBox b = new BBox().asBox(40, 0, 40, 40);
+    index.add(a, a.xMin, a.yMin, a.width, a.height);
+    index.add(b, b.xMin, b.yMin, b.width, b.height);
+    assertSame(a, index.get(0, 0));
+    assertSame(a, index.get(39, 39));
+    assertSame(b, index.get(40, 0));
+    assertSame(b, index.get(79, 39));
+    assertNull(index.get(80, 0));
+    assertNull(index.get(0, 40));
+    assertNull(index.get(-1, 0));
+  }
+
+  @Test
+  void overlapping_returns_first_added() {
+    ZoneIndex<BBox> index = new ZoneIndex<>();
+    BBox outer = new BBox().asBox(0, 0, 100, 100);
+    BBox inner = new BBox().asBox(20, 20, 10, 10);
+    index.add(outer, outer.xMin, outer.yMin, outer.width, outer.height);
+    index.add(inner, inner.xMin, inner.yMin, inner.width, inner.height);
+    assertSame(outer, index.get(25, 25));
+
+    index.clear();
+    index.add(inner, inner.xMin, inner.yMin, inner.width, inner.height);
+    index.add(outer, outer.xMin, outer.yMin, outer.width, outer.height);
+    assertSame(outer, index.get(50, 50)); // last hit is outer
+    assertSame(inner, index.get(25, 25));
+  }
+
+  @RepeatedTest(20)
+  void matches_linear_scan(RepetitionInfo info) {
+    Random random = new Random(info.getCurrentRepetition());
+    Array<BBox> boxes = new Array<>();
+    ZoneIndex<BBox> index = new ZoneIndex<>();
+    int zones = 1 + random.nextInt(40);
+    for (int i = 0; i < zones; i++) {
+      BBox box = new BBox().asBox(
+          random.nextInt(4000) - 2000, random.nextInt(4000) - 2000,
+          1 + random.nextInt(800), 1 + random.nextInt(800));
+      boxes.add(box);
+      index.add(box, box.xMin, box.yMin, box.width, box.height);
+      assertMatchesLinear(random, boxes, index, 500);
+    }
+
+    assertMatchesLinear(random, boxes, index, 10000);
+  }
+}
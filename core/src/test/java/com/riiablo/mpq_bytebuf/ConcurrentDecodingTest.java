@@ -0,0 +1,130 @@
+package com.riiablo.mpq_bytebuf;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.params.*;
+import org.junit.jupiter.params.provider.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.riiablo.logger.Level;
+import com.riiablo.logger.LogManager;
+
+class ConcurrentDecodingTest {
+  static final int NUM_FILES = 64;
+  static final int FILE_SIZE = 0x40000; // 256 KB
+  static final int ITERATIONS = 4;
+
+  static SyntheticMpq synthetic;
+
+  @BeforeAll
+  public static void before() {
+    LogManager.setLevel("com.riiablo.mpq_bytebuf", Level.WARN);
+    synthetic = new SyntheticMpq(NUM_FILES, FILE_SIZE, 0xDEADBEEFL);
+  }
+
+  @Test
+  void decode_synthetic() {
+    Mpq mpq = synthetic.build();
+    DecoderExecutorGroup decoder = new DecoderExecutorGroup(2);
+    try {
+      for (int i = 0; i < NUM_FILES; i++) {
+        assertDecodes(mpq, decoder, i);
+      }
+    } finally {
+      decoder.shutdownGracefully();
+      mpq.dispose();
+    }
+  }
+
+  @Test
+  void overlapping_reads_share_sector_futures() throws Exception {
+    Mpq mpq = synthetic.build();
+    DecoderExecutorGroup decoder = new DecoderExecutorGroup(1);
+    try {
+      MpqFileHandle handle = synthetic.open(mpq, decoder, 0);
+      try {
+        final int sectorSize = handle.sectorSize();
+        final EventExecutor executor = ImmediateEventExecutor.INSTANCE;
+        Future<ByteBuf> first = handle.bufferAsync(executor, 0, 3 * sectorSize);
+        Future<ByteBuf> second = handle.bufferAsync(executor, 2 * sectorSize, 3 * sectorSize);
+        first.get();
+        second.get();
+        assertEquals(5, handle.sectorDecodes());
+        assertEquals(1, handle.sectorHits() + handle.sectorDedups());
+        assertTrue(ByteBufUtil.equals(
+            Unpooled.wrappedBuffer(synthetic.contents(0), 0, 5 * sectorSize),
+            handle.buffer(0, 5 * sectorSize)));
+      } finally {
+        handle.release();
+      }
+    } finally {
+      decoder.shutdownGracefully();
+      mpq.dispose();
+    }
+  }
+
+  /**
+   * Decodes every file from {@code nThreads} callers sharing a decoder group of
+   * the same size. See {@code ConcurrentDecodingBenchmark} for throughput.
+   */
+  @ParameterizedTest
+  @ValueSource(ints = { 1, 2, 4, 8 })
+  void decode_concurrently(int nThreads) throws Exception {
+    Mpq mpq = synthetic.build();
+    DecoderExecutorGroup decoder = new DecoderExecutorGroup(nThreads);
+    ExecutorService callers = Executors.newFixedThreadPool(nThreads);
+    try {
+      List<java.util.concurrent.Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < nThreads; t++) {
+        final int thread = t;
+        futures.add(callers.submit(() -> {
+          // files are partitioned across threads, handles are not shared
+          for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            for (int i = thread; i < NUM_FILES; i += nThreads) {
+              assertDecodes(mpq, decoder, i);
+            }
+          }
+        }));
+      }
+
+      for (java.util.concurrent.Future<?> future : futures) future.get();
+    } finally {
+      callers.shutdown();
+      decoder.shutdownGracefully();
+      mpq.dispose();
+    }
+  }
+
+  /**
+   * Opens and decodes file {@code i} within {@code mpq} and asserts it equals
+   * the synthetic contents. {@link Mpq.HashTable#open} is not thread-safe, so
+   * callers synchronize on the mpq when opening and releasing handles.
+   */
+  static void assertDecodes(Mpq mpq, DecoderExecutorGroup decoder, int i) {
+    final MpqFileHandle handle;
+    synchronized (mpq) {
+      handle = synthetic.open(mpq, decoder, i);
+    }
+
+    try {
+      ByteBuf actual = handle.buffer();
+      ByteBuf expected = Unpooled.wrappedBuffer(synthetic.contents(i));
+      assertEquals(expected.readableBytes(), actual.readableBytes());
+      assertTrue(ByteBufUtil.equals(expected, actual), synthetic.filename(i));
+    } finally {
+      synchronized (mpq) {
+        handle.release();
+      }
+    }
+  }
+}
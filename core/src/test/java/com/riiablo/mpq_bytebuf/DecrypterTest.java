@@ -8,6 +8,9 @@ import static org.junit.jupiter.api.Assertions.*;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
 import org.apache.commons.lang3.StringUtils;
 
 import com.badlogic.gdx.Gdx;
@@ -159,4 +162,30 @@ class DecrypterTest extends RiiabloTest {
     ByteBuf expected = Unpooled.wrappedBuffer(handle_out.readBytes());
     assertTrue(ByteBufUtil.equals(expected, actual));
   }
+
+  @ParameterizedTest
+  @ValueSource(ints = { 0, 3, 4, 0x1000, 0x1000 + 3 })
+  void decrypt_fused(int length) {
+    final byte[] encrypted = new byte[length];
+    new Random(length).nextBytes(encrypted);
+    final int key = 0x2BADF00D;
+
+    ByteBuf expected = Unpooled.wrappedBuffer(encrypted.clone());
+    final long expectedState = Decrypter.decrypt(key, SEED2, expected);
+
+    ByteBuffer nioSrc = ByteBuffer
+        .allocateDirect(length + 1)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    nioSrc.position(1);
+    nioSrc.put(encrypted);
+    ByteBuf actual = Unpooled.buffer(length + 2).writerIndex(length + 2);
+    assertEquals(expectedState, Decrypter.decrypt(key, SEED2, nioSrc, 1, actual, 2, length));
+    assertEquals(length + 1, nioSrc.position());
+    assertTrue(ByteBufUtil.equals(expected, 0, actual, 2, length));
+
+    ByteBuf src = Unpooled.wrappedBuffer(encrypted);
+    actual = Unpooled.buffer(length).writerIndex(length);
+    assertEquals(expectedState, Decrypter.decrypt(key, SEED2, src, 0, actual, 0, length));
+    assertTrue(ByteBufUtil.equals(expected, actual));
+  }
 }
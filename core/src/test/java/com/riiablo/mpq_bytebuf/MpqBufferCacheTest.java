@@ -0,0 +1,212 @@
+package com.riiablo.mpq_bytebuf;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+
+import com.riiablo.logger.Level;
+import com.riiablo.logger.LogManager;
+
+class MpqBufferCacheTest {
+  static final int FILE_SIZE = 0x8000;
+
+  static SyntheticMpq synthetic;
+
+  Mpq mpq;
+  DecoderExecutorGroup decoder;
+
+  @BeforeAll
+  public static void before() {
+    LogManager.setLevel("com.riiablo.mpq_bytebuf", Level.WARN);
+    LogManager.setLevel("com.riiablo.mpq_bytebuf.MpqBufferCache", Level.TRACE);
+    synthetic = new SyntheticMpq(4, FILE_SIZE, 0xBADF00DL);
+  }
+
+  @BeforeEach
+  void open() {
+    mpq = synthetic.build();
+    decoder = new DecoderExecutorGroup(2);
+  }
+
+  @AfterEach
+  void close() {
+    decoder.shutdownGracefully();
+    mpq.dispose();
+  }
+
+  MpqFileHandle open(int i) {
+    return synthetic.open(mpq, decoder, i);
+  }
+
+  void read(MpqFileHandle handle, int i) {
+    ByteBuf actual = handle.buffer();
+    ByteBuf expected = Unpooled.wrappedBuffer(synthetic.contents(i));
+    assertTrue(ByteBufUtil.equals(expected, actual), synthetic.filename(i));
+    awaitUnpinned(handle);
+  }
+
+  /** reads unpin once their listeners complete, which may lag the caller */
+  void awaitUnpinned(MpqFileHandle handle) {
+    final MpqBufferCache buffers = mpq.buffers;
+    if (buffers == null) return;
+    for (;;) {
+      synchronized (buffers) {
+        if (handle.pins == 0) return;
+      }
+
+      Thread.yield();
+    }
+  }
+
+  /** decoded bytes of a synthetic file, measured without a budget */
+  int decodedBytes() {
+    MpqFileHandle handle = open(0);
+    try {
+      read(handle, 0);
+      return handle.decodedBytes();
+    } finally {
+      handle.release();
+    }
+  }
+
+  @Test
+  void released_handle_is_reopened_without_decoding() {
+    MpqBufferCache buffers = mpq.buffers = new MpqBufferCache(Long.MAX_VALUE);
+    MpqFileHandle handle = open(0);
+    read(handle, 0);
+    final int decodes = handle.sectorDecodes();
+    assertTrue(handle.release());
+    assertEquals(1, buffers.residentHandles());
+    assertEquals(handle.decodedBytes(), buffers.residentBytes());
+
+    MpqFileHandle reopened = open(0);
+    try {
+      assertSame(handle, reopened);
+      assertEquals(1, reopened.refCnt());
+      read(reopened, 0);
+      assertEquals(decodes, reopened.sectorDecodes());
+      assertEquals(1, buffers.hits());
+      assertEquals(1, buffers.misses());
+      assertEquals(0, buffers.evictions());
+    } finally {
+      reopened.release();
+    }
+  }
+
+  @Test
+  void least_recently_read_idle_handle_is_evicted() {
+    final int bytes = decodedBytes();
+    final long budget = 2L * bytes + (bytes / 2);
+    MpqBufferCache buffers = mpq.buffers = new MpqBufferCache(budget);
+    MpqFileHandle[] handles = new MpqFileHandle[3];
+    for (int i = 0; i < handles.length; i++) {
+      read(handles[i] = open(i), i);
+      handles[i].release();
+    }
+
+    assertEquals(2, buffers.residentHandles());
+    assertEquals(1, buffers.evictions());
+    assertEquals(bytes, buffers.evictedBytes());
+    assertTrue(buffers.residentBytes() <= budget);
+    assertNull(handles[0].buffer);
+
+    MpqFileHandle reopened = open(0);
+    try {
+      assertNotSame(handles[0], reopened);
+      read(reopened, 0);
+      assertEquals(4, buffers.misses());
+      assertEquals(2, buffers.evictions());
+      assertNull(handles[1].buffer, "least recently read idle handle is evicted");
+      assertNotNull(handles[2].buffer);
+    } finally {
+      reopened.release();
+    }
+  }
+
+  @Test
+  void referenced_handle_is_not_evicted() {
+    MpqBufferCache buffers = mpq.buffers = new MpqBufferCache(0);
+    MpqFileHandle handle = open(0);
+    MpqFileHandle other = open(1);
+    try {
+      final ByteBuf borrowed = handle.buffer();
+      awaitUnpinned(handle);
+      read(other, 1);
+      other.release();
+      other = null;
+      assertEquals(1, buffers.evictions());
+      assertEquals(1, buffers.residentHandles());
+      assertTrue(buffers.residentBytes() > buffers.maxBytes());
+      assertNotNull(handle.buffer);
+      assertTrue(ByteBufUtil.equals(Unpooled.wrappedBuffer(synthetic.contents(0)), borrowed));
+    } finally {
+      handle.release();
+      if (other != null) other.release();
+    }
+
+    assertEquals(2, buffers.evictions());
+    assertEquals(0, buffers.residentHandles());
+    assertEquals(0, buffers.residentBytes());
+  }
+
+  @Test
+  void pinned_handle_is_not_evicted() {
+    MpqBufferCache buffers = mpq.buffers = new MpqBufferCache(0);
+    MpqFileHandle handle = open(0);
+    read(handle, 0);
+    buffers.pin(handle);
+    handle.release();
+    assertNotNull(handle.buffer);
+    assertEquals(0, buffers.evictions());
+
+    buffers.unpin(handle);
+    assertNull(handle.buffer);
+    assertEquals(1, buffers.evictions());
+    assertEquals(0, buffers.residentHandles());
+  }
+
+  @Test
+  void retained_buffer_outlives_release() {
+    MpqBufferCache buffers = mpq.buffers = new MpqBufferCache(0);
+    MpqFileHandle handle = open(0);
+    ByteBuf retained = null;
+    try {
+      retained = handle
+          .retainedBufferAsync(ImmediateEventExecutor.INSTANCE, 0, handle.FSize)
+          .syncUninterruptibly()
+          .getNow();
+      awaitUnpinned(handle);
+      handle.release();
+      assertNull(handle.buffer);
+      assertEquals(1, buffers.evictions());
+      assertTrue(ByteBufUtil.equals(Unpooled.wrappedBuffer(synthetic.contents(0)), retained));
+    } finally {
+      if (retained != null) assertTrue(retained.release());
+    }
+  }
+
+  @Test
+  void evict_all_deallocates_idle_handles_of_mpq() {
+    MpqBufferCache buffers = mpq.buffers = new MpqBufferCache(Long.MAX_VALUE);
+    MpqFileHandle idle = open(0);
+    MpqFileHandle handle = open(1);
+    try {
+      read(idle, 0);
+      read(handle, 1);
+      idle.release();
+      assertEquals(2, buffers.residentHandles());
+      buffers.evictAll(mpq);
+      assertEquals(0, buffers.residentHandles());
+      assertEquals(0, buffers.residentBytes());
+      assertEquals(1, buffers.evictions());
+      assertNull(idle.buffer);
+      assertNotNull(handle.buffer, "referenced handle keeps its buffers");
+    } finally {
+      handle.release();
+    }
+  }
+}
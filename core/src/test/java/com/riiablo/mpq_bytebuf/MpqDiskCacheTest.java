@@ -0,0 +1,184 @@
+package com.riiablo.mpq_bytebuf;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+
+import com.badlogic.gdx.files.FileHandle;
+
+import com.riiablo.logger.Level;
+import com.riiablo.logger.LogManager;
+
+class MpqDiskCacheTest {
+  static final int NUM_FILES = 16;
+
+  static SyntheticMpq synthetic;
+
+  @TempDir
+  Path tmp;
+
+  @BeforeAll
+  public static void before() {
+    LogManager.setLevel("com.riiablo.mpq_bytebuf", Level.WARN);
+    LogManager.setLevel("com.riiablo.mpq_bytebuf.MpqDiskCache", Level.TRACE);
+    synthetic = new SyntheticMpq(NUM_FILES, 0x8000, 0xC0FFEEL);
+  }
+
+  /** decodes all synthetic files and returns the total number of sectors decoded */
+  static int decodeAll(MpqDiskCache cache, long mtime) {
+    Mpq mpq = synthetic.build();
+    mpq.cache = cache.archive("synthetic", mtime);
+    DecoderExecutorGroup decoder = new DecoderExecutorGroup(2);
+    try {
+      int decodes = 0;
+      for (int i = 0; i < NUM_FILES; i++) {
+        MpqFileHandle handle = synthetic.open(mpq, decoder, i);
+        try {
+          ByteBuf actual = handle.buffer();
+          ByteBuf expected = Unpooled.wrappedBuffer(synthetic.contents(i));
+          assertTrue(ByteBufUtil.equals(expected, actual), synthetic.filename(i));
+          decodes += handle.sectorDecodes();
+        } finally {
+          handle.release();
+        }
+      }
+
+      return decodes;
+    } finally {
+      decoder.shutdownGracefully();
+      mpq.dispose();
+    }
+  }
+
+  @Test
+  void warm_start_skips_decoding() {
+    FileHandle pack = new FileHandle(tmp.resolve("mpq.cache").toFile());
+    MpqDiskCache cache = MpqDiskCache.open(pack);
+    try {
+      assertTrue(decodeAll(cache, 1) > 0);
+      cache.flush().syncUninterruptibly();
+      assertEquals(NUM_FILES, cache.writes());
+    } finally {
+      cache.dispose();
+    }
+
+    cache = MpqDiskCache.open(pack);
+    try {
+      assertEquals(0, decodeAll(cache, 1));
+      assertEquals(NUM_FILES, cache.hits());
+      assertEquals(0, cache.writes());
+    } finally {
+      cache.dispose();
+    }
+  }
+
+  @Test
+  void modified_archive_is_not_served() {
+    FileHandle pack = new FileHandle(tmp.resolve("mpq.cache").toFile());
+    MpqDiskCache cache = MpqDiskCache.open(pack);
+    try {
+      decodeAll(cache, 1);
+      assertTrue(decodeAll(cache, 2) > 0);
+      cache.flush().syncUninterruptibly();
+      assertEquals(0, cache.hits());
+      assertEquals(NUM_FILES * 2, cache.writes());
+    } finally {
+      cache.dispose();
+    }
+  }
+
+  @Test
+  void truncated_entry_is_discarded() throws IOException {
+    File file = tmp.resolve("mpq.cache").toFile();
+    FileHandle pack = new FileHandle(file);
+    MpqDiskCache cache = MpqDiskCache.open(pack);
+    try {
+      decodeAll(cache, 1);
+    } finally {
+      cache.dispose();
+    }
+
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      raf.setLength(raf.length() - 1);
+    }
+
+    cache = MpqDiskCache.open(pack);
+    try {
+      assertEquals(file.length(), cache.size());
+      decodeAll(cache, 1);
+      cache.flush().syncUninterruptibly();
+      assertEquals(NUM_FILES - 1, cache.hits());
+      assertEquals(1, cache.writes());
+    } finally {
+      cache.dispose();
+    }
+  }
+
+  @Test
+  void corrupted_entry_is_discarded() throws IOException {
+    File file = tmp.resolve("mpq.cache").toFile();
+    FileHandle pack = new FileHandle(file);
+    MpqDiskCache cache = MpqDiskCache.open(pack);
+    try {
+      decodeAll(cache, 1);
+    } finally {
+      cache.dispose();
+    }
+
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      final long position = raf.length() - 1; // data of the last entry
+      raf.seek(position);
+      final int b = raf.read();
+      raf.seek(position);
+      raf.write(~b);
+    }
+
+    cache = MpqDiskCache.open(pack);
+    try {
+      decodeAll(cache, 1);
+      cache.flush().syncUninterruptibly();
+      assertEquals(NUM_FILES - 1, cache.hits());
+      assertEquals(1, cache.corrupted());
+      assertEquals(1, cache.writes());
+    } finally {
+      cache.dispose();
+    }
+
+    cache = MpqDiskCache.open(pack);
+    try {
+      assertEquals(0, decodeAll(cache, 1));
+      assertEquals(NUM_FILES, cache.hits());
+      assertEquals(0, cache.corrupted());
+    } finally {
+      cache.dispose();
+    }
+  }
+
+  @Test
+  void archives_are_keyed_by_canonical_path() throws IOException {
+    File file = tmp.resolve("d2data.mpq").toFile();
+    File indirect = new File(new File(tmp.toFile(), "sub"), ".." + File.separator + "d2data.mpq");
+    assertEquals(MpqDiskCache.canonicalPath(file), MpqDiskCache.canonicalPath(indirect));
+
+    FileHandle pack = new FileHandle(tmp.resolve("mpq.cache").toFile());
+    MpqDiskCache cache = MpqDiskCache.open(pack);
+    try {
+      assertSame(
+          cache.archive(MpqDiskCache.canonicalPath(file), 1),
+          cache.archive(MpqDiskCache.canonicalPath(indirect), 1));
+      assertNotSame(
+          cache.archive(MpqDiskCache.canonicalPath(file), 1),
+          cache.archive(MpqDiskCache.canonicalPath(tmp.resolve("other").resolve("d2data.mpq").toFile()), 1));
+    } finally {
+      cache.dispose();
+    }
+  }
+}
@@ -1,10 +1,17 @@
 package com.riiablo.mpq_bytebuf;
 
 import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
 
 import com.riiablo.RiiabloTest;
 import com.riiablo.logger.Level;
 import com.riiablo.logger.LogManager;
+import com.riiablo.mpq_bytebuf.Mpq.HashTable;
+
+import static com.riiablo.mpq_bytebuf.Mpq.DEFAULT_LOCALE;
 
 class MpqFileResolverTest extends RiiabloTest {
   @BeforeAll
@@ -12,4 +19,84 @@ class MpqFileResolverTest extends RiiabloTest {
     LogManager.setLevel("com.riiablo.mpq_bytebuf", Level.WARN);
     LogManager.setLevel("com.riiablo.mpq_bytebuf.MpqFileResolver", Level.TRACE);
   }
+
+  @Test
+  void single_pass_key_equals_key_and_hash() {
+    final String[] filenames = {
+        "data\\global\\excel\\armor.txt",
+        "DATA\\GLOBAL\\CHARS\\BA\\LG\\BALGLITTNHTH.DCC",
+        "data/global/ui/panel/invchar6.dc6",
+        "",
+    };
+    final int[] hashes = new int[filenames.length];
+    for (int i = 0; i < filenames.length; i++) {
+      final String filename = Decrypter.fix(filenames[i]);
+      assertEquals(HashTable.key(filename), HashTable.key(filename, hashes, i));
+      assertEquals(HashTable.hash(filename), hashes[i]);
+    }
+  }
+
+  @Test
+  void batched_get_equals_get() {
+    SyntheticMpq synthetic = new SyntheticMpq(16, 0x100, 3);
+    Mpq mpq = synthetic.build();
+    try {
+      final int size = 24;
+      final long[] keys = new long[size];
+      final int[] hashes = new int[size];
+      final int[] pending = new int[size];
+      final int[] indexes = new int[size];
+      for (int i = 0; i < size; i++) {
+        final String filename = Decrypter.fix(i < 16 ? synthetic.filename(i) : "missing\\" + i);
+        keys[i] = HashTable.key(filename, hashes, i);
+      }
+
+      // only the odd half of the batch is pending
+      final int count = size / 2;
+      for (int j = 0; j < count; j++) pending[j] = (j << 1) + 1;
+      mpq.get(keys, hashes, DEFAULT_LOCALE, pending, count, indexes);
+      for (int i = 0; i < size; i++) {
+        final int expected = (i & 1) == 1 ? mpq.get(keys[i], hashes[i], DEFAULT_LOCALE) : 0;
+        assertEquals(expected, indexes[i], "index of " + i);
+        if ((i & 1) == 1) assertEquals(i < 16, expected >= 0, "found " + i);
+      }
+    } finally {
+      mpq.dispose();
+    }
+  }
+
+  @Test
+  void resolve_batch() {
+    SyntheticMpq patch = new SyntheticMpq(4, 0x2000, 1);
+    SyntheticMpq data = new SyntheticMpq(8, 0x2000, 2);
+    MpqFileResolver resolver = new MpqFileResolver(null, new String[0]);
+    try {
+      resolver.add(patch.build());
+      resolver.add(data.build());
+
+      CharSequence[] filenames = new CharSequence[9];
+      for (int i = 0; i < 8; i++) filenames[i] = data.filename(i);
+      filenames[8] = "data\\global\\synthetic\\missing.bin";
+
+      MpqFileHandle[] handles = resolver.resolve(filenames, DEFAULT_LOCALE, true);
+      try {
+        assertNull(handles[8]);
+        for (int i = 0; i < 8; i++) {
+          final SyntheticMpq expected = i < 4 ? patch : data;
+          assertSame(resolver.mpqs.get(i < 4 ? 0 : 1), handles[i].mpq);
+          assertTrue(handles[i].sectorDecodes() > 0, "decoding should have been scheduled");
+          assertTrue(ByteBufUtil.equals(
+              Unpooled.wrappedBuffer(expected.contents(i)),
+              handles[i].buffer()));
+          assertEquals(handles[i].sectorDecodes(), handles[i].sectorHits() + handles[i].sectorDedups());
+        }
+      } finally {
+        for (MpqFileHandle handle : handles) {
+          if (handle != null) handle.release();
+        }
+      }
+    } finally {
+      resolver.dispose();
+    }
+  }
 }
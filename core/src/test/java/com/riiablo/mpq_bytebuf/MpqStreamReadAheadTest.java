@@ -0,0 +1,89 @@
+package com.riiablo.mpq_bytebuf;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.params.*;
+import org.junit.jupiter.params.provider.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import com.riiablo.logger.Level;
+import com.riiablo.logger.LogManager;
+
+class MpqStreamReadAheadTest {
+  static final int FILE_SIZE = 0x40000 + 123; // 64 sectors + partial sector
+
+  static SyntheticMpq synthetic;
+
+  Mpq mpq;
+  DecoderExecutorGroup decoder;
+  MpqFileHandle handle;
+
+  @BeforeAll
+  public static void before() {
+    LogManager.setLevel("com.riiablo.mpq_bytebuf", Level.WARN);
+    synthetic = new SyntheticMpq(1, FILE_SIZE, 0x5EC7085L);
+  }
+
+  @BeforeEach
+  void open() {
+    mpq = synthetic.build();
+    decoder = new DecoderExecutorGroup(2);
+    handle = synthetic.open(mpq, decoder, 0);
+  }
+
+  @AfterEach
+  void close() {
+    handle.release();
+    decoder.shutdownGracefully();
+    mpq.dispose();
+  }
+
+  static byte[] readFully(InputStream in, int length, Random random) throws IOException {
+    final byte[] bytes = new byte[length];
+    int bytesRead = 0;
+    while (bytesRead < length) {
+      final int len = Math.min(length - bytesRead, 1 + random.nextInt(0x1800));
+      assertEquals(len, in.read(bytes, bytesRead, len));
+      bytesRead += len;
+    }
+
+    return bytes;
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = { 0, 1, 4 })
+  void stream(int readAhead) throws IOException {
+    final byte[] expected = synthetic.contents(0);
+    try (InputStream in = handle.stream(0, handle.FSize, readAhead, false)) {
+      if (readAhead > 0) assertEquals(readAhead + 1, ((MpqStream) in).ring.length);
+      assertArrayEquals(expected, readFully(in, expected.length, new Random(readAhead)));
+      assertEquals(-1, in.read());
+    }
+
+    assertNull(handle.buffer, "stream should not buffer the file handle");
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = { 0, 4 })
+  void stream_range(int readAhead) throws IOException {
+    final int offset = 3 * handle.sectorSize() + 17;
+    final int length = 5 * handle.sectorSize();
+    final byte[] expected = Arrays.copyOfRange(synthetic.contents(0), offset, offset + length);
+    try (InputStream in = handle.stream(offset, length, readAhead, false)) {
+      assertArrayEquals(expected, readFully(in, length, new Random(readAhead)));
+    }
+  }
+
+  @Test
+  void close_with_sectors_in_flight() throws IOException {
+    MpqStream in = (MpqStream) handle.stream(0, handle.FSize, 8, false);
+    assertEquals(synthetic.contents(0)[0] & 0xFF, in.read());
+    assertTrue(in.available() <= handle.sectorSize());
+    in.close();
+    assertNull(in.ring);
+  }
+}
@@ -0,0 +1,167 @@
+package com.riiablo.mpq_bytebuf;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static com.riiablo.mpq_bytebuf.Decrypter.BLOCK_TABLE_KEY;
+import static com.riiablo.mpq_bytebuf.Decrypter.ENCRYPTION;
+import static com.riiablo.mpq_bytebuf.Decrypter.HASH_TABLE_KEY;
+import static com.riiablo.mpq_bytebuf.Decrypter.SEED2;
+import static com.riiablo.mpq_bytebuf.Mpq.Block.FLAG_COMPRESSED;
+import static com.riiablo.mpq_bytebuf.Mpq.Block.FLAG_ENCRYPTED;
+import static com.riiablo.mpq_bytebuf.Mpq.Block.FLAG_EXISTS;
+import static com.riiablo.mpq_bytebuf.Mpq.DEFAULT_LOCALE;
+import static com.riiablo.mpq_bytebuf.Mpq.DEFAULT_PLATFORM;
+
+/**
+ * Builds an in-memory mpq archive of encrypted, sectored files with random
+ * contents. Sectors are stored without compression, so decoding a file
+ * exercises the archive read and decryption stages of the decoder pipeline
+ * without requiring an installation of the game.
+ */
+class SyntheticMpq {
+  static final int HEADER_SIZE = 0x20;
+  static final int BLOCK_SIZE = 3; // 4 KB sectors
+
+  final String[] filenames;
+  final byte[][] contents;
+  final int sectorSize = Mpq.DISK_SECTOR_SIZE << BLOCK_SIZE;
+
+  SyntheticMpq(int numFiles, int fileSize, long seed) {
+    final Random random = new Random(seed);
+    filenames = new String[numFiles];
+    contents = new byte[numFiles][];
+    for (int i = 0; i < numFiles; i++) {
+      filenames[i] = String.format("data\\global\\synthetic\\file%03d.bin", i);
+      random.nextBytes(contents[i] = new byte[fileSize + random.nextInt(sectorSize)]);
+    }
+  }
+
+  String filename(int i) {
+    return filenames[i];
+  }
+
+  byte[] contents(int i) {
+    return contents[i];
+  }
+
+  /**
+   * Opens file {@code i} within {@code mpq}, which must have been built by this
+   * instance, looking it up by its hash like {@link MpqFileResolver} does.
+   */
+  MpqFileHandle open(Mpq mpq, DecoderExecutorGroup decoder, int i) {
+    final String filename = filenames[i];
+    final int index = mpq.get(Mpq.HashTable.key(filename), Mpq.HashTable.hash(filename), DEFAULT_LOCALE);
+    return mpq.open(decoder, index, filename);
+  }
+
+  Mpq build() {
+    final int numFiles = filenames.length;
+    int hashTableSize = 1;
+    while (hashTableSize < numFiles * 2) hashTableSize <<= 1;
+    hashTableSize = Math.max(hashTableSize, 0x100); // fill at least one sector
+
+    final ByteBuf files = Unpooled.buffer();
+    final int[] offsets = new int[numFiles];
+    final int[] CSizes = new int[numFiles];
+    final int flags = FLAG_EXISTS | FLAG_COMPRESSED | FLAG_ENCRYPTED;
+    for (int i = 0; i < numFiles; i++) {
+      offsets[i] = HEADER_SIZE + files.writerIndex();
+      CSizes[i] = writeFile(files, filenames[i], contents[i], flags, offsets[i]);
+    }
+
+    final int hashTableOffset = HEADER_SIZE + files.writerIndex();
+    final int blockTableOffset = hashTableOffset + hashTableSize * Mpq.HashTable.ENTRY_SIZE;
+    final int archiveSize = blockTableOffset + numFiles * Mpq.Block.SIZE;
+
+    final ByteBuf hashTable = Unpooled.buffer(hashTableSize * Mpq.HashTable.ENTRY_SIZE);
+    for (int i = 0; i < hashTableSize; i++) {
+      hashTable.writeLongLE(Mpq.HashTable.NULL_KEY);
+      hashTable.writeShortLE(Mpq.HashTable.NULL_LOCALE);
+      hashTable.writeShortLE(Mpq.HashTable.NULL_PLATFORM);
+      hashTable.writeIntLE(Mpq.HashTable.BLOCK_UNUSED);
+    }
+
+    for (int blockId = 0; blockId < numFiles; blockId++) {
+      final String filename = filenames[blockId];
+      int i = Mpq.HashTable.hash(filename) & (hashTableSize - 1);
+      while (hashTable.getIntLE(i * Mpq.HashTable.ENTRY_SIZE + 12) != Mpq.HashTable.BLOCK_UNUSED) {
+        i = (i + 1) & (hashTableSize - 1);
+      }
+
+      final int entry = i * Mpq.HashTable.ENTRY_SIZE;
+      hashTable.setLongLE(entry, Mpq.HashTable.key(filename));
+      hashTable.setShortLE(entry + 8, DEFAULT_LOCALE);
+      hashTable.setShortLE(entry + 10, DEFAULT_PLATFORM);
+      hashTable.setIntLE(entry + 12, blockId);
+    }
+
+    final ByteBuf blockTable = Unpooled.buffer(numFiles * Mpq.Block.SIZE);
+    for (int i = 0; i < numFiles; i++) {
+      blockTable.writeIntLE(offsets[i]);
+      blockTable.writeIntLE(CSizes[i]);
+      blockTable.writeIntLE(contents[i].length);
+      blockTable.writeIntLE(flags);
+    }
+
+    encrypt(HASH_TABLE_KEY, hashTable);
+    encrypt(BLOCK_TABLE_KEY, blockTable);
+
+    final ByteBuffer archive = ByteBuffer.allocateDirect(archiveSize);
+    final ByteBuf out = Unpooled.wrappedBuffer(archive).clear();
+    out.writeBytes(Mpq.SIGNATURE);
+    out.writeIntLE(HEADER_SIZE);
+    out.writeIntLE(archiveSize);
+    out.writeShortLE(0); // version
+    out.writeShortLE(BLOCK_SIZE);
+    out.writeIntLE(hashTableOffset);
+    out.writeIntLE(blockTableOffset);
+    out.writeIntLE(hashTableSize);
+    out.writeIntLE(numFiles);
+    out.writeBytes(files);
+    out.writeBytes(hashTable);
+    out.writeBytes(blockTable);
+
+    // mimic read-only mapped archive
+    return Mpq.open(null, Unpooled.wrappedBuffer(archive.asReadOnlyBuffer()));
+  }
+
+  int writeFile(ByteBuf out, String filename, byte[] contents, int flags, int offset) {
+    final int FSize = contents.length;
+    final int numSectors = (FSize + sectorSize - 1) / sectorSize;
+    final int sectorTableSize = (numSectors + 1) << 2;
+    final int encryptionKey = Mpq.encryptionKey(filename, flags, offset, FSize);
+
+    final ByteBuf sectorOffsets = Unpooled.buffer(sectorTableSize);
+    for (int i = 0, sectorOffset = sectorTableSize; i <= numSectors; i++) {
+      sectorOffsets.writeIntLE(sectorOffset);
+      sectorOffset += Math.min(FSize - i * sectorSize, sectorSize);
+    }
+
+    encrypt(encryptionKey - 1, sectorOffsets);
+    final int start = out.writerIndex();
+    out.writeBytes(sectorOffsets);
+    for (int i = 0; i < numSectors; i++) {
+      final int sectorFSize = Math.min(FSize - i * sectorSize, sectorSize);
+      final ByteBuf sector = Unpooled.copiedBuffer(contents, i * sectorSize, sectorFSize);
+      encrypt(encryptionKey + i, sector);
+      out.writeBytes(sector);
+    }
+
+    return out.writerIndex() - start;
+  }
+
+  /** inverse of {@link Decrypter#decrypt(int, ByteBuf)} */
+  static void encrypt(int key, ByteBuf inout) {
+    int seed = SEED2;
+    for (int i = inout.readerIndex(), s = inout.writerIndex() - 3; i < s; i += 4) {
+      seed += ENCRYPTION.get(key & 0xFF);
+      final int block = inout.getIntLE(i);
+      inout.setIntLE(i, block ^ (key + seed));
+      seed += block + (seed << 5) + 3;
+      key = (~key << 0x15) + 0x11111111 | key >>> 0x0B;
+    }
+  }
+}
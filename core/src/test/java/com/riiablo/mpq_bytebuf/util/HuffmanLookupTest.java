@@ -0,0 +1,45 @@
+package com.riiablo.mpq_bytebuf.util;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.params.*;
+import org.junit.jupiter.params.provider.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import java.util.Random;
+
+class HuffmanLookupTest {
+  static final int SECTOR_SIZE = 0x1000;
+
+  @ParameterizedTest
+  @ValueSource(ints = { 0, 1, 2, 3, 4, 5, 6, 7, 8 })
+  void lookup_equals_tree_walk(int type) {
+    final byte[] expected = SyntheticHuffman.samples(new Random(type), SECTOR_SIZE);
+    final ByteBuf deflated = SyntheticHuffman.deflate(type, expected);
+
+    ByteBuf walked = Unpooled.buffer(SECTOR_SIZE);
+    new Huffman(false).inflate(deflated.duplicate(), walked);
+    assertTrue(ByteBufUtil.equals(Unpooled.wrappedBuffer(expected), walked));
+
+    final Huffman huffman = new Huffman(true);
+    ByteBuf looked = Unpooled.buffer(SECTOR_SIZE);
+    huffman.inflate(deflated.duplicate(), looked);
+    assertTrue(ByteBufUtil.equals(Unpooled.wrappedBuffer(expected), looked));
+    assertTrue(huffman.rebuilds() > 0);
+  }
+
+  @Test
+  void reuse() {
+    final Huffman huffman = new Huffman();
+    final Random random = new Random(0xBEEF);
+    for (int i = 0; i < 16; i++) {
+      final int type = i % 9;
+      final byte[] expected = SyntheticHuffman.samples(random, 1 + random.nextInt(SECTOR_SIZE));
+      ByteBuf actual = Unpooled.buffer(expected.length);
+      huffman.inflate(SyntheticHuffman.deflate(type, expected), actual);
+      assertTrue(ByteBufUtil.equals(Unpooled.wrappedBuffer(expected), actual), "type " + type);
+    }
+  }
+}
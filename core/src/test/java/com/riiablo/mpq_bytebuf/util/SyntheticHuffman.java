@@ -0,0 +1,103 @@
+package com.riiablo.mpq_bytebuf.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.Random;
+
+/**
+ * Generates synthetic data and compresses it using the same adaptive trees as
+ * {@link Huffman}, s.t. it can be inflated without any game files.
+ */
+public final class SyntheticHuffman {
+  private SyntheticHuffman() {}
+
+  /**
+   * Generates {@code length} bytes resembling adpcm encoded samples, i.e.,
+   * mostly small values with an occasional large one.
+   */
+  public static byte[] samples(Random random, int length) {
+    final byte[] samples = new byte[length];
+    for (int i = 0; i < length; i++) {
+      final double gaussian = random.nextGaussian() * 6;
+      samples[i] = (byte) Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, (int) gaussian));
+    }
+
+    return samples;
+  }
+
+  /** inverse of {@link Huffman#inflate(ByteBuf, ByteBuf)} */
+  public static ByteBuf deflate(int type, byte[] data) {
+    final Huffman huffman = new Huffman(false);
+    huffman.buildTree(type);
+    final BitWriter out = new BitWriter(Unpooled.buffer(data.length));
+    out.write8(type);
+
+    final boolean adjustProbability = type == 0;
+    for (byte b : data) {
+      final int value = b & 0xFF;
+      Huffman.Node node = find(huffman.root, value);
+      if (node == null) {
+        out.writeCode(find(huffman.root, 0x101));
+        out.write8(value);
+        node = huffman.addValueToTree(value);
+        huffman.incrementProbability(node);
+        if (!adjustProbability) huffman.incrementProbability(node);
+      } else {
+        out.writeCode(node);
+      }
+
+      if (adjustProbability) {
+        huffman.incrementProbability(node);
+      }
+    }
+
+    out.writeCode(find(huffman.root, 0x100));
+    return out.flush();
+  }
+
+  static Huffman.Node find(Huffman.Node node, int code) {
+    if (node == null) return null;
+    if (node.code == code) return node;
+    if (node.code != -1) return null;
+    final Huffman.Node left = find(node.left, code);
+    return left != null ? left : find(node.right, code);
+  }
+
+  static final class BitWriter {
+    final ByteBuf out;
+    int bitBuffer;
+    int bitNumber;
+
+    BitWriter(ByteBuf out) {
+      this.out = out;
+    }
+
+    void write1(int bit) {
+      bitBuffer |= bit << bitNumber;
+      if (++bitNumber == Byte.SIZE) {
+        out.writeByte(bitBuffer);
+        bitBuffer = 0;
+        bitNumber = 0;
+      }
+    }
+
+    void write8(int value) {
+      for (int i = 0; i < Byte.SIZE; i++) write1((value >>> i) & 1);
+    }
+
+    /** writes the path from the root to node, root first */
+    void writeCode(Huffman.Node node) {
+      final Huffman.Node parent = node.parent;
+      if (parent == null) return;
+      writeCode(parent);
+      write1(parent.right == node ? 1 : 0);
+    }
+
+    ByteBuf flush() {
+      if (bitNumber > 0) out.writeByte(bitBuffer);
+      bitBuffer = 0;
+      bitNumber = 0;
+      return out;
+    }
+  }
+}
@@ -0,0 +1,64 @@
+package com.riiablo.net;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.google.flatbuffers.FlatBufferBuilder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+
+import com.riiablo.net.packet.d2gs.D2GS;
+import com.riiablo.net.packet.d2gs.D2GSData;
+import com.riiablo.net.packet.d2gs.Ping;
+
+class FlatBufferBuilderPoolTest {
+  static void ping(FlatBufferBuilder builder, int tickCount) {
+    int dataOffset = Ping.createPing(builder, tickCount, 0xCAFEBABEL, 0, true);
+    int root = D2GS.createD2GS(builder, D2GSData.Ping, dataOffset);
+    D2GS.finishSizePrefixedD2GSBuffer(builder, root);
+  }
+
+  @Test
+  void reused_builder_produces_same_bytes() {
+    FlatBufferBuilderPool builders = new FlatBufferBuilderPool(UnpooledByteBufAllocator.DEFAULT, 16, 1, 1);
+    for (int i = 0; i < 8; i++) {
+      FlatBufferBuilder expected = new FlatBufferBuilder(0);
+      ping(expected, i);
+
+      FlatBufferBuilder builder = builders.obtain();
+      ping(builder, i);
+      ByteBuf actual = builders.finish(builder);
+      try {
+        assertEquals(1, builders.getFree());
+        assertTrue(ByteBufUtil.equals(Unpooled.wrappedBuffer(expected.dataBuffer()), actual));
+        assertSame(builder, builders.obtain());
+        builders.free(builder);
+      } finally {
+        actual.release();
+      }
+    }
+  }
+
+  @Test
+  void confined_to_first_thread() throws InterruptedException {
+    final FlatBufferBuilderPool builders = new FlatBufferBuilderPool();
+    builders.free(builders.obtain());
+    final AssertionError[] error = new AssertionError[1];
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          builders.obtain();
+        } catch (AssertionError t) {
+          error[0] = t;
+        }
+      }
+    });
+    thread.start();
+    thread.join();
+    Assumptions.assumeTrue(FlatBufferBuilderPool.class.desiredAssertionStatus());
+    assertNotNull(error[0]);
+  }
+}
@@ -5,9 +5,6 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
-import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
-import java.nio.channels.WritableByteChannel;
 import java.text.DateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -15,12 +12,10 @@ import java.util.Calendar;
 import java.util.Collection;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.TimeUnit;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.Options;
-import org.apache.commons.lang3.ArrayUtils;
 
 import com.artemis.ComponentMapper;
 import com.artemis.World;
@@ -32,15 +27,12 @@ import net.mostlyoriginal.api.event.common.EventSystem;
 import com.badlogic.gdx.Application;
 import com.badlogic.gdx.ApplicationAdapter;
 import com.badlogic.gdx.Gdx;
-import com.badlogic.gdx.Net;
 import com.badlogic.gdx.assets.AssetManager;
 import com.badlogic.gdx.backends.headless.HeadlessApplication;
 import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
 import com.badlogic.gdx.files.FileHandle;
-import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.RandomXS128;
 import com.badlogic.gdx.math.Vector2;
-import com.badlogic.gdx.net.ServerSocket;
-import com.badlogic.gdx.net.Socket;
 import com.badlogic.gdx.utils.GdxRuntimeException;
 import com.badlogic.gdx.utils.IntIntMap;
 import com.badlogic.gdx.utils.TimeUtils;
@@ -72,14 +64,15 @@ import com.riiablo.engine.server.WarpInteractor;
 import com.riiablo.engine.server.component.Networked;
 import com.riiablo.item.ItemGenerator;
 import com.riiablo.item.VendorGenerator;
-import com.riiablo.map.Act1MapBuilder;
 import com.riiablo.map.DS1;
 import com.riiablo.map.DS1Loader;
 import com.riiablo.map.DT1;
 import com.riiablo.map.DT1Loader;
 import com.riiablo.map.Map;
 import com.riiablo.map.MapManager;
+import com.riiablo.map.pfa.PathfindingService;
 import com.riiablo.mpq.MPQFileHandleResolver;
+import com.riiablo.net.FlatBufferBuilderPool;
 import com.riiablo.net.packet.d2gs.BeltToCursor;
 import com.riiablo.net.packet.d2gs.BodyToCursor;
 import com.riiablo.net.packet.d2gs.Connection;
@@ -161,23 +154,62 @@ public class D2GS extends ApplicationAdapter {
 
     HeadlessApplicationConfiguration config = new HeadlessApplicationConfiguration();
     config.updatesPerSecond = (int) Animation.FRAMES_PER_SECOND;
-    new HeadlessApplication(new D2GS(home, seed, diff), config);
+    new HeadlessApplication(new D2GS(home, seed, diff) {
+      @Override
+      public void dispose() {
+        super.dispose();
+        Riiablo.assets.dispose();
+      }
+    }, config);
   }
 
-  ServerSocket server;
-  Thread connectionListener;
-  volatile boolean kill = false;
-  ThreadGroup clientThreads;
-  final Client[] clients = new Client[MAX_CLIENTS];
-  int numClients = 0;
+  private static boolean initialized;
+
+  /** searches the paths of every game hosted within this JVM */
+  static PathfindingService pathfinding;
+
+  /**
+   * Loads the assets and services shared by every game hosted within this
+   * JVM. Only the first call has any effect.
+   */
+  static synchronized void initialize(FileHandle home) {
+    if (initialized) return;
+    initialized = true;
+
+    Riiablo.home = home = Gdx.files.absolute(home.path());
+    if (!home.exists() || !home.child("d2data.mpq").exists()) {
+      throw new GdxRuntimeException("home does not refer to a valid D2 installation. Copy MPQs to " + home);
+    }
+
+    pathfinding = new PathfindingService();
+
+    Riiablo.mpqs = new MPQFileHandleResolver();
+    Riiablo.assets = new AssetManager();
+    Riiablo.files = new Files(Riiablo.assets);
+    Riiablo.cofs = new COFs(Riiablo.assets); // TODO: not needed in prod
+    Riiablo.string = new StringTBLs(Riiablo.mpqs); // TODO: not needed in prod
+    Riiablo.anim = D2.loadFromFile(Riiablo.mpqs.resolve("data\\global\\eanimdata.d2"));
+    Riiablo.audio = new ServerAudio(Riiablo.assets);
+
+    // set DT1 to headless mode
+    DT1.loadData = false;
+    Riiablo.assets.setLoader(DS1.class, new DS1Loader(Riiablo.mpqs));
+    Riiablo.assets.setLoader(DT1.class, new DT1Loader(Riiablo.mpqs));
+  }
+
+  final int port;
+  D2GSTransport transport;
   int connected = 0;
 
-  final BlockingQueue<Packet> packets = new ArrayBlockingQueue<>(32);
   final Collection<Packet> cache = new ArrayList<>(1024);
   final BlockingQueue<Packet> outPackets = new ArrayBlockingQueue<>(1024);
   final IntIntMap player = new IntIntMap();
+  final FlatBufferBuilderPool builders = new FlatBufferBuilderPool();
+
+  /** confined to this game, {@link com.badlogic.gdx.math.MathUtils#random} is not thread-safe */
+  final RandomXS128 random = new RandomXS128();
 
-  static final BitVector ignoredPackets = new BitVector(D2GSData.names.length); {
+  static final BitVector ignoredPackets = new BitVector(D2GSData.names.length); static {
     ignoredPackets.set(D2GSData.EntitySync);
   }
 
@@ -196,9 +228,22 @@ public class D2GS extends ApplicationAdapter {
   protected ComponentMapper<Networked> mNetworked;
 
   D2GS(FileHandle home, int seed, int diff) {
+    this(home, seed, diff, PORT);
+  }
+
+  public D2GS(FileHandle home, int seed, int diff, int port) {
     this.home = home;
     this.seed = seed;
     this.diff = diff;
+    this.port = port;
+  }
+
+  public int port() {
+    return port;
+  }
+
+  public int numPlayers() {
+    return transport != null ? transport.numClients() : 0;
   }
 
   @Override
@@ -211,30 +256,51 @@ public class D2GS extends ApplicationAdapter {
 
     try {
       InetAddress address = InetAddress.getLocalHost();
-      Gdx.app.log(TAG, "IP Address: " + address.getHostAddress() + ":" + PORT);
+      Gdx.app.log(TAG, "IP Address: " + address.getHostAddress() + ":" + port);
       Gdx.app.log(TAG, "Host Name: " + address.getHostName());
     } catch (UnknownHostException e) {
       Gdx.app.error(TAG, e.getMessage(), e);
     }
 
-    Riiablo.home = home = Gdx.files.absolute(home.path());
-    if (!home.exists() || !home.child("d2data.mpq").exists()) {
-      throw new GdxRuntimeException("home does not refer to a valid D2 installation. Copy MPQs to " + home);
+    initialize(home);
+
+    // map generation is confined to this game's map, but its assets are loaded
+    // through the shared asset manager, so games hosted within the same JVM
+    // must be created one at a time
+    synchronized (D2GS.class) {
+      createWorld();
     }
 
-    Riiablo.mpqs = new MPQFileHandleResolver();
-    Riiablo.assets = new AssetManager();
-    Riiablo.files = new Files(Riiablo.assets);
-    Riiablo.cofs = new COFs(Riiablo.assets); // TODO: not needed in prod
-    Riiablo.string = new StringTBLs(Riiablo.mpqs); // TODO: not needed in prod
-    Riiablo.anim = D2.loadFromFile(Riiablo.mpqs.resolve("data\\global\\eanimdata.d2"));
-    Riiablo.audio = new ServerAudio(Riiablo.assets);
+    Gdx.app.log(TAG, "Starting server...");
+    transport = new D2GSTransport(MAX_CLIENTS, new D2GSTransport.Listener() {
+      /** confined to the transport thread */
+      final FlatBufferBuilderPool builders = new FlatBufferBuilderPool();
 
-    // set DT1 to headless mode
-    DT1.loadData = false;
-    Riiablo.assets.setLoader(DS1.class, new DS1Loader(Riiablo.mpqs));
-    Riiablo.assets.setLoader(DT1.class, new DT1Loader(Riiablo.mpqs));
+      @Override
+      public void onReceived(D2GSTransport transport, Packet packet) {
+        if (DEBUG_RECEIVED_PACKETS && !ignoredPackets.get(packet.data.dataType())) Gdx.app.log(TAG, "received " + D2GSData.name(packet.data.dataType()) + " packet from " + packet.id);
+        if (packet.data.dataType() == D2GSData.Ping) {
+          // acknowledge pings as soon as they are received
+          Ping ping = (Ping) packet.data.data(new Ping());
+          FlatBufferBuilder builder = builders.obtain();
+          int dataOffset = Ping.createPing(builder, ping.tickCount(), ping.sendTime(), 0, true);
+          int root = com.riiablo.net.packet.d2gs.D2GS.createD2GS(builder, D2GSData.Ping, dataOffset);
+          com.riiablo.net.packet.d2gs.D2GS.finishSizePrefixedD2GSBuffer(builder, root);
+          Packet response = Packet.obtain(1 << packet.id, builders.finish(builder));
+          if (DEBUG_SENT_PACKETS && !ignoredPackets.get(packet.data.dataType())) Gdx.app.log(TAG, "dispatching " + D2GSData.name(packet.data.dataType()) + " ACK packet to " + String.format("0x%08X", response.id));
+          transport.send(packet.id, response);
+          response.release();
+        }
+      }
+    });
+    try {
+      transport.bind(port);
+    } catch (IOException t) {
+      throw new GdxRuntimeException("Failed to bind port " + port, t);
+    }
+  }
 
+  private void createWorld() {
     if (seed == 0) {
       Gdx.app.log(TAG, "Generating seed...");
       seed = 0;
@@ -282,90 +348,39 @@ public class D2GS extends ApplicationAdapter {
         ;
     WorldConfiguration config = builder.build()
         .register("map", map)
+        .register("pathfinding", pathfinding)
         .register("factory", factory)
         .register("player", player)
         .register("outPackets", outPackets)
+        .register("builders", builders)
+        .register("random", random)
         ;
-    Riiablo.engine = world = new World(config);
+    world = new World(config);
 
     world.inject(map);
-    world.inject(Act1MapBuilder.INSTANCE);
 
     map.generate();
     mapManager.createEntities();
 
     mNetworked = world.getMapper(Networked.class);
     world.delta = Animation.FRAME_DURATION;
-
-    clientThreads = new ThreadGroup("D2GSClients");
-
-    Gdx.app.log(TAG, "Starting server...");
-    server = Gdx.net.newServerSocket(Net.Protocol.TCP, PORT, null);
-    connectionListener = new Thread(new Runnable() {
-      @Override
-      public void run() {
-        while (!kill) {
-          Gdx.app.log(TAG, "waiting...");
-          Socket socket = server.accept(null);
-          Gdx.app.log(TAG, "connection from " + socket.getRemoteAddress());
-          if (numClients >= MAX_CLIENTS) {
-            // TODO: send server is full message
-            socket.dispose();
-          } else {
-            try {
-              synchronized (clients) {
-                int id = ArrayUtils.indexOf(clients, null);
-                assert id != ArrayUtils.INDEX_NOT_FOUND : "numClients=" + numClients + " but no index available";
-                Gdx.app.log(TAG, "assigned " + socket.getRemoteAddress() + " to " + id);
-                Client client = clients[id] = new Client(id, socket);
-                numClients++;
-                //connected |= (1 << id);
-                client.start();
-              }
-            } catch (Throwable t) {
-              Gdx.app.error(TAG, t.getMessage(), t);
-              socket.dispose();
-            }
-          }
-        }
-
-        Gdx.app.log(TAG, "killing child threads...");
-        synchronized (clients) {
-          for (Client client : clients) {
-            if (client != null) {
-              client.kill = true;
-              client.socket.dispose();
-              try {
-                client.join();
-              } catch (Throwable ignored) {}
-            }
-          }
-          numClients = 0;
-          connected = 0;
-        }
-
-        Gdx.app.log(TAG, "killing thread...");
-      }
-    });
-    connectionListener.setName("D2GS Connection Listener");
-    connectionListener.start();
   }
 
   @Override
   public void dispose() {
     Gdx.app.log(TAG, "Shutting down...");
-    kill = true;
-    server.dispose();
-    try {
-      connectionListener.join();
-    } catch (Throwable ignored) {}
-    Riiablo.assets.dispose();
+    transport.dispose();
+    world.dispose();
   }
 
   @Override
   public void render() {
+    for (int id; (id = transport.pollDisconnected()) != -1;) {
+      Disconnect(id);
+    }
+
     cache.clear();
-    int cached = packets.drainTo(cache);
+    int cached = transport.drainTo(cache);
     if (DEBUG_RECEIVED_CACHE && cached > 0) Gdx.app.log(TAG, "processing " + cached + " packets");
     for (Packet packet : cache) {
       if (DEBUG_RECEIVED_PACKETS && !ignoredPackets.get(packet.data.dataType())) Gdx.app.log(TAG, "processing " + D2GSData.name(packet.data.dataType()) + " packet from " + packet.id);
@@ -380,19 +395,30 @@ public class D2GS extends ApplicationAdapter {
       if (DEBUG_SENT_PACKETS && !ignoredPackets.get(packet.data.dataType())) Gdx.app.log(TAG, "dispatching " + D2GSData.name(packet.data.dataType()) + " packet to " + String.format("0x%08X", packet.id));
       for (int i = 0, flag = 1; i < MAX_CLIENTS; i++, flag <<= 1) {
         if ((packet.id & flag) == flag && ((connected & flag) == flag || packet.data.dataType() == D2GSData.Connection)) {
-          Client client = clients[i];
-          if (client == null) continue;
-          try {
-            if (DEBUG_SENT_PACKETS && !ignoredPackets.get(packet.data.dataType())) Gdx.app.log(TAG, "  dispatching packet to " + i);
-            client.send(packet);
-          } catch (Throwable t) {
-            Gdx.app.error(TAG, t.getMessage(), t);
+          if (DEBUG_SENT_PACKETS && !ignoredPackets.get(packet.data.dataType())) Gdx.app.log(TAG, "  dispatching packet to " + i);
+          if (transport.send(i, packet) && packet.data.dataType() == D2GSData.Connection) {
+            connected |= flag;
           }
         }
       }
+
+      packet.release();
     }
   }
 
+  /**
+   * Queues {@code packet} to be dispatched at the end of this tick. If the
+   * outbound queue is full, the packet is dropped and released.
+   *
+   * @return whether or not the packet was queued
+   */
+  boolean queue(Packet packet) {
+    if (outPackets.offer(packet)) return true;
+    Gdx.app.error(TAG, "outbound queue full, dropping " + D2GSData.name(packet.data.dataType()) + " packet to " + String.format("0x%08X", packet.id));
+    packet.release();
+    return false;
+  }
+
   private void process(Packet packet) {
     switch (packet.data.dataType()) {
       case D2GSData.Connection:
@@ -446,7 +472,7 @@ public class D2GS extends ApplicationAdapter {
     Connection connection = (Connection) packet.data.data(new Connection());
     String charName = connection.charName();
     int charClass = connection.charClass();
-    Gdx.app.log(TAG, "Connection from " + clients[packet.id].socket.getRemoteAddress() + " : " + charName);
+    Gdx.app.log(TAG, "Connection from " + transport.getRemoteAddress(packet.id) + " : " + charName);
 
     byte[] cofComponents = new byte[16];
     connection.cofComponentsAsByteBuffer().get(cofComponents);
@@ -472,14 +498,14 @@ public class D2GS extends ApplicationAdapter {
     player.put(packet.id, entityId);
     Gdx.app.log(TAG, "  entityId=" + entityId);
 
-    FlatBufferBuilder builder = new FlatBufferBuilder();
+    FlatBufferBuilder builder = builders.obtain();
     Connection.startConnection(builder);
     Connection.addEntityId(builder, entityId);
     int connectionOffset = Connection.endConnection(builder);
     int offset = com.riiablo.net.packet.d2gs.D2GS.createD2GS(builder, D2GSData.Connection, connectionOffset);
     com.riiablo.net.packet.d2gs.D2GS.finishSizePrefixedD2GSBuffer(builder, offset);
-    Packet response = Packet.obtain(1 << packet.id, builder.dataBuffer());
-    outPackets.offer(response);
+    Packet response = Packet.obtain(1 << packet.id, builders.finish(builder));
+    queue(response);
 
     Synchronize(packet.id, entityId);
 
@@ -491,7 +517,7 @@ public class D2GS extends ApplicationAdapter {
   }
 
   private void BroadcastConnect(int id, Connection connection, CharData charData, int entityId) {
-    FlatBufferBuilder builder = new FlatBufferBuilder();
+    FlatBufferBuilder builder = builders.obtain();
     int charNameOffset = builder.createString(charData.name);
 
     byte[] components = new byte[16];
@@ -517,38 +543,37 @@ public class D2GS extends ApplicationAdapter {
     int offset = com.riiablo.net.packet.d2gs.D2GS.createD2GS(builder, D2GSData.Connection, connectionOffset);
     com.riiablo.net.packet.d2gs.D2GS.finishSizePrefixedD2GSBuffer(builder, offset);
 
-    Packet broadcast = Packet.obtain(~(1 << id), builder.dataBuffer());
-    boolean success = outPackets.offer(broadcast);
-    assert success;
+    Packet broadcast = Packet.obtain(~(1 << id), builders.finish(builder));
+    queue(broadcast);
   }
 
   private void Disconnect(int id) {
     int entityId = player.get(id, Engine.INVALID_ENTITY);
-    assert entityId != Engine.INVALID_ENTITY;
-    FlatBufferBuilder builder = new FlatBufferBuilder();
-    int disconnectOffset = Disconnect.createDisconnect(builder, entityId);
-    int offset = com.riiablo.net.packet.d2gs.D2GS.createD2GS(builder, D2GSData.Disconnect, disconnectOffset);
-    com.riiablo.net.packet.d2gs.D2GS.finishSizePrefixedD2GSBuffer(builder, offset);
-    Packet broadcast = Packet.obtain(~(1 << id), builder.dataBuffer());
-    outPackets.offer(broadcast);
-
-    world.delete(entityId);
-    player.remove(id, Engine.INVALID_ENTITY);
-    synchronized (clients) {
-      clients[id] = null;
-      numClients--;
-      connected &= ~(1 << id);
+    if (entityId != Engine.INVALID_ENTITY) {
+      FlatBufferBuilder builder = builders.obtain();
+      int disconnectOffset = Disconnect.createDisconnect(builder, entityId);
+      int offset = com.riiablo.net.packet.d2gs.D2GS.createD2GS(builder, D2GSData.Disconnect, disconnectOffset);
+      com.riiablo.net.packet.d2gs.D2GS.finishSizePrefixedD2GSBuffer(builder, offset);
+      Packet broadcast = Packet.obtain(~(1 << id), builders.finish(builder));
+      queue(broadcast);
+
+      world.delete(entityId);
+      player.remove(id, Engine.INVALID_ENTITY);
     }
+
+    connected &= ~(1 << id);
+    sync.forget(id);
+    transport.free(id);
   }
 
   private void Ping(Packet packet) {
     Ping ping = (Ping) packet.data.data(new Ping());
-    FlatBufferBuilder builder = new FlatBufferBuilder(0);
+    FlatBufferBuilder builder = builders.obtain();
     int dataOffset = Ping.createPing(builder, ping.tickCount(), ping.sendTime(), TimeUtils.millis() - packet.time, false);
     int root = com.riiablo.net.packet.d2gs.D2GS.createD2GS(builder, D2GSData.Ping, dataOffset);
     com.riiablo.net.packet.d2gs.D2GS.finishSizePrefixedD2GSBuffer(builder, root);
-    Packet response = Packet.obtain(1 << packet.id, builder.dataBuffer());
-    outPackets.offer(response);
+    Packet response = Packet.obtain(1 << packet.id, builders.finish(builder));
+    queue(response);
   }
 
   private void Synchronize(Packet packet) {
@@ -569,7 +594,7 @@ public class D2GS extends ApplicationAdapter {
     itemManager.groundToCursor(entityId, groundToCursor.itemId());
 
     packet.id = (1 << packet.id);
-    outPackets.offer(packet);
+    queue(packet);
   }
 
   private void CursorToGround(Packet packet) {
@@ -578,7 +603,7 @@ public class D2GS extends ApplicationAdapter {
     itemManager.cursorToGround(entityId);
 
     packet.id = (1 << packet.id);
-    outPackets.offer(packet);
+    queue(packet);
   }
 
   private void StoreToCursor(Packet packet) {
@@ -587,7 +612,7 @@ public class D2GS extends ApplicationAdapter {
     itemManager.storeToCursor(entityId, storeToCursor.itemId());
 
     packet.id = (1 << packet.id);
-    outPackets.offer(packet);
+    queue(packet);
   }
 
   private void CursorToStore(Packet packet) {
@@ -596,7 +621,7 @@ public class D2GS extends ApplicationAdapter {
     itemManager.cursorToStore(entityId, cursorToStore.storeLoc(), cursorToStore.x(), cursorToStore.y());
 
     packet.id = (1 << packet.id);
-    outPackets.offer(packet);
+    queue(packet);
   }
 
   private void SwapStoreItem(Packet packet) {
@@ -605,7 +630,7 @@ public class D2GS extends ApplicationAdapter {
     itemManager.swapStoreItem(entityId, swapStoreItem.itemId(), swapStoreItem.storeLoc(), swapStoreItem.x(), swapStoreItem.y());
 
     packet.id = (1 << packet.id);
-    outPackets.offer(packet);
+    queue(packet);
   }
 
   private void BodyToCursor(Packet packet) {
@@ -614,7 +639,7 @@ public class D2GS extends ApplicationAdapter {
     itemManager.bodyToCursor(entityId, bodyToCursor.bodyLoc(), bodyToCursor.merc());
 
     packet.id = (1 << packet.id);
-    outPackets.offer(packet);
+    queue(packet);
   }
 
   private void CursorToBody(Packet packet) {
@@ -623,7 +648,7 @@ public class D2GS extends ApplicationAdapter {
     itemManager.cursorToBody(entityId, cursorToBody.bodyLoc(), cursorToBody.merc());
 
     packet.id = (1 << packet.id);
-    outPackets.offer(packet);
+    queue(packet);
   }
 
   private void SwapBodyItem(Packet packet) {
@@ -632,7 +657,7 @@ public class D2GS extends ApplicationAdapter {
     itemManager.swapBodyItem(entityId, swapBodyItem.bodyLoc(), swapBodyItem.merc());
 
     packet.id = (1 << packet.id);
-    outPackets.offer(packet);
+    queue(packet);
   }
 
   private void BeltToCursor(Packet packet) {
@@ -641,7 +666,7 @@ public class D2GS extends ApplicationAdapter {
     itemManager.beltToCursor(entityId, beltToCursor.itemId());
 
     packet.id = (1 << packet.id);
-    outPackets.offer(packet);
+    queue(packet);
   }
 
   private void CursorToBelt(Packet packet) {
@@ -650,7 +675,7 @@ public class D2GS extends ApplicationAdapter {
     itemManager.cursorToBelt(entityId, cursorToBelt.x(), cursorToBelt.y());
 
     packet.id = (1 << packet.id);
-    outPackets.offer(packet);
+    queue(packet);
   }
 
   private void SwapBeltItem(Packet packet) {
@@ -659,83 +684,7 @@ public class D2GS extends ApplicationAdapter {
     itemManager.swapBeltItem(entityId, swapBeltItem.itemId());
 
     packet.id = (1 << packet.id);
-    outPackets.offer(packet);
+    queue(packet);
   }
 
-  static String generateClientName() {
-    return String.format("Client-%08X", MathUtils.random(1, Integer.MAX_VALUE - 1));
-  }
-
-  private class Client extends Thread {
-    final String TAG;
-
-    int id;
-    Socket socket;
-    ByteBuffer buffer = ByteBuffer.allocate(8192);
-    volatile boolean kill = false;
-
-    Client(int id, Socket socket) {
-      super(clientThreads, generateClientName());
-      TAG = D2GS.TAG + "{" + id + "}";
-      this.id = id;
-      this.socket = socket;
-    }
-
-    public void send(Packet packet) throws IOException {
-      if (!socket.isConnected()) return;
-      WritableByteChannel out = Channels.newChannel(socket.getOutputStream());
-      packet.buffer.mark();
-      out.write(packet.buffer);
-      packet.buffer.reset();
-      if ((connected & (1 << id)) == 0 && packet.data.dataType() == D2GSData.Connection) {
-        connected |= (1 << id);
-      }
-    }
-
-    @Override
-    public void run() {
-      while (!kill) {
-        try {
-          buffer.clear();
-          buffer.mark();
-          ReadableByteChannel in = Channels.newChannel(socket.getInputStream());
-          if (in.read(buffer) == -1) {
-            kill = true;
-            break;
-          }
-          buffer.limit(buffer.position());
-          buffer.reset();
-
-          ByteBuffer copy = (ByteBuffer) ByteBuffer.wrap(new byte[buffer.limit()]).put(buffer).rewind();
-          Packet packet = Packet.obtain(id, copy);
-          if (DEBUG_RECEIVED_PACKETS && !ignoredPackets.get(packet.data.dataType())) Gdx.app.log(TAG, "received " + D2GSData.name(packet.data.dataType()) + " packet from " + socket.getRemoteAddress());
-          boolean success = packets.offer(packet, 5, TimeUnit.MILLISECONDS);
-          if (!success) {
-            Gdx.app.log(TAG, "failed to add to queue -- closing " + socket.getRemoteAddress());
-            kill = true;
-          } else if (packet.data.dataType() == D2GSData.Ping) {
-            try {
-              Ping ping = (Ping) packet.data.data(new Ping());
-              FlatBufferBuilder builder = new FlatBufferBuilder(0);
-              int dataOffset = Ping.createPing(builder, ping.tickCount(), ping.sendTime(), 0, true);
-              int root = com.riiablo.net.packet.d2gs.D2GS.createD2GS(builder, D2GSData.Ping, dataOffset);
-              com.riiablo.net.packet.d2gs.D2GS.finishSizePrefixedD2GSBuffer(builder, root);
-              Packet response = Packet.obtain(1 << packet.id, builder.dataBuffer());
-              if (DEBUG_SENT_PACKETS && !ignoredPackets.get(packet.data.dataType())) Gdx.app.log(TAG, "dispatching " + D2GSData.name(packet.data.dataType()) + " ACK packet to " + String.format("0x%08X", packet.id));
-              send(response);
-            } catch (Throwable t) {
-              Gdx.app.log(TAG, t.getMessage(), t);
-            }
-          }
-        } catch (Throwable t) {
-          Gdx.app.log(TAG, t.getMessage(), t);
-          kill = true;
-        }
-      }
-
-      Gdx.app.log(TAG, "closing socket to " + socket.getRemoteAddress());
-      if (socket != null) socket.dispose();
-      Disconnect(id);
-    }
-  }
 }
@@ -0,0 +1,465 @@
+package com.riiablo.server.d2gs;
+
+import io.netty.buffer.ByteBuf;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.apache.commons.io.IOUtils;
+
+import com.badlogic.gdx.Gdx;
+
+import com.riiablo.net.packet.d2gs.D2GSData;
+
+/**
+ * Non-blocking transport of {@link D2GS} which multiplexes all client
+ * connections on a single selector thread. Packets are framed using the size
+ * prefix of size-prefixed FlatBuffers ({@code D2GS#finishSizePrefixedD2GSBuffer}).
+ * <p>
+ * Each client has its own bounded inbound and outbound queue. When the inbound
+ * queue of a client is full, the transport stops reading from that client
+ * (applying TCP backpressure to it) until the game loop has drained it, so a
+ * bursty client cannot starve the others. When the outbound queue of a client
+ * is full, the client is not keeping up with the game and is disconnected.
+ * <p>
+ * Disconnected clients keep their id until the game loop has processed the
+ * disconnect via {@link #pollDisconnected()} and {@link #free(int)}.
+ */
+public class D2GSTransport implements Runnable {
+  private static final String TAG = "D2GSTransport";
+
+  private static final boolean DEBUG = !true;
+
+  static final int DEFAULT_INBOUND_CAPACITY = 64;
+  static final int DEFAULT_OUTBOUND_CAPACITY = 1024;
+  static final int READ_BUFFER_SIZE = 8192;
+  static final int MAX_FRAME_SIZE = 1 << 20;
+  static final int SIZE_PREFIX_LENGTH = 4;
+
+  /**
+   * Callback invoked on the transport thread when a packet is received, before
+   * it is queued for the game loop.
+   */
+  public interface Listener {
+    void onReceived(D2GSTransport transport, Packet packet);
+  }
+
+  final int maxClients;
+  final int inboundCapacity;
+  final int outboundCapacity;
+  final Listener listener;
+
+  /** written under its own lock, read without it by the game loop */
+  final AtomicReferenceArray<Client> clients;
+  volatile int numClients;
+
+  final Queue<Client> pending = new ConcurrentLinkedQueue<>();
+  final Queue<Client> disconnected = new ConcurrentLinkedQueue<>();
+
+  Selector selector;
+  ServerSocketChannel server;
+  Thread thread;
+  volatile boolean kill;
+
+  // metrics, written by transport thread
+  volatile int accepted;
+  volatile int rejected;
+  volatile int overflowDisconnects;
+
+  public D2GSTransport(int maxClients, Listener listener) {
+    this(maxClients, DEFAULT_INBOUND_CAPACITY, DEFAULT_OUTBOUND_CAPACITY, listener);
+  }
+
+  public D2GSTransport(int maxClients, int inboundCapacity, int outboundCapacity, Listener listener) {
+    this.maxClients = maxClients;
+    this.inboundCapacity = inboundCapacity;
+    this.outboundCapacity = outboundCapacity;
+    this.listener = listener;
+    this.clients = new AtomicReferenceArray<>(maxClients);
+  }
+
+  public SocketAddress bind(int port) throws IOException {
+    selector = Selector.open();
+    server = ServerSocketChannel.open();
+    server.configureBlocking(false);
+    server.socket().setReuseAddress(true);
+    server.bind(new InetSocketAddress(port));
+    server.register(selector, SelectionKey.OP_ACCEPT);
+    thread = new Thread(this, "D2GS Transport");
+    thread.start();
+    return server.getLocalAddress();
+  }
+
+  public void dispose() {
+    kill = true;
+    if (selector != null) selector.wakeup();
+    if (thread != null) {
+      try {
+        thread.join();
+      } catch (InterruptedException ignored) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  @Override
+  public void run() {
+    Gdx.app.log(TAG, "listening on " + server.socket().getLocalSocketAddress());
+    try {
+      while (!kill) {
+        selector.select();
+        processPending();
+        final Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+        while (it.hasNext()) {
+          final SelectionKey key = it.next();
+          it.remove();
+          if (!key.isValid()) continue;
+          if (key.isAcceptable()) {
+            accept();
+            continue;
+          }
+
+          final Client client = (Client) key.attachment();
+          try {
+            if (key.isReadable()) read(client);
+            if (key.isValid() && key.isWritable()) write(client);
+          } catch (IOException t) {
+            if (DEBUG) Gdx.app.debug(TAG, t.getMessage(), t);
+            close(client);
+          }
+        }
+      }
+    } catch (IOException | ClosedSelectorException t) {
+      Gdx.app.error(TAG, t.getMessage(), t);
+    } finally {
+      Gdx.app.log(TAG, "closing " + numClients + " clients...");
+      synchronized (clients) {
+        for (int i = 0; i < maxClients; i++) {
+          final Client client = clients.get(i);
+          if (client != null) close(client);
+        }
+      }
+
+      IOUtils.closeQuietly(server);
+      IOUtils.closeQuietly(selector);
+      Gdx.app.log(TAG, toString());
+    }
+  }
+
+  void accept() throws IOException {
+    final SocketChannel channel = server.accept();
+    if (channel == null) return;
+    Gdx.app.log(TAG, "connection from " + channel.getRemoteAddress());
+    final Client client;
+    synchronized (clients) {
+      int id = 0;
+      while (id < maxClients && clients.get(id) != null) id++;
+      if (id >= maxClients) {
+        // TODO: send server is full message
+        Gdx.app.log(TAG, "server is full -- closing " + channel.getRemoteAddress());
+        rejected++;
+        IOUtils.closeQuietly(channel);
+        return;
+      }
+
+      client = new Client(id, channel, inboundCapacity, outboundCapacity);
+      clients.set(id, client);
+      numClients++;
+    }
+
+    channel.configureBlocking(false);
+    channel.socket().setTcpNoDelay(true);
+    client.key = channel.register(selector, SelectionKey.OP_READ, client);
+    accepted++;
+    Gdx.app.log(TAG, "assigned " + client.remoteAddress + " to " + client.id);
+  }
+
+  void read(Client client) throws IOException {
+    final int bytesRead = client.channel.read(client.readBuffer);
+    if (bytesRead == -1) {
+      close(client);
+      return;
+    }
+
+    client.bytesReceived += bytesRead;
+    parse(client);
+  }
+
+  /**
+   * Parses the complete frames of the read buffer of {@code client} into its
+   * inbound queue, pausing reads from the client if its queue is full.
+   */
+  void parse(Client client) throws IOException {
+    final ByteBuffer buffer = client.readBuffer;
+    buffer.flip();
+    final int limit = buffer.limit();
+    try {
+      while (buffer.remaining() >= SIZE_PREFIX_LENGTH) {
+        if (client.inbound.remainingCapacity() == 0) {
+          pauseReading(client);
+          return;
+        }
+
+        final int position = buffer.position();
+        final int size = buffer.getInt(position);
+        if (size < 0 || size > MAX_FRAME_SIZE) {
+          throw new IOException("invalid frame size from " + client.remoteAddress + ": " + size);
+        }
+
+        final int frameLength = SIZE_PREFIX_LENGTH + size;
+        if (buffer.remaining() < frameLength) break;
+        final ByteBuffer frame = ByteBuffer.allocate(frameLength);
+        buffer.limit(position + frameLength);
+        frame.put(buffer).flip();
+        buffer.limit(limit);
+
+        final Packet packet = Packet.obtain(client.id, frame);
+        client.packetsReceived++;
+        if (DEBUG) Gdx.app.debug(TAG, "received " + D2GSData.name(packet.data.dataType()) + " packet from " + client.remoteAddress);
+        if (listener != null) listener.onReceived(this, packet);
+        client.inbound.offer(packet);
+        client.inboundHighWater = Math.max(client.inboundHighWater, client.inbound.size());
+      }
+    } finally {
+      buffer.compact();
+    }
+
+    ensureFrameCapacity(client);
+  }
+
+  /** grows the read buffer if the next frame would not fit into it */
+  void ensureFrameCapacity(Client client) {
+    final ByteBuffer buffer = client.readBuffer;
+    if (buffer.position() < SIZE_PREFIX_LENGTH) return;
+    final int frameLength = SIZE_PREFIX_LENGTH + buffer.getInt(0);
+    if (frameLength <= buffer.capacity()) return;
+    buffer.flip();
+    client.readBuffer = ByteBuffer
+        .allocate(frameLength)
+        .order(ByteOrder.LITTLE_ENDIAN)
+        .put(buffer);
+  }
+
+  void pauseReading(Client client) {
+    if (client.paused) return;
+    client.paused = true;
+    client.pauses++;
+    client.key.interestOps(client.key.interestOps() & ~SelectionKey.OP_READ);
+    if (DEBUG) Gdx.app.debug(TAG, "paused reading from " + client);
+  }
+
+  void resumeReading(Client client) throws IOException {
+    if (!client.paused || client.inbound.remainingCapacity() == 0) return;
+    client.paused = false;
+    if (DEBUG) Gdx.app.debug(TAG, "resumed reading from " + client);
+    parse(client); // frames which were already read
+    if (!client.paused) {
+      client.key.interestOps(client.key.interestOps() | SelectionKey.OP_READ);
+    }
+  }
+
+  void write(Client client) throws IOException {
+    ByteBuf buffer;
+    while ((buffer = client.outbound.peek()) != null) {
+      client.bytesSent += buffer.readBytes(client.channel, buffer.readableBytes());
+      if (buffer.isReadable()) {
+        client.key.interestOps(client.key.interestOps() | SelectionKey.OP_WRITE);
+        return;
+      }
+
+      client.outbound.poll();
+      buffer.release();
+      client.packetsSent++;
+    }
+
+    client.key.interestOps(client.key.interestOps() & ~SelectionKey.OP_WRITE);
+  }
+
+  void processPending() {
+    Client client;
+    while ((client = pending.poll()) != null) {
+      client.scheduled = false;
+      if (client.closed) continue;
+      try {
+        if (client.overflowed) {
+          Gdx.app.log(TAG, "outbound queue overflowed -- closing " + client.remoteAddress);
+          overflowDisconnects++;
+          close(client);
+          continue;
+        }
+
+        resumeReading(client);
+        if (!client.outbound.isEmpty()) write(client);
+      } catch (IOException t) {
+        if (DEBUG) Gdx.app.debug(TAG, t.getMessage(), t);
+        close(client);
+      }
+    }
+  }
+
+  void schedule(Client client) {
+    if (client.scheduled) return;
+    client.scheduled = true;
+    pending.offer(client);
+    selector.wakeup();
+  }
+
+  void close(Client client) {
+    if (client.closed) return;
+    client.closed = true;
+    Gdx.app.log(TAG, "closing connection to " + client);
+    if (client.key != null) client.key.cancel();
+    IOUtils.closeQuietly(client.channel);
+    client.releaseOutbound();
+    disconnected.offer(client);
+  }
+
+  /**
+   * Drains the inbound queues of all clients into {@code packets}, resuming
+   * reads from clients which were paused because their queue was full.
+   *
+   * @return number of packets drained
+   */
+  public int drainTo(Collection<? super Packet> packets) {
+    int drained = 0;
+    for (int i = 0; i < maxClients; i++) {
+      final Client client = clients.get(i);
+      if (client == null) continue;
+      final int count = client.inbound.drainTo(packets);
+      if (count > 0 && client.paused) schedule(client);
+      drained += count;
+    }
+
+    return drained;
+  }
+
+  /**
+   * Queues {@code packet} to be sent to client {@code id}. The packet's buffer
+   * is not modified and pooled contents are retained until written, so the
+   * same packet may be sent to multiple clients and then released.
+   *
+   * @return whether or not the packet was queued
+   */
+  public boolean send(int id, Packet packet) {
+    final Client client = clients.get(id);
+    if (client == null || client.closed) return false;
+    final ByteBuf content = packet.retainedContent();
+    if (!client.outbound.offer(content)) {
+      content.release();
+      client.overflowed = true;
+      schedule(client);
+      return false;
+    }
+
+    if (client.closed) {
+      // raced with close(), which may have already released the queue
+      client.releaseOutbound();
+      return false;
+    }
+
+    client.outboundHighWater = Math.max(client.outboundHighWater, client.outbound.size());
+    schedule(client);
+    return true;
+  }
+
+  public boolean isConnected(int id) {
+    final Client client = clients.get(id);
+    return client != null && !client.closed;
+  }
+
+  public SocketAddress getRemoteAddress(int id) {
+    final Client client = clients.get(id);
+    return client != null ? client.remoteAddress : null;
+  }
+
+  /**
+   * Returns the id of the next client whose connection was closed, or
+   * {@code -1} if there are none. Its id is reserved until {@link #free(int)}
+   * is called.
+   */
+  public int pollDisconnected() {
+    final Client client = disconnected.poll();
+    if (client == null) return -1;
+    Gdx.app.log(TAG, "disconnected " + client);
+    return client.id;
+  }
+
+  /** releases the id of a disconnected client, s.t. it can be reassigned */
+  public void free(int id) {
+    synchronized (clients) {
+      final Client client = clients.get(id);
+      assert client == null || client.closed : "client " + id + " is still connected";
+      if (client == null) return;
+      clients.set(id, null);
+      numClients--;
+    }
+  }
+
+  public int numClients() {
+    return numClients;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d clients, %d accepted, %d rejected, %d overflow disconnects",
+        numClients, accepted, rejected, overflowDisconnects);
+  }
+
+  static final class Client {
+    final int id;
+    final SocketChannel channel;
+    final SocketAddress remoteAddress;
+    final BlockingQueue<Packet> inbound;
+    final BlockingQueue<ByteBuf> outbound;
+    SelectionKey key;
+    ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    volatile boolean closed;
+    volatile boolean overflowed;
+    volatile boolean scheduled;
+    volatile boolean paused;
+
+    // metrics
+    long bytesReceived;
+    long bytesSent;
+    int packetsReceived;
+    int packetsSent;
+    int pauses;
+    int inboundHighWater;
+    int outboundHighWater;
+
+    Client(int id, SocketChannel channel, int inboundCapacity, int outboundCapacity) throws IOException {
+      this.id = id;
+      this.channel = channel;
+      this.remoteAddress = channel.getRemoteAddress();
+      this.inbound = new ArrayBlockingQueue<>(inboundCapacity);
+      this.outbound = new ArrayBlockingQueue<>(outboundCapacity);
+    }
+
+    void releaseOutbound() {
+      ByteBuf buffer;
+      while ((buffer = outbound.poll()) != null) buffer.release();
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "%d:%s {received %d packets (%d bytes), sent %d packets (%d bytes), "
+              + "paused %d times, inbound high water %d, outbound high water %d}",
+          id, remoteAddress, packetsReceived, bytesReceived, packetsSent, bytesSent,
+          pauses, inboundHighWater, outboundHighWater);
+    }
+  }
+}
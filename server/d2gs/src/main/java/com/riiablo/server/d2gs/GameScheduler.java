@@ -0,0 +1,302 @@
+package com.riiablo.server.d2gs;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.Array;
+
+import com.riiablo.codec.Animation;
+
+/**
+ * Hosts many {@link D2GS} games within a single JVM on a fixed pool of tick
+ * threads. Each game is placed on the worker with the least measured load and
+ * is then only ever ticked by that worker, at {@link Animation#FRAMES_PER_SECOND}
+ * together with the other games placed on it, s.t. games share no mutable
+ * state and remain confined to a single thread.
+ *
+ * Load is the CPU time spent ticking a game, averaged over recent ticks. A
+ * game which has not been ticked yet is assumed to cost as much as the average
+ * hosted game.
+ */
+public class GameScheduler {
+  private static final String TAG = "GameScheduler";
+
+  private static final boolean DEBUG      = true;
+  private static final boolean DEBUG_LOAD = DEBUG && !true;
+
+  static final long TICK_NANOS = (long) (TimeUnit.SECONDS.toNanos(1) / Animation.FRAMES_PER_SECOND);
+  static final long DEFAULT_LOAD_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+  static final float LOAD_SMOOTHING = 0.1f;
+
+  /** max fraction of a tick a worker may be loaded with before games are refused */
+  static final float MAX_UTILIZATION = 0.8f;
+
+  static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+  static final boolean cpuTimeSupported = threads.isCurrentThreadCpuTimeSupported();
+
+  final Worker[] workers;
+  volatile boolean kill;
+
+  public GameScheduler() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  public GameScheduler(int numWorkers) {
+    workers = new Worker[numWorkers];
+    for (int i = 0; i < numWorkers; i++) workers[i] = new Worker(i);
+  }
+
+  public void start() {
+    for (Worker worker : workers) worker.start();
+  }
+
+  /**
+   * Stops all workers, disposing the games they host.
+   */
+  public void dispose() {
+    kill = true;
+    for (Worker worker : workers) {
+      LockSupport.unpark(worker);
+      try {
+        worker.join();
+      } catch (InterruptedException ignored) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Creates {@code game} on the calling thread and places it on the least
+   * loaded worker.
+   *
+   * @return the hosted instance, or {@code null} if every worker is already
+   *         loaded beyond {@link #MAX_UTILIZATION}
+   */
+  public Instance host(String name, D2GS game) {
+    final Worker worker;
+    final long estimate;
+    synchronized (this) {
+      estimate = averageLoad();
+      worker = leastLoaded();
+      if (worker.load.get() + estimate > TICK_NANOS * MAX_UTILIZATION) {
+        Gdx.app.error(TAG, "Refusing to host " + name + ", workers are at capacity: " + this);
+        return null;
+      }
+
+      worker.reserve(estimate);
+    }
+
+    final Instance instance = new Instance(name, game, worker, estimate);
+    try {
+      game.create();
+    } catch (Throwable t) {
+      Gdx.app.error(TAG, "Failed to create " + name, t);
+      synchronized (this) {
+        worker.release(estimate);
+      }
+      return null;
+    }
+
+    worker.pending.add(instance);
+    Gdx.app.log(TAG, "Hosting " + name + " on " + worker.getName());
+    return instance;
+  }
+
+  Worker leastLoaded() {
+    Worker leastLoaded = workers[0];
+    for (Worker worker : workers) {
+      if (worker.load.get() < leastLoaded.load.get()) leastLoaded = worker;
+    }
+
+    return leastLoaded;
+  }
+
+  long averageLoad() {
+    long load = 0;
+    int instances = 0;
+    for (Worker worker : workers) {
+      load += worker.load.get();
+      instances += worker.size + worker.reserved;
+    }
+
+    return instances > 0 ? load / instances : DEFAULT_LOAD_NANOS;
+  }
+
+  public synchronized int numInstances() {
+    int instances = 0;
+    for (Worker worker : workers) instances += worker.size + worker.reserved;
+    return instances;
+  }
+
+  @Override
+  public synchronized String toString() {
+    StringBuilder sb = new StringBuilder(64 * workers.length);
+    for (Worker worker : workers) {
+      if (sb.length() > 0) sb.append(", ");
+      sb.append(String.format("%s: %d games, %.2fms/tick, %d overruns",
+          worker.getName(), worker.size + worker.reserved, worker.load.get() / 1e6, worker.overruns));
+    }
+
+    return sb.toString();
+  }
+
+  public static class Instance {
+    final String name;
+    final D2GS game;
+    final Worker worker;
+    final long estimate;
+
+    /** smoothed CPU time in ns spent per tick */
+    volatile long load;
+    volatile long ticks;
+    volatile boolean stopped;
+
+    Instance(String name, D2GS game, Worker worker, long load) {
+      this.name = name;
+      this.game = game;
+      this.worker = worker;
+      this.estimate = this.load = load;
+    }
+
+    public String name() {
+      return name;
+    }
+
+    public D2GS game() {
+      return game;
+    }
+
+    public long load() {
+      return load;
+    }
+
+    public long ticks() {
+      return ticks;
+    }
+
+    public boolean isStopped() {
+      return stopped;
+    }
+
+    /**
+     * Removes this game from its worker, which disposes it before its next
+     * tick.
+     */
+    public void stop() {
+      stopped = true;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s@%d (%s, %.2fms/tick)", name, game.port(), worker.getName(), load / 1e6);
+    }
+  }
+
+  final class Worker extends Thread {
+    final ConcurrentLinkedQueue<Instance> pending = new ConcurrentLinkedQueue<>();
+    final Array<Instance> instances = new Array<>(false, 16);
+
+    /** sum of the loads of the instances placed on this worker */
+    final AtomicLong load = new AtomicLong();
+    /** instances placed but not yet picked up and their estimated load, guarded by the scheduler */
+    int reserved;
+    long reservedLoad;
+    volatile int size;
+    volatile long overruns;
+
+    Worker(int id) {
+      super("D2GS Worker-" + id);
+      setDaemon(true);
+    }
+
+    void reserve(long estimate) {
+      reserved++;
+      reservedLoad += estimate;
+      load.addAndGet(estimate);
+    }
+
+    void release(long estimate) {
+      reserved--;
+      reservedLoad -= estimate;
+      load.addAndGet(-estimate);
+    }
+
+    @Override
+    public void run() {
+      long next = System.nanoTime();
+      while (!kill) {
+        for (Instance instance; (instance = pending.poll()) != null;) {
+          instances.add(instance);
+          synchronized (GameScheduler.this) {
+            // load is recomputed below once the instance has been ticked
+            reserved--;
+            reservedLoad -= instance.estimate;
+          }
+        }
+
+        long load = 0;
+        for (int i = instances.size - 1; i >= 0; i--) {
+          final Instance instance = instances.get(i);
+          if (instance.stopped || !tick(instance)) {
+            instances.removeIndex(i);
+            dispose(instance);
+            continue;
+          }
+
+          load += instance.load;
+        }
+
+        synchronized (GameScheduler.this) {
+          this.load.set(load + reservedLoad);
+          size = instances.size;
+        }
+
+        if (DEBUG_LOAD) Gdx.app.debug(TAG, getName() + " " + instances.size + " games, " + (load / 1e6) + "ms/tick");
+
+        next += TICK_NANOS;
+        final long sleep = next - System.nanoTime();
+        if (sleep > 0) {
+          LockSupport.parkNanos(this, sleep);
+        } else {
+          overruns++;
+          // drop the missed ticks rather than trying to catch up
+          if (-sleep > TICK_NANOS) next = System.nanoTime();
+        }
+      }
+
+      for (Instance instance : instances) dispose(instance);
+      for (Instance instance; (instance = pending.poll()) != null;) dispose(instance);
+      instances.clear();
+    }
+
+    boolean tick(Instance instance) {
+      final long start = cpuTimeSupported ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+      try {
+        instance.game.render();
+      } catch (Throwable t) {
+        Gdx.app.error(TAG, "Stopping " + instance.name + ", tick failed", t);
+        return false;
+      }
+
+      final long elapsed = (cpuTimeSupported ? threads.getCurrentThreadCpuTime() : System.nanoTime()) - start;
+      instance.load += (long) ((elapsed - instance.load) * LOAD_SMOOTHING);
+      instance.ticks++;
+      return true;
+    }
+
+    void dispose(Instance instance) {
+      instance.stopped = true;
+      Gdx.app.log(TAG, "Disposing " + instance.name);
+      try {
+        instance.game.dispose();
+      } catch (Throwable t) {
+        Gdx.app.error(TAG, "Failed to dispose " + instance.name, t);
+      }
+    }
+  }
+}
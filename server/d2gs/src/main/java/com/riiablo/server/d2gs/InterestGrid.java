@@ -0,0 +1,92 @@
+package com.riiablo.server.d2gs;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.IntIntMap;
+
+import com.riiablo.map.Map;
+
+/**
+ * Uniform grid over world positions where each cell stores the mask of players
+ * whose view overlaps it, s.t. the players interested in an entity can be
+ * found with a single cell lookup instead of testing every player.
+ *
+ * Players are re-added every tick. A player whose {@link Map.Zone} cannot be
+ * resolved (e.g., still being placed) is interested in everything. Entities
+ * already known by a player use the larger leave radius so that entities near
+ * the edge of the view don't flap between entering and leaving.
+ */
+public class InterestGrid {
+  public static final int CELL_SIZE    = 32;
+  public static final int ENTER_RADIUS = 40;
+  public static final int LEAVE_RADIUS = ENTER_RADIUS + 8;
+
+  static final int CELL_SHIFT = 5;
+  static { assert 1 << CELL_SHIFT == CELL_SIZE; }
+
+  final IntIntMap cells = new IntIntMap(256);
+  final float[] x = new float[Integer.SIZE];
+  final float[] y = new float[Integer.SIZE];
+
+  /** mask of all players added since the last {@link #clear()} */
+  int players;
+  /** mask of players without a zone, these receive everything */
+  int global;
+
+  public void clear() {
+    cells.clear();
+    players = 0;
+    global = 0;
+  }
+
+  public void add(int id, Vector2 position, Map.Zone zone) {
+    final int flag = 1 << id;
+    players |= flag;
+    x[id] = position.x;
+    y[id] = position.y;
+    if (zone == null) {
+      global |= flag;
+      return;
+    }
+
+    final int x0 = cell(position.x - LEAVE_RADIUS), x1 = cell(position.x + LEAVE_RADIUS);
+    final int y0 = cell(position.y - LEAVE_RADIUS), y1 = cell(position.y + LEAVE_RADIUS);
+    for (int cy = y0; cy <= y1; cy++) {
+      for (int cx = x0; cx <= x1; cx++) {
+        final int key = key(cx, cy);
+        cells.put(key, cells.get(key, 0) | flag);
+      }
+    }
+  }
+
+  public int players() {
+    return players;
+  }
+
+  /**
+   * Returns the mask of players whose view contains {@code position}.
+   *
+   * @param known mask of players which already know of the entity
+   */
+  public int interested(Vector2 position, int known) {
+    final int candidates = cells.get(key(cell(position.x), cell(position.y)), 0);
+    int mask = global;
+    for (int i = 0, flag = 1; i < Integer.SIZE && (candidates & -flag) != 0; i++, flag <<= 1) {
+      if ((candidates & flag) == 0) continue;
+      final float radius = (known & flag) == flag ? LEAVE_RADIUS : ENTER_RADIUS;
+      if (Math.abs(position.x - x[i]) <= radius && Math.abs(position.y - y[i]) <= radius) {
+        mask |= flag;
+      }
+    }
+
+    return mask;
+  }
+
+  static int cell(float f) {
+    return MathUtils.floor(f) >> CELL_SHIFT;
+  }
+
+  static int key(int cx, int cy) {
+    return (cx << 16) | (cy & 0xFFFF);
+  }
+}
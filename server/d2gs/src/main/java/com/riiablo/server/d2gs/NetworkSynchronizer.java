@@ -1,6 +1,7 @@
 package com.riiablo.server.d2gs;
 
 import com.google.flatbuffers.FlatBufferBuilder;
+import org.apache.commons.lang3.ArrayUtils;
 
 import com.artemis.BaseEntitySystem;
 import com.artemis.ComponentMapper;
@@ -10,12 +11,17 @@ import com.artemis.utils.IntBag;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.utils.IntIntMap;
 import com.riiablo.engine.server.SerializationManager;
+import com.riiablo.engine.server.SnapshotBaselines;
 import com.riiablo.engine.server.component.Class;
 import com.riiablo.engine.server.component.Flags;
 import com.riiablo.engine.server.component.Networked;
+import com.riiablo.engine.server.component.Position;
+import com.riiablo.map.Map;
+import com.riiablo.net.FlatBufferBuilderPool;
 import com.riiablo.net.packet.d2gs.D2GS;
 import com.riiablo.net.packet.d2gs.D2GSData;
 import com.riiablo.net.packet.d2gs.EntityFlags;
+import com.riiablo.net.packet.d2gs.EntitySync;
 
 import java.util.concurrent.BlockingQueue;
 
@@ -25,6 +31,7 @@ public class NetworkSynchronizer extends BaseEntitySystem {
 
   private static final boolean DEBUG      = true;
   private static final boolean DEBUG_SYNC = DEBUG && !true;
+  private static final boolean DEBUG_INTEREST = DEBUG && !true;
 
   protected SerializationManager serializer;
 
@@ -34,14 +41,73 @@ public class NetworkSynchronizer extends BaseEntitySystem {
   @Wire(name = "player")
   protected IntIntMap players;
 
+  @Wire(name = "builders")
+  protected FlatBufferBuilderPool builders;
+
+  @Wire(name = "map")
+  protected Map map;
+
   protected ComponentMapper<Class> mClass;
   protected ComponentMapper<Flags> mFlags;
+  protected ComponentMapper<Position> mPosition;
+
+  final InterestGrid grid = new InterestGrid();
+
+  /** entityId -> mask of players which were last sent the entity */
+  final IntIntMap known = new IntIntMap();
+  /** entityId -> size of the last full sync of the entity */
+  final IntIntMap sizes = new IntIntMap();
+
+  /** components of each entity last sent to each player */
+  final SnapshotBaselines baselines = new SnapshotBaselines(Integer.SIZE);
+  final int[] deltas = new int[Integer.SIZE];
+
+  /** per tick counters, see {@link #begin()} */
+  int packets, bytes;
+  int packetsSaved, bytesSaved;
+  int entered, left;
+  int dropped;
 
   @Override
   protected boolean checkProcessing() {
     return players.size > 0;
   }
 
+  @Override
+  protected void begin() {
+    packets = bytes = 0;
+    packetsSaved = bytesSaved = 0;
+    entered = left = 0;
+    dropped = 0;
+
+    grid.clear();
+    for (IntIntMap.Entry entry : players.entries()) {
+      Position position = mPosition.get(entry.value);
+      if (position == null) continue;
+      grid.add(entry.key, position.position, map.getZone(position.position));
+    }
+  }
+
+  @Override
+  protected void end() {
+    if (DEBUG_INTEREST) Gdx.app.debug(TAG, String.format(
+        "sent %d packets (%d bytes), saved %d packets (%d bytes), %d entered, %d left, %d dropped",
+        packets, bytes, packetsSaved, bytesSaved, entered, left, dropped));
+  }
+
+  /**
+   * Forgets which entities player {@code id} knows of, should be called when a
+   * player disconnects s.t. the next client assigned the same id is sent a full
+   * sync of every entity within its view.
+   */
+  public void forget(int id) {
+    baselines.resync(id);
+    final int mask = ~(1 << id);
+    for (IntIntMap.Entry entry : known.entries()) {
+      known.put(entry.key, entry.value & mask);
+    }
+  }
+
   // FIXME: this assumes that removing Networked component implies deletion -- may not always be case
   @Override
   protected void removed(int entityId) {
@@ -49,6 +115,10 @@ public class NetworkSynchronizer extends BaseEntitySystem {
     switch (type) {
       case PLR:
         // TODO: handled by disconnection packet, need to handle here also
+        // entity ids are recycled, so the baselines must not outlive the entity
+        known.remove(entityId, 0);
+        sizes.remove(entityId, 0);
+        baselines.remove(entityId);
         break;
       default:
         mFlags.get(entityId).flags |= EntityFlags.deleted;
@@ -66,11 +136,159 @@ public class NetworkSynchronizer extends BaseEntitySystem {
   }
 
   protected void process(int entityId) {
-    FlatBufferBuilder builder = sync(new FlatBufferBuilder(0), entityId);
     int id = players.findKey(entityId, -1); // TODO: replace with component referencing player id
-    Packet packet = Packet.obtain(id != -1 ? ~(1 << id) : 0xFFFFFFFF, builder.dataBuffer());
-    boolean success = outPackets.offer(packet);
-    assert success;
+    int recipients = (id != -1 ? ~(1 << id) : 0xFFFFFFFF) & grid.players();
+    int packets = this.packets, bytes = this.bytes;
+    if ((mFlags.get(entityId).flags & EntityFlags.deleted) == EntityFlags.deleted) {
+      // only players which know of the entity need to be told it was deleted
+      int known = this.known.remove(entityId, 0) & recipients;
+      int size = sizes.remove(entityId, 0);
+      baselines.remove(entityId);
+      if (known != 0) send(sync(builders.obtain(), entityId), known);
+      count(recipients, size, packets, bytes);
+      return;
+    }
+
+    Position position = mPosition.get(entityId);
+    if (position == null || mClass.get(entityId).type == Class.Type.PLR) {
+      // players are announced to everyone on connection and are kept in sync
+      // with everyone s.t. their disconnection can be handled by all clients
+      sync(entityId, recipients);
+      count(recipients, sizes.get(entityId, 0), packets, bytes);
+      return;
+    }
+
+    int known = this.known.get(entityId, 0) & grid.players();
+    int interested = grid.interested(position.position, known) & recipients;
+    int leaving = known & ~interested;
+    if (leaving != 0 && send(leave(builders.obtain(), entityId), leaving) >= 0) {
+      left += Integer.bitCount(leaving);
+      for (int p = leaving; p != 0; p &= p - 1) {
+        baselines.resync(Integer.numberOfTrailingZeros(p), entityId);
+      }
+
+      leaving = 0;
+    }
+
+    if (interested != 0) {
+      entered += Integer.bitCount(interested & ~known);
+      sync(entityId, interested);
+    }
+
+    // players which were not sent their leave still know of the entity
+    this.known.put(entityId, interested | leaving);
+    count(recipients, sizes.get(entityId, 0), packets, bytes);
+  }
+
+  /**
+   * Sends each recipient only the components of {@code entityId} which differ
+   * from its baseline. Recipients needing the same components share a packet
+   * and recipients which are up to date are skipped entirely.
+   */
+  void sync(int entityId, int recipients) {
+    final int full = serializer.snapshot(entityId);
+    final int[] deltas = this.deltas;
+    for (int p = recipients; p != 0; p &= p - 1) {
+      final int client = Integer.numberOfTrailingZeros(p);
+      deltas[client] = serializer.delta(baselines, client, entityId);
+    }
+
+    for (int pending = recipients; pending != 0;) {
+      final int mask = deltas[Integer.numberOfTrailingZeros(pending)];
+      int group = 0;
+      for (int p = pending; p != 0; p &= p - 1) {
+        final int client = Integer.numberOfTrailingZeros(p);
+        if (deltas[client] == mask) group |= 1 << client;
+      }
+
+      pending &= ~group;
+      if (mask == 0) continue;
+      FlatBufferBuilder builder = builders.obtain();
+      int syncOffset = serializer.serialize(builder, entityId, mask);
+      int root = D2GS.createD2GS(builder, D2GSData.EntitySync, syncOffset);
+      D2GS.finishSizePrefixedD2GSBuffer(builder, root);
+      int size = send(builder, group);
+      if (size < 0) continue; // unacknowledged, the next delta is from the same baselines
+      if (mask == full) sizes.put(entityId, size);
+      for (int p = group; p != 0; p &= p - 1) {
+        serializer.acknowledge(baselines, Integer.numberOfTrailingZeros(p), entityId, mask);
+      }
+    }
+  }
+
+  /**
+   * Queues the finished {@code builder} for {@code recipients}.
+   *
+   * @return size of the packet, or {@code -1} if the outbound queue is full,
+   *         in which case the packet is released and not counted
+   */
+  int send(FlatBufferBuilder builder, int recipients) {
+    Packet packet = Packet.obtain(recipients, builders.finish(builder));
+    int size = packet.content.readableBytes();
+    if (!outPackets.offer(packet)) {
+      packet.release();
+      dropped++;
+      return -1;
+    }
+
+    packets += Integer.bitCount(recipients);
+    bytes += Integer.bitCount(recipients) * size;
+    return size;
+  }
+
+  /**
+   * Records the deliveries and bytes saved compared to broadcasting a full
+   * sync of {@code size} bytes to every player in {@code broadcast}, where
+   * {@code packets} and {@code bytes} are the counters before the entity was
+   * processed.
+   */
+  void count(int broadcast, int size, int packets, int bytes) {
+    packetsSaved += Integer.bitCount(broadcast) - (this.packets - packets);
+    bytesSaved += Integer.bitCount(broadcast) * size - (this.bytes - bytes);
+  }
+
+  /**
+   * Serializes a sync marking {@code entityId} as deleted without modifying the
+   * entity, clients will recreate it from the next full sync they receive.
+   */
+  public FlatBufferBuilder leave(FlatBufferBuilder builder, int entityId) {
+    int type = mClass.get(entityId).type.ordinal();
+    int flags = mFlags.get(entityId).flags | EntityFlags.deleted;
+    int dataTypeOffset = EntitySync.createComponentTypeVector(builder, ArrayUtils.EMPTY_BYTE_ARRAY);
+    int dataOffset = EntitySync.createComponentVector(builder, ArrayUtils.EMPTY_INT_ARRAY);
+    int syncOffset = EntitySync.createEntitySync(builder, entityId, type, flags, dataTypeOffset, dataOffset);
+    int root = D2GS.createD2GS(builder, D2GSData.EntitySync, syncOffset);
+    D2GS.finishSizePrefixedD2GSBuffer(builder, root);
+    return builder;
+  }
+
+  public int packets() {
+    return packets;
+  }
+
+  public int bytes() {
+    return bytes;
+  }
+
+  public int packetsSaved() {
+    return packetsSaved;
+  }
+
+  public int bytesSaved() {
+    return bytesSaved;
+  }
+
+  public int entered() {
+    return entered;
+  }
+
+  public int left() {
+    return left;
+  }
+
+  /** packets which could not be queued this tick */
+  public int dropped() {
+    return dropped;
   }
 
   public FlatBufferBuilder sync(FlatBufferBuilder builder, int entityId) {
@@ -1,6 +1,8 @@
 package com.riiablo.server.d2gs;
 
 import com.google.flatbuffers.ByteBufferUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import java.nio.ByteBuffer;
 
 import com.badlogic.gdx.utils.TimeUtils;
@@ -12,6 +14,8 @@ public class Packet {
     public long time;
     public ByteBuffer buffer;
     public D2GS data;
+    /** pooled buffer backing {@link #buffer}, or {@code null} if heap backed */
+    public ByteBuf content;
 
     public static Packet obtain(int id, ByteBuffer buffer) {
       Packet packet = new Packet();
@@ -21,4 +25,25 @@ public class Packet {
       packet.data = D2GS.getRootAsD2GS(ByteBufferUtil.removeSizePrefix(buffer));
       return packet;
     }
+
+    /**
+     * Wraps a pooled buffer, e.g., from {@link com.riiablo.net.FlatBufferBuilderPool#finish}.
+     * The packet takes ownership of {@code content}, see {@link #release()}.
+     */
+    public static Packet obtain(int id, ByteBuf content) {
+      Packet packet = obtain(id, content.nioBuffer());
+      packet.content = content;
+      return packet;
+    }
+
+    /** @return a retained view of this packet's contents for a single write */
+    public ByteBuf retainedContent() {
+      return content != null
+          ? content.retainedDuplicate()
+          : Unpooled.wrappedBuffer(buffer.duplicate());
+    }
+
+    public void release() {
+      if (content != null) content.release();
+    }
   }
@@ -0,0 +1,273 @@
+package com.riiablo.server.d2gs;
+
+import com.google.flatbuffers.FlatBufferBuilder;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+
+import com.riiablo.net.packet.d2gs.Connection;
+import com.riiablo.net.packet.d2gs.D2GSData;
+import com.riiablo.net.packet.d2gs.Ping;
+
+public class D2GSTransportTest {
+  static final long TIMEOUT_MILLIS = 10000;
+  static final int MAX_CLIENTS = 2;
+
+  D2GSTransport transport;
+  Socket socket;
+
+  @BeforeClass
+  public static void setUpClass() {
+    new HeadlessApplication(new ApplicationAdapter() {});
+  }
+
+  @AfterClass
+  public static void tearDownClass() {
+    Gdx.app.exit();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    if (socket != null) socket.close();
+    if (transport != null) transport.dispose();
+  }
+
+  /** binds a transport with the specified queue capacities and connects to it as client 0 */
+  void connect(int inboundCapacity, int outboundCapacity) throws IOException, InterruptedException {
+    transport = new D2GSTransport(MAX_CLIENTS, inboundCapacity, outboundCapacity, null);
+    final int port = ((InetSocketAddress) transport.bind(0)).getPort();
+    socket = new Socket("localhost", port);
+    await("client is accepted", new Condition() {
+      @Override
+      public boolean met() {
+        return transport.isConnected(0);
+      }
+    });
+  }
+
+  /** size-prefixed ping frame tagged with {@code tickCount} */
+  static byte[] ping(int tickCount) {
+    FlatBufferBuilder builder = new FlatBufferBuilder(0);
+    int dataOffset = Ping.createPing(builder, tickCount, 0, 0, false);
+    int root = com.riiablo.net.packet.d2gs.D2GS.createD2GS(builder, D2GSData.Ping, dataOffset);
+    com.riiablo.net.packet.d2gs.D2GS.finishSizePrefixedD2GSBuffer(builder, root);
+    return builder.sizedByteArray();
+  }
+
+  /** size-prefixed connection frame carrying {@code d2sLength} bytes */
+  static byte[] connection(int d2sLength) {
+    FlatBufferBuilder builder = new FlatBufferBuilder(0);
+    int d2sOffset = Connection.createD2sVector(builder, new byte[d2sLength]);
+    Connection.startConnection(builder);
+    Connection.addD2s(builder, d2sOffset);
+    int dataOffset = Connection.endConnection(builder);
+    int root = com.riiablo.net.packet.d2gs.D2GS.createD2GS(builder, D2GSData.Connection, dataOffset);
+    com.riiablo.net.packet.d2gs.D2GS.finishSizePrefixedD2GSBuffer(builder, root);
+    return builder.sizedByteArray();
+  }
+
+  static byte[] concat(byte[]... frames) {
+    int length = 0;
+    for (byte[] frame : frames) length += frame.length;
+    final byte[] bytes = new byte[length];
+    for (int i = 0, offset = 0; i < frames.length; offset += frames[i++].length) {
+      System.arraycopy(frames[i], 0, bytes, offset, frames[i].length);
+    }
+
+    return bytes;
+  }
+
+  static byte[] bytes(Packet packet) {
+    final ByteBuffer buffer = packet.buffer.duplicate();
+    buffer.rewind();
+    final byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  static int tickCount(Packet packet) {
+    assertEquals(D2GSData.Ping, packet.data.dataType());
+    return ((Ping) packet.data.data(new Ping())).tickCount();
+  }
+
+  /** drains the transport until {@code count} packets were received */
+  List<Packet> receive(final int count) throws InterruptedException {
+    final List<Packet> packets = new ArrayList<>();
+    await(count + " packets are received", new Condition() {
+      @Override
+      public boolean met() {
+        transport.drainTo(packets);
+        return packets.size() >= count;
+      }
+    });
+
+    assertEquals(count, packets.size());
+    return packets;
+  }
+
+  void write(byte[] bytes, int offset, int length) throws IOException {
+    final OutputStream out = socket.getOutputStream();
+    out.write(bytes, offset, length);
+    out.flush();
+  }
+
+  static void await(String condition, Condition c) throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    while (!c.met()) {
+      assertTrue("timed out waiting until " + condition, System.currentTimeMillis() < deadline);
+      Thread.sleep(10);
+    }
+  }
+
+  interface Condition {
+    boolean met();
+  }
+
+  @Test
+  public void reassemblesFramesSplitAcrossReads() throws IOException, InterruptedException {
+    connect(D2GSTransport.DEFAULT_INBOUND_CAPACITY, D2GSTransport.DEFAULT_OUTBOUND_CAPACITY);
+    final byte[] frame = ping(7);
+    // size prefix is split as well
+    final int[] splits = { 0, 2, 5, frame.length / 2, frame.length };
+    for (int i = 1; i < splits.length; i++) {
+      write(frame, splits[i - 1], splits[i] - splits[i - 1]);
+      Thread.sleep(20);
+    }
+
+    final List<Packet> packets = receive(1);
+    assertArrayEquals(frame, bytes(packets.get(0)));
+    assertEquals(7, tickCount(packets.get(0)));
+    assertEquals(0, packets.get(0).id);
+  }
+
+  @Test
+  public void splitsFramesMergedIntoOneRead() throws IOException, InterruptedException {
+    connect(D2GSTransport.DEFAULT_INBOUND_CAPACITY, D2GSTransport.DEFAULT_OUTBOUND_CAPACITY);
+    final byte[] bytes = concat(ping(1), ping(2), ping(3));
+    write(bytes, 0, bytes.length);
+
+    final List<Packet> packets = receive(3);
+    for (int i = 0; i < packets.size(); i++) {
+      assertArrayEquals(ping(i + 1), bytes(packets.get(i)));
+      assertEquals(i + 1, tickCount(packets.get(i)));
+    }
+  }
+
+  @Test
+  public void growsReadBufferForLargeFrames() throws IOException, InterruptedException {
+    connect(D2GSTransport.DEFAULT_INBOUND_CAPACITY, D2GSTransport.DEFAULT_OUTBOUND_CAPACITY);
+    final byte[] large = connection(4 * D2GSTransport.READ_BUFFER_SIZE);
+    final byte[] bytes = concat(ping(1), large, ping(2));
+    write(bytes, 0, bytes.length);
+
+    final List<Packet> packets = receive(3);
+    assertEquals(1, tickCount(packets.get(0)));
+    assertArrayEquals(large, bytes(packets.get(1)));
+    assertEquals(D2GSData.Connection, packets.get(1).data.dataType());
+    assertEquals(2, tickCount(packets.get(2)));
+  }
+
+  @Test
+  public void pausesReadingWhileInboundQueueIsFull() throws IOException, InterruptedException {
+    final int capacity = 2;
+    final int count = 5 * capacity;
+    connect(capacity, D2GSTransport.DEFAULT_OUTBOUND_CAPACITY);
+    final byte[][] frames = new byte[count][];
+    for (int i = 0; i < count; i++) frames[i] = ping(i);
+    final byte[] bytes = concat(frames);
+    write(bytes, 0, bytes.length);
+
+    final D2GSTransport.Client client = transport.clients.get(0);
+    await("reading is paused", new Condition() {
+      @Override
+      public boolean met() {
+        return client.paused;
+      }
+    });
+
+    assertEquals(capacity, client.inbound.size());
+    final List<Packet> packets = receive(count);
+    for (int i = 0; i < count; i++) assertEquals(i, tickCount(packets.get(i)));
+    assertTrue(client.pauses >= 1);
+    assertEquals(capacity, client.inboundHighWater);
+    assertTrue(transport.isConnected(0));
+  }
+
+  @Test
+  public void disconnectsClientWhenOutboundQueueOverflows() throws IOException, InterruptedException {
+    connect(D2GSTransport.DEFAULT_INBOUND_CAPACITY, 2);
+    // client never reads, so its socket buffers and then outbound queue fill
+    final byte[] frame = connection(1 << 16);
+    final Packet packet = Packet.obtain(1 << 0, ByteBuffer.wrap(frame));
+    boolean overflowed = false;
+    for (int i = 0; i < 1 << 12 && !overflowed; i++) {
+      overflowed = !transport.send(0, packet);
+    }
+
+    assertTrue("outbound queue overflowed", overflowed);
+    await("client is disconnected", new Condition() {
+      @Override
+      public boolean met() {
+        return !transport.isConnected(0);
+      }
+    });
+
+    assertEquals(0, transport.pollDisconnected());
+    assertEquals(-1, transport.pollDisconnected());
+    assertEquals(1, transport.overflowDisconnects);
+    assertFalse(transport.send(0, packet));
+    assertTrue(transport.clients.get(0).outbound.isEmpty());
+
+    transport.free(0);
+    assertEquals(0, transport.numClients());
+  }
+
+  @Test
+  public void sendsSamePacketToEveryClient() throws IOException, InterruptedException {
+    connect(D2GSTransport.DEFAULT_INBOUND_CAPACITY, D2GSTransport.DEFAULT_OUTBOUND_CAPACITY);
+    try (Socket other = new Socket("localhost", socket.getPort())) {
+      await("second client is accepted", new Condition() {
+        @Override
+        public boolean met() {
+          return transport.isConnected(1);
+        }
+      });
+
+      final byte[] frame = ping(42);
+      final Packet packet = Packet.obtain(0b11, ByteBuffer.wrap(frame));
+      assertTrue(transport.send(0, packet));
+      assertTrue(transport.send(1, packet));
+      assertArrayEquals(frame, read(socket, frame.length));
+      assertArrayEquals(frame, read(other, frame.length));
+    }
+  }
+
+  static byte[] read(Socket socket, int length) throws IOException {
+    socket.setSoTimeout((int) TIMEOUT_MILLIS);
+    final byte[] bytes = new byte[length];
+    for (int offset = 0, n; offset < length; offset += n) {
+      n = socket.getInputStream().read(bytes, offset, length - offset);
+      if (n < 0) throw new IOException("unexpected end of stream after " + Arrays.toString(bytes));
+    }
+
+    return bytes;
+  }
+}
@@ -0,0 +1,184 @@
+package com.riiablo.server.d2gs;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+
+public class GameSchedulerTest {
+  static final long TIMEOUT_MILLIS = 10000;
+
+  GameScheduler scheduler;
+
+  @BeforeClass
+  public static void setUpClass() {
+    new HeadlessApplication(new ApplicationAdapter() {});
+  }
+
+  @AfterClass
+  public static void tearDownClass() {
+    Gdx.app.exit();
+  }
+
+  @After
+  public void tearDown() {
+    if (scheduler != null) scheduler.dispose();
+  }
+
+  /** game which spins for {@code spinNanos} each tick instead of simulating a world */
+  static class FakeGame extends D2GS {
+    final long spinNanos;
+    final boolean fail;
+
+    volatile Thread ticker;
+    volatile boolean confined = true;
+    volatile boolean disposed;
+
+    FakeGame(long spinNanos) {
+      this(spinNanos, false);
+    }
+
+    FakeGame(long spinNanos, boolean fail) {
+      super(null, 0, 0, 0);
+      this.spinNanos = spinNanos;
+      this.fail = fail;
+    }
+
+    @Override
+    public void create() {}
+
+    @Override
+    public void render() {
+      final Thread thread = Thread.currentThread();
+      if (ticker == null) ticker = thread;
+      else if (ticker != thread) confined = false;
+      if (fail) throw new IllegalStateException("tick failed");
+      for (long end = System.nanoTime() + spinNanos; System.nanoTime() < end;);
+    }
+
+    @Override
+    public void dispose() {
+      disposed = true;
+    }
+  }
+
+  static void await(String condition, Condition c) throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    while (!c.met()) {
+      assertTrue("timed out waiting until " + condition, System.currentTimeMillis() < deadline);
+      Thread.sleep(10);
+    }
+  }
+
+  interface Condition {
+    boolean met();
+  }
+
+  @Test
+  public void placesGamesOnLeastLoadedWorker() {
+    scheduler = new GameScheduler(2);
+    for (int i = 0; i < 4; i++) {
+      GameScheduler.Instance instance = scheduler.host("game-" + i, new FakeGame(0));
+      assertNotNull(instance);
+      assertSame(scheduler.workers[i % 2], instance.worker);
+      assertEquals(GameScheduler.DEFAULT_LOAD_NANOS, instance.load());
+    }
+
+    assertEquals(4, scheduler.numInstances());
+    assertEquals(2 * GameScheduler.DEFAULT_LOAD_NANOS, scheduler.workers[0].load.get());
+    assertEquals(2 * GameScheduler.DEFAULT_LOAD_NANOS, scheduler.workers[1].load.get());
+  }
+
+  @Test
+  public void refusesGamesBeyondCapacity() {
+    scheduler = new GameScheduler(1);
+    final long capacity = (long) (GameScheduler.TICK_NANOS * GameScheduler.MAX_UTILIZATION);
+    final int games = (int) (capacity / GameScheduler.DEFAULT_LOAD_NANOS);
+    for (int i = 0; i < games; i++) {
+      assertNotNull("game-" + i, scheduler.host("game-" + i, new FakeGame(0)));
+    }
+
+    assertNull(scheduler.host("game-" + games, new FakeGame(0)));
+    assertEquals(games, scheduler.numInstances());
+  }
+
+  @Test
+  public void placesGamesByMeasuredLoad() throws InterruptedException {
+    scheduler = new GameScheduler(2);
+    final GameScheduler.Worker heavyWorker = scheduler.workers[0];
+    final GameScheduler.Worker lightWorker = scheduler.workers[1];
+    final FakeGame heavyGame = new FakeGame(TimeUnit.MILLISECONDS.toNanos(4));
+    final FakeGame lightGame = new FakeGame(0);
+    final GameScheduler.Instance heavy = scheduler.host("heavy", heavyGame);
+    final GameScheduler.Instance light = scheduler.host("light", lightGame);
+    assertSame(heavyWorker, heavy.worker);
+    assertSame(lightWorker, light.worker);
+
+    scheduler.start();
+    final long margin = TimeUnit.MILLISECONDS.toNanos(2);
+    await("heavy game outweighs light game", new Condition() {
+      @Override
+      public boolean met() {
+        return heavyWorker.load.get() > lightWorker.load.get() + margin;
+      }
+    });
+
+    final FakeGame game = new FakeGame(0);
+    final GameScheduler.Instance instance = scheduler.host("game", game);
+    assertSame(lightWorker, instance.worker);
+    await("new game is ticked", new Condition() {
+      @Override
+      public boolean met() {
+        return instance.ticks() > 0;
+      }
+    });
+
+    assertSame(heavyWorker, heavyGame.ticker);
+    assertSame(lightWorker, lightGame.ticker);
+    assertSame(lightWorker, game.ticker);
+    assertTrue(heavyGame.confined);
+    assertTrue(lightGame.confined);
+    assertTrue(game.confined);
+    assertEquals(3, scheduler.numInstances());
+  }
+
+  @Test
+  public void stopsAndDisposesGamesWhichFail() throws InterruptedException {
+    scheduler = new GameScheduler(1);
+    final FakeGame failing = new FakeGame(0, true);
+    final FakeGame game = new FakeGame(0);
+    final GameScheduler.Instance failed = scheduler.host("failing", failing);
+    final GameScheduler.Instance instance = scheduler.host("game", game);
+    scheduler.start();
+    await("failing game is stopped", new Condition() {
+      @Override
+      public boolean met() {
+        return failed.isStopped() && instance.ticks() > 1;
+      }
+    });
+
+    assertTrue(failing.disposed);
+    assertFalse(game.disposed);
+    assertEquals(1, scheduler.numInstances());
+
+    instance.stop();
+    await("stopped game is disposed", new Condition() {
+      @Override
+      public boolean met() {
+        return game.disposed;
+      }
+    });
+  }
+}
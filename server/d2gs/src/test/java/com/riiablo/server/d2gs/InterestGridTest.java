@@ -0,0 +1,283 @@
+package com.riiablo.server.d2gs;
+
+import io.netty.buffer.UnpooledByteBufAllocator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import com.artemis.World;
+import com.artemis.WorldConfigurationBuilder;
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.IntIntMap;
+
+import net.mostlyoriginal.api.event.common.EventSystem;
+
+import com.riiablo.engine.server.CofManager;
+import com.riiablo.engine.server.SerializationManager;
+import com.riiablo.engine.server.component.Class;
+import com.riiablo.engine.server.component.Flags;
+import com.riiablo.engine.server.component.Networked;
+import com.riiablo.engine.server.component.Position;
+import com.riiablo.map.Map;
+import com.riiablo.net.FlatBufferBuilderPool;
+import com.riiablo.net.packet.d2gs.D2GSData;
+import com.riiablo.net.packet.d2gs.EntityFlags;
+import com.riiablo.net.packet.d2gs.EntitySync;
+
+import static com.riiablo.server.d2gs.InterestGrid.ENTER_RADIUS;
+import static com.riiablo.server.d2gs.InterestGrid.LEAVE_RADIUS;
+
+public class InterestGridTest {
+  static final Map.Zone ZONE = new Map.Zone();
+
+  @BeforeClass
+  public static void setUpClass() {
+    new HeadlessApplication(new ApplicationAdapter() {});
+  }
+
+  @AfterClass
+  public static void tearDownClass() {
+    Gdx.app.exit();
+  }
+
+  static InterestGrid grid(int id, float x, float y) {
+    InterestGrid grid = new InterestGrid();
+    grid.add(id, new Vector2(x, y), ZONE);
+    return grid;
+  }
+
+  @Test
+  public void cellsRoundTowardsNegativeInfinity() {
+    assertEquals(0, InterestGrid.cell(0));
+    assertEquals(0, InterestGrid.cell(InterestGrid.CELL_SIZE - 0.5f));
+    assertEquals(1, InterestGrid.cell(InterestGrid.CELL_SIZE));
+    assertEquals(-1, InterestGrid.cell(-0.5f));
+    assertEquals(-1, InterestGrid.cell(-InterestGrid.CELL_SIZE));
+    assertEquals(-2, InterestGrid.cell(-InterestGrid.CELL_SIZE - 0.5f));
+  }
+
+  @Test
+  public void keysOfNegativeCellsDontCollide() {
+    final int[] cells = { -2, -1, 0, 1 };
+    final IntIntMap keys = new IntIntMap();
+    for (int cx : cells) {
+      for (int cy : cells) {
+        final int key = InterestGrid.key(cx, cy);
+        assertEquals("key of " + cx + "," + cy, -1, keys.get(key, -1));
+        keys.put(key, 0);
+      }
+    }
+  }
+
+  @Test
+  public void entersWithinEnterRadius() {
+    final InterestGrid grid = grid(0, 100, 100);
+    assertEquals(1, grid.players());
+    assertEquals(1, grid.interested(new Vector2(100, 100), 0));
+    assertEquals(1, grid.interested(new Vector2(100 + ENTER_RADIUS, 100), 0));
+    assertEquals(1, grid.interested(new Vector2(100 - ENTER_RADIUS, 100 + ENTER_RADIUS), 0));
+    assertEquals(0, grid.interested(new Vector2(100 + ENTER_RADIUS + 0.5f, 100), 0));
+    assertEquals(0, grid.interested(new Vector2(100, 100 - ENTER_RADIUS - 0.5f), 0));
+  }
+
+  @Test
+  public void knownEntitiesStayWithinLeaveRadius() {
+    final InterestGrid grid = grid(0, 100, 100);
+    final Vector2 between = new Vector2(100 + (ENTER_RADIUS + LEAVE_RADIUS) / 2, 100);
+    assertEquals(0, grid.interested(between, 0));
+    assertEquals(1, grid.interested(between, 1));
+    assertEquals(1, grid.interested(new Vector2(100 + LEAVE_RADIUS, 100 - LEAVE_RADIUS), 1));
+    assertEquals(0, grid.interested(new Vector2(100 + LEAVE_RADIUS + 0.5f, 100), 1));
+    assertEquals(0, grid.interested(new Vector2(100 + 4 * LEAVE_RADIUS, 100), 1));
+  }
+
+  @Test
+  public void entityEntersAtEnterRadiusAndStaysUntilBeyondLeaveRadius() {
+    final InterestGrid grid = grid(0, 100, 100);
+    final Vector2 position = new Vector2(100 + LEAVE_RADIUS + 4, 100);
+    int known = 0;
+    for (; position.x > 100; position.x -= 0.5f) {
+      known = grid.interested(position, known);
+      assertEquals("approaching at " + position.x, position.x - 100 <= ENTER_RADIUS ? 1 : 0, known);
+    }
+
+    for (; position.x < 100 + LEAVE_RADIUS + 4; position.x += 0.5f) {
+      known = grid.interested(position, known);
+      assertEquals("retreating at " + position.x, position.x - 100 <= LEAVE_RADIUS ? 1 : 0, known);
+    }
+  }
+
+  @Test
+  public void negativeCoordinatesAcrossCellBoundaries() {
+    final InterestGrid grid = grid(0, -10, -10);
+    assertEquals(1, grid.interested(new Vector2(-10 - ENTER_RADIUS, -10 - ENTER_RADIUS), 0));
+    assertEquals(1, grid.interested(new Vector2(-10 + ENTER_RADIUS, -10 + ENTER_RADIUS), 0));
+    assertEquals(1, grid.interested(new Vector2(-10 - LEAVE_RADIUS, -10 + LEAVE_RADIUS), 1));
+    assertEquals(0, grid.interested(new Vector2(-10 - ENTER_RADIUS - 0.5f, -10), 0));
+    assertEquals(0, grid.interested(new Vector2(-10, -10 - LEAVE_RADIUS - 0.5f), 1));
+    // cell keys wrap every 2^16 cells, aliased cells are rejected by distance
+    assertEquals(0, grid.interested(new Vector2(-10, -10 + (1 << 16) * InterestGrid.CELL_SIZE), 1));
+  }
+
+  @Test
+  public void zonelessPlayersAreInterestedInEverything() {
+    final InterestGrid grid = grid(0, 100, 100);
+    grid.add(2, new Vector2(100, 100), null);
+    assertEquals(0b101, grid.players());
+    assertEquals(0b101, grid.interested(new Vector2(100, 100), 0));
+    assertEquals(0b100, grid.interested(new Vector2(-1000, 1000), 0));
+
+    grid.clear();
+    assertEquals(0, grid.players());
+    assertEquals(0, grid.interested(new Vector2(100, 100), 0));
+  }
+
+  @Test
+  public void lastPlayerId() {
+    final int id = Integer.SIZE - 1;
+    final InterestGrid grid = grid(id, 100, 100);
+    grid.add(0, new Vector2(100 + 2 * LEAVE_RADIUS, 100), ZONE);
+    assertEquals(1 << id | 1, grid.players());
+    assertEquals(1 << id, grid.interested(new Vector2(100 + ENTER_RADIUS, 100), 0));
+    assertEquals(1 << id | 1, grid.interested(new Vector2(100 + LEAVE_RADIUS, 100), 1 << id | 1));
+    assertEquals(1, grid.interested(new Vector2(100 + LEAVE_RADIUS + 0.5f, 100), 1 << id | 1));
+  }
+
+  /** resolves every position to the same zone */
+  static class TestMap extends Map {
+    TestMap() {
+      super(0, 0);
+    }
+
+    @Override
+    public Zone getZone(Vector2 vec) {
+      return ZONE;
+    }
+  }
+
+  World world;
+  NetworkSynchronizer sync;
+  BlockingQueue<Packet> outPackets;
+  IntIntMap players;
+
+  @Before
+  public void setUp() {
+    sync = new NetworkSynchronizer();
+    outPackets = new ArrayBlockingQueue<>(64);
+    players = new IntIntMap();
+    world = new World(new WorldConfigurationBuilder()
+        .with(new EventSystem())
+        .with(new SerializationManager())
+        .with(new CofManager())
+        .with(sync)
+        .build()
+        .register("map", new TestMap())
+        .register("player", players)
+        .register("outPackets", outPackets)
+        .register("builders", new FlatBufferBuilderPool(UnpooledByteBufAllocator.DEFAULT)));
+  }
+
+  @After
+  public void tearDown() {
+    for (Packet packet; (packet = outPackets.poll()) != null;) packet.release();
+    world.dispose();
+  }
+
+  int create(Class.Type type, float x, float y) {
+    final int entityId = world.create();
+    world.edit(entityId).create(Class.class).type = type;
+    world.edit(entityId).create(Flags.class);
+    world.edit(entityId).create(Networked.class);
+    world.edit(entityId).create(Position.class).position.set(x, y);
+    return entityId;
+  }
+
+  /** processes a tick and returns the syncs of {@code entityId} sent */
+  List<Packet> tick(int entityId) {
+    world.process();
+    final List<Packet> packets = new ArrayList<>();
+    for (Packet packet; (packet = outPackets.poll()) != null;) {
+      assertEquals(D2GSData.EntitySync, packet.data.dataType());
+      if (entityId(packet) == entityId) {
+        packets.add(packet);
+      } else {
+        packet.release();
+      }
+    }
+
+    return packets;
+  }
+
+  static EntitySync entitySync(Packet packet) {
+    return (EntitySync) packet.data.data(new EntitySync());
+  }
+
+  static int entityId(Packet packet) {
+    return entitySync(packet).entityId();
+  }
+
+  static boolean left(Packet packet) {
+    return (entitySync(packet).flags() & EntityFlags.deleted) == EntityFlags.deleted;
+  }
+
+  @Test
+  public void leavingEntitiesAreDeletedAndResynced() {
+    final int id = 1;
+    players.put(id, create(Class.Type.PLR, 100, 100));
+    final int monster = create(Class.Type.MON, 100 + ENTER_RADIUS, 100);
+
+    List<Packet> packets = tick(monster);
+    assertEquals(1, packets.size());
+    assertEquals(1 << id, packets.get(0).id);
+    assertEquals(false, left(packets.get(0)));
+    assertEquals(1, sync.entered());
+    assertNotNull(sync.baselines.get(id, monster));
+    packets.get(0).release();
+
+    // unchanged, so nothing needs to be sent
+    assertEquals(0, tick(monster).size());
+
+    world.getMapper(Position.class).get(monster).position.x = 100 + LEAVE_RADIUS;
+    packets = tick(monster);
+    assertEquals(1, packets.size());
+    assertEquals(false, left(packets.get(0)));
+    assertEquals(0, sync.left());
+    packets.get(0).release();
+
+    world.getMapper(Position.class).get(monster).position.x = 100 + LEAVE_RADIUS + 0.5f;
+    packets = tick(monster);
+    assertEquals(1, packets.size());
+    assertEquals(1 << id, packets.get(0).id);
+    assertEquals(true, left(packets.get(0)));
+    assertEquals(1, sync.left());
+    assertEquals(0, sync.known.get(monster, 0));
+    assertNull(sync.baselines.get(id, monster));
+    packets.get(0).release();
+
+    assertEquals(0, tick(monster).size());
+
+    // re-entering is sent a full sync from scratch
+    world.getMapper(Position.class).get(monster).position.x = 100 + ENTER_RADIUS;
+    packets = tick(monster);
+    assertEquals(1, packets.size());
+    assertEquals(false, left(packets.get(0)));
+    assertNotEquals(0, entitySync(packets.get(0)).componentLength());
+    assertEquals(1, sync.entered());
+    assertEquals(1 << id, sync.known.get(monster, 0));
+    packets.get(0).release();
+  }
+}
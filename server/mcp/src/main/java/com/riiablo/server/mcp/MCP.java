@@ -1,17 +1,19 @@
 package com.riiablo.server.mcp;
 
 import com.google.flatbuffers.FlatBufferBuilder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
 
 import com.badlogic.gdx.Application;
 import com.badlogic.gdx.ApplicationAdapter;
 import com.badlogic.gdx.Gdx;
-import com.badlogic.gdx.Net;
 import com.badlogic.gdx.backends.headless.HeadlessApplication;
 import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
-import com.badlogic.gdx.math.MathUtils;
-import com.badlogic.gdx.net.ServerSocket;
-import com.badlogic.gdx.net.Socket;
-import com.badlogic.gdx.utils.BufferUtils;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
 import com.riiablo.Riiablo;
 import com.riiablo.net.GameSession;
 import com.riiablo.net.packet.bnls.ConnectionAccepted;
@@ -21,46 +23,106 @@ import com.riiablo.net.packet.mcp.JoinGame;
 import com.riiablo.net.packet.mcp.ListGames;
 import com.riiablo.net.packet.mcp.MCPData;
 import com.riiablo.net.packet.mcp.Result;
-import com.riiablo.net.packet.msi.MSI;
-import com.riiablo.net.packet.msi.MSIData;
-import com.riiablo.net.packet.msi.StartInstance;
+import com.riiablo.server.d2gs.D2GS;
+import com.riiablo.onet.tcp.CachedResponse;
+import com.riiablo.onet.tcp.TcpServer;
+import com.riiablo.server.d2gs.GameScheduler;
 
 import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
 import java.net.InetAddress;
+import java.net.SocketAddress;
 import java.net.UnknownHostException;
-import java.nio.ByteBuffer;
-import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
-import java.nio.channels.WritableByteChannel;
 import java.text.DateFormat;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Options;
 
-public class MCP extends ApplicationAdapter {
+public class MCP extends ApplicationAdapter implements TcpServer.Handler {
   private static final String TAG = "MCP";
 
   private static final int PORT = 6111;
-  private static final int MAX_CLIENTS = 32;
+  private static final int MAX_CLIENTS = 4096;
+  private static final int MAX_GAMES = 256;
+
+  private static final int GAME_IP = 2130706433; // 127.0.0.1
+  private static final int GAME_PORT = 6114;
 
   public static void main(String[] args) {
+    Options options = new Options()
+        .addOption("home", true, "directory containing D2 MPQ files")
+        .addOption("workers", true, "number of threads games are ticked on");
+
+    CommandLine cmd = null;
+    try {
+      CommandLineParser parser = new DefaultParser();
+      cmd = parser.parse(options, args);
+    } catch (Throwable t) {
+      System.err.println(t.getMessage());
+      System.out.println("Failed to start server!");
+      return;
+    }
+
+    FileHandle home = null;
+    if (cmd != null && cmd.hasOption("home")) {
+      home = new FileHandle(cmd.getOptionValue("home"));
+      if (!home.child("d2data.mpq").exists()) {
+        throw new GdxRuntimeException("home does not refer to a valid D2 installation");
+      }
+    } else {
+      home = new FileHandle(System.getProperty("user.home")).child("diablo");
+      System.out.println("Home not specified, using " + home);
+      if (!home.exists() || !home.child("d2data.mpq").exists()) {
+        throw new GdxRuntimeException("home does not refer to a valid D2 installation");
+      }
+    }
+
+    int workers = Runtime.getRuntime().availableProcessors();
+    if (cmd.hasOption("workers")) {
+      String workersArg = cmd.getOptionValue("workers");
+      try {
+        workers = Integer.parseInt(workersArg);
+      } catch (Throwable t) {
+        System.err.println("Invalid workers provided: " + workersArg);
+      }
+    }
+
     HeadlessApplicationConfiguration config = new HeadlessApplicationConfiguration();
-    new HeadlessApplication(new MCP(), config);
+    new HeadlessApplication(new MCP(home, workers), config);
   }
 
-  ServerSocket server;
-  ByteBuffer buffer;
-  Thread main;
+  TcpServer server;
   AtomicBoolean kill;
   Thread cli;
-  ThreadGroup clientThreads;
-  CopyOnWriteArrayList<Client> CLIENTS = new CopyOnWriteArrayList<>();
+
+  /**
+   * games are created off of the event loops, as creating the world of a game
+   * blocks for much longer than any other request
+   */
+  final ExecutorService creator = Executors.newSingleThreadExecutor(new ThreadFactory() {
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "MCP-CreateGame");
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  final FileHandle home;
+  final GameScheduler scheduler;
+  final Map<String, GameScheduler.Instance> instances = new ConcurrentHashMap<>();
+  final IntArray freePorts = new IntArray();
+  int nextPort = GAME_PORT;
 
   Map<String, GameSession> sessions = new ConcurrentHashMap<>();
   {
@@ -78,7 +140,51 @@ public class MCP extends ApplicationAdapter {
     }});
   }
 
-  MCP() {}
+  final CachedResponse connectionAccepted = new CachedResponse() {
+    @Override
+    protected void build(FlatBufferBuilder builder) {
+      ConnectionAccepted.startConnectionAccepted(builder);
+      int connectionAcceptedId = ConnectionAccepted.endConnectionAccepted(builder);
+      int id = com.riiablo.net.packet.mcp.MCP.createMCP(builder, MCPData.ConnectionAccepted, connectionAcceptedId);
+      builder.finish(id);
+    }
+  };
+
+  final CachedResponse serverFull = new CachedResponse() {
+    @Override
+    protected void build(FlatBufferBuilder builder) {
+      int reasonOffset = builder.createString("Server is Full");
+      int connectionDeniedId = ConnectionClosed.createConnectionClosed(builder, reasonOffset);
+      int id = com.riiablo.net.packet.mcp.MCP.createMCP(builder, MCPData.ConnectionClosed, connectionDeniedId);
+      builder.finish(id);
+    }
+  };
+
+  /** invalidated whenever {@link #sessions} changes */
+  final CachedResponse listGames = new CachedResponse() {
+    @Override
+    protected void build(FlatBufferBuilder builder) {
+      int i = 0;
+      int[] sessions = new int[MCP.this.sessions.size()];
+      for (GameSession session : MCP.this.sessions.values()) {
+        if (i >= sessions.length) break; // a session was added since sizing, it will invalidate this
+        sessions[i++] = com.riiablo.net.packet.mcp.GameSession.createGameSession(builder, i, 0, builder.createString(session.name), builder.createString(session.desc), 0);
+      }
+
+      int sessionsVec = ListGames.createGamesVector(builder, i == sessions.length ? sessions : Arrays.copyOf(sessions, i));
+
+      ListGames.startListGames(builder);
+      ListGames.addGames(builder, sessionsVec);
+      int listGamesOffset = ListGames.endListGames(builder);
+      int id = com.riiablo.net.packet.mcp.MCP.createMCP(builder, MCPData.ListGames, listGamesOffset);
+      builder.finish(id);
+    }
+  };
+
+  MCP(FileHandle home, int workers) {
+    this.home = home;
+    this.scheduler = new GameScheduler(workers);
+  }
 
   @Override
   public void create() {
@@ -96,48 +202,19 @@ public class MCP extends ApplicationAdapter {
       Gdx.app.error(TAG, e.getMessage(), e);
     }
 
-    clientThreads = new ThreadGroup("MCPClients");
+    Gdx.app.log(TAG, "Starting game scheduler...");
+    scheduler.start();
 
     Gdx.app.log(TAG, "Starting server...");
-    server = Gdx.net.newServerSocket(Net.Protocol.TCP, PORT, null);
-    buffer = BufferUtils.newByteBuffer(4096);
     kill = new AtomicBoolean(false);
-    main = new Thread(new Runnable() {
-      @Override
-      public void run() {
-        while (!kill.get()) {
-          Gdx.app.log(TAG, "waiting...");
-          Socket socket = server.accept(null);
-          Gdx.app.log(TAG, "connection from " + socket.getRemoteAddress());
-          if (CLIENTS.size() >= MAX_CLIENTS) {
-            try {
-              ConnectionDenied(socket, "Server is Full");
-            } catch (Throwable ignored) {
-            } finally {
-              socket.dispose();
-            }
-          } else {
-            try {
-              ConnectionAccepted(socket);
-              new Client(socket).start();
-            } catch (Throwable ignored) {
-              socket.dispose();
-            }
-          }
-        }
-
-        Gdx.app.log(TAG, "killing child threads...");
-        for (Client client : CLIENTS) {
-          if (client != null) {
-            client.kill.set(true);
-          }
-        }
-
-        Gdx.app.log(TAG, "killing thread...");
-      }
-    });
-    main.setName("MCP");
-    main.start();
+    server = new TcpServer(TAG, PORT, MAX_CLIENTS, this);
+    try {
+      server.start();
+    } catch (Throwable t) {
+      Gdx.app.error(TAG, t.getMessage(), t);
+      Gdx.app.exit();
+      return;
+    }
 
     cli = new Thread(new Runnable() {
       @Override
@@ -152,8 +229,13 @@ public class MCP extends ApplicationAdapter {
             } else if (in.equalsIgnoreCase("games")) {
               Gdx.app.log(TAG, "games:");
               for (GameSession session : sessions.values()) {
-                Gdx.app.log(TAG, "  " + session);
+                GameScheduler.Instance instance = instances.get(session.name);
+                Gdx.app.log(TAG, "  " + session + (instance != null ? " " + instance : ""));
               }
+            } else if (in.equalsIgnoreCase("load")) {
+              Gdx.app.log(TAG, scheduler.toString());
+            } else if (in.equalsIgnoreCase("clients")) {
+              Gdx.app.log(TAG, server.numClients() + " clients, games list " + listGames);
             }
           } catch (Throwable t) {
             Gdx.app.log(TAG, t.getMessage());
@@ -169,143 +251,122 @@ public class MCP extends ApplicationAdapter {
   public void dispose() {
     Gdx.app.log(TAG, "Shutting down...");
     kill.set(true);
-    server.dispose();
-    try {
-      main.join();
-    } catch (Throwable ignored) {}
+    if (server != null) server.dispose();
+    creator.shutdownNow();
+    scheduler.dispose();
+    connectionAccepted.invalidate();
+    serverFull.invalidate();
+    listGames.invalidate();
   }
 
-  private void process(Socket socket, com.riiablo.net.packet.mcp.MCP packet) throws IOException {
-    switch (packet.dataType()) {
-      case MCPData.CreateGame:
-        CreateGame(socket, packet);
-        break;
-      case MCPData.JoinGame:
-        JoinGame(socket, packet);
-        break;
-      case MCPData.ListGames:
-        ListGames(socket, packet);
-        break;
-      default:
-        Gdx.app.error(TAG, "Unknown packet type: " + packet.dataType());
-    }
+  synchronized int obtainPort() {
+    return freePorts.size > 0 ? freePorts.pop() : nextPort++;
   }
 
-  private boolean ConnectionDenied(Socket socket, String reason) throws IOException {
-    FlatBufferBuilder builder = new FlatBufferBuilder();
-    int reasonOffset = builder.createString(reason);
-    int connectionDeniedId = ConnectionClosed.createConnectionClosed(builder, reasonOffset);
-    int id = com.riiablo.net.packet.mcp.MCP.createMCP(builder, MCPData.ConnectionClosed, connectionDeniedId);
-    builder.finish(id);
+  synchronized void freePort(int port) {
+    freePorts.add(port);
+  }
+
+  /** removes the sessions of games which are no longer running */
+  synchronized void pruneInstances() {
+    boolean pruned = false;
+    for (Iterator<GameScheduler.Instance> it = instances.values().iterator(); it.hasNext();) {
+      GameScheduler.Instance instance = it.next();
+      if (!instance.isStopped()) continue;
+      it.remove();
+      sessions.remove(instance.name());
+      freePort(instance.game().port());
+      pruned = true;
+    }
 
-    ByteBuffer data = builder.dataBuffer();
-    OutputStream out = socket.getOutputStream();
-    WritableByteChannel channel = Channels.newChannel(out);
-    channel.write(data);
-    return true;
+    if (pruned) listGames.invalidate();
   }
 
-  private boolean ConnectionAccepted(Socket socket) throws IOException {
+  @Override
+  public ByteBuf connectionAccepted(Channel ch) {
     Gdx.app.debug(TAG, "Connection accepted!");
-    FlatBufferBuilder builder = new FlatBufferBuilder();
-    ConnectionAccepted.startConnectionAccepted(builder);
-    int connectionAcceptedId = ConnectionAccepted.endConnectionAccepted(builder);
-    int id = com.riiablo.net.packet.mcp.MCP.createMCP(builder, MCPData.ConnectionAccepted, connectionAcceptedId);
-    builder.finish(id);
-
-    ByteBuffer data = builder.dataBuffer();
-    OutputStream out = socket.getOutputStream();
-    WritableByteChannel channel = Channels.newChannel(out);
-    channel.write(data);
-    return false;
+    return connectionAccepted.get();
   }
 
-  private boolean ListGames(Socket socket, com.riiablo.net.packet.mcp.MCP packet) throws IOException {
-    ListGames listGames = (ListGames) packet.data(new ListGames());
-    Gdx.app.debug(TAG, "Games list requested by " + socket.getRemoteAddress());
+  @Override
+  public ByteBuf connectionDenied(Channel ch, String reason) {
+    return serverFull.get();
+  }
 
-    FlatBufferBuilder builder = new FlatBufferBuilder();
+  @Override
+  public void connectionClosed(Channel ch) {}
 
-    int i = 0;
-    int[] sessions = new int[this.sessions.size()];
-    for (GameSession session : this.sessions.values()) {
-      sessions[i++] = com.riiablo.net.packet.mcp.GameSession.createGameSession(builder, i, 0, builder.createString(session.name), builder.createString(session.desc), 0);
+  @Override
+  public void processPacket(ChannelHandlerContext ctx, SocketAddress from, ByteBuf bb) {
+    com.riiablo.net.packet.mcp.MCP packet = com.riiablo.net.packet.mcp.MCP.getRootAsMCP(bb.nioBuffer());
+    Gdx.app.log(TAG, "packet type " + MCPData.name(packet.dataType()));
+    switch (packet.dataType()) {
+      case MCPData.CreateGame:
+        CreateGame(ctx, packet);
+        break;
+      case MCPData.JoinGame:
+        JoinGame(ctx, packet);
+        break;
+      case MCPData.ListGames:
+        ListGames(ctx, packet);
+        break;
+      default:
+        Gdx.app.error(TAG, "Unknown packet type: " + packet.dataType());
     }
+  }
 
-    int sessionsVec = ListGames.createGamesVector(builder, sessions);
-
-    ListGames.startListGames(builder);
-    ListGames.addGames(builder, sessionsVec);
-    int listGamesOffset = ListGames.endListGames(builder);
-    int id = com.riiablo.net.packet.mcp.MCP.createMCP(builder, MCPData.ListGames, listGamesOffset);
-    builder.finish(id);
-
-    ByteBuffer data = builder.dataBuffer();
-    OutputStream out = socket.getOutputStream();
-    WritableByteChannel channel = Channels.newChannel(out);
-    channel.write(data);
+  private void ListGames(ChannelHandlerContext ctx, com.riiablo.net.packet.mcp.MCP packet) {
+    Gdx.app.debug(TAG, "Games list requested by " + ctx.channel().remoteAddress());
+    pruneInstances();
+    ctx.writeAndFlush(listGames.get());
     Gdx.app.log(TAG, "returning games list...");
-    return false;
   }
 
-  private boolean CreateGame(Socket socket, com.riiablo.net.packet.mcp.MCP packet) throws IOException {
+  private void CreateGame(final ChannelHandlerContext ctx, com.riiablo.net.packet.mcp.MCP packet) {
+    // packet is backed by the read buffer, which is released once this returns
     final CreateGame createGame = (CreateGame) packet.data(new CreateGame());
     final String gameName = createGame.gameName();
-    Gdx.app.debug(TAG, "Attempting to create " + gameName + " for " + socket.getRemoteAddress());
-
-    final FlatBufferBuilder builder = new FlatBufferBuilder();
-    CreateGame.startCreateGame(builder);
-    if (sessions.containsKey(gameName)) {
-      CreateGame.addResult(builder, Result.ALREADY_EXISTS);
-    } else if (sessions.size() >= 4) {
-      CreateGame.addResult(builder, Result.SERVER_DOWN);
-    } else {
-      final GameSession session = new GameSession(createGame);
-      StartInstance(createGame, new ResponseListener() {
-        @Override
-        public void handleResponse(MSI msi) {
-          StartInstance startInstance = (StartInstance) msi.data(new StartInstance());
-          switch (startInstance.result()) {
-            case Result.SUCCESS:
-              sessions.put(gameName, session.setConnectInfo(startInstance));
-              CreateGame.addResult(builder, Result.SUCCESS);
-              Gdx.app.debug(TAG, "Created session " + gameName + "@" + session.ip + ":" + session.port);
-              break;
-            default:
-              CreateGame.addResult(builder, Result.SERVER_DOWN);
-          }
-        }
-
-        @Override
-        public void failed(Throwable t) {
-          Gdx.app.error(TAG, t.getMessage(), t);
+    final int diff = createGame.diff();
+    final GameSession session = new GameSession(createGame);
+    Gdx.app.debug(TAG, "Attempting to create " + gameName + " for " + ctx.channel().remoteAddress());
+    creator.execute(new Runnable() {
+      @Override
+      public void run() {
+        pruneInstances();
+
+        final int result;
+        if (sessions.containsKey(gameName)) {
+          result = Result.ALREADY_EXISTS;
+        } else if (sessions.size() >= MAX_GAMES) {
+          result = Result.SERVER_DOWN;
+        } else {
+          result = StartInstance(session, diff);
         }
-      });
-    }
 
-    int createGameOffset = CreateGame.endCreateGame(builder);
-    int id = com.riiablo.net.packet.mcp.MCP.createMCP(builder, MCPData.CreateGame, createGameOffset);
-    builder.finish(id);
+        final FlatBufferBuilder builder = new FlatBufferBuilder(64);
+        CreateGame.startCreateGame(builder);
+        CreateGame.addResult(builder, result);
+        int createGameOffset = CreateGame.endCreateGame(builder);
+        int id = com.riiablo.net.packet.mcp.MCP.createMCP(builder, MCPData.CreateGame, createGameOffset);
+        builder.finish(id);
 
-    ByteBuffer data = builder.dataBuffer();
-    OutputStream out = socket.getOutputStream();
-    WritableByteChannel channel = Channels.newChannel(out);
-    channel.write(data);
-    Gdx.app.log(TAG, "returning game creation response...");
-    return false;
+        ctx.writeAndFlush(Unpooled.wrappedBuffer(builder.dataBuffer()));
+        Gdx.app.log(TAG, "returning game creation response...");
+      }
+    });
   }
 
-  private boolean JoinGame(Socket socket, com.riiablo.net.packet.mcp.MCP packet) throws IOException {
+  private void JoinGame(ChannelHandlerContext ctx, com.riiablo.net.packet.mcp.MCP packet) {
     JoinGame joinGame = (JoinGame) packet.data(new JoinGame());
     String gameName = joinGame.gameName();
-    Gdx.app.debug(TAG, "Attempting to join " + gameName + " for " + socket.getRemoteAddress());
+    Gdx.app.debug(TAG, "Attempting to join " + gameName + " for " + ctx.channel().remoteAddress());
     GameSession session = sessions.get(gameName);
 
-    FlatBufferBuilder builder = new FlatBufferBuilder();
+    FlatBufferBuilder builder = new FlatBufferBuilder(64);
     JoinGame.startJoinGame(builder);
     if (session == null) {
       JoinGame.addResult(builder, Result.GAME_DOES_NOT_EXIST);
-    } else if (session.numPlayers >= Riiablo.MAX_PLAYERS) {
+    } else if (updateNumPlayers(session) >= Riiablo.MAX_PLAYERS) {
       JoinGame.addResult(builder, Result.GAME_IS_FULL);
     } else {
       JoinGame.addResult(builder, Result.SUCCESS);
@@ -318,92 +379,38 @@ public class MCP extends ApplicationAdapter {
     int id = com.riiablo.net.packet.mcp.MCP.createMCP(builder, MCPData.JoinGame, joinGameOffset);
     builder.finish(id);
 
-    ByteBuffer data = builder.dataBuffer();
-    OutputStream out = socket.getOutputStream();
-    WritableByteChannel channel = Channels.newChannel(out);
-    channel.write(data);
+    ctx.writeAndFlush(Unpooled.wrappedBuffer(builder.dataBuffer()));
     Gdx.app.log(TAG, "returning game join response...");
-    return false;
   }
 
-  interface ResponseListener {
-    void handleResponse(MSI msi);
-    void failed(Throwable t);
+  private int updateNumPlayers(GameSession session) {
+    GameScheduler.Instance instance = instances.get(session.name);
+    if (instance != null) session.numPlayers = instance.game().numPlayers();
+    return session.numPlayers;
   }
 
-  private void StartInstance(CreateGame createGame, ResponseListener listener) {
-    Gdx.app.debug(TAG, "Requesting game instance for " + createGame);
-    FlatBufferBuilder builder = new FlatBufferBuilder();
-    StartInstance.startStartInstance(builder);
-    int startInstanceOffset = StartInstance.endStartInstance(builder);
-    int id = MSI.createMSI(builder, MSIData.StartInstance, startInstanceOffset);
-    builder.finish(id);
-    ByteBuffer data = builder.dataBuffer();
-
-    Socket socket = null;
+  private int StartInstance(GameSession session, int diff) {
+    final String gameName = session.name;
+    Gdx.app.debug(TAG, "Hosting game instance for " + gameName);
+    final int port = obtainPort();
+    GameScheduler.Instance instance = null;
     try {
-      socket = Gdx.net.newClientSocket(Net.Protocol.TCP, "localhost", com.riiablo.server.mcp.MSI.PORT, null);
-
-      OutputStream out = socket.getOutputStream();
-      WritableByteChannel channelOut = Channels.newChannel(out);
-      channelOut.write(data);
-
-      buffer.clear();
-      buffer.mark();
-      InputStream in = socket.getInputStream();
-      ReadableByteChannel channelIn = Channels.newChannel(in);
-      channelIn.read(buffer);
-      buffer.limit(buffer.position());
-      buffer.reset();
-
-      MSI packet = MSI.getRootAsMSI(buffer);
-      Gdx.app.log(TAG, "packet type " + MCPData.name(packet.dataType()));
-      listener.handleResponse(packet);
+      instance = scheduler.host(gameName, new D2GS(home, 0, diff, port));
     } catch (Throwable t) {
-      listener.failed(t);
-    } finally {
-      if (socket != null) socket.dispose();
+      Gdx.app.error(TAG, t.getMessage(), t);
     }
-  }
-
-  static String generateClientName() {
-    return String.format("Client-%08X", MathUtils.random(1, Integer.MAX_VALUE - 1));
-  }
-
-  private class Client extends Thread {
-    Socket socket;
-    AtomicBoolean kill = new AtomicBoolean(false);
 
-    Client(Socket socket) {
-      super(clientThreads, generateClientName());
-      this.socket = socket;
+    if (instance == null) {
+      freePort(port);
+      return Result.SERVER_DOWN;
     }
 
-    @Override
-    public void run() {
-      while (!kill.get()) {
-        try {
-          buffer.clear();
-          buffer.mark();
-          ReadableByteChannel in = Channels.newChannel(socket.getInputStream());
-          if (in.read(buffer) == -1) {
-            kill.set(true);
-            break;
-          }
-          buffer.limit(buffer.position());
-          buffer.reset();
-
-          com.riiablo.net.packet.mcp.MCP packet = com.riiablo.net.packet.mcp.MCP.getRootAsMCP(buffer);
-          Gdx.app.log(TAG, "packet type " + MCPData.name(packet.dataType()));
-          process(socket, packet);
-        } catch (Throwable t) {
-          Gdx.app.log(TAG, t.getMessage(), t);
-          kill.set(true);
-        }
-      }
-
-      Gdx.app.log(TAG, "closing socket...");
-      if (socket != null) socket.dispose();
-    }
+    session.ip = GAME_IP;
+    session.port = (short) port;
+    instances.put(gameName, instance);
+    sessions.put(gameName, session);
+    listGames.invalidate();
+    Gdx.app.debug(TAG, "Created session " + gameName + "@" + session.ip + ":" + port);
+    return Result.SUCCESS;
   }
 }
@@ -0,0 +1,102 @@
+package com.riiablo.onet.reliable;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+
+/**
+ * Measures {@link ReliablePacketController#update(float)} once the sent and
+ * received packet buffers have been filled, with every other sent packet acked.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReliablePacketControllerBenchmark {
+  static final float DELTA = 1 / 60f;
+  static final SocketAddress SENDER = new InetSocketAddress(0);
+
+  @Param({ "256", "1024", "4096" })
+  int bufferSize;
+
+  EventLoopGroup group;
+  DatagramChannel ch;
+  MessageChannel channel;
+  ReliablePacketController controller;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    if (Gdx.app == null) new HeadlessApplication(new ApplicationAdapter() {});
+    Gdx.app.setLogLevel(Application.LOG_NONE);
+
+    group = new NioEventLoopGroup(1);
+    ch = new NioDatagramChannel();
+    group.register(ch).sync();
+
+    ReliableConfiguration config = new ReliableConfiguration();
+    config.sentPacketBufferSize = bufferSize;
+    config.receivedPacketBufferSize = bufferSize;
+    channel = new MessageChannel(config, null) {
+      @Override public void reset() {}
+      @Override public void update(float delta, int channelId, DatagramChannel ch) {}
+      @Override public void sendMessage(int channelId, DatagramChannel ch, ByteBuf bb) {}
+      @Override public void onMessageReceived(ChannelHandlerContext ctx, DatagramPacket packet) {}
+      @Override public void onPacketTransmitted(ByteBuf bb) {}
+      @Override public void onAckProcessed(ChannelHandlerContext ctx, SocketAddress from, int sequence) {}
+      @Override public void onPacketProcessed(ChannelHandlerContext ctx, SocketAddress from, int sequence, ByteBuf bb) {}
+    };
+    controller = channel.controller();
+
+    for (int i = 0; i < bufferSize; i++) {
+      controller.update(DELTA);
+      controller.sendPacket(0, ch, Unpooled.wrappedBuffer(new byte[64]));
+
+      ByteBuf bb = Unpooled.buffer();
+      Packet.writePacketHeader(bb, 0, i, channel.nextSequence(), 0x55555555);
+      bb.writeZero(64);
+      DatagramPacket packet = new DatagramPacket(bb, null, (InetSocketAddress) SENDER);
+      controller.onPacketReceived(null, packet);
+      packet.release();
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() {
+    ch.close();
+    group.shutdownGracefully();
+  }
+
+  @Benchmark
+  public float update() {
+    controller.update(DELTA);
+    return controller.packetLoss();
+  }
+}
@@ -0,0 +1,46 @@
+package com.riiablo.onet.reliable;
+
+import com.badlogic.gdx.math.MathUtils;
+
+/**
+ * Lock-free single-producer, single-consumer queue of sequences used to pass
+ * acks from the event loop which receives them to the thread which sends
+ * packets and owns the sent packet statistics.
+ */
+class AckQueue {
+  final int[] sequences;
+  final int mask;
+
+  /** written only by the producer */
+  volatile int head;
+  /** written only by the consumer */
+  volatile int tail;
+
+  AckQueue(int capacity) {
+    capacity = MathUtils.nextPowerOfTwo(capacity);
+    sequences = new int[capacity];
+    mask = capacity - 1;
+  }
+
+  /** @return {@code false} if the queue is full and {@code sequence} was dropped */
+  boolean offer(int sequence) {
+    final int head = this.head;
+    if (head - tail == sequences.length) return false;
+    sequences[head & mask] = sequence;
+    this.head = head + 1;
+    return true;
+  }
+
+  /** @return the next sequence, or {@code -1} if the queue is empty */
+  int poll() {
+    final int tail = this.tail;
+    if (tail == head) return -1;
+    final int sequence = sequences[tail & mask];
+    this.tail = tail + 1;
+    return sequence;
+  }
+
+  void clear() {
+    tail = head;
+  }
+}
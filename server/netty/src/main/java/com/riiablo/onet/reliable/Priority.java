@@ -0,0 +1,34 @@
+package com.riiablo.onet.reliable;
+
+/**
+ * Scheduling class of a reliable message. Messages of a higher priority are
+ * always sent first unless a lower priority message has waited longer than its
+ * class's {@link #maxDelay}, in which case it is sent next to avoid starvation.
+ */
+public enum Priority {
+  /**
+   * Player input and movement, latency critical.
+   */
+  Movement(0.05f),
+
+  /**
+   * Combat and other gameplay events.
+   */
+  Event(0.25f),
+
+  /**
+   * Bulk state, e.g., item and inventory data.
+   */
+  Bulk(1.0f);
+
+  public static final Priority DEFAULT = Event;
+
+  /**
+   * Seconds a message may wait behind higher priority messages.
+   */
+  public final float maxDelay;
+
+  Priority(float maxDelay) {
+    this.maxDelay = maxDelay;
+  }
+}
@@ -12,4 +12,13 @@ public class ReliableConfiguration {
   public float packetLossSmoothingFactor = 0.1f;
   public float bandwidthSmoothingFactor = 0.1f;
   public int packetHeaderSize = 28;
+
+  // send scheduler, bandwidth in bytes per second
+  public int minBandwidth = 16 * 1024;
+  public int maxBandwidth = 256 * 1024;
+  public int initialBandwidth = 64 * 1024;
+  public int bandwidthIncrease = 4 * 1024;
+  public float bandwidthBurst = 0.1f; // seconds of bandwidth which may be sent at once
+  public float congestionRtt = 250.0f; // ms
+  public float congestionPacketLoss = 0.05f;
 }
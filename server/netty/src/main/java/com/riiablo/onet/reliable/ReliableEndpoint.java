@@ -107,6 +107,13 @@ public class ReliableEndpoint implements UnicastEndpoint<DatagramPacket>, Messag
     mc.sendMessage(channelId, channel, Unpooled.wrappedBuffer(bb)); // automatically released
   }
 
+  public void sendMessage(InetSocketAddress to, Priority priority, ByteBuffer bb) {
+    if (DEBUG_SEND) Log.debug(TAG, "sendMessage (%s) to %s", priority, to);
+    int channelId = defaultChannels.get(QoS.Reliable);
+    ReliableMessageChannel mc = (ReliableMessageChannel) channels[channelId];
+    mc.sendMessage(channelId, channel, Unpooled.wrappedBuffer(bb), priority); // automatically released
+  }
+
   @Override
   public SocketAddress getRemoteAddress(ChannelHandlerContext ctx, DatagramPacket msg) {
     return msg.sender();
@@ -12,6 +12,18 @@ import com.riiablo.onet.reliable.data.FragmentReassemblyData;
 import com.riiablo.onet.reliable.data.ReceivedPacketData;
 import com.riiablo.onet.reliable.data.SentPacketData;
 
+/**
+ * Tracks sent and received packets of a {@link MessageChannel}.
+ *
+ * Packets are sent and statistics are updated by the thread which calls
+ * {@link #update(float)}, while packets are received on the channel's event
+ * loop. The received side is only ever written by the event loop and publishes
+ * the ack and ack bits for outgoing headers through a single volatile field, and
+ * acks of sent packets are passed back to the sending thread through an
+ * {@link AckQueue}, so neither side takes a lock. Packet loss and bandwidth are
+ * maintained as running totals by {@link SampleWindow}s as packets are inserted
+ * and acked, s.t. {@link #update(float)} is O(1) regardless of buffer sizes.
+ */
 public class ReliablePacketController {
   private static final String TAG = "ReliablePacketController";
 
@@ -28,6 +40,22 @@ public class ReliablePacketController {
   private final SequenceBuffer<ReceivedPacketData> receivedPackets;
   private final SequenceBuffer<FragmentReassemblyData> fragmentReassembly;
 
+  // owned by the sending thread
+  private final SampleWindow<SentPacketData> sentWindow;
+  private final AckQueue ackQueue;
+  private int ackedSamples;
+  private int ackedBytes;
+
+  // owned by the event loop
+  private final SampleWindow<ReceivedPacketData> receivedWindow;
+  private final int ackBitsMask;
+  private int ack;
+  private int ackBits;
+
+  // published by the event loop
+  private volatile long acks;
+  private volatile float receivedBandwidthSample = -1f;
+
   private float time;
   private float rtt;
   private float packetLoss;
@@ -42,12 +70,55 @@ public class ReliablePacketController {
     this.sentPackets = new SequenceBuffer<>(SentPacketData.class, config.sentPacketBufferSize);
     this.receivedPackets = new SequenceBuffer<>(ReceivedPacketData.class, config.receivedPacketBufferSize);
     this.fragmentReassembly = new SequenceBuffer<>(FragmentReassemblyData.class, config.fragmentReassemblyBufferSize);
+
+    this.ackQueue = new AckQueue(config.sentPacketBufferSize);
+    this.sentWindow = new SampleWindow<SentPacketData>(sentPackets) {
+      @Override
+      protected void onReset() {
+        ackedSamples = 0;
+        ackedBytes = 0;
+      }
+
+      @Override
+      protected void onEnter(SentPacketData data) {
+        if (!data.ackCounted) return;
+        ackedSamples++;
+        ackedBytes += data.packetSize;
+      }
+
+      @Override
+      protected void onLeave(SentPacketData data) {
+        if (!data.ackCounted) return;
+        ackedSamples--;
+        ackedBytes -= data.packetSize;
+      }
+    };
+
+    this.receivedWindow = new SampleWindow<>(receivedPackets);
+    this.ackBitsMask = config.receivedPacketBufferSize >= Integer.SIZE ? -1 : (1 << config.receivedPacketBufferSize) - 1;
+    resetAcks();
   }
 
   public float rtt() {
     return rtt;
   }
 
+  public float packetLoss() {
+    return packetLoss;
+  }
+
+  public float sentBandwidth() {
+    return sentBandwidth;
+  }
+
+  public float receivedBandwidth() {
+    return receivedBandwidth;
+  }
+
+  public float ackedBandwidth() {
+    return ackedBandwidth;
+  }
+
   public void reset() {
     channel.sequence = 0;
     for (int i = 0, s = config.fragmentReassemblyBufferSize; i < s; i++) {
@@ -58,27 +129,45 @@ public class ReliablePacketController {
     sentPackets.reset();
     receivedPackets.reset();
     fragmentReassembly.reset();
+
+    // must not be called while packets are being received
+    sentWindow.reset();
+    receivedWindow.reset();
+    ackQueue.clear();
+    resetAcks();
+    receivedBandwidthSample = -1f;
+  }
+
+  private void resetAcks() {
+    ack = receivedPackets.generateAck();
+    ackBits = 0;
+    acks = ((long) ack << 32);
   }
 
   public void update(float delta) {
     time += delta;
+    updateAcked();
     updatePacketLoss();
     updateSentBandwidth();
     updateReceivedBandwidth();
     updateAckedBandwidth();
   }
 
-  private void updatePacketLoss() {
-    int baseSequence = (sentPackets.getSequence() - config.sentPacketBufferSize + 1 + Packet.USHORT_MAX_VALUE) & Packet.USHORT_MAX_VALUE;
-
-    int numDropped = 0;
-    int numSamples = config.sentPacketBufferSize / 2;
-    for (int i = 0; i < numSamples; i++) {
-      int sequence = (baseSequence + i) & Packet.USHORT_MAX_VALUE;
+  private void updateAcked() {
+    for (int sequence; (sequence = ackQueue.poll()) != -1;) {
       SentPacketData sentPacketData = sentPackets.find(sequence);
-      if (sentPacketData != null && !sentPacketData.acked) numDropped++;
+      if (sentPacketData == null || sentPacketData.ackCounted) continue;
+      sentPacketData.ackCounted = true;
+      if (sentWindow.contains(sequence)) {
+        ackedSamples++;
+        ackedBytes += sentPacketData.packetSize;
+      }
     }
+  }
 
+  private void updatePacketLoss() {
+    int numDropped = sentWindow.samples - ackedSamples;
+    int numSamples = sentWindow.numSamples;
     float packetLoss = numDropped / (float) numSamples;
     if (MathUtils.isEqual(this.packetLoss, packetLoss, TOLERANCE)) {
       this.packetLoss += (packetLoss - this.packetLoss) * config.packetLossSmoothingFactor;
@@ -88,23 +177,8 @@ public class ReliablePacketController {
   }
 
   private void updateSentBandwidth() {
-    int baseSequence = (sentPackets.getSequence() - config.sentPacketBufferSize + 1 + Packet.USHORT_MAX_VALUE) & Packet.USHORT_MAX_VALUE;
-
-    int bytesSent = 0;
-    float startTime = Float.MAX_VALUE;
-    float finishTime = 0f;
-    int numSamples = config.sentPacketBufferSize / 2;
-    for (int i = 0; i < numSamples; i++) {
-      int sequence = (baseSequence + i) & Packet.USHORT_MAX_VALUE;
-      SentPacketData sentPacketData = sentPackets.find(sequence);
-      if (sentPacketData == null) continue;
-      bytesSent += sentPacketData.packetSize;
-      startTime = Math.min(startTime, sentPacketData.time);
-      finishTime = Math.max(finishTime, sentPacketData.time);
-    }
-
-    if (startTime != Float.MAX_VALUE && finishTime != 0f) {
-      float sentBandwidth = bytesSent / (finishTime - startTime) * 8f / 1000f;
+    float sentBandwidth = sentWindow.bandwidth(sentWindow.bytes);
+    if (sentBandwidth >= 0f) {
       if (MathUtils.isEqual(this.sentBandwidth, sentBandwidth, TOLERANCE)) {
         this.sentBandwidth += (sentBandwidth - this.sentBandwidth) * config.bandwidthSmoothingFactor;
       } else {
@@ -114,51 +188,23 @@ public class ReliablePacketController {
   }
 
   private void updateReceivedBandwidth() {
-    synchronized (receivedPackets) {
-      int baseSequence = (receivedPackets.getSequence() - config.receivedPacketBufferSize + 1 + Packet.USHORT_MAX_VALUE) & Packet.USHORT_MAX_VALUE;
-
-      int bytesReceived = 0;
-      float startTime = Float.MAX_VALUE;
-      float finishTime = 0f;
-      int numSamples = config.receivedPacketBufferSize / 2;
-      for (int i = 0; i < numSamples; i++) {
-        int sequence = (baseSequence + i) & Packet.USHORT_MAX_VALUE;
-        ReceivedPacketData receivedPacketData = receivedPackets.find(sequence);
-        if (receivedPacketData == null) continue;
-        bytesReceived += receivedPacketData.packetSize;
-        startTime = Math.min(startTime, receivedPacketData.time);
-        finishTime = Math.max(finishTime, receivedPacketData.time);
-      }
-
-      if (startTime != Float.MAX_VALUE && finishTime != 0f) {
-        float receivedBandwidth = bytesReceived / (finishTime - startTime) * 8f / 1000f;
-        if (MathUtils.isEqual(this.receivedBandwidth, receivedBandwidth, TOLERANCE)) {
-          this.receivedBandwidth += (receivedBandwidth - this.receivedBandwidth) * config.bandwidthSmoothingFactor;
-        } else {
-          this.receivedBandwidth = receivedBandwidth;
-        }
+    float receivedBandwidth = receivedBandwidthSample;
+    if (receivedBandwidth >= 0f) {
+      if (MathUtils.isEqual(this.receivedBandwidth, receivedBandwidth, TOLERANCE)) {
+        this.receivedBandwidth += (receivedBandwidth - this.receivedBandwidth) * config.bandwidthSmoothingFactor;
+      } else {
+        this.receivedBandwidth = receivedBandwidth;
       }
     }
   }
 
+  /**
+   * Acked bandwidth is measured over the span of the sent packets within the
+   * window rather than only the acked ones.
+   */
   private void updateAckedBandwidth() {
-    int baseSequence = (sentPackets.getSequence() - config.sentPacketBufferSize + 1 + Packet.USHORT_MAX_VALUE) & Packet.USHORT_MAX_VALUE;
-
-    int bytesSent = 0;
-    float startTime = Float.MAX_VALUE;
-    float finishTime = 0f;
-    int numSamples = config.sentPacketBufferSize / 2;
-    for (int i = 0; i < numSamples; i++) {
-      int sequence = (baseSequence + i) & Packet.USHORT_MAX_VALUE;
-      SentPacketData sentPacketData = sentPackets.find(sequence);
-      if (sentPacketData == null || !sentPacketData.acked) continue;
-      bytesSent += sentPacketData.packetSize;
-      startTime = Math.min(startTime, sentPacketData.time);
-      finishTime = Math.max(finishTime, sentPacketData.time);
-    }
-
-    if (startTime != Float.MAX_VALUE && finishTime != 0f) {
-      float ackedBandwidth = bytesSent / (finishTime - startTime) * 8f / 1000f;
+    float ackedBandwidth = sentWindow.bandwidth(ackedBytes);
+    if (ackedBandwidth >= 0f) {
       if (MathUtils.isEqual(this.ackedBandwidth, ackedBandwidth, TOLERANCE)) {
         this.ackedBandwidth += (ackedBandwidth - this.ackedBandwidth) * config.bandwidthSmoothingFactor;
       } else {
@@ -167,14 +213,31 @@ public class ReliablePacketController {
     }
   }
 
+  /**
+   * Called by the event loop after {@code sequence} has been inserted into the
+   * received packets, shifts the ack bits s.t. bit {@code i} is set if
+   * {@code ack - i} has been received.
+   */
+  private void updateAcks(int sequence) {
+    if (ReliableUtils.sequenceGreaterThan(sequence, ack)) {
+      int shift = (sequence - ack) & Packet.USHORT_MAX_VALUE;
+      ackBits = shift < Integer.SIZE ? (ackBits << shift) | 1 : 1;
+      ack = sequence;
+    } else {
+      int diff = (ack - sequence) & Packet.USHORT_MAX_VALUE;
+      if (diff < Integer.SIZE) ackBits |= 1 << diff;
+    }
+
+    ackBits &= ackBitsMask;
+    acks = ((long) ack << 32) | (ackBits & 0xFFFFFFFFL);
+  }
+
   public void sendAck(int channelId, DatagramChannel ch) {
     if (DEBUG_SEND) Log.debug(TAG, "sendAck");
 
-    int ack, ackBits;
-    synchronized (receivedPackets) {
-      ack = receivedPackets.generateAck();
-      ackBits = receivedPackets.generateAckBits(ack);
-    }
+    final long acks = this.acks;
+    final int ack = (int) (acks >>> 32);
+    final int ackBits = (int) acks;
 
     ByteBuf packet = ch.alloc().directBuffer(config.packetHeaderSize);
     int headerSize = Packet.writeAck(packet, channelId, ack, ackBits);
@@ -201,16 +264,11 @@ public class ReliablePacketController {
     final int sequence = channel.incSequence();
     if (DEBUG_SEND) Log.debug(TAG, "packet sequence set to %d", sequence);
 
-    int ack, ackBits;
-    synchronized (receivedPackets) {
-      ack = receivedPackets.generateAck();
-      ackBits = receivedPackets.generateAckBits(ack);
-    }
+    final long acks = this.acks;
+    final int ack = (int) (acks >>> 32);
+    final int ackBits = (int) acks;
 
-    SentPacketData sentPacketData = sentPackets.insert(sequence);
-    sentPacketData.time = this.time;
-    sentPacketData.packetSize = packetSize;
-    sentPacketData.acked = false;
+    sentWindow.insert(sequence, time, packetSize);
 
     if (packetSize <= config.fragmentThreshold) {
       // regular packet
@@ -260,11 +318,8 @@ public class ReliablePacketController {
           return;
         }
 
-        final boolean isStale;
         final int sequence = headerData.sequence;
-        synchronized (receivedPackets) {
-          isStale = !receivedPackets.testInsert(sequence);
-        }
+        final boolean isStale = !receivedPackets.testInsert(sequence);
 
         if (DEBUG_RECEIVE) Log.debug(TAG, "packet reported sequence as %d", sequence);
         final boolean isAck = Packet.isAck(flags);
@@ -272,10 +327,10 @@ public class ReliablePacketController {
           if (DEBUG_RECEIVE) Log.debug(TAG, "processing packet %d", sequence);
           ByteBuf slice = bb.readSlice(bb.readableBytes());
           channel.onPacketProcessed(ctx, packet.sender(), sequence, slice);
-          synchronized (receivedPackets) {
-            ReceivedPacketData receivedPacketData = receivedPackets.insert(sequence);
-            receivedPacketData.time = time;
-            receivedPacketData.packetSize =  packetSize;
+          if (receivedWindow.insert(sequence, time, packetSize) != null) {
+            updateAcks(sequence);
+            float receivedBandwidth = receivedWindow.bandwidth(receivedWindow.bytes);
+            if (receivedBandwidth >= 0f) receivedBandwidthSample = receivedBandwidth;
           }
         }
 
@@ -289,6 +344,7 @@ public class ReliablePacketController {
                 if (DEBUG_RECEIVE) Log.debug(TAG, "acked packet %d", ackSequence);
                 ReliableEndpoint.stats.NUM_PACKETS_ACKED++;
                 sentPacketData.acked = true;
+                ackQueue.offer(ackSequence);
                 channel.onAckProcessed(ctx, packet.sender(), ackSequence);
 
                 float rtt = (time - sentPacketData.time) * 1000f;
@@ -0,0 +1,174 @@
+package com.riiablo.onet.reliable;
+
+import java.util.Arrays;
+
+import com.riiablo.onet.reliable.data.PacketData;
+
+/**
+ * Running totals over the entries of a {@link SequenceBuffer} within the older
+ * half of the buffer, i.e., entries which have had time to be acked. Totals are
+ * updated as entries are inserted and as the window slides, s.t. reading them
+ * costs O(1) regardless of the size of the buffer.
+ *
+ * Packets may be received out of order, so the oldest and newest times within
+ * the window are kept in a tree of the minimum and maximum time of each range
+ * of sequences, which costs O(log n) per entry entering or leaving the window.
+ *
+ * All entries must be inserted through {@link #insert(int, float, int)}, and
+ * only by a single thread.
+ */
+class SampleWindow<T extends PacketData> {
+  final SequenceBuffer<T> buffer;
+  final int numSamples;
+
+  /** oldest sequence within the window */
+  int tail;
+  /** sequence after the newest within the window */
+  int head;
+
+  int samples;
+  int bytes;
+
+  /**
+   * Implicit trees of the minimum and maximum times within the window, the
+   * entry of {@code sequence} is the leaf at {@code numSamples + (sequence &
+   * (numSamples - 1))} and node {@code i} spans nodes {@code 2i} and
+   * {@code 2i + 1}. Leaves of missing entries hold {@link Float#MAX_VALUE}
+   * and {@code 0} respectively.
+   */
+  final float[] startTimes;
+  final float[] finishTimes;
+
+  SampleWindow(SequenceBuffer<T> buffer) {
+    this.buffer = buffer;
+    this.numSamples = buffer.numEntries / 2;
+    assert numSamples > 0 && (numSamples & (numSamples - 1)) == 0 : "numSamples(" + numSamples + ") must be a power of 2";
+    this.startTimes = new float[numSamples << 1];
+    this.finishTimes = new float[numSamples << 1];
+    reset();
+  }
+
+  void reset() {
+    tail = (buffer.getSequence() - buffer.numEntries + 1) & Packet.USHORT_MAX_VALUE;
+    head = (tail + numSamples) & Packet.USHORT_MAX_VALUE;
+    clear();
+  }
+
+  private void clear() {
+    samples = 0;
+    bytes = 0;
+    Arrays.fill(startTimes, Float.MAX_VALUE);
+    Arrays.fill(finishTimes, 0f);
+    onReset();
+  }
+
+  boolean contains(int sequence) {
+    return ((sequence - tail) & Packet.USHORT_MAX_VALUE) < numSamples;
+  }
+
+  /**
+   * Inserts {@code sequence} into the buffer, sliding the window first if the
+   * buffer's sequence will advance s.t. entries leaving the window are
+   * subtracted before they can be overwritten.
+   *
+   * @return the inserted entry, or {@code null} if {@code sequence} is too old
+   */
+  T insert(int sequence, float time, int packetSize) {
+    sequence &= Packet.USHORT_MAX_VALUE;
+    final int nextSequence = (sequence + 1) & Packet.USHORT_MAX_VALUE;
+    if (ReliableUtils.sequenceGreaterThan(nextSequence, buffer.getSequence())) {
+      slide((nextSequence - buffer.numEntries + 1) & Packet.USHORT_MAX_VALUE);
+    }
+
+    final boolean sampled = contains(sequence);
+    if (sampled) leave(sequence); // re-inserted, e.g., a duplicate packet
+    final T data = buffer.insert(sequence);
+    if (data == null) return null;
+    data.set(time, packetSize);
+    if (sampled) enter(sequence);
+    return data;
+  }
+
+  void slide(int tail) {
+    final int shift = (tail - this.tail) & Packet.USHORT_MAX_VALUE;
+    if (shift >= numSamples) {
+      clear();
+      this.tail = tail;
+      head = (tail + numSamples) & Packet.USHORT_MAX_VALUE;
+      for (int i = 0, sequence = tail; i < numSamples; i++, sequence = (sequence + 1) & Packet.USHORT_MAX_VALUE) {
+        enter(sequence);
+      }
+
+      return;
+    }
+
+    for (int i = 0; i < shift; i++) {
+      leave(this.tail);
+      enter(head);
+      this.tail = (this.tail + 1) & Packet.USHORT_MAX_VALUE;
+      head = (head + 1) & Packet.USHORT_MAX_VALUE;
+    }
+  }
+
+  private void enter(int sequence) {
+    final T data = buffer.find(sequence);
+    if (data == null) return;
+    samples++;
+    bytes += data.packetSize;
+    update(sequence, data.time, data.time);
+    onEnter(data);
+  }
+
+  private void leave(int sequence) {
+    final T data = buffer.find(sequence);
+    if (data == null) return;
+    samples--;
+    bytes -= data.packetSize;
+    update(sequence, Float.MAX_VALUE, 0f);
+    onLeave(data);
+  }
+
+  private void update(int sequence, float startTime, float finishTime) {
+    final float[] startTimes = this.startTimes;
+    final float[] finishTimes = this.finishTimes;
+    int i = numSamples + (sequence & (numSamples - 1));
+    startTimes[i] = startTime;
+    finishTimes[i] = finishTime;
+    for (i >>>= 1; i > 0; i >>>= 1) {
+      final int left = i << 1, right = left + 1;
+      startTimes[i] = Math.min(startTimes[left], startTimes[right]);
+      finishTimes[i] = Math.max(finishTimes[left], finishTimes[right]);
+    }
+  }
+
+  /**
+   * @return earliest time of the entries within the window, or
+   *         {@link Float#MAX_VALUE} if there are none
+   */
+  float startTime() {
+    return startTimes[1];
+  }
+
+  /**
+   * @return latest time of the entries within the window, or {@code 0} if
+   *         there are none
+   */
+  float finishTime() {
+    return finishTimes[1];
+  }
+
+  /**
+   * @return bandwidth in kbps of {@code bytes} over the span of the window, or
+   *         {@code -1} if the span is empty
+   */
+  float bandwidth(int bytes) {
+    final float startTime = startTime();
+    final float finishTime = finishTime();
+    if (startTime == Float.MAX_VALUE || finishTime <= startTime) return -1f;
+    return bytes / (finishTime - startTime) * 8f / 1000f;
+  }
+
+  protected void onReset() {}
+  protected void onEnter(T data) {}
+  protected void onLeave(T data) {}
+}
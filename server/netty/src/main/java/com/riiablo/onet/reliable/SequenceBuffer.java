@@ -38,11 +38,13 @@ public class SequenceBuffer<T> {
   public void removeEntries(int startSequence, int endSequence) {
     startSequence &= Packet.USHORT_MAX_VALUE;
     endSequence   &= Packet.USHORT_MAX_VALUE;
-    if (endSequence < startSequence) {
-      Arrays.fill(entrySequence, startSequence, numEntries, INVALID_SEQUENCE);
-      Arrays.fill(entrySequence, 0, endSequence, INVALID_SEQUENCE);
+    if (endSequence < startSequence) endSequence += Packet.USHORT_MAX_VALUE + 1;
+    if (endSequence - startSequence < numEntries) {
+      for (int sequence = startSequence; sequence <= endSequence; sequence++) {
+        entrySequence[(sequence & Packet.USHORT_MAX_VALUE) % numEntries] = INVALID_SEQUENCE;
+      }
     } else {
-      Arrays.fill(entrySequence, startSequence, endSequence, INVALID_SEQUENCE);
+      Arrays.fill(entrySequence, INVALID_SEQUENCE);
     }
   }
 
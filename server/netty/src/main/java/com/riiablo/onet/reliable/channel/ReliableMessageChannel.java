@@ -9,11 +9,11 @@ import java.net.SocketAddress;
 
 import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.utils.IntArray;
-import com.badlogic.gdx.utils.Queue;
 
 import com.riiablo.onet.reliable.Log;
 import com.riiablo.onet.reliable.MessageChannel;
 import com.riiablo.onet.reliable.Packet;
+import com.riiablo.onet.reliable.Priority;
 import com.riiablo.onet.reliable.ReliableConfiguration;
 import com.riiablo.onet.reliable.ReliableUtils;
 import com.riiablo.onet.reliable.SequenceBuffer;
@@ -24,13 +24,14 @@ public class ReliableMessageChannel extends MessageChannel {
   private static final boolean DEBUG = true;
   private static final boolean DEBUG_SEND = DEBUG && true;
   private static final boolean DEBUG_RECEIVE = DEBUG && true;
+  private static final boolean DEBUG_SCHEDULER = DEBUG && !true;
 
   private final ByteBuf packetBuffer = Unpooled.buffer();
   private final SequenceBuffer<BufferedPacket> sendBuffer;
   private final SequenceBuffer<BufferedPacket> receiveBuffer;
   private final SequenceBuffer<OutgoingPacketSet> ackBuffer;
 
-  private final Queue<ByteBuf> messageQueue = new Queue<>(64, ByteBuf.class);
+  private final SendScheduler scheduler;
   private final IntArray outgoingMessageIds = new IntArray(256);
 
   private float time;
@@ -52,6 +53,7 @@ public class ReliableMessageChannel extends MessageChannel {
     this.sendBuffer = new SequenceBuffer<>(BufferedPacket.class, 256);
     this.receiveBuffer = new SequenceBuffer<>(BufferedPacket.class, 256);
     this.ackBuffer = new SequenceBuffer<>(OutgoingPacketSet.class, 256);
+    this.scheduler = new SendScheduler(config);
 
     time = 0.0f;
     lastBufferFlush = -1.0f;
@@ -72,6 +74,7 @@ public class ReliableMessageChannel extends MessageChannel {
     sendBuffer.reset();
 //    receiveBuffer.reset(); // this isn't in the original code? why?
     ackBuffer.reset();
+    scheduler.reset();
 
     lastBufferFlush = -1.0f;
     lastMessageSend = 0.0f;
@@ -91,23 +94,33 @@ public class ReliableMessageChannel extends MessageChannel {
     packetController.update(delta);
 
     time += delta;
+    scheduler.update(delta, packetController.rtt(), packetController.packetLoss());
+    if (DEBUG_SCHEDULER) Log.debug(TAG, "scheduler " + scheduler);
 
     // see if we can pop messages off of the message queue and put them into the send queue
-    updateQueue(channelId, ch);
+    updateQueue();
     updateCongestion(delta, channelId, ch);
   }
 
-  private void updateQueue(int channelId, DatagramChannel ch) {
-    if (messageQueue.size > 0) {
-      int sendBufferSize = 0;
-      for (int seq = oldestUnacked; ReliableUtils.sequenceLessThan(seq, sequence); seq = (seq + 1) & Packet.USHORT_MAX_VALUE) {
-        if (sendBuffer.exists(seq)) sendBufferSize++;
-      }
+  public SendScheduler scheduler() {
+    return scheduler;
+  }
 
-      if (sendBufferSize < sendBuffer.numEntries) {
-        ByteBuf packetData = messageQueue.removeFirst();
-        sendMessage(channelId, ch, packetData);
-      }
+  /**
+   * Moves messages from the scheduler into the send buffer while there is
+   * space in the send buffer and the scheduler's bandwidth budget allows.
+   */
+  private void updateQueue() {
+    if (scheduler.isEmpty()) return;
+    int sendBufferSize = 0;
+    for (int seq = oldestUnacked; ReliableUtils.sequenceLessThan(seq, sequence); seq = (seq + 1) & Packet.USHORT_MAX_VALUE) {
+      if (sendBuffer.exists(seq)) sendBufferSize++;
+    }
+
+    ByteBuf packetData;
+    while (sendBufferSize < sendBuffer.numEntries && (packetData = scheduler.poll(time)) != null) {
+      bufferMessage(packetData);
+      sendBufferSize++;
     }
   }
 
@@ -218,19 +231,17 @@ public class ReliableMessageChannel extends MessageChannel {
 
   @Override
   public void sendMessage(int channelId, DatagramChannel ch, ByteBuf bb) {
-    if (DEBUG_SEND) Log.debug(TAG, "sendMessage " + bb);
-
-    int sendBufferSize = 0;
-    for (int seq = oldestUnacked; ReliableUtils.sequenceLessThan(seq, sequence); seq = (seq + 1) & Packet.USHORT_MAX_VALUE) {
-      if (sendBuffer.exists(seq)) sendBufferSize++;
-    }
+    sendMessage(channelId, ch, bb, Priority.DEFAULT);
+  }
 
+  public void sendMessage(int channelId, DatagramChannel ch, ByteBuf bb, Priority priority) {
+    if (DEBUG_SEND) Log.debug(TAG, "sendMessage (" + priority + ") " + bb);
     // TODO: make sure this doesn't leak
-    if (sendBufferSize == sendBuffer.numEntries) {
-      messageQueue.addLast(bb);
-      return;
-    }
+    scheduler.offer(bb, priority, time);
+    updateQueue();
+  }
 
+  private void bufferMessage(ByteBuf bb) {
     final int sequence = incSequence();
     BufferedPacket packet = sendBuffer.insert(sequence);
     packet.time = -1.0f;
@@ -0,0 +1,213 @@
+package com.riiablo.onet.reliable.channel;
+
+import io.netty.buffer.ByteBuf;
+
+import com.badlogic.gdx.utils.Pool;
+import com.badlogic.gdx.utils.Queue;
+
+import com.riiablo.onet.reliable.Priority;
+import com.riiablo.onet.reliable.ReliableConfiguration;
+
+/**
+ * Orders queued reliable messages by {@link Priority} and limits the rate at
+ * which they are released into the send buffer with a token bucket.
+ *
+ * The bucket is refilled at a rate which is adjusted once per round trip:
+ * halved when the rtt or packet loss reported by the packet controller exceed
+ * {@link ReliableConfiguration#congestionRtt} or
+ * {@link ReliableConfiguration#congestionPacketLoss}, and otherwise increased
+ * by {@link ReliableConfiguration#bandwidthIncrease}. A message is released
+ * whenever the bucket is not empty, s.t. messages larger than the bucket are
+ * still sent and the resulting deficit is paid back by subsequent refills.
+ */
+public class SendScheduler {
+  private static final Priority[] PRIORITIES = Priority.values();
+
+  final ReliableConfiguration config;
+
+  final EntryQueue[] queues = new EntryQueue[PRIORITIES.length];
+  final Pool<Entry> entries = new Pool<Entry>(64) {
+    @Override
+    protected Entry newObject() {
+      return new Entry();
+    }
+  };
+
+  float bandwidth;
+  float tokens;
+  float adjustTimer;
+
+  // per priority metrics
+  final int[] highWater = new int[PRIORITIES.length];
+  final long[] sent = new long[PRIORITIES.length];
+  final long[] sentBytes = new long[PRIORITIES.length];
+  final float[] totalLatency = new float[PRIORITIES.length];
+  final float[] maxLatency = new float[PRIORITIES.length];
+  int congestionEvents;
+
+  public SendScheduler(ReliableConfiguration config) {
+    this.config = config;
+    for (int i = 0; i < queues.length; i++) queues[i] = new EntryQueue();
+    reset();
+  }
+
+  /**
+   * Resets the bandwidth estimate. Queued messages are kept.
+   */
+  public void reset() {
+    bandwidth = config.initialBandwidth;
+    tokens = burst();
+    adjustTimer = 0.0f;
+  }
+
+  float burst() {
+    return bandwidth * config.bandwidthBurst;
+  }
+
+  /**
+   * Refills the bucket and adjusts the bandwidth using the latest connection
+   * statistics.
+   *
+   * @param rtt        round trip time in milliseconds
+   * @param packetLoss smoothed packet loss in [0, 1]
+   */
+  public void update(float delta, float rtt, float packetLoss) {
+    adjustTimer += delta;
+    if (adjustTimer >= Math.max(rtt / 1000, 0.1f)) {
+      adjustTimer = 0.0f;
+      if (rtt >= config.congestionRtt || packetLoss >= config.congestionPacketLoss) {
+        bandwidth = Math.max(bandwidth * 0.5f, config.minBandwidth);
+        congestionEvents++;
+      } else {
+        bandwidth = Math.min(bandwidth + config.bandwidthIncrease, config.maxBandwidth);
+      }
+    }
+
+    tokens = Math.min(tokens + bandwidth * delta, burst());
+  }
+
+  public void offer(ByteBuf bb, Priority priority, float time) {
+    final int p = priority.ordinal();
+    Entry entry = entries.obtain();
+    entry.bb = bb;
+    entry.time = time;
+    queues[p].addLast(entry);
+    if (queues[p].size > highWater[p]) highWater[p] = queues[p].size;
+  }
+
+  public boolean isEmpty() {
+    for (Queue<Entry> queue : queues) if (queue.notEmpty()) return false;
+    return true;
+  }
+
+  /**
+   * @return the next message to send, or {@code null} if there are none or the
+   *         bandwidth budget has been exhausted
+   */
+  public ByteBuf poll(float time) {
+    if (tokens <= 0) return null;
+    final int p = select(time);
+    if (p == -1) return null;
+
+    final Entry entry = queues[p].removeFirst();
+    final ByteBuf bb = entry.bb;
+    final float latency = time - entry.time;
+    entries.free(entry);
+
+    final int size = bb.readableBytes();
+    tokens -= size;
+    sent[p]++;
+    sentBytes[p] += size;
+    totalLatency[p] += latency;
+    if (latency > maxLatency[p]) maxLatency[p] = latency;
+    return bb;
+  }
+
+  /**
+   * Selects the highest priority non-empty queue, unless the head of a lower
+   * priority queue has waited longer than its {@link Priority#maxDelay}.
+   */
+  int select(float time) {
+    int selected = -1;
+    for (int i = 0; i < queues.length; i++) {
+      final Queue<Entry> queue = queues[i];
+      if (queue.isEmpty()) continue;
+      if (selected == -1) {
+        selected = i;
+      } else if (time - queue.first().time >= PRIORITIES[i].maxDelay) {
+        return i;
+      }
+    }
+
+    return selected;
+  }
+
+  public float bandwidth() {
+    return bandwidth;
+  }
+
+  public float tokens() {
+    return tokens;
+  }
+
+  public int congestionEvents() {
+    return congestionEvents;
+  }
+
+  public int depth(Priority priority) {
+    return queues[priority.ordinal()].size;
+  }
+
+  public int highWater(Priority priority) {
+    return highWater[priority.ordinal()];
+  }
+
+  public long sent(Priority priority) {
+    return sent[priority.ordinal()];
+  }
+
+  public long sentBytes(Priority priority) {
+    return sentBytes[priority.ordinal()];
+  }
+
+  /** @return average seconds messages of {@code priority} spent queued */
+  public float averageLatency(Priority priority) {
+    final int p = priority.ordinal();
+    return sent[p] > 0 ? totalLatency[p] / sent[p] : 0.0f;
+  }
+
+  /** @return maximum seconds a message of {@code priority} spent queued */
+  public float maxLatency(Priority priority) {
+    return maxLatency[priority.ordinal()];
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder(128);
+    sb.append(String.format("%.0f B/s, %.0f tokens, %d congestion events", bandwidth, tokens, congestionEvents));
+    for (Priority priority : PRIORITIES) {
+      sb.append(String.format("; %s: depth=%d (max %d), sent=%d (%d B), latency=%.3fs (max %.3fs)",
+          priority, depth(priority), highWater(priority), sent(priority), sentBytes(priority),
+          averageLatency(priority), maxLatency(priority)));
+    }
+
+    return sb.toString();
+  }
+
+  static class EntryQueue extends Queue<Entry> {
+    EntryQueue() {
+      super(64);
+    }
+  }
+
+  static class Entry implements Pool.Poolable {
+    ByteBuf bb;
+    float   time;
+
+    @Override
+    public void reset() {
+      bb = null;
+      time = 0.0f;
+    }
+  }
+}
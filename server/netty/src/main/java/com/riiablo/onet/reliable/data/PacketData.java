@@ -0,0 +1,11 @@
+package com.riiablo.onet.reliable.data;
+
+public class PacketData {
+  public float   time;
+  public int     packetSize;
+
+  public void set(float time, int packetSize) {
+    this.time = time;
+    this.packetSize = packetSize;
+  }
+}
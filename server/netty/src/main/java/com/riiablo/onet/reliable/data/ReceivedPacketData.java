@@ -1,6 +1,4 @@
 package com.riiablo.onet.reliable.data;
 
-public class ReceivedPacketData {
-  public float   time;
-  public int     packetSize;
+public class ReceivedPacketData extends PacketData {
 }
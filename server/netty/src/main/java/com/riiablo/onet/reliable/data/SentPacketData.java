@@ -1,7 +1,14 @@
 package com.riiablo.onet.reliable.data;
 
-public class SentPacketData {
-  public float   time;
+public class SentPacketData extends PacketData {
   public boolean acked;
-  public int     packetSize;
+  /** whether the ack was counted by the sending thread, see ReliablePacketController */
+  public boolean ackCounted;
+
+  @Override
+  public void set(float time, int packetSize) {
+    super.set(time, packetSize);
+    acked = false;
+    ackCounted = false;
+  }
 }
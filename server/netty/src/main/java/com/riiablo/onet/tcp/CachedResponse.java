@@ -0,0 +1,65 @@
+package com.riiablo.onet.tcp;
+
+import com.google.flatbuffers.FlatBufferBuilder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.nio.ByteBuffer;
+
+/**
+ * Finished packet which is built once and then shared by every client which
+ * requests it until the state it was built from changes and it is
+ * {@link #invalidate() invalidated}. Callers should invalidate after modifying
+ * that state, s.t. a build which raced with the modification is discarded.
+ */
+public abstract class CachedResponse {
+  final ByteBufAllocator alloc;
+
+  // guarded by this
+  ByteBuf cached;
+  long builds;
+  long hits;
+
+  public CachedResponse() {
+    this(PooledByteBufAllocator.DEFAULT);
+  }
+
+  public CachedResponse(ByteBufAllocator alloc) {
+    this.alloc = alloc;
+  }
+
+  /**
+   * Builds and finishes the packet. Called at most once per invalidation.
+   */
+  protected abstract void build(FlatBufferBuilder builder);
+
+  /**
+   * @return a retained duplicate of the packet, which the channel it is
+   *         written to releases
+   */
+  public synchronized ByteBuf get() {
+    if (cached == null) {
+      FlatBufferBuilder builder = new FlatBufferBuilder();
+      build(builder);
+      ByteBuffer data = builder.dataBuffer();
+      cached = alloc.directBuffer(data.remaining());
+      cached.writeBytes(data);
+      builds++;
+    } else {
+      hits++;
+    }
+
+    return cached.retainedDuplicate();
+  }
+
+  public synchronized void invalidate() {
+    if (cached == null) return;
+    cached.release();
+    cached = null;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("%d builds, %d hits", builds, hits);
+  }
+}
@@ -0,0 +1,150 @@
+package com.riiablo.onet.tcp;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.GlobalEventExecutor;
+
+import com.badlogic.gdx.Gdx;
+
+import com.riiablo.onet.PacketProcessor;
+
+/**
+ * Request/response TCP server for the lobby services. All clients are served
+ * by a small pool of event loops instead of a thread per client.
+ *
+ * Lobby packets are not size-prefixed, so each read is processed as a single
+ * packet, as clients send one request and wait for its response.
+ */
+public class TcpServer {
+  private static final String TAG = "TcpServer";
+
+  private static final boolean DEBUG = true;
+  private static final boolean DEBUG_CONNECTIONS = DEBUG && !true;
+
+  public interface Handler extends PacketProcessor {
+    /**
+     * @return packet to send once a client has connected, or {@code null}
+     */
+    ByteBuf connectionAccepted(Channel ch);
+
+    /**
+     * @return packet to send before disconnecting a client which could not be
+     *         accepted, or {@code null}
+     */
+    ByteBuf connectionDenied(Channel ch, String reason);
+
+    void connectionClosed(Channel ch);
+  }
+
+  final String name;
+  final int port;
+  final int maxClients;
+  final Handler handler;
+  final ChannelGroup clients = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+
+  EventLoopGroup bossGroup;
+  EventLoopGroup workerGroup;
+  Channel server;
+
+  public TcpServer(String name, int port, int maxClients, Handler handler) {
+    this.name = name;
+    this.port = port;
+    this.maxClients = maxClients;
+    this.handler = handler;
+  }
+
+  public ChannelGroup clients() {
+    return clients;
+  }
+
+  public int numClients() {
+    return clients.size();
+  }
+
+  /**
+   * Binds {@link #port} and returns once the server is accepting connections.
+   */
+  public void start() throws InterruptedException {
+    bossGroup = new NioEventLoopGroup(1);
+    workerGroup = new NioEventLoopGroup();
+    final ChannelHandler inbound = new InboundHandler();
+    ServerBootstrap b = new ServerBootstrap()
+        .group(bossGroup, workerGroup)
+        .channel(NioServerSocketChannel.class)
+        .childHandler(new ChannelInitializer<SocketChannel>() {
+          @Override
+          protected void initChannel(SocketChannel ch) {
+            ch.pipeline().addLast(inbound);
+          }
+        })
+        .option(ChannelOption.SO_BACKLOG, 1024)
+        .childOption(ChannelOption.SO_KEEPALIVE, true)
+        .childOption(ChannelOption.TCP_NODELAY, true);
+
+    server = b.bind(port).sync().channel();
+    Gdx.app.log(TAG, name + " listening on " + server.localAddress());
+  }
+
+  public void dispose() {
+    if (server != null) server.close().syncUninterruptibly();
+    clients.close().awaitUninterruptibly();
+    if (workerGroup != null && !workerGroup.isShuttingDown()) workerGroup.shutdownGracefully();
+    if (bossGroup != null && !bossGroup.isShuttingDown()) bossGroup.shutdownGracefully();
+  }
+
+  @ChannelHandler.Sharable
+  final class InboundHandler extends SimpleChannelInboundHandler<ByteBuf> {
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+      final Channel ch = ctx.channel();
+      if (DEBUG_CONNECTIONS) Gdx.app.debug(TAG, "connection from " + ch.remoteAddress());
+      // clients are only ever added from event loops, so this may admit a few
+      // more than maxClients when many connect at once, which is harmless
+      if (clients.size() >= maxClients) {
+        ByteBuf denied = handler.connectionDenied(ch, "Server is Full");
+        if (denied != null) {
+          ctx.writeAndFlush(denied).addListener(ChannelFutureListener.CLOSE);
+        } else {
+          ctx.close();
+        }
+        return;
+      }
+
+      clients.add(ch);
+      ByteBuf accepted = handler.connectionAccepted(ch);
+      if (accepted != null) ctx.writeAndFlush(accepted);
+      super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+      if (DEBUG_CONNECTIONS) Gdx.app.debug(TAG, "connection closed " + ctx.channel().remoteAddress());
+      handler.connectionClosed(ctx.channel());
+      super.channelInactive(ctx);
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
+      handler.processPacket(ctx, ctx.channel().remoteAddress(), msg);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+      Gdx.app.error(TAG, cause.getMessage(), cause);
+      ctx.close();
+    }
+  }
+}
@@ -52,7 +52,6 @@ import com.riiablo.engine.server.ServerItemManager;
 import com.riiablo.engine.server.ServerNetworkIdManager;
 import com.riiablo.engine.server.VelocityAdder;
 import com.riiablo.engine.server.WarpInteractor;
-import com.riiablo.map.Act1MapBuilder;
 import com.riiablo.map.DS1;
 import com.riiablo.map.DS1Loader;
 import com.riiablo.map.DT1;
@@ -231,7 +230,6 @@ public class Main extends ApplicationAdapter {
     Riiablo.engine = world = new World(config);
 
     world.inject(map);
-    world.inject(Act1MapBuilder.INSTANCE);
     world.inject(packetProcessor);
 
     map.generate();
@@ -53,7 +53,6 @@ import com.riiablo.engine.server.VelocityAdder;
 import com.riiablo.engine.server.WarpInteractor;
 import com.riiablo.item.ItemGenerator;
 import com.riiablo.item.VendorGenerator;
-import com.riiablo.map.Act1MapBuilder;
 import com.riiablo.map.DS1;
 import com.riiablo.map.DS1Loader;
 import com.riiablo.map.DT1;
@@ -71,7 +70,8 @@ public class Main extends ApplicationAdapter {
     Options options = new Options()
         .addOption("home", true, "directory containing D2 MPQ files")
         .addOption("seed", true, "seed used to generate map")
-        .addOption("diff", true, "difficulty (0-2)");
+        .addOption("diff", true, "difficulty (0-2)")
+        .addOption("mtu", true, "maximum size of the frames outbound packets are coalesced into");
 
     CommandLine cmd = null;
     try {
@@ -117,14 +117,25 @@ public class Main extends ApplicationAdapter {
       }
     }
 
+    int mtu = OutboundBatcher.DEFAULT_MTU;
+    if (cmd.hasOption("mtu")) {
+      String mtuArg = cmd.getOptionValue("mtu");
+      try {
+        mtu = Integer.parseInt(mtuArg);
+      } catch (Throwable t) {
+        System.err.println("Invalid mtu provided: " + mtuArg);
+      }
+    }
+
     HeadlessApplicationConfiguration config = new HeadlessApplicationConfiguration();
     config.updatesPerSecond = (int) Animation.FRAMES_PER_SECOND;
-    new HeadlessApplication(new Main(home, seed, diff), config);
+    new HeadlessApplication(new Main(home, seed, diff, mtu), config);
   }
 
   FileHandle home;
   int seed;
   int diff;
+  int mtu;
 
   Thread cli;
   AtomicBoolean kill;
@@ -140,10 +151,11 @@ public class Main extends ApplicationAdapter {
   MapManager mapManager;
   NetworkSynchronizer sync;
 
-  Main(FileHandle home, int seed, int diff) {
+  Main(FileHandle home, int seed, int diff, int mtu) {
     this.home = home;
     this.seed = seed;
     this.diff = diff;
+    this.mtu = mtu;
   }
 
   @Override
@@ -197,7 +209,7 @@ public class Main extends ApplicationAdapter {
     map.finishLoading();
 
     messageProcessor = new D2GSMessageProcessor();
-    server = new Server(this, address, PORT);
+    server = new Server(this, address, PORT, mtu);
 
     factory = new ServerEntityFactory();
     itemManager = new ServerItemManager();
@@ -234,7 +246,6 @@ public class Main extends ApplicationAdapter {
     Riiablo.engine = world = new World(config);
 
     world.inject(map);
-    world.inject(Act1MapBuilder.INSTANCE);
     world.inject(messageProcessor);
     world.inject(server);
 
@@ -0,0 +1,152 @@
+package com.riiablo.server.d2gs_netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import java.nio.ByteBuffer;
+
+/**
+ * Coalesces the size-prefixed messages sent to each client during a tick into
+ * as few frames of at most {@link #mtu} bytes as possible. Frames are written
+ * as they fill up and every channel written to is flushed exactly once by
+ * {@link #flush()} at the end of the tick.
+ *
+ * Messages keep their size prefix, so clients decode a frame exactly as they
+ * would the same messages written individually. A message larger than the mtu
+ * is written as its own frame.
+ */
+public class OutboundBatcher {
+  public static final int DEFAULT_MTU = 1400;
+
+  final int mtu;
+  final ByteBufAllocator alloc;
+  final Channel[] channels;
+  final ByteBuf[] frames;
+
+  /** mask of clients which were written to since the last flush */
+  int dirty;
+
+  // per tick counters, see reset()
+  int messages;
+  int frameCount;
+  int syscalls;
+  long bytes;
+
+  // totals
+  long totalMessages;
+  long totalFrames;
+  long totalSyscalls;
+  long totalBytes;
+
+  public OutboundBatcher(int maxClients) {
+    this(maxClients, DEFAULT_MTU, PooledByteBufAllocator.DEFAULT);
+  }
+
+  public OutboundBatcher(int maxClients, int mtu, ByteBufAllocator alloc) {
+    this.mtu = mtu;
+    this.alloc = alloc;
+    this.channels = new Channel[maxClients];
+    this.frames = new ByteBuf[maxClients];
+  }
+
+  /**
+   * Appends {@code message} to the pending frame of client {@code id}. The
+   * message's position is not modified, so the same buffer may be added for
+   * multiple clients.
+   */
+  public void add(int id, Channel channel, ByteBuffer message) {
+    assert channels[id] == null || channels[id] == channel : "client " + id + " changed channels mid-tick";
+    channels[id] = channel;
+    dirty |= 1 << id;
+    messages++;
+
+    final int length = message.remaining();
+    ByteBuf frame = frames[id];
+    if (frame != null && frame.readableBytes() + length > mtu) {
+      write(id);
+      frame = null;
+    }
+
+    if (length > mtu) {
+      final ByteBuf oversized = alloc.directBuffer(length);
+      oversized.writeBytes(message.duplicate());
+      channel.write(oversized, channel.voidPromise());
+      frameCount++;
+      bytes += length;
+      return;
+    }
+
+    if (frame == null) frame = frames[id] = alloc.directBuffer(mtu);
+    final int position = message.position();
+    frame.writeBytes(message);
+    message.position(position);
+  }
+
+  void write(int id) {
+    final ByteBuf frame = frames[id];
+    frames[id] = null;
+    if (frame == null) return;
+    if (!frame.isReadable()) {
+      frame.release();
+      return;
+    }
+
+    final Channel channel = channels[id];
+    frameCount++;
+    bytes += frame.readableBytes();
+    channel.write(frame, channel.voidPromise());
+  }
+
+  /** writes all pending frames and flushes each channel written to */
+  public void flush() {
+    for (int pending = dirty; pending != 0; pending &= pending - 1) {
+      final int id = Integer.numberOfTrailingZeros(pending);
+      write(id);
+      channels[id].flush();
+      channels[id] = null;
+      syscalls++;
+    }
+
+    dirty = 0;
+    totalMessages += messages;
+    totalFrames += frameCount;
+    totalSyscalls += syscalls;
+    totalBytes += bytes;
+  }
+
+  /** resets the per tick counters, should be called before the next tick */
+  public void reset() {
+    messages = 0;
+    frameCount = 0;
+    syscalls = 0;
+    bytes = 0;
+  }
+
+  public int messages() {
+    return messages;
+  }
+
+  public int frames() {
+    return frameCount;
+  }
+
+  /**
+   * @return number of channel flushes, each of which is a single gathering
+   *         write unless the socket's send buffer is full
+   */
+  public int syscalls() {
+    return syscalls;
+  }
+
+  public long bytes() {
+    return bytes;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%d messages in %d frames (%d bytes), %d syscalls; totals: %d messages in %d frames (%d bytes), %d syscalls",
+        messages, frameCount, bytes, syscalls, totalMessages, totalFrames, totalBytes, totalSyscalls);
+  }
+}
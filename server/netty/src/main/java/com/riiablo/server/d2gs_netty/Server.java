@@ -5,6 +5,7 @@ import io.netty.bootstrap.ServerBootstrap;
 import io.netty.bootstrap.ServerBootstrapConfig;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
@@ -82,6 +83,7 @@ public class Server implements MessageProcessor {
   private static final boolean DEBUG_RECEIVED_PACKETS = DEBUG && true;
   private static final boolean DEBUG_SENT_CACHE = DEBUG && !true;
   private static final boolean DEBUG_SENT_PACKETS = DEBUG && true;
+  private static final boolean DEBUG_BATCHING = DEBUG && !true;
 
   static final int MAX_CLIENTS = Riiablo.MAX_PLAYERS;
 
@@ -103,6 +105,7 @@ public class Server implements MessageProcessor {
   private final Collection<InboundPacket<D2GS>> inCache = new ArrayList<>(32);
   final BlockingQueue<OutboundPacket> outPackets = new ArrayBlockingQueue<>(MAX_CLIENTS * 32);
   private final Collection<OutboundPacket> outCache = new ArrayList<>(MAX_CLIENTS * 32);
+  private final OutboundBatcher batcher;
 
   static final BitVector ignoredPackets = new BitVector(D2GSData.names.length); {
     ignoredPackets.set(D2GSData.EntitySync);
@@ -137,9 +140,18 @@ public class Server implements MessageProcessor {
   private final Main main; // FIXME: replace when Server is a PassiveSystem
 
   public Server(Main main, InetAddress address, int port) {
+    this(main, address, port, OutboundBatcher.DEFAULT_MTU);
+  }
+
+  public Server(Main main, InetAddress address, int port, int mtu) {
     this.main = main;
     this.address = address;
     this.port = port;
+    this.batcher = new OutboundBatcher(MAX_CLIENTS, mtu, PooledByteBufAllocator.DEFAULT);
+  }
+
+  public OutboundBatcher batcher() {
+    return batcher;
   }
 
   public ServerBootstrapConfig config() {
@@ -255,6 +267,7 @@ public class Server implements MessageProcessor {
 
   public void updateOutgoing(float delta) {
     assert outCache.isEmpty();
+    batcher.reset();
     int numCached = outPackets.drainTo(outCache);
     if (DEBUG_SENT_CACHE && numCached > 0) Gdx.app.debug(TAG, "Sending " + numCached + " packets...");
     for (OutboundPacket packet : outCache) {
@@ -265,7 +278,7 @@ public class Server implements MessageProcessor {
           if (!client.connected) continue;
           try {
             if (DEBUG_SENT_PACKETS && !ignoredPackets.get(packet.dataType())) Gdx.app.debug(TAG, "  " + "Dispatching packet to " + i);
-            sendMessage(i, packet);
+            queueMessage(i, client.channel, packet);
           } catch (Throwable t) {
             Gdx.app.error(TAG, t.getMessage(), t);
           }
@@ -273,6 +286,19 @@ public class Server implements MessageProcessor {
       }
     }
     outCache.clear();
+    batcher.flush();
+    if (DEBUG_BATCHING && batcher.messages() > 0) Gdx.app.debug(TAG, "Sent " + batcher);
+  }
+
+  /**
+   * Coalesces {@code packet} with the other packets sent to client {@code id}
+   * this tick, see {@link #updateOutgoing(float)}.
+   */
+  private void queueMessage(int id, Channel channel, OutboundPacket packet) {
+    batcher.add(id, channel, packet.buffer());
+    if ((connectedFlags & (1 << id)) == 0 && packet.dataType() == D2GSData.Connection) {
+      connectedFlags |= (1 << id);
+    }
   }
 
   private void sendMessage(int id, OutboundPacket packet) {
@@ -0,0 +1,77 @@
+package com.riiablo.onet.reliable;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AckQueueTest {
+  private static final int CAPACITY = 16;
+
+  /** feeds {@code queue} random offers and polls and compares it against a deque */
+  static void feed(AckQueue queue, long seed) {
+    final Random random = new Random(seed);
+    final ArrayDeque<Integer> expected = new ArrayDeque<>();
+    for (int i = 0; i < 1 << 16; i++) {
+      if (random.nextBoolean()) {
+        final int sequence = random.nextInt(Packet.USHORT_MAX_VALUE + 1);
+        final boolean full = expected.size() == CAPACITY;
+        assertEquals("offer " + i, !full, queue.offer(sequence));
+        if (!full) expected.add(sequence);
+      } else {
+        final Integer sequence = expected.poll();
+        assertEquals("poll " + i, sequence == null ? -1 : sequence, queue.poll());
+      }
+    }
+  }
+
+  @Test
+  public void matchesDeque() {
+    feed(new AckQueue(CAPACITY), 0);
+  }
+
+  @Test
+  public void matchesDequeAcrossIndexOverflow() {
+    final AckQueue queue = new AckQueue(CAPACITY);
+    queue.head = queue.tail = Integer.MAX_VALUE - CAPACITY / 2;
+    feed(queue, 1);
+  }
+
+  @Test
+  public void capacityIsRoundedToPowerOfTwo() {
+    final AckQueue queue = new AckQueue(CAPACITY - 1);
+    for (int i = 0; i < CAPACITY; i++) assertTrue(queue.offer(i));
+    assertFalse(queue.offer(CAPACITY));
+    queue.clear();
+    assertEquals(-1, queue.poll());
+    assertTrue(queue.offer(CAPACITY));
+    assertEquals(CAPACITY, queue.poll());
+  }
+
+  @Test
+  public void passesSequencesInOrderBetweenThreads() throws InterruptedException {
+    final AckQueue queue = new AckQueue(CAPACITY);
+    final int count = 1 << 20;
+    final Thread producer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        for (int i = 0; i < count; i++) {
+          final int sequence = i & Packet.USHORT_MAX_VALUE;
+          while (!queue.offer(sequence)) Thread.yield();
+        }
+      }
+    }, "AckQueueTest-producer");
+    producer.start();
+    for (int i = 0; i < count; i++) {
+      int sequence;
+      while ((sequence = queue.poll()) == -1) Thread.yield();
+      assertEquals(i & Packet.USHORT_MAX_VALUE, sequence);
+    }
+
+    producer.join();
+    assertEquals(-1, queue.poll());
+  }
+}
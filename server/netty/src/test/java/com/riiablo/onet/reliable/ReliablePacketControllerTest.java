@@ -0,0 +1,259 @@
+package com.riiablo.onet.reliable;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Random;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.math.MathUtils;
+
+import com.riiablo.onet.reliable.data.ReceivedPacketData;
+import com.riiablo.onet.reliable.data.SentPacketData;
+
+public class ReliablePacketControllerTest {
+  private static final int BUFFER_SIZE = 64;
+  private static final float TOLERANCE = 0.00001f;
+  private static final InetSocketAddress SENDER = new InetSocketAddress(0);
+
+  @BeforeClass
+  public static void setUpClass() {
+    new HeadlessApplication(new ApplicationAdapter() {});
+    Gdx.app.setLogLevel(Application.LOG_NONE);
+  }
+
+  @AfterClass
+  public static void tearDownClass() {
+    Gdx.app.exit();
+  }
+
+  EventLoopGroup group;
+  DatagramChannel ch;
+  ReliableConfiguration config;
+  MessageChannel channel;
+  ReliablePacketController controller;
+
+  @Before
+  public void setUp() throws InterruptedException {
+    group = new NioEventLoopGroup(1);
+    ch = new NioDatagramChannel();
+    group.register(ch).sync();
+
+    config = new ReliableConfiguration();
+    config.sentPacketBufferSize = BUFFER_SIZE;
+    config.receivedPacketBufferSize = BUFFER_SIZE;
+    channel = new MessageChannel(config, null) {
+      @Override public void reset() {}
+      @Override public void update(float delta, int channelId, DatagramChannel ch) {}
+      @Override public void sendMessage(int channelId, DatagramChannel ch, ByteBuf bb) {}
+      @Override public void onMessageReceived(ChannelHandlerContext ctx, DatagramPacket packet) {}
+      @Override public void onPacketTransmitted(ByteBuf bb) {}
+      @Override public void onAckProcessed(ChannelHandlerContext ctx, SocketAddress from, int sequence) {}
+      @Override public void onPacketProcessed(ChannelHandlerContext ctx, SocketAddress from, int sequence, ByteBuf bb) {}
+    };
+    controller = channel.controller();
+  }
+
+  @After
+  public void tearDown() {
+    ch.close();
+    group.shutdownGracefully();
+  }
+
+  /**
+   * Statistics of the controller computed by rescanning mirrors of its packet
+   * buffers on each update.
+   */
+  static class Rescan {
+    final ReliableConfiguration config;
+    final SequenceBuffer<SentPacketData> sentPackets;
+    final SequenceBuffer<ReceivedPacketData> receivedPackets;
+
+    float time;
+    float rtt;
+    float packetLoss;
+    float sentBandwidth;
+    float receivedBandwidth;
+    float ackedBandwidth;
+
+    Rescan(ReliableConfiguration config) {
+      this.config = config;
+      sentPackets = new SequenceBuffer<>(SentPacketData.class, config.sentPacketBufferSize);
+      receivedPackets = new SequenceBuffer<>(ReceivedPacketData.class, config.receivedPacketBufferSize);
+    }
+
+    void onPacketSent(int sequence, int packetSize) {
+      sentPackets.insert(sequence).set(time, packetSize);
+    }
+
+    void onPacketReceived(Packet.HeaderData header, int packetSize) {
+      final boolean isAck = Packet.isAck(header.flags);
+      final boolean isStale = !receivedPackets.testInsert(header.sequence);
+      if (!isStale && !isAck) receivedPackets.insert(header.sequence).set(time, packetSize);
+      if (isStale && !isAck) return;
+      for (int i = 0; i < Integer.SIZE; i++) {
+        if ((header.ackBits & (1 << i)) == 0) continue;
+        final SentPacketData data = sentPackets.find((header.ack - i) & Packet.USHORT_MAX_VALUE);
+        if (data == null || data.acked) continue;
+        data.acked = true;
+        final float rtt = (time - data.time) * 1000f;
+        if ((this.rtt == 0.0f && rtt > 0.0f) || MathUtils.isEqual(this.rtt, rtt, TOLERANCE)) {
+          this.rtt = rtt;
+        } else {
+          this.rtt += (rtt - this.rtt) * config.rttSmoothingFactor;
+        }
+      }
+    }
+
+    void update(float delta) {
+      time += delta;
+      int numDropped = 0;
+      int sentBytes = 0, ackedBytes = 0, receivedBytes = 0;
+      float sentStart = Float.MAX_VALUE, sentFinish = 0f;
+      float receivedStart = Float.MAX_VALUE, receivedFinish = 0f;
+      final int numSamples = sentPackets.numEntries / 2;
+      final int sentBase = (sentPackets.getSequence() - sentPackets.numEntries + 1) & Packet.USHORT_MAX_VALUE;
+      for (int i = 0; i < numSamples; i++) {
+        final SentPacketData data = sentPackets.find((sentBase + i) & Packet.USHORT_MAX_VALUE);
+        if (data == null) continue;
+        if (data.acked) {
+          ackedBytes += data.packetSize;
+        } else {
+          numDropped++;
+        }
+
+        sentBytes += data.packetSize;
+        sentStart = Math.min(sentStart, data.time);
+        sentFinish = Math.max(sentFinish, data.time);
+      }
+
+      final int receivedBase = (receivedPackets.getSequence() - receivedPackets.numEntries + 1) & Packet.USHORT_MAX_VALUE;
+      for (int i = 0, s = receivedPackets.numEntries / 2; i < s; i++) {
+        final ReceivedPacketData data = receivedPackets.find((receivedBase + i) & Packet.USHORT_MAX_VALUE);
+        if (data == null) continue;
+        receivedBytes += data.packetSize;
+        receivedStart = Math.min(receivedStart, data.time);
+        receivedFinish = Math.max(receivedFinish, data.time);
+      }
+
+      packetLoss = smooth(packetLoss, numDropped / (float) numSamples, config.packetLossSmoothingFactor);
+      sentBandwidth = smooth(sentBandwidth, bandwidth(sentBytes, sentStart, sentFinish), config.bandwidthSmoothingFactor);
+      receivedBandwidth = smooth(receivedBandwidth, bandwidth(receivedBytes, receivedStart, receivedFinish), config.bandwidthSmoothingFactor);
+      ackedBandwidth = smooth(ackedBandwidth, bandwidth(ackedBytes, sentStart, sentFinish), config.bandwidthSmoothingFactor);
+    }
+
+    static float bandwidth(int bytes, float startTime, float finishTime) {
+      if (startTime == Float.MAX_VALUE || finishTime <= startTime) return -1f;
+      return bytes / (finishTime - startTime) * 8f / 1000f;
+    }
+
+    static float smooth(float value, float sample, float factor) {
+      if (sample < 0f) return value;
+      return MathUtils.isEqual(value, sample, TOLERANCE) ? value + (sample - value) * factor : sample;
+    }
+  }
+
+  static void assertMatches(String step, Rescan expected, ReliablePacketController controller) {
+    assertEquals(step, expected.rtt, controller.rtt(), 0f);
+    assertEquals(step, expected.packetLoss, controller.packetLoss(), 0f);
+    assertEquals(step, expected.sentBandwidth, controller.sentBandwidth(), 0f);
+    assertEquals(step, expected.receivedBandwidth, controller.receivedBandwidth(), 0f);
+    assertEquals(step, expected.ackedBandwidth, controller.ackedBandwidth(), 0f);
+  }
+
+  void send(Rescan expected, int packetSize) {
+    controller.sendPacket(0, ch, Unpooled.wrappedBuffer(new byte[packetSize]));
+    expected.onPacketSent(channel.nextSequence(), packetSize);
+  }
+
+  void receive(Rescan expected, ByteBuf bb) {
+    final int packetSize = bb.readableBytes();
+    final Packet.HeaderData header = Packet.obtainData();
+    try {
+      assertTrue(Packet.readPacketHeader(config, bb.duplicate(), header) > 0);
+      expected.onPacketReceived(header, packetSize);
+    } finally {
+      header.free();
+    }
+
+    final DatagramPacket packet = new DatagramPacket(bb, null, SENDER);
+    controller.onPacketReceived(null, packet);
+    packet.release();
+  }
+
+  /**
+   * Sends and receives packets until the sequences of both have wrapped
+   * around. Received packets are mostly in order but include losses, late and
+   * duplicate packets and jumps further than the buffer s.t. entries are
+   * evicted, and ack random subsets of the packets recently sent.
+   */
+  void simulate(Rescan expected, long seed) {
+    final Random random = new Random(seed);
+    int received = 0;
+    for (int i = 0; i < (Packet.USHORT_MAX_VALUE + 1) * 5 / 4; i++) {
+      final float delta = random.nextInt(4) / 64f;
+      controller.update(delta);
+      expected.update(delta);
+      assertMatches("update " + i, expected, controller);
+
+      if (random.nextInt(4) > 0) send(expected, 1 + random.nextInt(config.fragmentThreshold));
+
+      final int roll = random.nextInt(100);
+      if (roll < 60) {
+        received++;
+      } else if (roll < 70) {
+        received += 2 + random.nextInt(8);
+      } else if (roll < 85) {
+        received -= random.nextInt(BUFFER_SIZE + 8);
+      } else if (roll < 90) {
+        received += BUFFER_SIZE / 2 + random.nextInt(2 * BUFFER_SIZE);
+      }
+
+      final int ack = (channel.nextSequence() - random.nextInt(2 * BUFFER_SIZE)) & Packet.USHORT_MAX_VALUE;
+      final int ackBits = random.nextInt(8) == 0 ? -1 : random.nextInt();
+      final ByteBuf bb = Unpooled.buffer();
+      if (roll < 95) {
+        Packet.writePacketHeader(bb, 0, received & Packet.USHORT_MAX_VALUE, ack, ackBits);
+        bb.writeZero(random.nextInt(config.fragmentThreshold));
+      } else {
+        Packet.writeAck(bb, 0, ack, ackBits);
+      }
+
+      receive(expected, bb);
+      assertMatches("receive " + i, expected, controller);
+    }
+  }
+
+  @Test
+  public void statisticsMatchRescan() {
+    simulate(new Rescan(config), 0);
+  }
+
+  @Test
+  public void statisticsMatchRescanAfterReset() {
+    final Rescan expected = new Rescan(config);
+    simulate(expected, 1);
+    controller.reset();
+    expected.sentPackets.reset();
+    expected.receivedPackets.reset();
+    simulate(expected, 2);
+  }
+}
@@ -0,0 +1,122 @@
+package com.riiablo.onet.reliable;
+
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.riiablo.onet.reliable.data.PacketData;
+
+public class SampleWindowTest {
+  private static final int BUFFER_SIZE = 64;
+  private static final int STEPS = 1 << 16;
+
+  private static SequenceBuffer<PacketData> newBuffer() {
+    return new SequenceBuffer<>(PacketData.class, BUFFER_SIZE);
+  }
+
+  /** totals of the older half of {@code buffer} computed by scanning it */
+  static class Rescan {
+    int samples;
+    int bytes;
+    float startTime = Float.MAX_VALUE;
+    float finishTime = 0f;
+
+    Rescan(SequenceBuffer<? extends PacketData> buffer) {
+      final int baseSequence = (buffer.getSequence() - buffer.numEntries + 1) & Packet.USHORT_MAX_VALUE;
+      for (int i = 0, s = buffer.numEntries / 2; i < s; i++) {
+        final PacketData data = buffer.find((baseSequence + i) & Packet.USHORT_MAX_VALUE);
+        if (data == null) continue;
+        samples++;
+        bytes += data.packetSize;
+        startTime = Math.min(startTime, data.time);
+        finishTime = Math.max(finishTime, data.time);
+      }
+    }
+
+    float bandwidth(int bytes) {
+      if (startTime == Float.MAX_VALUE || finishTime <= startTime) return -1f;
+      return bytes / (finishTime - startTime) * 8f / 1000f;
+    }
+  }
+
+  static void assertMatches(String step, SampleWindow<?> window) {
+    final Rescan expected = new Rescan(window.buffer);
+    assertEquals(step, expected.samples, window.samples);
+    assertEquals(step, expected.bytes, window.bytes);
+    assertEquals(step, expected.startTime, window.startTime(), 0f);
+    assertEquals(step, expected.bandwidth(expected.bytes), window.bandwidth(window.bytes), 0f);
+  }
+
+  /**
+   * Feeds {@code window} packets starting just before the sequence wraps,
+   * mostly in order but with losses, late and duplicate packets and jumps
+   * further than the buffer s.t. entries are evicted.
+   */
+  static void feed(SampleWindow<?> window, long seed, boolean ordered) {
+    final Random random = new Random(seed);
+    int sequence = Packet.USHORT_MAX_VALUE - BUFFER_SIZE;
+    int newest = sequence;
+    float time = 0f;
+    for (int i = 0; i < STEPS; i++) {
+      time += random.nextInt(4) / 64f;
+      final int roll = random.nextInt(100);
+      if (roll < 70) {
+        sequence = newest + 1;
+      } else if (roll < 80) {
+        sequence = newest + 2 + random.nextInt(8);
+      } else if (roll < 95) {
+        sequence = newest - random.nextInt(BUFFER_SIZE + 8);
+      } else {
+        sequence = newest + BUFFER_SIZE / 2 + random.nextInt(2 * BUFFER_SIZE);
+      }
+
+      sequence &= Packet.USHORT_MAX_VALUE;
+      if (ReliableUtils.sequenceGreaterThan(sequence, newest)) {
+        newest = sequence;
+      } else if (ordered) {
+        continue;
+      }
+
+      window.insert(sequence, time, 1 + random.nextInt(1024));
+      assertMatches("step " + i + " sequence " + sequence, window);
+    }
+  }
+
+  @Test
+  public void totalsMatchRescanOfOrderedPackets() {
+    for (long seed = 0; seed < 4; seed++) {
+      feed(new SampleWindow<>(newBuffer()), seed, true);
+    }
+  }
+
+  @Test
+  public void totalsMatchRescanOfReorderedPackets() {
+    for (long seed = 0; seed < 4; seed++) {
+      feed(new SampleWindow<>(newBuffer()), seed, false);
+    }
+  }
+
+  @Test
+  public void totalsMatchRescanAfterReset() {
+    final SequenceBuffer<PacketData> buffer = newBuffer();
+    final SampleWindow<PacketData> window = new SampleWindow<>(buffer);
+    feed(window, 0, false);
+    buffer.reset();
+    window.reset();
+    assertMatches("reset", window);
+    feed(window, 1, false);
+  }
+
+  @Test
+  public void rejectsPacketsOlderThanBuffer() {
+    final SequenceBuffer<PacketData> buffer = newBuffer();
+    final SampleWindow<PacketData> window = new SampleWindow<>(buffer);
+    for (int i = -BUFFER_SIZE; i < BUFFER_SIZE; i++) window.insert(i, 0f, 1);
+    assertNull(window.insert(-BUFFER_SIZE - 1, 0f, 1));
+    assertEquals(BUFFER_SIZE / 2, window.samples);
+    assertEquals(BUFFER_SIZE / 2, window.bytes);
+    assertMatches("stale", window);
+  }
+}
@@ -0,0 +1,78 @@
+package com.riiablo.onet.reliable;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SequenceBufferTest {
+  private static final int BUFFER_SIZE = 256;
+
+  public static class Entry {}
+
+  private static SequenceBuffer<Entry> newBuffer() {
+    return new SequenceBuffer<>(Entry.class, BUFFER_SIZE);
+  }
+
+  @Test
+  public void insertsAcrossWraparound() {
+    SequenceBuffer<Entry> buffer = newBuffer();
+    for (int i = -6; i < 6; i++) assertNotNull(buffer.insert(i & Packet.USHORT_MAX_VALUE));
+    for (int i = -6; i < 6; i++) assertTrue(buffer.exists(i));
+    assertEquals(6, buffer.getSequence());
+    assertEquals(5, buffer.generateAck());
+    assertEquals(0xFFF, buffer.generateAckBits(5));
+  }
+
+  @Test
+  public void removesEntriesAcrossWraparound() {
+    SequenceBuffer<Entry> buffer = newBuffer();
+    for (int i = -6; i < 6; i++) buffer.insert(i & Packet.USHORT_MAX_VALUE);
+    buffer.removeEntries(65534, 1);
+    assertTrue(buffer.exists(65533));
+    assertFalse(buffer.exists(65534));
+    assertFalse(buffer.exists(65535));
+    assertFalse(buffer.exists(0));
+    assertFalse(buffer.exists(1));
+    assertTrue(buffer.exists(2));
+  }
+
+  @Test
+  public void clearsStaleEntriesWhenSequenceWraps() {
+    SequenceBuffer<Entry> buffer = newBuffer();
+    buffer.insert(65290); // index 10
+    buffer.insert(65500);
+    assertTrue(buffer.exists(65290));
+
+    // removes 65501..20 (indexes 221..255 and 0..20)
+    buffer.insert(20);
+    assertEquals(21, buffer.getSequence());
+    assertFalse("stale entry at index 10 must be removed", buffer.exists(65290));
+    assertTrue(buffer.available(10));
+    assertNull(buffer.find(65290));
+    assertTrue(buffer.exists(65500));
+    assertTrue(buffer.exists(20));
+  }
+
+  @Test
+  public void clearsAllEntriesWhenJumpExceedsBuffer() {
+    SequenceBuffer<Entry> buffer = newBuffer();
+    buffer.insert(65500);
+    buffer.insert((65500 + BUFFER_SIZE + 44) & Packet.USHORT_MAX_VALUE);
+    assertFalse(buffer.exists(65500));
+    assertTrue(buffer.exists((65500 + BUFFER_SIZE + 44) & Packet.USHORT_MAX_VALUE));
+  }
+
+  @Test
+  public void rejectsSequencesOlderThanBufferAcrossWraparound() {
+    SequenceBuffer<Entry> buffer = newBuffer();
+    for (int i = -6; i < 6; i++) buffer.insert(i & Packet.USHORT_MAX_VALUE);
+    assertTrue(buffer.testInsert(65535));
+    assertTrue(buffer.testInsert((6 - BUFFER_SIZE) & Packet.USHORT_MAX_VALUE));
+    assertFalse(buffer.testInsert((5 - BUFFER_SIZE) & Packet.USHORT_MAX_VALUE));
+    assertNull(buffer.insert((5 - BUFFER_SIZE) & Packet.USHORT_MAX_VALUE));
+  }
+}
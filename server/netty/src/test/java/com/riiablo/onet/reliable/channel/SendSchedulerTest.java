@@ -0,0 +1,103 @@
+package com.riiablo.onet.reliable.channel;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import com.riiablo.onet.reliable.Priority;
+import com.riiablo.onet.reliable.ReliableConfiguration;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SendSchedulerTest {
+  private ReliableConfiguration config;
+
+  @Before
+  public void setUp() {
+    config = new ReliableConfiguration();
+    config.initialBandwidth = 1000;
+    config.minBandwidth = 300;
+    config.maxBandwidth = 1500;
+    config.bandwidthIncrease = 100;
+    config.bandwidthBurst = 0.1f; // 100 tokens at initialBandwidth
+  }
+
+  private static ByteBuf message(int size) {
+    return Unpooled.wrappedBuffer(new byte[size]);
+  }
+
+  @Test
+  public void sendsHigherPrioritiesFirst() {
+    SendScheduler scheduler = new SendScheduler(config);
+    ByteBuf bulk = message(1), event = message(1), movement = message(1);
+    scheduler.offer(bulk, Priority.Bulk, 0.0f);
+    scheduler.offer(event, Priority.Event, 0.0f);
+    scheduler.offer(movement, Priority.Movement, 0.0f);
+    assertEquals(1, scheduler.depth(Priority.Bulk));
+
+    assertSame(movement, scheduler.poll(0.0f));
+    assertSame(event, scheduler.poll(0.0f));
+    assertSame(bulk, scheduler.poll(0.0f));
+    assertNull(scheduler.poll(0.0f));
+    assertTrue(scheduler.isEmpty());
+  }
+
+  @Test
+  public void agesLowerPrioritiesPastMaxDelay() {
+    SendScheduler scheduler = new SendScheduler(config);
+    ByteBuf bulk = message(1);
+    scheduler.offer(bulk, Priority.Bulk, 0.0f);
+    for (int i = 0; i < 4; i++) scheduler.offer(message(1), Priority.Movement, 0.0f);
+
+    final float waited = Priority.Bulk.maxDelay;
+    assertNotSame(bulk, scheduler.poll(waited / 2));
+    assertNotSame(bulk, scheduler.poll(waited / 2));
+    assertSame("bulk must be sent once it waited maxDelay", bulk, scheduler.poll(waited));
+    assertEquals(2, scheduler.depth(Priority.Movement));
+    assertEquals(waited, scheduler.maxLatency(Priority.Bulk), 1e-6f);
+  }
+
+  @Test
+  public void refillsTokenBucket() {
+    SendScheduler scheduler = new SendScheduler(config);
+    assertEquals(100.0f, scheduler.tokens(), 1e-3f);
+    for (int i = 0; i < 3; i++) scheduler.offer(message(60), Priority.Event, 0.0f);
+
+    assertNotNull(scheduler.poll(0.0f));
+    assertNotNull("message larger than remaining tokens is still sent", scheduler.poll(0.0f));
+    assertEquals(-20.0f, scheduler.tokens(), 1e-3f);
+    assertNull("deficit must be paid back first", scheduler.poll(0.0f));
+
+    scheduler.update(0.01f, 0.0f, 0.0f);
+    assertNull(scheduler.poll(0.01f));
+    scheduler.update(0.02f, 0.0f, 0.0f);
+    assertEquals(10.0f, scheduler.tokens(), 1e-3f);
+    assertNotNull(scheduler.poll(0.03f));
+    assertEquals(180L, scheduler.sentBytes(Priority.Event));
+
+    scheduler.update(1.0f, 0.0f, 0.0f); // refill is capped at the burst
+    assertEquals(scheduler.bandwidth() * config.bandwidthBurst, scheduler.tokens(), 1e-3f);
+  }
+
+  @Test
+  public void adjustsBandwidthOncePerRoundTrip() {
+    SendScheduler scheduler = new SendScheduler(config);
+    scheduler.update(0.1f, 100.0f, 0.0f);
+    assertEquals(1100.0f, scheduler.bandwidth(), 1e-3f);
+
+    scheduler.update(0.1f, config.congestionRtt, 0.0f);
+    assertEquals("rtt not elapsed", 1100.0f, scheduler.bandwidth(), 1e-3f);
+    scheduler.update(0.2f, config.congestionRtt, 0.0f);
+    assertEquals(550.0f, scheduler.bandwidth(), 1e-3f);
+    scheduler.update(0.3f, 0.0f, config.congestionPacketLoss);
+    assertEquals(config.minBandwidth, scheduler.bandwidth(), 1e-3f);
+    assertEquals(2, scheduler.congestionEvents());
+  }
+}
@@ -0,0 +1,219 @@
+package com.riiablo.onet.tcp;
+
+import com.google.flatbuffers.FlatBufferBuilder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class TcpServerTest {
+  static final int MAX_CLIENTS = 2;
+  static final int TIMEOUT_MILLIS = 5000;
+
+  static final byte[] ACCEPTED = "accepted".getBytes(StandardCharsets.US_ASCII);
+  static final byte[] DENIED = "denied".getBytes(StandardCharsets.US_ASCII);
+
+  TcpServer server;
+  Handler handler;
+  Response response;
+
+  @BeforeClass
+  public static void setUpClass() {
+    new HeadlessApplication(new ApplicationAdapter() {});
+  }
+
+  @AfterClass
+  public static void tearDownClass() {
+    Gdx.app.exit();
+  }
+
+  @Before
+  public void setUp() throws InterruptedException {
+    response = new Response();
+    handler = new Handler(response);
+    server = new TcpServer("TcpServerTest", 0, MAX_CLIENTS, handler);
+    server.start();
+  }
+
+  @After
+  public void tearDown() {
+    server.dispose();
+    response.invalidate();
+  }
+
+  /** responds to every request with the cached response */
+  static class Handler implements TcpServer.Handler {
+    final CachedResponse response;
+    final BlockingQueue<Channel> closed = new LinkedBlockingQueue<>();
+
+    Handler(CachedResponse response) {
+      this.response = response;
+    }
+
+    @Override
+    public ByteBuf connectionAccepted(Channel ch) {
+      return Unpooled.wrappedBuffer(ACCEPTED);
+    }
+
+    @Override
+    public ByteBuf connectionDenied(Channel ch, String reason) {
+      return Unpooled.wrappedBuffer(DENIED);
+    }
+
+    @Override
+    public void connectionClosed(Channel ch) {
+      closed.add(ch);
+    }
+
+    @Override
+    public void processPacket(ChannelHandlerContext ctx, SocketAddress from, ByteBuf bb) {
+      ctx.writeAndFlush(response.get());
+    }
+  }
+
+  /** finished string tagged with the number of times it has been built */
+  static class Response extends CachedResponse {
+    Response() {
+      super(UnpooledByteBufAllocator.DEFAULT);
+    }
+
+    @Override
+    protected void build(FlatBufferBuilder builder) {
+      builder.finish(builder.createString("response-" + builds));
+    }
+
+    byte[] bytes() {
+      ByteBuf response = get();
+      try {
+        return ByteBufUtil.getBytes(response);
+      } finally {
+        response.release();
+      }
+    }
+  }
+
+  Socket connect() throws IOException {
+    int port = ((InetSocketAddress) server.server.localAddress()).getPort();
+    Socket socket = new Socket("localhost", port);
+    socket.setSoTimeout(TIMEOUT_MILLIS);
+    return socket;
+  }
+
+  static byte[] read(Socket socket, int length) throws IOException {
+    byte[] bytes = new byte[length];
+    new DataInputStream(socket.getInputStream()).readFully(bytes);
+    return bytes;
+  }
+
+  static byte[] request(Socket socket, int responseLength) throws IOException {
+    OutputStream out = socket.getOutputStream();
+    out.write(1);
+    out.flush();
+    return read(socket, responseLength);
+  }
+
+  @Test
+  public void acceptsClients() throws IOException {
+    try (Socket a = connect(); Socket b = connect()) {
+      assertArrayEquals(ACCEPTED, read(a, ACCEPTED.length));
+      assertArrayEquals(ACCEPTED, read(b, ACCEPTED.length));
+      assertEquals(MAX_CLIENTS, server.numClients());
+    }
+  }
+
+  @Test
+  public void deniesClientsBeyondMaxClients() throws IOException {
+    try (Socket a = connect(); Socket b = connect()) {
+      assertArrayEquals(ACCEPTED, read(a, ACCEPTED.length));
+      assertArrayEquals(ACCEPTED, read(b, ACCEPTED.length));
+      try (Socket c = connect()) {
+        assertArrayEquals(DENIED, read(c, DENIED.length));
+        assertEquals("denied client is disconnected", -1, c.getInputStream().read());
+      }
+
+      assertEquals(MAX_CLIENTS, server.numClients());
+    }
+  }
+
+  @Test
+  public void notifiesClosedConnections() throws IOException, InterruptedException {
+    try (Socket a = connect()) {
+      read(a, ACCEPTED.length);
+    }
+
+    assertNotNull(handler.closed.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void sharesCachedResponseAcrossClients() throws IOException {
+    final byte[] expected = response.bytes();
+    try (Socket a = connect(); Socket b = connect()) {
+      read(a, ACCEPTED.length);
+      read(b, ACCEPTED.length);
+      assertArrayEquals(expected, request(a, expected.length));
+      assertArrayEquals(expected, request(b, expected.length));
+      assertArrayEquals(expected, request(a, expected.length));
+    }
+
+    assertEquals(1, response.builds);
+    assertEquals(3, response.hits);
+  }
+
+  @Test
+  public void rebuildsInvalidatedResponse() throws IOException {
+    final byte[] before = response.bytes();
+    try (Socket a = connect()) {
+      read(a, ACCEPTED.length);
+      assertArrayEquals(before, request(a, before.length));
+
+      response.invalidate();
+      final byte[] after = response.bytes();
+      assertFalse(Arrays.equals(before, after));
+      assertArrayEquals(after, request(a, after.length));
+    }
+
+    assertEquals(2, response.builds);
+  }
+
+  @Test
+  public void invalidatedResponseOutlivesDuplicates() {
+    final ByteBuf duplicate = response.get();
+    final ByteBuf cached = response.cached;
+    final byte[] expected = ByteBufUtil.getBytes(duplicate);
+    response.invalidate();
+    assertEquals(1, cached.refCnt());
+    assertArrayEquals(expected, ByteBufUtil.getBytes(duplicate));
+    assertTrue(duplicate.release());
+    assertEquals(0, cached.refCnt());
+  }
+}
@@ -0,0 +1,136 @@
+package com.riiablo.server.d2gs_netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OutboundBatcherTest {
+  private static final int MTU = 256;
+
+  private OutboundBatcher batcher;
+  private EmbeddedChannel channel;
+  private EmbeddedChannel other;
+
+  @Before
+  public void setUp() {
+    batcher = new OutboundBatcher(2, MTU, UnpooledByteBufAllocator.DEFAULT);
+    channel = new EmbeddedChannel();
+    other = new EmbeddedChannel();
+  }
+
+  @After
+  public void tearDown() {
+    channel.finishAndReleaseAll();
+    other.finishAndReleaseAll();
+  }
+
+  /** message of {@code length} bytes, each equal to {@code seq} */
+  private static ByteBuffer message(int seq, int length) {
+    ByteBuffer message = ByteBuffer.allocate(length);
+    for (int i = 0; i < length; i++) message.put((byte) seq);
+    message.flip();
+    return message;
+  }
+
+  /** reads and releases the frames flushed to {@code channel} */
+  private static List<byte[]> frames(EmbeddedChannel channel) {
+    List<byte[]> frames = new ArrayList<>();
+    for (ByteBuf frame; (frame = channel.readOutbound()) != null;) {
+      byte[] bytes = new byte[frame.readableBytes()];
+      frame.readBytes(bytes);
+      frame.release();
+      frames.add(bytes);
+    }
+
+    return frames;
+  }
+
+  @Test
+  public void coalescesMessagesIntoOneFramePerFlush() {
+    ByteBuffer message = message(1, 32);
+    for (int i = 0; i < 4; i++) batcher.add(0, channel, message);
+    batcher.add(1, other, message);
+    assertEquals("message position must not change", 0, message.position());
+    assertNull("nothing is flushed before the end of the tick", channel.readOutbound());
+
+    batcher.flush();
+    List<byte[]> frames = frames(channel);
+    assertEquals(1, frames.size());
+    assertEquals(4 * 32, frames.get(0).length);
+    assertEquals(1, frames(other).size());
+    assertEquals(5, batcher.messages());
+    assertEquals(2, batcher.frames());
+    assertEquals(2, batcher.syscalls());
+    assertEquals(5 * 32, batcher.bytes());
+  }
+
+  @Test
+  public void splitsFramesAtMtu() {
+    for (int i = 0; i < 5; i++) batcher.add(0, channel, message(i, 100));
+    batcher.flush();
+    List<byte[]> frames = frames(channel);
+    assertEquals(3, frames.size());
+    assertEquals(200, frames.get(0).length);
+    assertEquals(200, frames.get(1).length);
+    assertEquals(100, frames.get(2).length);
+    for (byte[] frame : frames) assertTrue(frame.length <= MTU);
+    assertEquals(3, batcher.frames());
+    assertEquals(1, batcher.syscalls());
+  }
+
+  @Test
+  public void sendsOversizedMessageAlone() {
+    batcher.add(0, channel, message(0, 100));
+    batcher.add(0, channel, message(1, MTU + 44));
+    batcher.add(0, channel, message(2, 100));
+    batcher.flush();
+    List<byte[]> frames = frames(channel);
+    assertEquals(3, frames.size());
+    assertEquals(100, frames.get(0).length);
+    assertEquals(MTU + 44, frames.get(1).length);
+    assertEquals(100, frames.get(2).length);
+    for (int i = 0; i < frames.size(); i++) {
+      for (byte b : frames.get(i)) assertEquals(i, b);
+    }
+  }
+
+  @Test
+  public void preservesOrderAcrossBatches() {
+    final int ticks = 3, perTick = 20, length = 30;
+    int seq = 0;
+    List<byte[]> frames = new ArrayList<>();
+    for (int tick = 0; tick < ticks; tick++) {
+      for (int i = 0; i < perTick; i++) batcher.add(0, channel, message(seq++, length));
+      batcher.flush();
+      batcher.reset();
+      frames.addAll(frames(channel));
+    }
+
+    assertTrue(frames.size() > ticks);
+    int expected = 0, offset = 0;
+    for (byte[] frame : frames) {
+      assertEquals("frames must contain whole messages", 0, frame.length % length);
+      for (byte b : frame) {
+        assertEquals((byte) expected, b);
+        if (++offset == length) {
+          offset = 0;
+          expected++;
+        }
+      }
+    }
+
+    assertEquals(seq, expected);
+  }
+}
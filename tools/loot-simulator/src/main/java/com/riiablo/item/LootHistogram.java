@@ -0,0 +1,98 @@
+package com.riiablo.item;
+
+import com.riiablo.Riiablo;
+
+/**
+ * Tallies {@link Drops} as they are rolled, s.t. simulating a treasure class
+ * never creates {@link Item} instances. Histograms of the same
+ * {@link QualityTables} can be {@link #merge(LootHistogram) merged}.
+ */
+public class LootHistogram {
+  static final Quality[] QUALITIES = Quality.values();
+  static final int NUM_QUALITIES = QUALITIES.length;
+
+  final QualityTables qualities;
+
+  long runs;
+  long drops;
+  final long[] byQuality;
+  /** indexed by {@code base * NUM_QUALITIES + quality} */
+  final long[] byBase;
+  final long[] uniques;
+  final long[] sets;
+  /** magic and rare affixes by id, where id 0 counts missing affixes */
+  final long[] prefixes;
+  final long[] suffixes;
+
+  public LootHistogram(QualityTables qualities) {
+    this.qualities = qualities;
+    byQuality = new long[NUM_QUALITIES];
+    byBase = new long[qualities.treasureClasses.numBases() * NUM_QUALITIES];
+    // magic affix ids start at 1
+    uniques = new long[Riiablo.files.UniqueItems.size() + 1];
+    sets = new long[Riiablo.files.SetItems.size() + 1];
+    prefixes = new long[Riiablo.files.MagicPrefix.size() + 1];
+    suffixes = new long[Riiablo.files.MagicSuffix.size() + 1];
+  }
+
+  public long runs() {
+    return runs;
+  }
+
+  public long drops() {
+    return drops;
+  }
+
+  public long count(Quality quality) {
+    return byQuality[quality.ordinal()];
+  }
+
+  /** Counts one roll of a treasure class and every item it dropped. */
+  public void add(Drops drops) {
+    runs++;
+    this.drops += drops.size;
+    for (int i = 0; i < drops.size; i++) {
+      final Quality quality = drops.qualities[i];
+      final int q = quality.ordinal();
+      byQuality[q]++;
+      byBase[drops.bases[i] * NUM_QUALITIES + q]++;
+      final int qualityId = drops.qualityIds[i];
+      switch (quality) {
+        case UNIQUE:
+          uniques[qualityId]++;
+          break;
+        case SET:
+          sets[qualityId]++;
+          break;
+        case MAGIC:
+          prefixes[qualityId & Item.MAGIC_AFFIX_MASK]++;
+          suffixes[qualityId >>> Item.MAGIC_AFFIX_SIZE]++;
+          break;
+        case RARE:
+          for (int j = i * Drops.MAX_AFFIXES, s = j + Drops.MAX_AFFIXES; j < s; j++) {
+            prefixes[drops.prefixes[j]]++;
+            suffixes[drops.suffixes[j]]++;
+          }
+          break;
+        default:
+      }
+    }
+  }
+
+  public LootHistogram merge(LootHistogram other) {
+    assert qualities == other.qualities : "histograms of different tables";
+    runs += other.runs;
+    drops += other.drops;
+    merge(byQuality, other.byQuality);
+    merge(byBase, other.byBase);
+    merge(uniques, other.uniques);
+    merge(sets, other.sets);
+    merge(prefixes, other.prefixes);
+    merge(suffixes, other.suffixes);
+    return this;
+  }
+
+  static void merge(long[] dst, long[] src) {
+    for (int i = 0; i < dst.length; i++) dst[i] += src[i];
+  }
+}
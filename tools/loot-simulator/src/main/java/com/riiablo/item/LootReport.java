@@ -0,0 +1,195 @@
+package com.riiablo.item;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.JsonWriter;
+
+import com.riiablo.Riiablo;
+
+/**
+ * Writes the drop frequencies of simulated treasure classes as CSV or JSON.
+ * Every row is a kind of drop (quality, base, unique, set, prefix or suffix),
+ * how many times it dropped, how many it dropped per run and how many runs it
+ * took per drop, e.g., runs per Shako.
+ */
+public class LootReport {
+  public enum Format {
+    CSV,
+    JSON;
+  }
+
+  static final String[] CSV_HEADER = {
+      "tc", "players", "ilvl", "mf", "runs", "kind", "key", "quality", "count", "per_run", "runs_per_drop"
+  };
+
+  final Array<Result> results = new Array<>();
+
+  public void add(String tc, int players, int ilvl, int magicFind, LootHistogram histogram) {
+    results.add(new Result(tc, players, ilvl, magicFind, histogram));
+  }
+
+  public void write(Format format, Writer out) throws IOException {
+    switch (format) {
+      case CSV:
+        writeCsv(out);
+        break;
+      case JSON:
+        writeJson(out);
+        break;
+      default:
+        throw new AssertionError(format);
+    }
+
+    out.flush();
+  }
+
+  public void writeCsv(Writer out) throws IOException {
+    writeCsvRow(out, CSV_HEADER);
+    final String[] row = new String[CSV_HEADER.length];
+    for (Result result : results) {
+      row[0] = result.tc;
+      row[1] = Integer.toString(result.players);
+      row[2] = Integer.toString(result.ilvl);
+      row[3] = Integer.toString(result.magicFind);
+      row[4] = Long.toString(result.histogram.runs);
+      for (Row r : result.rows()) {
+        row[5] = r.kind;
+        row[6] = r.key;
+        row[7] = r.quality;
+        row[8] = Long.toString(r.count);
+        row[9] = format(r.perRun);
+        row[10] = format(r.runsPerDrop);
+        writeCsvRow(out, row);
+      }
+    }
+  }
+
+  static void writeCsvRow(Writer out, String[] row) throws IOException {
+    for (int i = 0; i < row.length; i++) {
+      if (i > 0) out.write(',');
+      out.write(escapeCsv(row[i]));
+    }
+
+    out.write('\n');
+  }
+
+  static String escapeCsv(String value) {
+    if (value == null) return "";
+    if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) return value;
+    return '"' + value.replace("\"", "\"\"") + '"';
+  }
+
+  static String format(double value) {
+    return String.format(Locale.ROOT, "%.6g", value);
+  }
+
+  public void writeJson(Writer out) throws IOException {
+    JsonWriter json = new JsonWriter(out);
+    json.setOutputType(JsonWriter.OutputType.json);
+    json.array();
+    for (Result result : results) {
+      final LootHistogram histogram = result.histogram;
+      json.object()
+          .set("tc", result.tc)
+          .set("players", result.players)
+          .set("ilvl", result.ilvl)
+          .set("mf", result.magicFind)
+          .set("runs", histogram.runs)
+          .set("drops", histogram.drops);
+      json.array("entries");
+      for (Row r : result.rows()) {
+        json.object()
+            .set("kind", r.kind)
+            .set("key", r.key);
+        if (r.quality != null) json.set("quality", r.quality);
+        json.set("count", r.count)
+            .set("per_run", r.perRun)
+            .set("runs_per_drop", r.runsPerDrop)
+            .pop();
+      }
+
+      json.pop();
+      json.pop();
+    }
+
+    json.pop();
+    out.write('\n');
+  }
+
+  static final class Result {
+    final String tc;
+    final int players;
+    final int ilvl;
+    final int magicFind;
+    final LootHistogram histogram;
+
+    Result(String tc, int players, int ilvl, int magicFind, LootHistogram histogram) {
+      this.tc = tc;
+      this.players = players;
+      this.ilvl = ilvl;
+      this.magicFind = magicFind;
+      this.histogram = histogram;
+    }
+
+    /** @return rows of everything which dropped at least once */
+    Array<Row> rows() {
+      final LootHistogram h = histogram;
+      final Array<Row> rows = new Array<>();
+      for (Quality quality : LootHistogram.QUALITIES) {
+        add(rows, "quality", quality.name(), null, h.byQuality[quality.ordinal()]);
+      }
+
+      final TreasureClasses tcs = h.qualities.treasureClasses;
+      for (int i = 0; i < h.byBase.length; i++) {
+        final String code = tcs.base(i / LootHistogram.NUM_QUALITIES).code;
+        final Quality quality = LootHistogram.QUALITIES[i % LootHistogram.NUM_QUALITIES];
+        add(rows, "base", code, quality.name(), h.byBase[i]);
+      }
+
+      for (int i = 0; i < h.uniques.length; i++) {
+        if (h.uniques[i] > 0) add(rows, "unique", Riiablo.files.UniqueItems.get(i).index, null, h.uniques[i]);
+      }
+
+      for (int i = 0; i < h.sets.length; i++) {
+        if (h.sets[i] > 0) add(rows, "set", Riiablo.files.SetItems.get(i).index, null, h.sets[i]);
+      }
+
+      for (int i = 1; i < h.prefixes.length; i++) {
+        if (h.prefixes[i] > 0) add(rows, "prefix", Riiablo.files.MagicPrefix.get(i).name, null, h.prefixes[i]);
+      }
+
+      for (int i = 1; i < h.suffixes.length; i++) {
+        if (h.suffixes[i] > 0) add(rows, "suffix", Riiablo.files.MagicSuffix.get(i).name, null, h.suffixes[i]);
+      }
+
+      return rows;
+    }
+
+    void add(Array<Row> rows, String kind, String key, String quality, long count) {
+      if (count <= 0) return;
+      final double runs = histogram.runs;
+      rows.add(new Row(kind, key, quality, count, count / runs, runs / count));
+    }
+  }
+
+  static final class Row {
+    final String kind;
+    final String key;
+    final String quality;
+    final long count;
+    final double perRun;
+    final double runsPerDrop;
+
+    Row(String kind, String key, String quality, long count, double perRun, double runsPerDrop) {
+      this.kind = kind;
+      this.key = key;
+      this.quality = quality;
+      this.count = count;
+      this.perRun = perRun;
+      this.runsPerDrop = runsPerDrop;
+    }
+  }
+}
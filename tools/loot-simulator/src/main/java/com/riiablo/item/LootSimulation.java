@@ -0,0 +1,82 @@
+package com.riiablo.item;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.badlogic.gdx.math.RandomXS128;
+
+/**
+ * Rolls a treasure class many times on a {@link ForkJoinPool}. Runs are split
+ * into fixed size chunks, each rolled by its own {@link DropGenerator} seeded
+ * from the simulation seed and the chunk index, s.t. the same seed produces
+ * the same histogram regardless of the number of threads.
+ */
+public class LootSimulation {
+  static final int CHUNK_SIZE = 1 << 16;
+
+  final QualityTables qualities;
+  final int tc;
+  final int players;
+  final int ilvl;
+  final int magicFind;
+
+  public LootSimulation(QualityTables qualities, int tc, int players, int ilvl, int magicFind) {
+    this.qualities = qualities;
+    this.tc = tc;
+    this.players = players;
+    this.ilvl = ilvl;
+    this.magicFind = magicFind;
+  }
+
+  public LootHistogram run(ForkJoinPool pool, long runs, long seed) {
+    final long chunks = (runs + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    if (chunks == 0) return new LootHistogram(qualities);
+    return pool.invoke(new Chunks(runs, seed, 0, chunks));
+  }
+
+  static long seed(long seed, long chunk) {
+    return seed ^ (chunk * 0x9E3779B97F4A7C15L);
+  }
+
+  LootHistogram roll(long seed, long runs) {
+    final LootHistogram histogram = new LootHistogram(qualities);
+    final DropGenerator generator = new DropGenerator(qualities, new RandomXS128(seed));
+    final Drops drops = new Drops();
+    for (long i = 0; i < runs; i++) {
+      generator.roll(tc, players, ilvl, magicFind, drops);
+      histogram.add(drops);
+    }
+
+    return histogram;
+  }
+
+  final class Chunks extends RecursiveTask<LootHistogram> {
+    private static final long serialVersionUID = 1L;
+
+    final long runs;
+    final long seed;
+    final long from;
+    final long to;
+
+    Chunks(long runs, long seed, long from, long to) {
+      this.runs = runs;
+      this.seed = seed;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected LootHistogram compute() {
+      if (to - from == 1) {
+        final long runs = Math.min(CHUNK_SIZE, this.runs - from * CHUNK_SIZE);
+        return roll(LootSimulation.seed(seed, from), runs);
+      }
+
+      final long mid = (from + to) >>> 1;
+      final Chunks right = new Chunks(runs, seed, mid, to);
+      right.fork();
+      final LootHistogram left = new Chunks(runs, seed, from, mid).compute();
+      return left.merge(right.join());
+    }
+  }
+}
@@ -0,0 +1,220 @@
+package com.riiablo.item;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.StreamUtils;
+
+import com.riiablo.Files;
+import com.riiablo.Riiablo;
+import com.riiablo.logger.AsyncOutputStreamAppender;
+import com.riiablo.logger.Level;
+import com.riiablo.logger.LogManager;
+import com.riiablo.logger.Logger;
+import com.riiablo.mpq.MPQFileHandleResolver;
+import com.riiablo.tool.HeadlessTool;
+import com.riiablo.tool.Tool;
+import com.riiablo.util.InstallationFinder;
+
+public class LootSimulatorTool extends Tool {
+  private static final Logger log = LogManager.getLogger(LootSimulatorTool.class);
+
+  public static void main(String[] args) {
+    // the report is written to stdout unless an output is given
+    LogManager.getRegistry().setRootAppender(new AsyncOutputStreamAppender(System.err));
+    LogManager.setLevel(LootSimulatorTool.class.getCanonicalName(), Level.INFO);
+    HeadlessTool.create(LootSimulatorTool.class, "loot-simulator", args).start();
+  }
+
+  @Override
+  protected String getHelpHeader() {
+    return "Rolls treasure classes and reports how often each item drops.\n" +
+        "E.g., {cmd} -n 10000000 -p 8 -m 300 -o mephisto.csv \"Mephisto (H)\"";
+  }
+
+  @Override
+  protected void createCliOptions(Options options) {
+    super.createCliOptions(options);
+
+    options.addOption(Option
+        .builder("d")
+        .longOpt("d2")
+        .desc("directory containing D2 MPQ files")
+        .hasArg()
+        .argName("path")
+        .build());
+
+    options.addOption(Option
+        .builder("n")
+        .longOpt("runs")
+        .desc("number of times each treasure class is rolled (default 1000000)")
+        .hasArg()
+        .argName("runs")
+        .build());
+
+    options.addOption(Option
+        .builder("p")
+        .longOpt("players")
+        .desc("number of players NoDrop is adjusted for (default 1)")
+        .hasArg()
+        .argName("players")
+        .build());
+
+    options.addOption(Option
+        .builder("m")
+        .longOpt("mf")
+        .desc("magic find of the player (default 0)")
+        .hasArg()
+        .argName("percent")
+        .build());
+
+    options.addOption(Option
+        .builder("l")
+        .longOpt("mlvl")
+        .desc("level of the monster, upgrades the treasure class (default level of the treasure class)")
+        .hasArg()
+        .argName("level")
+        .build());
+
+    options.addOption(Option
+        .builder("s")
+        .longOpt("seed")
+        .desc("seed of the simulation (default 0)")
+        .hasArg()
+        .argName("seed")
+        .build());
+
+    options.addOption(Option
+        .builder("t")
+        .longOpt("threads")
+        .desc("number of threads rolling (default number of processors)")
+        .hasArg()
+        .argName("threads")
+        .build());
+
+    options.addOption(Option
+        .builder("f")
+        .longOpt("format")
+        .desc("output format, csv or json (default extension of output, otherwise csv)")
+        .hasArg()
+        .argName("format")
+        .build());
+
+    options.addOption(Option
+        .builder("o")
+        .longOpt("output")
+        .desc("file to write to (default stdout, logs are written to stderr)")
+        .hasArg()
+        .argName("path")
+        .build());
+  }
+
+  @Override
+  protected void handleCliOptions(String cmd, Options options, CommandLine cli) throws Exception {
+    super.handleCliOptions(cmd, options, cli);
+
+    final InstallationFinder finder = InstallationFinder.getInstance();
+    final FileHandle d2Home = finder.defaultHomeDir("d2", cli.getOptionValue("d2"));
+    log.debug("d2Home: {}", d2Home);
+    Riiablo.home = d2Home;
+
+    treasureClasses = cli.getArgs();
+    log.debug("treasureClasses: {}", Arrays.toString(treasureClasses));
+    if (treasureClasses.length == 0) {
+      System.err.println("No treasure classes were provided!");
+      printHelp(cmd, options);
+      System.exit(0);
+    }
+
+    runs = Long.parseLong(cli.getOptionValue("runs", "1000000"));
+    players = Integer.parseInt(cli.getOptionValue("players", "1"));
+    if (players < 1 || players > TreasureClasses.MAX_PLAYERS) {
+      throw new IllegalArgumentException("players must be within [1.." + TreasureClasses.MAX_PLAYERS + "]: " + players);
+    }
+
+    magicFind = Integer.parseInt(cli.getOptionValue("mf", "0"));
+    mlvl = cli.hasOption("mlvl") ? Integer.parseInt(cli.getOptionValue("mlvl")) : -1;
+    seed = Long.parseLong(cli.getOptionValue("seed", "0"));
+    threads = Integer.parseInt(cli.getOptionValue("threads", Integer.toString(Runtime.getRuntime().availableProcessors())));
+    output = cli.getOptionValue("output");
+
+    String format = cli.getOptionValue("format");
+    if (format == null && output != null) format = FilenameUtils.getExtension(output);
+    if (StringUtils.isBlank(format)) format = LootReport.Format.CSV.name();
+    this.format = LootReport.Format.valueOf(format.toUpperCase());
+  }
+
+  String[] treasureClasses;
+  long runs;
+  int players;
+  int magicFind;
+  int mlvl;
+  long seed;
+  int threads;
+  String output;
+  LootReport.Format format;
+
+  @Override
+  public void create() {
+    if (output == null) Gdx.app.setLogLevel(Application.LOG_ERROR); // errors are written to stderr
+    Riiablo.home = Gdx.files.absolute(Riiablo.home.path());
+    Riiablo.assets = new AssetManager();
+    Riiablo.mpqs = new MPQFileHandleResolver();
+    Riiablo.files = new Files(Riiablo.assets);
+
+    final TreasureClasses tcs = new TreasureClasses();
+    final QualityTables qualities = new QualityTables(tcs);
+    final LootReport report = new LootReport();
+    final ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      for (String name : treasureClasses) {
+        int tc = tcs.index(name);
+        if (tc < 0) throw new GdxRuntimeException("Unknown treasure class: " + name);
+        final int ilvl = mlvl >= 0 ? mlvl : tcs.level(tc);
+        tc = tcs.upgrade(tc, ilvl);
+        log.info("Rolling {} {} times...", tcs.name(tc), runs);
+        final long start = System.nanoTime();
+        final LootSimulation simulation = new LootSimulation(qualities, tc, players, ilvl, magicFind);
+        final LootHistogram histogram = simulation.run(pool, runs, seed);
+        final long elapsed = System.nanoTime() - start;
+        log.info("Rolled {} drops in {} ms ({} runs/s)",
+            histogram.drops(), elapsed / 1000000, (long) (runs / (elapsed / 1e9)));
+        report.add(tcs.name(tc), players, ilvl, magicFind, histogram);
+      }
+
+      Writer out = null;
+      try {
+        out = output != null
+            ? new BufferedWriter(new OutputStreamWriter(new FileHandle(output).write(false), "UTF-8"))
+            : new BufferedWriter(new OutputStreamWriter(System.out, "UTF-8"));
+        report.write(format, out);
+      } finally {
+        if (output != null) StreamUtils.closeQuietly(out);
+      }
+    } catch (Throwable t) {
+      log.fatal(t.getMessage(), t);
+    } finally {
+      pool.shutdown();
+    }
+
+    Gdx.app.exit();
+  }
+
+  @Override
+  public void dispose() {
+    Riiablo.assets.dispose();
+  }
+}